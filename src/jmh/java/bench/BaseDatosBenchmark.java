@@ -0,0 +1,67 @@
+package bench;
+
+import config.DatabaseConnection;
+import entities.CodigoBarras;
+import entities.Producto;
+import entities.TipoCodigo;
+import migracion.MigradorEsquema;
+import service.ProductoService;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prepara la base de benchmarks (la de -Ddb.url, nunca la de producción): aplica las
+ * migraciones pendientes (mismo esquema e índices que producción), vacía las tablas y siembra
+ * N productos con su código.
+ */
+public final class BaseDatosBenchmark {
+
+    // Outbox y consumidores juntos: vaciar el outbox reinicia sus ids
+    private static final String[] TABLAS = {"codigo_barras", "producto", "outbox", "outbox_consumidor"};
+
+    private static final String[] CATEGORIAS = {"Alimentos", "Higiene", "Electrónica", "Bebidas", "Papelería", "Hogar"};
+
+    private BaseDatosBenchmark() {
+    }
+
+    /** Deja exactamente {@code cantidad} productos activos, con valores de código 779 + id de 10 dígitos. */
+    public static void preparar(int cantidad) throws SQLException, IOException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             Statement st = conn.createStatement()) {
+            // También con db.migraciones.automaticas=false; si ya están aplicadas no hace nada
+            new MigradorEsquema().migrar(conn);
+            st.execute("SET FOREIGN_KEY_CHECKS = 0");
+            for (String tabla : TABLAS) {
+                st.execute("TRUNCATE TABLE " + tabla);
+            }
+            st.execute("SET FOREIGN_KEY_CHECKS = 1");
+        }
+
+        ProductoService service = new ProductoService();
+        List<Producto> lote = new ArrayList<>(10_000);
+        for (int i = 1; i <= cantidad; i++) {
+            lote.add(producto(i));
+            if (lote.size() == 10_000 || i == cantidad) {
+                service.crearProductosConCodigos(lote);
+                lote = new ArrayList<>(10_000);
+            }
+        }
+    }
+
+    public static String valorCodigo(long n) {
+        return String.format("779%010d", n);
+    }
+
+    private static Producto producto(int n) {
+        CodigoBarras cb = new CodigoBarras(null, false, TipoCodigo.EAN13, valorCodigo(n),
+                LocalDate.now(), "Benchmark", null);
+        return new Producto(null, false, "Producto " + n, "Marca" + (n % 200 + 1),
+                CATEGORIAS[n % CATEGORIAS.length], 100 + n % 10_000, (n % 5_000) * 0.001, cb);
+    }
+}
@@ -0,0 +1,67 @@
+package bench;
+
+import dao.CodigoBarrasDaoImpl;
+import dao.ProductoDaoImpl;
+import entities.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Listados completos según el tamaño de la tabla.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LeerTodosBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tamanio;
+
+    private final ProductoDaoImpl productoDao = new ProductoDaoImpl();
+    private final CodigoBarrasDaoImpl codigoDao = new CodigoBarrasDaoImpl();
+
+    @Setup(Level.Trial)
+    public void sembrar() throws Exception {
+        BaseDatosBenchmark.preparar(tamanio);
+    }
+
+    @Benchmark
+    public List<Producto> productoLeerTodos() throws Exception {
+        return productoDao.leerTodos();
+    }
+
+    @Benchmark
+    public List<Producto> productoLeerTodosConCodigo() throws Exception {
+        return productoDao.leerTodosConCodigo();
+    }
+
+    @Benchmark
+    public void productoStreamTodos(Blackhole bh) throws Exception {
+        try (Stream<Producto> productos = productoDao.streamTodos()) {
+            productos.forEach(bh::consume);
+        }
+    }
+
+    @Benchmark
+    public Object codigoLeerTodos() throws Exception {
+        return codigoDao.leerTodos();
+    }
+}
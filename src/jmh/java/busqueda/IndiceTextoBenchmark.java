@@ -0,0 +1,93 @@
+package busqueda;
+
+import entities.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Búsqueda en IndiceTexto sin BD, sobre un catálogo sintético de {@code productos} productos
+ * (nombre = producto + variante + tamaño, 400 marcas, 40 categorías; semilla fija).
+ * Consultas: palabra frecuente, prefijo, dos palabras, marca + prefijo de categoría y una
+ * palabra que no está.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IndiceTextoBenchmark {
+
+    private static final String[] PRODUCTOS = {"leche", "yogur", "queso", "manteca", "yerba", "cafe", "te",
+            "azucar", "harina", "arroz", "fideos", "aceite", "vinagre", "galletitas", "alfajor", "chocolate",
+            "gaseosa", "agua", "jugo", "cerveza", "vino", "detergente", "jabon", "shampoo", "auriculares",
+            "cargador", "cable", "mouse", "teclado", "lampara", "pilas", "toallas", "servilletas", "pan",
+            "mermelada", "dulce", "atun", "arvejas", "tomate", "mayonesa"};
+    private static final String[] VARIANTES = {"entera", "descremada", "light", "clasica", "organica",
+            "premium", "familiar", "mini", "extra", "suave", "intenso", "natural", "sin", "tacc", "bluetooth",
+            "usb", "inalambrico", "mate", "cocido", "frutilla", "vainilla", "limon", "naranja", "durazno"};
+    private static final String[] TAMANIOS = {"1l", "500ml", "2l", "1kg", "500g", "250g", "x6", "x12", "x3"};
+    private static final String[] CATEGORIAS = new String[40];
+    private static final String[] MARCAS = new String[400];
+
+    static {
+        for (int i = 0; i < CATEGORIAS.length; i++) {
+            CATEGORIAS[i] = "Categoria " + (char) ('a' + i % 26) + (i / 26);
+        }
+        for (int i = 0; i < MARCAS.length; i++) {
+            MARCAS[i] = "Marca" + i;
+        }
+    }
+
+    @Param({"1000000"})
+    public int productos;
+
+    @Param({"leche", "auric", "yerba mate", "marca7 categoria", "inexistente"})
+    public String consulta;
+
+    private final IndiceTexto indice = IndiceTexto.getInstancia();
+
+    @Setup(Level.Trial)
+    public void cargar() throws SQLException {
+        if (indice.getCantidad() != productos) {
+            indice.cargar(() -> catalogo(productos));
+        }
+    }
+
+    @Benchmark
+    public List<Coincidencia> buscar() {
+        return indice.buscar(consulta, 20);
+    }
+
+    static Stream<Producto> catalogo(int cantidad) {
+        SplittableRandom azar = new SplittableRandom(42);
+        return LongStream.rangeClosed(1, cantidad).mapToObj(id -> {
+            Producto p = new Producto();
+            p.setId(id);
+            p.setNombre(PRODUCTOS[azar.nextInt(PRODUCTOS.length)] + " " + VARIANTES[azar.nextInt(VARIANTES.length)]
+                    + " " + TAMANIOS[azar.nextInt(TAMANIOS.length)]);
+            p.setMarca(MARCAS[azar.nextInt(MARCAS.length)]);
+            p.setCategoria(CATEGORIAS[azar.nextInt(CATEGORIAS.length)]);
+            p.setPrecio(100 + azar.nextInt(10_000));
+            p.setEliminado(false);
+            return p;
+        });
+    }
+}
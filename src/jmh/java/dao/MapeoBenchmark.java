@@ -0,0 +1,94 @@
+package dao;
+
+import entities.CodigoBarras;
+import entities.Producto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Costo de mapResultSet sin BD: el ResultSet es un stub en memoria con una fila fija,
+ * así se mide sólo el mapeo (lecturas por etiqueta, enums, fechas, boxing).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapeoBenchmark {
+
+    private final ProductoDaoImpl productoDao = new ProductoDaoImpl();
+    private final CodigoBarrasDaoImpl codigoDao = new CodigoBarrasDaoImpl();
+    private ResultSet fila;
+
+    @Setup
+    public void preparar() {
+        Map<String, Object> valores = new HashMap<>();
+        valores.put("id", 42L);
+        valores.put("nombre", "Leche entera 1L");
+        valores.put("marca", "La Serenísima");
+        valores.put("categoria", "Lácteos");
+        valores.put("precio", 1450.0);
+        valores.put("peso", 1.0);
+        valores.put("eliminado", false);
+        valores.put("producto_id", 42L);
+        valores.put("tipo", "EAN13");
+        valores.put("valor", "7791234567890");
+        valores.put("fecha_asignacion", Date.valueOf("2024-01-15"));
+        valores.put("observaciones", "Carga base");
+        valores.put("version", 3L);
+        for (String c : new String[]{"id", "producto_id", "tipo", "valor", "fecha_asignacion", "observaciones", "eliminado", "version"}) {
+            valores.put("cb_" + c, valores.get(c));
+        }
+        fila = stub(valores);
+    }
+
+    @Benchmark
+    public Producto productoMapResultSet() throws SQLException {
+        return productoDao.mapResultSet(fila);
+    }
+
+    @Benchmark
+    public Producto productoMapResultSetConCodigo() throws SQLException {
+        return productoDao.mapResultSetConCodigo(fila);
+    }
+
+    @Benchmark
+    public CodigoBarras codigoMapResultSet() throws SQLException {
+        return codigoDao.mapResultSet(fila);
+    }
+
+    private static ResultSet stub(Map<String, Object> valores) {
+        boolean[] ultimoNulo = new boolean[1];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, metodo, args) -> {
+                    if (metodo.getName().equals("wasNull")) {
+                        return ultimoNulo[0];
+                    }
+                    Object v = valores.get((String) args[0]);
+                    ultimoNulo[0] = v == null;
+                    switch (metodo.getName()) {
+                        case "getLong": return v == null ? 0L : v;
+                        case "getDouble": return v == null ? 0.0 : v;
+                        case "getBoolean": return v != null && (Boolean) v;
+                        default: return v;
+                    }
+                });
+    }
+}
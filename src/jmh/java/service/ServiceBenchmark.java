@@ -0,0 +1,94 @@
+package service;
+
+import bench.BaseDatosBenchmark;
+import cache.CacheCatalogo;
+import dao.CodigoBarrasDaoImpl;
+import entities.CodigoBarras;
+import entities.Producto;
+import entities.TipoCodigo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caminos calientes de los servicios contra la BD de benchmarks (10.000 productos sembrados).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark {
+
+    private static final int SEMBRADOS = 10_000;
+
+    private final ProductoService productoService = new ProductoService();
+    private final CodigoBarrasService codigoService = new CodigoBarrasService();
+    private final CodigoBarrasDaoImpl codigoDao = new CodigoBarrasDaoImpl();
+    private final AtomicLong secuencia = new AtomicLong(System.nanoTime());
+
+    @Setup(Level.Trial)
+    public void sembrar() throws Exception {
+        BaseDatosBenchmark.preparar(SEMBRADOS);
+    }
+
+    private static String valorAleatorio() {
+        return BaseDatosBenchmark.valorCodigo(ThreadLocalRandom.current().nextInt(1, SEMBRADOS + 1));
+    }
+
+    @Benchmark
+    public void validarCodigoBarras() throws Exception {
+        long id = ThreadLocalRandom.current().nextInt(1, SEMBRADOS + 1);
+        CodigoBarras cb = new CodigoBarras(id, false, TipoCodigo.EAN13, BaseDatosBenchmark.valorCodigo(id),
+                LocalDate.now(), null, id);
+        codigoService.validarCodigoBarras(cb);
+    }
+
+    @Benchmark
+    public CodigoBarras actualizarCodigo() throws Exception {
+        // Validación + UPDATE en un solo viaje (1→1 y FK a cargo de las restricciones)
+        long id = ThreadLocalRandom.current().nextInt(1, SEMBRADOS + 1);
+        CodigoBarras cb = new CodigoBarras(id, false, TipoCodigo.EAN13, BaseDatosBenchmark.valorCodigo(id),
+                LocalDate.now(), "Bench " + secuencia.incrementAndGet(), id);
+        return codigoService.actualizar(cb);
+    }
+
+    @Benchmark
+    public Producto crearProductoConCodigo() throws Exception {
+        Producto p = new Producto(null, false, "Bench", "Marca", "Alimentos", 100.0, 0.5, null);
+        CodigoBarras cb = new CodigoBarras(null, false, TipoCodigo.EAN13, "B" + secuencia.incrementAndGet(),
+                LocalDate.now(), null, null);
+        productoService.crearProductoConCodigo(p, cb);
+        return p;
+    }
+
+    @Benchmark
+    public CodigoBarras buscarPorValorDao() throws Exception {
+        return codigoDao.buscarPorValor(valorAleatorio());
+    }
+
+    @Benchmark
+    public CodigoBarras buscarPorValorServicioCacheFria() throws Exception {
+        CacheCatalogo.getInstancia().invalidarTodo();
+        return codigoService.buscarPorValor(valorAleatorio());
+    }
+
+    @Benchmark
+    public CodigoBarras buscarPorValorServicio() throws Exception {
+        return codigoService.buscarPorValor(valorAleatorio());
+    }
+}
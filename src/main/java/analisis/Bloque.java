@@ -0,0 +1,86 @@
+package analisis;
+
+import entities.Producto;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnas de los productos cuyo id cae en un bloque ({@code id DIV tamanioBloque}).
+ * Inmutable una vez construido: un refresco reemplaza bloques enteros.
+ */
+final class Bloque {
+
+    final long numero;
+    final long firma;
+    final int filas;
+    final long[] ids;
+    final double[] precios;
+    final double[] pesos;       // NaN = sin peso
+    final int[] marcas;         // códigos del diccionario de marcas
+    final int[] categorias;     // códigos del diccionario de categorías
+    final String[] nombres;
+    final BitSet eliminados;
+
+    private Bloque(Constructor c) {
+        this.numero = c.numero;
+        this.firma = c.firma;
+        this.filas = c.filas;
+        this.ids = Arrays.copyOf(c.ids, c.filas);
+        this.precios = Arrays.copyOf(c.precios, c.filas);
+        this.pesos = Arrays.copyOf(c.pesos, c.filas);
+        this.marcas = Arrays.copyOf(c.marcas, c.filas);
+        this.categorias = Arrays.copyOf(c.categorias, c.filas);
+        this.nombres = Arrays.copyOf(c.nombres, c.filas);
+        this.eliminados = c.eliminados;
+    }
+
+    /** Arma un bloque fila a fila (en orden de id). */
+    static final class Constructor {
+        private final long numero;
+        private final long firma;
+        private final Diccionario marcasDic;
+        private final Diccionario categoriasDic;
+        private int filas;
+        private long[] ids = new long[256];
+        private double[] precios = new double[256];
+        private double[] pesos = new double[256];
+        private int[] marcas = new int[256];
+        private int[] categorias = new int[256];
+        private String[] nombres = new String[256];
+        private final BitSet eliminados = new BitSet();
+
+        Constructor(long numero, long firma, Diccionario marcasDic, Diccionario categoriasDic) {
+            this.numero = numero;
+            this.firma = firma;
+            this.marcasDic = marcasDic;
+            this.categoriasDic = categoriasDic;
+        }
+
+        void agregar(Producto p) {
+            if (filas == ids.length) {
+                int n = filas * 2;
+                ids = Arrays.copyOf(ids, n);
+                precios = Arrays.copyOf(precios, n);
+                pesos = Arrays.copyOf(pesos, n);
+                marcas = Arrays.copyOf(marcas, n);
+                categorias = Arrays.copyOf(categorias, n);
+                nombres = Arrays.copyOf(nombres, n);
+            }
+            ids[filas] = p.getId();
+            precios[filas] = p.getPrecio();
+            pesos[filas] = p.getPeso() == null ? Double.NaN : p.getPeso();
+            marcas[filas] = marcasDic.codificar(p.getMarca());
+            categorias[filas] = categoriasDic.codificar(p.getCategoria());
+            nombres[filas] = p.getNombre();
+            if (Boolean.TRUE.equals(p.getEliminado())) {
+                eliminados.set(filas);
+            }
+            filas++;
+        }
+
+        Bloque construir() {
+            return new Bloque(this);
+        }
+    }
+}
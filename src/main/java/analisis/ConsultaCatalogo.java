@@ -0,0 +1,292 @@
+package analisis;
+
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Filtros y agregaciones sobre un {@link SnapshotCatalogo}. Cada operación recorre los
+ * bloques en paralelo (fork/join común) y combina los parciales; no crea objetos por fila.
+ *
+ * <pre>
+ * snap.consulta().categoria("Bebidas").precioEntre(100, 500).histograma(Medida.PRECIO, 100, 500, 8);
+ * </pre>
+ */
+public final class ConsultaCatalogo {
+
+    public enum Dimension { MARCA, CATEGORIA }
+
+    public enum Medida { PRECIO, PESO }
+
+    private static final Histograma LAT_CONSULTA = RegistroMetricas.latencia("analisis.consulta");
+
+    private final SnapshotCatalogo snapshot;
+    private int marca = -1;          // -1 = cualquiera
+    private int categoria = -1;
+    private boolean vacia;           // filtro por un valor que no existe en el snapshot
+    private double precioMin = Double.NEGATIVE_INFINITY;
+    private double precioMax = Double.POSITIVE_INFINITY;
+    private boolean incluirBajas;
+
+    ConsultaCatalogo(SnapshotCatalogo snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    // ============================================================
+    //  FILTROS
+    // ============================================================
+
+    public ConsultaCatalogo marca(String valor) {
+        marca = snapshot.getMarcas().buscar(valor);
+        vacia |= marca < 0;
+        return this;
+    }
+
+    public ConsultaCatalogo categoria(String valor) {
+        categoria = snapshot.getCategorias().buscar(valor);
+        vacia |= categoria < 0;
+        return this;
+    }
+
+    /** Precio dentro de [min, max]. */
+    public ConsultaCatalogo precioEntre(double min, double max) {
+        precioMin = min;
+        precioMax = max;
+        return this;
+    }
+
+    /** Incluye también los productos dados de baja lógica. */
+    public ConsultaCatalogo incluirBajas() {
+        incluirBajas = true;
+        return this;
+    }
+
+    // ============================================================
+    //  AGREGACIONES
+    // ============================================================
+
+    /** Cantidad de productos que cumplen los filtros. */
+    public long contar() {
+        long inicio = System.nanoTime();
+        try {
+            return bloques().mapToLong(b -> {
+                long n = 0;
+                for (int i = 0; i < b.filas; i++) {
+                    if (pasa(b, i)) n++;
+                }
+                return n;
+            }).sum();
+        } finally {
+            LAT_CONSULTA.registrarDesde(inicio);
+        }
+    }
+
+    public Resumen resumen(Medida medida) {
+        long inicio = System.nanoTime();
+        try {
+            return bloques().map(b -> {
+                Resumen r = new Resumen();
+                double[] valores = columna(b, medida);
+                for (int i = 0; i < b.filas; i++) {
+                    if (pasa(b, i)) r.agregar(valores[i]);
+                }
+                return r;
+            }).reduce(Resumen::combinar).orElseGet(Resumen::new);
+        } finally {
+            LAT_CONSULTA.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Resumen de la medida por marca o categoría, ordenado por nombre del grupo.
+     */
+    public Map<String, Resumen> agrupar(Dimension dimension, Medida medida) {
+        long inicio = System.nanoTime();
+        try {
+            Resumen[] totales = bloques().map(b -> {
+                Resumen[] parcial = new Resumen[diccionario(dimension).tamanio()];
+                int[] grupos = grupos(b, dimension);
+                double[] valores = columna(b, medida);
+                for (int i = 0; i < b.filas; i++) {
+                    if (pasa(b, i)) {
+                        Resumen r = parcial[grupos[i]];
+                        if (r == null) {
+                            r = parcial[grupos[i]] = new Resumen();
+                        }
+                        r.agregar(valores[i]);
+                    }
+                }
+                return parcial;
+            }).reduce(ConsultaCatalogo::combinar).orElse(new Resumen[0]);
+
+            Map<String, Resumen> resultado = new TreeMap<>();
+            for (int g = 0; g < totales.length; g++) {
+                if (totales[g] != null && totales[g].getCantidad() > 0) {
+                    resultado.put(diccionario(dimension).valor(g), totales[g]);
+                }
+            }
+            return resultado;
+        } finally {
+            LAT_CONSULTA.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Histograma de la medida en {@code cubetas} intervalos iguales de [desde, hasta).
+     * Los valores fuera del rango no se cuentan.
+     */
+    public long[] histograma(Medida medida, double desde, double hasta, int cubetas) {
+        if (cubetas <= 0 || !(hasta > desde)) {
+            throw new IllegalArgumentException("Rango o cantidad de cubetas inválidos.");
+        }
+        double ancho = (hasta - desde) / cubetas;
+        long inicio = System.nanoTime();
+        try {
+            return bloques().map(b -> {
+                long[] parcial = new long[cubetas];
+                double[] valores = columna(b, medida);
+                for (int i = 0; i < b.filas; i++) {
+                    double v = valores[i];
+                    if (v >= desde && v < hasta && pasa(b, i)) {
+                        parcial[Math.min((int) ((v - desde) / ancho), cubetas - 1)]++;
+                    }
+                }
+                return parcial;
+            }).reduce(new long[cubetas], (a, c) -> {
+                long[] suma = a.clone();
+                for (int i = 0; i < cubetas; i++) suma[i] += c[i];
+                return suma;
+            });
+        } finally {
+            LAT_CONSULTA.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Los {@code n} productos con mayor valor de la medida en cada grupo.
+     * Sólo se materializan las filas que quedan en el resultado.
+     */
+    public Map<String, List<FilaCatalogo>> mayoresPorGrupo(Dimension dimension, Medida medida, int n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n debe ser positivo.");
+        }
+        long inicio = System.nanoTime();
+        try {
+            Map<Integer, PriorityQueue<Posicion>> top = bloques().map(b -> {
+                Map<Integer, PriorityQueue<Posicion>> parcial = new HashMap<>();
+                int[] grupos = grupos(b, dimension);
+                double[] valores = columna(b, medida);
+                for (int i = 0; i < b.filas; i++) {
+                    if (!Double.isNaN(valores[i]) && pasa(b, i)) {
+                        ofrecer(parcial.computeIfAbsent(grupos[i], g -> new PriorityQueue<>()),
+                                new Posicion(b, i, valores[i]), n);
+                    }
+                }
+                return parcial;
+            }).reduce((a, c) -> {
+                // Los parciales son propios de cada bloque: se pueden modificar al combinar
+                c.forEach((g, cola) -> {
+                    PriorityQueue<Posicion> destino = a.computeIfAbsent(g, x -> new PriorityQueue<>());
+                    cola.forEach(p -> ofrecer(destino, p, n));
+                });
+                return a;
+            }).orElseGet(HashMap::new);
+
+            Map<String, List<FilaCatalogo>> resultado = new TreeMap<>();
+            top.forEach((g, cola) -> {
+                List<Posicion> orden = new ArrayList<>(cola);
+                orden.sort(Comparator.reverseOrder());
+                List<FilaCatalogo> filas = new ArrayList<>(orden.size());
+                for (Posicion p : orden) {
+                    filas.add(materializar(p.bloque, p.fila));
+                }
+                resultado.put(diccionario(dimension).valor(g), filas);
+            });
+            return resultado;
+        } finally {
+            LAT_CONSULTA.registrarDesde(inicio);
+        }
+    }
+
+    // ============================================================
+    //  AUXILIARES
+    // ============================================================
+
+    private Stream<Bloque> bloques() {
+        return vacia ? Stream.empty() : Arrays.stream(snapshot.getBloques()).parallel();
+    }
+
+    private boolean pasa(Bloque b, int i) {
+        if (!incluirBajas && b.eliminados.get(i)) return false;
+        if (marca >= 0 && b.marcas[i] != marca) return false;
+        if (categoria >= 0 && b.categorias[i] != categoria) return false;
+        double precio = b.precios[i];
+        return precio >= precioMin && precio <= precioMax;
+    }
+
+    private static double[] columna(Bloque b, Medida medida) {
+        return medida == Medida.PRECIO ? b.precios : b.pesos;
+    }
+
+    private static int[] grupos(Bloque b, Dimension dimension) {
+        return dimension == Dimension.MARCA ? b.marcas : b.categorias;
+    }
+
+    private Diccionario diccionario(Dimension dimension) {
+        return dimension == Dimension.MARCA ? snapshot.getMarcas() : snapshot.getCategorias();
+    }
+
+    private static Resumen[] combinar(Resumen[] a, Resumen[] b) {
+        Resumen[] suma = Arrays.copyOf(a, Math.max(a.length, b.length));
+        for (int g = 0; g < b.length; g++) {
+            if (b[g] != null) {
+                suma[g] = suma[g] == null ? b[g] : suma[g].combinar(b[g]);
+            }
+        }
+        return suma;
+    }
+
+    private static void ofrecer(PriorityQueue<Posicion> cola, Posicion p, int n) {
+        if (cola.size() < n) {
+            cola.add(p);
+        } else if (p.compareTo(cola.peek()) > 0) {
+            cola.poll();
+            cola.add(p);
+        }
+    }
+
+    private FilaCatalogo materializar(Bloque b, int i) {
+        return new FilaCatalogo(b.ids[i], b.nombres[i],
+                snapshot.getMarcas().valor(b.marcas[i]),
+                snapshot.getCategorias().valor(b.categorias[i]),
+                b.precios[i], Double.isNaN(b.pesos[i]) ? null : b.pesos[i]);
+    }
+
+    /** Fila candidata del top-N: referencia al bloque, sin copiar datos. */
+    private static final class Posicion implements Comparable<Posicion> {
+        final Bloque bloque;
+        final int fila;
+        final double valor;
+
+        Posicion(Bloque bloque, int fila, double valor) {
+            this.bloque = bloque;
+            this.fila = fila;
+            this.valor = valor;
+        }
+
+        @Override
+        public int compareTo(Posicion o) {
+            int c = Double.compare(valor, o.valor);
+            return c != 0 ? c : Long.compare(o.bloque.ids[o.fila], bloque.ids[fila]);
+        }
+    }
+}
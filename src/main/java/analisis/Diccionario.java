@@ -0,0 +1,56 @@
+package analisis;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codificación por diccionario de una columna de texto (marca, categoría): cada valor
+ * distinto recibe un código int estable, así las columnas son int[] y los filtros comparan
+ * enteros. Un snapshot refrescado hereda una copia del diccionario: los códigos no cambian.
+ */
+final class Diccionario {
+
+    private final Map<String, Integer> codigos;
+    private final List<String> valores;
+
+    Diccionario() {
+        this.codigos = new HashMap<>();
+        this.valores = new ArrayList<>();
+    }
+
+    private Diccionario(Diccionario otro) {
+        this.codigos = new HashMap<>(otro.codigos);
+        this.valores = new ArrayList<>(otro.valores);
+    }
+
+    Diccionario copiar() {
+        return new Diccionario(this);
+    }
+
+    int codificar(String valor) {
+        String v = valor == null ? "" : valor;
+        Integer codigo = codigos.get(v);
+        if (codigo == null) {
+            codigo = valores.size();
+            codigos.put(v, codigo);
+            valores.add(v);
+        }
+        return codigo;
+    }
+
+    /** Código del valor, o -1 si nunca apareció. */
+    int buscar(String valor) {
+        Integer codigo = codigos.get(valor == null ? "" : valor);
+        return codigo == null ? -1 : codigo;
+    }
+
+    String valor(int codigo) {
+        return valores.get(codigo);
+    }
+
+    int tamanio() {
+        return valores.size();
+    }
+}
@@ -0,0 +1,36 @@
+package analisis;
+
+/**
+ * Una fila del snapshot materializada (para listados como "los más pesados por marca").
+ */
+public final class FilaCatalogo {
+    private final long id;
+    private final String nombre;
+    private final String marca;
+    private final String categoria;
+    private final double precio;
+    private final Double peso;
+
+    FilaCatalogo(long id, String nombre, String marca, String categoria, double precio, Double peso) {
+        this.id = id;
+        this.nombre = nombre;
+        this.marca = marca;
+        this.categoria = categoria;
+        this.precio = precio;
+        this.peso = peso;
+    }
+
+    // Getters
+    public long getId() { return id; }
+    public String getNombre() { return nombre; }
+    public String getMarca() { return marca; }
+    public String getCategoria() { return categoria; }
+    public double getPrecio() { return precio; }
+    public Double getPeso() { return peso; }
+
+    @Override
+    public String toString() {
+        return String.format("ID %d | %s | %s | %s | $%.2f | %s kg", id, nombre, marca, categoria, precio,
+                peso == null ? "-" : String.format("%.2f", peso));
+    }
+}
@@ -0,0 +1,45 @@
+package analisis;
+
+/**
+ * Cantidad, suma, mínimo y máximo de una medida sobre un grupo de filas.
+ * Las filas sin valor (peso nulo) no cuentan.
+ */
+public final class Resumen {
+    private long cantidad;
+    private double suma;
+    private double minimo = Double.POSITIVE_INFINITY;
+    private double maximo = Double.NEGATIVE_INFINITY;
+
+    void agregar(double valor) {
+        if (Double.isNaN(valor)) {
+            return;
+        }
+        cantidad++;
+        suma += valor;
+        if (valor < minimo) minimo = valor;
+        if (valor > maximo) maximo = valor;
+    }
+
+    Resumen combinar(Resumen otro) {
+        cantidad += otro.cantidad;
+        suma += otro.suma;
+        minimo = Math.min(minimo, otro.minimo);
+        maximo = Math.max(maximo, otro.maximo);
+        return this;
+    }
+
+    // Getters
+    public long getCantidad() { return cantidad; }
+    public double getSuma() { return suma; }
+    public double getMinimo() { return cantidad == 0 ? Double.NaN : minimo; }
+    public double getMaximo() { return cantidad == 0 ? Double.NaN : maximo; }
+
+    public double getPromedio() {
+        return cantidad == 0 ? Double.NaN : suma / cantidad;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d, prom=%.2f, min=%.2f, max=%.2f", cantidad, getPromedio(), getMinimo(), getMaximo());
+    }
+}
@@ -0,0 +1,188 @@
+package analisis;
+
+import dao.ProductoDaoImpl;
+import entities.Producto;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Copia columnar e inmutable del catálogo para reportes: precio, peso e id en arrays
+ * primitivos, marca y categoría codificadas por diccionario y la baja lógica como bitmap.
+ * Las consultas ({@link #consulta()}) recorren los bloques en paralelo sin tocar MySQL.
+ *
+ * <pre>
+ * SnapshotCatalogo snap = SnapshotCatalogo.construir(productoDao);
+ * Map&lt;String, Resumen&gt; porCategoria = snap.consulta().agrupar(Dimension.CATEGORIA, Medida.PRECIO);
+ * snap = snap.refrescar(productoDao);   // sólo relee los bloques que cambiaron
+ * </pre>
+ *
+ * La tabla no tiene columna de última modificación, así que el refresco compara una firma
+ * por bloque de ids (cantidad + XOR de CRC32 de cada fila, calculada en MySQL) y relee sólo
+ * los bloques cuya firma cambió. Los bloques sin cambios se comparten con el snapshot anterior.
+ */
+public final class SnapshotCatalogo {
+
+    public static final int TAMANIO_BLOQUE = 4096;
+
+    private static final Histograma LAT_CARGA = RegistroMetricas.latencia("analisis.snapshot.carga");
+
+    private final Bloque[] bloques;
+    private final Diccionario marcas;
+    private final Diccionario categorias;
+    private final Instant instante;
+    private final int bloquesLeidos;
+    private final long filas;
+
+    private SnapshotCatalogo(Bloque[] bloques, Diccionario marcas, Diccionario categorias, int bloquesLeidos) {
+        this.bloques = bloques;
+        this.marcas = marcas;
+        this.categorias = categorias;
+        this.instante = Instant.now();
+        this.bloquesLeidos = bloquesLeidos;
+        long total = 0;
+        for (Bloque b : bloques) {
+            total += b.filas;
+        }
+        this.filas = total;
+    }
+
+    // ============================================================
+    //  CARGA Y REFRESCO
+    // ============================================================
+
+    /** Carga el catálogo completo (incluye los productos dados de baja). */
+    public static SnapshotCatalogo construir(ProductoDaoImpl dao) throws SQLException {
+        return cargar(dao, null);
+    }
+
+    /**
+     * Devuelve un snapshot nuevo con los bloques modificados desde éste releídos de la BD.
+     * Este snapshot no cambia: quien lo esté consultando sigue viendo los datos anteriores.
+     */
+    public SnapshotCatalogo refrescar(ProductoDaoImpl dao) throws SQLException {
+        return cargar(dao, this);
+    }
+
+    private static SnapshotCatalogo cargar(ProductoDaoImpl dao, SnapshotCatalogo anterior) throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            Map<Long, Long> firmas = dao.firmasPorBloque(TAMANIO_BLOQUE);
+            Map<Long, Bloque> previos = new HashMap<>();
+            Diccionario marcas = new Diccionario();
+            Diccionario categorias = new Diccionario();
+            if (anterior != null) {
+                for (Bloque b : anterior.bloques) {
+                    previos.put(b.numero, b);
+                }
+                marcas = anterior.marcas.copiar();
+                categorias = anterior.categorias.copiar();
+            }
+
+            long[] numeros = firmas.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            Bloque[] nuevos = new Bloque[numeros.length];
+            List<Integer> cambiados = new ArrayList<>();
+            for (int i = 0; i < numeros.length; i++) {
+                Bloque previo = previos.get(numeros[i]);
+                if (previo != null && previo.firma == firmas.get(numeros[i])) {
+                    nuevos[i] = previo;
+                } else {
+                    cambiados.add(i);
+                }
+            }
+
+            // Bloques cambiados contiguos se leen con una sola consulta por rango
+            int k = 0;
+            while (k < cambiados.size()) {
+                int desde = cambiados.get(k);
+                int hasta = desde;
+                while (k + 1 < cambiados.size() && cambiados.get(k + 1) == hasta + 1
+                        && numeros[hasta + 1] == numeros[hasta] + 1) {
+                    hasta = cambiados.get(++k);
+                }
+                leerTramo(dao, numeros, firmas, desde, hasta, nuevos, marcas, categorias);
+                k++;
+            }
+
+            // Un bloque que quedó vacío entre la firma y la lectura se descarta
+            Bloque[] resultado = Arrays.stream(nuevos).filter(b -> b.filas > 0).toArray(Bloque[]::new);
+            return new SnapshotCatalogo(resultado, marcas, categorias, cambiados.size());
+        } finally {
+            LAT_CARGA.registrarDesde(inicio);
+        }
+    }
+
+    private static void leerTramo(ProductoDaoImpl dao, long[] numeros, Map<Long, Long> firmas, int desde, int hasta,
+                                  Bloque[] destino, Diccionario marcas, Diccionario categorias) throws SQLException {
+        Bloque.Constructor[] constructores = new Bloque.Constructor[hasta - desde + 1];
+        for (int i = desde; i <= hasta; i++) {
+            constructores[i - desde] = new Bloque.Constructor(numeros[i], firmas.get(numeros[i]), marcas, categorias);
+        }
+        long primero = numeros[desde];
+        try (Stream<Producto> productos = dao.streamRango(primero * TAMANIO_BLOQUE,
+                (numeros[hasta] + 1) * TAMANIO_BLOQUE)) {
+            Iterator<Producto> it = productos.iterator();
+            while (it.hasNext()) {
+                Producto p = it.next();
+                constructores[(int) (p.getId() / TAMANIO_BLOQUE - primero)].agregar(p);
+            }
+        }
+        for (int i = desde; i <= hasta; i++) {
+            destino[i] = constructores[i - desde].construir();
+        }
+    }
+
+    // ============================================================
+    //  CONSULTAS
+    // ============================================================
+
+    /** Nueva consulta sobre este snapshot (por defecto, sólo productos activos). */
+    public ConsultaCatalogo consulta() {
+        return new ConsultaCatalogo(this);
+    }
+
+    Bloque[] getBloques() {
+        return bloques;
+    }
+
+    Diccionario getMarcas() {
+        return marcas;
+    }
+
+    Diccionario getCategorias() {
+        return categorias;
+    }
+
+    /** Filas totales, incluidas las dadas de baja. */
+    public long getFilas() {
+        return filas;
+    }
+
+    public Instant getInstante() {
+        return instante;
+    }
+
+    /** Bloques leídos de la BD al armar este snapshot (el resto se reutilizó). */
+    public int getBloquesLeidos() {
+        return bloquesLeidos;
+    }
+
+    public int getCantidadBloques() {
+        return bloques.length;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Snapshot[filas=%d, bloques=%d, leidos=%d, marcas=%d, categorias=%d, %s]",
+                filas, bloques.length, bloquesLeidos, marcas.tamanio(), categorias.tamanio(), instante);
+    }
+}
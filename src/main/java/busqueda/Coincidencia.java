@@ -0,0 +1,22 @@
+package busqueda;
+
+/**
+ * Resultado de una búsqueda por texto: el producto y su puntaje (mayor es mejor).
+ */
+public final class Coincidencia {
+    private final long productoId;
+    private final int puntaje;
+
+    Coincidencia(long productoId, int puntaje) {
+        this.productoId = productoId;
+        this.puntaje = puntaje;
+    }
+
+    public long getProductoId() { return productoId; }
+    public int getPuntaje() { return puntaje; }
+
+    @Override
+    public String toString() {
+        return "Coincidencia{productoId=" + productoId + ", puntaje=" + puntaje + "}";
+    }
+}
@@ -0,0 +1,555 @@
+package busqueda;
+
+import entities.Producto;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Índice invertido en memoria sobre nombre, marca y categoría de los productos activos,
+ * para buscar por palabras o prefijos ("yerba", "auricul", "lacteos") sin LIKE '%x%'.
+ *
+ * - Diccionario ordenado de términos (TreeMap): un prefijo es un rango del diccionario.
+ * - Cada término apunta, por campo, a la lista de documentos que lo contienen (int[] ordenado).
+ * - Por documento se guarda el texto normalizado, para verificar y puntuar el resto de las
+ *   palabras de la consulta sin tocar la BD.
+ *
+ * Todas las palabras de la consulta deben aparecer (como palabra o prefijo). Puntaje por
+ * palabra: nombre 3, marca 2, categoría 1; la palabra exacta vale el doble que un prefijo.
+ * A igual puntaje, primero el producto indexado antes.
+ *
+ * ProductoService lo carga la primera vez que se usa y lo mantiene al día después de cada
+ * commit (indexar / quitar).
+ */
+public final class IndiceTexto {
+
+    private static final IndiceTexto INSTANCIA = new IndiceTexto();
+    private static final Histograma LAT_BUSCAR = RegistroMetricas.latencia("busqueda.texto");
+
+    private static final int[] PESOS = {3, 2, 1};
+    private static final char SEPARADOR_CAMPO = '|'; // el texto normalizado nunca lo contiene
+
+    /** Origen de la carga completa (p. ej. ProductoDaoImpl::streamTodos). */
+    @FunctionalInterface
+    public interface Fuente {
+        Stream<Producto> abrir() throws SQLException;
+    }
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Datos datos;     // null hasta la primera carga
+    private List<Cambio> pendientes;  // != null mientras hay una carga en curso
+
+    private IndiceTexto() {
+    }
+
+    public static IndiceTexto getInstancia() {
+        return INSTANCIA;
+    }
+
+    public boolean estaCargado() {
+        return datos != null;
+    }
+
+    /**
+     * (Re)construye el índice completo. Las escrituras que llegan mientras se lee la fuente se
+     * guardan y se vuelven a aplicar al final, así no se pierden aunque la lectura no las vea.
+     */
+    public void cargar(Fuente fuente) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            pendientes = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Datos nuevo = new Datos();
+        boolean completa = false;
+        try (Stream<Producto> productos = fuente.abrir()) {
+            Iterator<Producto> it = productos.iterator();
+            while (it.hasNext()) {
+                nuevo.aplicar(cambio(it.next()));
+            }
+            completa = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (completa) {
+                    for (Cambio c : pendientes) {
+                        nuevo.aplicar(c);
+                    }
+                    datos = nuevo;
+                }
+                pendientes = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // ============================================================
+    //  ACTUALIZACIÓN INCREMENTAL (llamar después del commit)
+    // ============================================================
+
+    /** Agrega o reemplaza el producto; si está dado de baja lo quita. */
+    public void indexar(Producto p) {
+        if (p != null && p.getId() != null) {
+            aplicar(cambio(p));
+        }
+    }
+
+    public void quitar(long productoId) {
+        aplicar(new Cambio(productoId, null));
+    }
+
+    private void aplicar(Cambio c) {
+        lock.writeLock().lock();
+        try {
+            if (pendientes != null) {
+                pendientes.add(c);
+            }
+            if (datos != null) {
+                datos.aplicar(c);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static Cambio cambio(Producto p) {
+        if (Boolean.TRUE.equals(p.getEliminado())) {
+            return new Cambio(p.getId(), null);
+        }
+        String texto = Normalizador.plegar(p.getNombre()) + SEPARADOR_CAMPO + Normalizador.plegar(p.getMarca())
+                + SEPARADOR_CAMPO + Normalizador.plegar(p.getCategoria());
+        return new Cambio(p.getId(), texto);
+    }
+
+    // ============================================================
+    //  BÚSQUEDA
+    // ============================================================
+
+    /**
+     * Los {@code limite} productos que mejor coinciden, de mayor a menor puntaje.
+     * Devuelve una lista vacía si el índice todavía no se cargó.
+     */
+    public List<Coincidencia> buscar(String consulta, int limite) {
+        long inicio = System.nanoTime();
+        try {
+            List<String> tokens = Normalizador.tokens(consulta);
+            if (tokens.isEmpty() || limite <= 0) {
+                return Collections.emptyList();
+            }
+            lock.readLock().lock();
+            try {
+                Datos d = datos;
+                return d == null ? Collections.emptyList() : d.buscar(tokens.toArray(new String[0]), limite);
+            } finally {
+                lock.readLock().unlock();
+            }
+        } finally {
+            LAT_BUSCAR.registrarDesde(inicio);
+        }
+    }
+
+    /** Productos indexados (activos). */
+    public int getCantidad() {
+        Datos d = datos;
+        return d == null ? 0 : d.vivos;
+    }
+
+    // ============================================================
+    //  ESTRUCTURA INTERNA (se accede siempre bajo el lock)
+    // ============================================================
+
+    private static final class Cambio {
+        final long productoId;
+        final String texto; // null = quitar
+
+        Cambio(long productoId, String texto) {
+            this.productoId = productoId;
+            this.texto = texto;
+        }
+    }
+
+    /** Lista de documentos de un término en un campo; se agregan en orden creciente. */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int cantidad;
+
+        void agregar(int doc) {
+            if (cantidad > 0 && docs[cantidad - 1] == doc) {
+                return; // la palabra se repite en el mismo campo
+            }
+            if (cantidad == docs.length) {
+                docs = Arrays.copyOf(docs, cantidad * 2);
+            }
+            docs[cantidad++] = doc;
+        }
+    }
+
+    /** Un término del diccionario: sus documentos separados por campo (nombre, marca, categoría). */
+    private static final class Termino {
+        final Postings[] porCampo = new Postings[PESOS.length];
+
+        void agregar(int campo, int doc) {
+            if (porCampo[campo] == null) {
+                porCampo[campo] = new Postings();
+            }
+            porCampo[campo].agregar(doc);
+        }
+
+        int cantidad() {
+            int n = 0;
+            for (Postings p : porCampo) {
+                if (p != null) n += p.cantidad;
+            }
+            return n;
+        }
+
+        int pesoMaximo(boolean exacto) {
+            for (int campo = 0; campo < porCampo.length; campo++) {
+                if (porCampo[campo] != null) {
+                    return PESOS[campo] * (exacto ? 2 : 1); // PESOS es decreciente
+                }
+            }
+            return 0;
+        }
+    }
+
+    /** Recorre un Postings en orden; sirve para la mezcla k-way. */
+    private static final class Cursor {
+        final Postings postings;
+        int pos;
+
+        Cursor(Postings postings) {
+            this.postings = postings;
+        }
+
+        int actual() {
+            return postings.docs[pos];
+        }
+    }
+
+    private static final class Datos {
+        TreeMap<String, Termino> terminos = new TreeMap<>();
+        long[] productoIds = new long[1024];
+        String[] textos = new String[1024];
+        BitSet borrados = new BitSet();
+        MapaIds docPorProducto = new MapaIds();
+        int cantidad; // documentos asignados (incluye borrados)
+        int vivos;
+
+        void aplicar(Cambio c) {
+            int anterior = docPorProducto.quitar(c.productoId);
+            if (anterior >= 0) {
+                borrados.set(anterior);
+                textos[anterior] = null;
+                vivos--;
+            }
+            if (c.texto != null) {
+                agregar(c.productoId, c.texto);
+            }
+            // Las listas sólo crecen: se reconstruye cuando los borrados superan a los vivos
+            int muertos = cantidad - vivos;
+            if (muertos > 1024 && muertos > vivos) {
+                compactar();
+            }
+        }
+
+        private void agregar(long productoId, String texto) {
+            if (cantidad == productoIds.length) {
+                productoIds = Arrays.copyOf(productoIds, cantidad * 2);
+                textos = Arrays.copyOf(textos, cantidad * 2);
+            }
+            int doc = cantidad++;
+            productoIds[doc] = productoId;
+            textos[doc] = texto;
+            docPorProducto.poner(productoId, doc);
+            vivos++;
+
+            int campo = 0;
+            int i = 0;
+            int largo = texto.length();
+            while (i < largo) {
+                int fin = finDePalabra(texto, i);
+                if (fin > i) {
+                    terminos.computeIfAbsent(texto.substring(i, fin), t -> new Termino()).agregar(campo, doc);
+                }
+                if (fin < largo && texto.charAt(fin) == SEPARADOR_CAMPO) {
+                    campo++;
+                }
+                i = fin + 1;
+            }
+        }
+
+        private void compactar() {
+            Datos nuevo = new Datos();
+            for (int doc = 0; doc < cantidad; doc++) {
+                if (!borrados.get(doc)) {
+                    nuevo.agregar(productoIds[doc], textos[doc]);
+                }
+            }
+            terminos = nuevo.terminos;
+            productoIds = nuevo.productoIds;
+            textos = nuevo.textos;
+            borrados = nuevo.borrados;
+            docPorProducto = nuevo.docPorProducto;
+            cantidad = nuevo.cantidad;
+            vivos = nuevo.vivos;
+        }
+
+        /*
+         * Empates: gana el producto indexado primero (doc menor). Así los documentos se pueden
+         * recorrer en orden y un candidato con el mismo puntaje nunca desplaza a uno retenido.
+         */
+        List<Coincidencia> buscar(String[] tokens, int limite) {
+            if (tokens.length == 1) {
+                return buscarPorNiveles(tokens[0], limite);
+            }
+            // Se recorren sólo los documentos del token más selectivo; el resto se verifica por texto
+            SortedMap<String, Termino> mejorRango = null;
+            long menor = Long.MAX_VALUE;
+            int puntajeMaximo = 0; // cota: si los retenidos ya la alcanzan, no hay nada mejor después
+            for (String t : tokens) {
+                SortedMap<String, Termino> rango = rango(t);
+                long n = 0;
+                int maximoToken = 0;
+                for (Map.Entry<String, Termino> e : rango.entrySet()) {
+                    n += e.getValue().cantidad();
+                    maximoToken = Math.max(maximoToken, e.getValue().pesoMaximo(e.getKey().length() == t.length()));
+                }
+                if (n == 0) {
+                    return Collections.emptyList();
+                }
+                puntajeMaximo += maximoToken;
+                if (n < menor) {
+                    menor = n;
+                    mejorRango = rango;
+                }
+            }
+
+            // Cabeza del heap = peor candidato retenido ({doc, puntaje})
+            PriorityQueue<int[]> mejores = new PriorityQueue<>(limite + 1,
+                    Comparator.<int[]>comparingInt(c -> c[1]).thenComparingInt(c -> -c[0]));
+            PriorityQueue<Cursor> cursores = cursores(mejorRango, -1, null);
+            int ultimo = -1;
+            while (!cursores.isEmpty()) {
+                int doc = siguiente(cursores);
+                if (doc == ultimo || borrados.get(doc)) {
+                    continue;
+                }
+                ultimo = doc;
+                int puntaje = puntuar(textos[doc], tokens);
+                if (puntaje == 0) {
+                    continue;
+                }
+                if (mejores.size() < limite) {
+                    mejores.add(new int[]{doc, puntaje});
+                } else if (puntaje > mejores.peek()[1]) {
+                    mejores.poll();
+                    mejores.add(new int[]{doc, puntaje});
+                }
+                if (mejores.size() == limite && mejores.peek()[1] == puntajeMaximo) {
+                    break;
+                }
+            }
+
+            Coincidencia[] resultado = new Coincidencia[mejores.size()];
+            for (int i = resultado.length - 1; i >= 0; i--) {
+                int[] c = mejores.poll();
+                resultado[i] = new Coincidencia(productoIds[c[0]], c[1]);
+            }
+            return Arrays.asList(resultado);
+        }
+
+        /**
+         * Una sola palabra: el puntaje sale del campo y de si el término es exacto, así que se
+         * recorren los niveles de mayor a menor (exacto en nombre = 6, exacto en marca = 4, prefijo
+         * en nombre = 3, ...) y se corta apenas hay {@code limite} resultados. Una palabra muy común
+         * cuesta lo mismo que una rara: no se puntúan todos los candidatos.
+         */
+        private List<Coincidencia> buscarPorNiveles(String token, int limite) {
+            SortedMap<String, Termino> rango = rango(token);
+            List<Coincidencia> resultado = new ArrayList<>(Math.min(limite, 64));
+            int[] emitidos = new int[limite];
+            for (int nivel = PESOS[0] * 2; nivel > 0 && resultado.size() < limite; nivel--) {
+                PriorityQueue<Cursor> cursores = cursores(rango, nivel, token);
+                int ultimo = -1;
+                while (!cursores.isEmpty() && resultado.size() < limite) {
+                    int doc = siguiente(cursores);
+                    if (doc == ultimo || borrados.get(doc) || contiene(emitidos, resultado.size(), doc)) {
+                        continue; // repetido en el nivel, dado de baja o ya emitido con más puntaje
+                    }
+                    ultimo = doc;
+                    emitidos[resultado.size()] = doc;
+                    resultado.add(new Coincidencia(productoIds[doc], nivel));
+                }
+            }
+            return resultado;
+        }
+
+        private SortedMap<String, Termino> rango(String prefijo) {
+            return terminos.subMap(prefijo, prefijo + Character.MAX_VALUE);
+        }
+
+        private static boolean contiene(int[] docs, int cantidad, int doc) {
+            for (int i = 0; i < cantidad; i++) {
+                if (docs[i] == doc) return true;
+            }
+            return false;
+        }
+
+        /**
+         * Mezcla k-way de las listas del rango (en orden de doc, con repetidos consecutivos).
+         * Con {@code nivel} > 0 sólo entran las listas cuyo peso es exactamente ese nivel.
+         */
+        private static PriorityQueue<Cursor> cursores(SortedMap<String, Termino> rango, int nivel, String token) {
+            PriorityQueue<Cursor> cursores = new PriorityQueue<>(Comparator.comparingInt(Cursor::actual));
+            for (Map.Entry<String, Termino> e : rango.entrySet()) {
+                int factor = nivel > 0 && e.getKey().length() == token.length() ? 2 : 1;
+                Postings[] porCampo = e.getValue().porCampo;
+                for (int campo = 0; campo < porCampo.length; campo++) {
+                    if (porCampo[campo] != null && (nivel < 0 || PESOS[campo] * factor == nivel)) {
+                        cursores.add(new Cursor(porCampo[campo]));
+                    }
+                }
+            }
+            return cursores;
+        }
+
+        private static int siguiente(PriorityQueue<Cursor> cursores) {
+            Cursor c = cursores.poll();
+            int doc = c.actual();
+            if (++c.pos < c.postings.cantidad) {
+                cursores.add(c);
+            }
+            return doc;
+        }
+
+        /** Suma del mejor puntaje de cada token en el texto; 0 si alguno no aparece. */
+        private static int puntuar(String texto, String[] tokens) {
+            int total = 0;
+            for (String t : tokens) {
+                int mejor = 0;
+                int campo = 0;
+                int i = 0;
+                int largo = texto.length();
+                char primero = t.charAt(0);
+                while (i < largo) {
+                    int fin = finDePalabra(texto, i);
+                    int largoPalabra = fin - i;
+                    if (largoPalabra >= t.length() && texto.charAt(i) == primero && texto.startsWith(t, i)) {
+                        mejor = Math.max(mejor, PESOS[campo] * (largoPalabra == t.length() ? 2 : 1));
+                    }
+                    if (fin < largo && texto.charAt(fin) == SEPARADOR_CAMPO) {
+                        campo++;
+                    }
+                    i = fin + 1;
+                }
+                if (mejor == 0) {
+                    return 0;
+                }
+                total += mejor;
+            }
+            return total;
+        }
+
+        private static int finDePalabra(String texto, int desde) {
+            int i = desde;
+            while (i < texto.length() && texto.charAt(i) != ' ' && texto.charAt(i) != SEPARADOR_CAMPO) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Mapa id de producto → documento con direccionamiento abierto (sin Long ni Integer:
+     * con un millón de productos un HashMap<Long, Integer> pesaría decenas de MB).
+     */
+    private static final class MapaIds {
+        private static final long VACIO = Long.MIN_VALUE;
+        private static final long BORRADO = Long.MIN_VALUE + 1;
+
+        private long[] claves = nuevasClaves(1024);
+        private int[] valores = new int[1024];
+        private int ocupados; // incluye BORRADO
+
+        void poner(long clave, int valor) {
+            if ((ocupados + 1) * 2 > claves.length) {
+                redimensionar();
+            }
+            int i = buscarLugar(clave);
+            if (claves[i] == VACIO) {
+                ocupados++;
+            }
+            claves[i] = clave;
+            valores[i] = valor;
+        }
+
+        /** Quita la clave y devuelve su valor, o -1 si no estaba. */
+        int quitar(long clave) {
+            int mascara = claves.length - 1;
+            for (int i = mezclar(clave) & mascara; claves[i] != VACIO; i = (i + 1) & mascara) {
+                if (claves[i] == clave) {
+                    claves[i] = BORRADO;
+                    return valores[i];
+                }
+            }
+            return -1;
+        }
+
+        // Lugar de la clave si existe; si no, el primer VACIO de la secuencia de sondeo
+        private int buscarLugar(long clave) {
+            int mascara = claves.length - 1;
+            int i = mezclar(clave) & mascara;
+            while (claves[i] != VACIO && claves[i] != clave) {
+                i = (i + 1) & mascara;
+            }
+            return i;
+        }
+
+        private void redimensionar() {
+            long[] viejasClaves = claves;
+            int[] viejosValores = valores;
+            int vivos = 0;
+            for (long c : viejasClaves) {
+                if (c != VACIO && c != BORRADO) vivos++;
+            }
+            int capacidad = Integer.highestOneBit(Math.max(vivos * 4, 1024));
+            claves = nuevasClaves(capacidad);
+            valores = new int[capacidad];
+            ocupados = 0;
+            for (int i = 0; i < viejasClaves.length; i++) {
+                if (viejasClaves[i] != VACIO && viejasClaves[i] != BORRADO) {
+                    poner(viejasClaves[i], viejosValores[i]);
+                }
+            }
+        }
+
+        private static long[] nuevasClaves(int capacidad) {
+            long[] c = new long[capacidad];
+            Arrays.fill(c, VACIO);
+            return c;
+        }
+
+        private static int mezclar(long clave) {
+            long h = clave * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
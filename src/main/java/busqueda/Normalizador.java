@@ -0,0 +1,56 @@
+package busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Normaliza texto para indexar y buscar: minúsculas, sin acentos ("Lácteos" → "lacteos",
+ * "Ñandú" → "nandu") y cualquier carácter que no sea letra o dígito pasa a ser un espacio.
+ */
+final class Normalizador {
+
+    private Normalizador() {
+    }
+
+    static String plegar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(texto.length());
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 128) {
+                // Camino rápido ASCII (la gran mayoría de los caracteres)
+                if (c >= 'A' && c <= 'Z') {
+                    sb.append((char) (c + 32));
+                } else if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                    sb.append(c);
+                } else {
+                    sb.append(' ');
+                }
+            } else {
+                String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+                for (int j = 0; j < base.length(); j++) {
+                    char b = base.charAt(j);
+                    if (Character.getType(b) == Character.NON_SPACING_MARK) {
+                        continue;
+                    }
+                    sb.append(Character.isLetterOrDigit(b) ? Character.toLowerCase(b) : ' ');
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Palabras normalizadas del texto, sin repetir y en orden de aparición. */
+    static List<String> tokens(String texto) {
+        List<String> tokens = new ArrayList<>();
+        for (String t : plegar(texto).split(" +")) {
+            if (!t.isEmpty() && !tokens.contains(t)) {
+                tokens.add(t);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,154 @@
+package cache;
+
+import cambios.DespachadorCambios;
+import cambios.EventoCambio;
+import config.DatabaseConnection;
+import entities.CodigoBarras;
+import entities.Producto;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Caches compartidas del camino de escaneo: código por valor y producto por id.
+ *
+ * Se guardan y se entregan copias, así un llamador que modifica el objeto (p. ej. antes
+ * de una transacción que después hace rollback) no altera lo cacheado.
+ * Los servicios invalidan después del commit, nunca antes ni en rollback.
+ *
+ * Lo que escriben otros procesos llega por el registro de cambios ({@link #escucharCambios}):
+ * con el despacho en segundo plano (cambios.intervaloMs > 0) un precio cambiado en otro lado
+ * deja de servirse a lo sumo un intervalo de despacho después del commit. Sin despacho, la
+ * única cota es cache.ttlMs: así sólo sirve cuando ningún otro proceso escribe en la base.
+ */
+public final class CacheCatalogo {
+
+    private static final CacheCatalogo INSTANCIA = new CacheCatalogo();
+
+    private final CacheCodigos codigos;
+    private final CacheLRU<Long, Producto> productos;
+
+    private CacheCatalogo() {
+        Properties p = new Properties();
+        try {
+            p = DatabaseConnection.getPropiedades();
+        } catch (IOException e) {
+            System.err.println("⚠ No se pudo leer la configuración de cache, se usan valores por defecto: "
+                    + e.getMessage());
+        }
+        long ttlMs = Long.parseLong(p.getProperty("cache.ttlMs", "60000"));
+        this.codigos = new CacheCodigos(Integer.parseInt(p.getProperty("cache.codigos.tamanioMaximo", "50000")), ttlMs);
+        this.productos = new CacheLRU<>("productos", Integer.parseInt(p.getProperty("cache.productos.tamanioMaximo", "50000")), ttlMs);
+    }
+
+    public static CacheCatalogo getInstancia() {
+        return INSTANCIA;
+    }
+
+    public CacheLRU<String, CodigoBarras> getCodigos() {
+        return codigos;
+    }
+
+    public CacheLRU<Long, Producto> getProductos() {
+        return productos;
+    }
+
+    // ============================================================
+    //  INVALIDACIÓN (llamar sólo después de un commit exitoso)
+    // ============================================================
+
+    public void invalidarProducto(Long productoId) {
+        if (productoId != null) {
+            productos.invalidar(productoId);
+        }
+    }
+
+    /**
+     * Invalida un código por su valor y, si se pasa el id, también por el valor con que está
+     * cacheado (el anterior, si cambió). Sin recorrer la cache: busca el valor por id.
+     */
+    public void invalidarCodigo(Long codigoId, String valor) {
+        if (valor != null) {
+            codigos.invalidar(valor);
+        }
+        if (codigoId != null) {
+            String cacheado = codigos.valorPorId.get(codigoId);
+            if (cacheado != null && !cacheado.equals(valor)) {
+                codigos.invalidar(cacheado);
+            }
+        }
+    }
+
+    /**
+     * Se suscribe al despachador para invalidar lo que escriben otros procesos: producto por
+     * entidad_id y código por id y valor. Con shards, uno por shard.
+     */
+    public void escucharCambios(DespachadorCambios despachador) {
+        despachador.suscribir(oyenteCambios());
+    }
+
+    Consumer<EventoCambio> oyenteCambios() {
+        return evento -> {
+            if (evento.esProducto()) {
+                invalidarProducto(evento.getEntidadId());
+            } else if (evento.esCodigoBarras()) {
+                invalidarCodigo(evento.getEntidadId(), FiltroCodigos.valorDe(evento.getDatos()));
+            }
+        };
+    }
+
+    public void invalidarTodo() {
+        codigos.invalidarTodo();
+        productos.invalidarTodo();
+    }
+
+    public String getEstadisticas() {
+        return codigos + "\n" + productos;
+    }
+
+    // Códigos por valor, con el valor de cada id cacheado para invalidar por id sin recorrerla
+    private static final class CacheCodigos extends CacheLRU<String, CodigoBarras> {
+        final Map<Long, String> valorPorId = new ConcurrentHashMap<>();
+
+        CacheCodigos(int tamanioMaximo, long ttlMs) {
+            super("codigos", tamanioMaximo, ttlMs);
+        }
+
+        @Override
+        protected void alGuardar(String valor, CodigoBarras cb) {
+            if (cb.getId() != null) {
+                valorPorId.put(cb.getId(), valor);
+            }
+        }
+
+        @Override
+        protected void alQuitar(String valor, CodigoBarras cb) {
+            if (cb.getId() != null) {
+                valorPorId.remove(cb.getId(), valor);
+            }
+        }
+    }
+
+    // ============================================================
+    //  COPIAS DEFENSIVAS
+    // ============================================================
+
+    public static CodigoBarras copiar(CodigoBarras c) {
+        if (c == null) return null;
+        CodigoBarras copia = new CodigoBarras(c.getId(), c.getEliminado(), c.getTipo(), c.getValor(),
+                c.getFechaAsignacion(), c.getObservaciones(), c.getProductoId());
+        copia.setVersion(c.getVersion());
+        return copia;
+    }
+
+    public static Producto copiar(Producto p) {
+        if (p == null) return null;
+        Producto copia = new Producto(p.getId(), p.getEliminado(), p.getNombre(), p.getMarca(), p.getCategoria(),
+                p.getPrecio(), p.getPeso(), copiar(p.getCodigoBarras()));
+        copia.setVersion(p.getVersion());
+        return copia;
+    }
+}
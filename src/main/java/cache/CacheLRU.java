@@ -0,0 +1,199 @@
+package cache;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Cache acotada por tamaño (LRU) y por tiempo de vida (TTL), con estadísticas.
+ * Los valores nulos no se guardan: una búsqueda sin resultado siempre vuelve a la BD.
+ * Una subclase puede seguir qué entra y qué sale con {@link #alGuardar} y {@link #alQuitar}.
+ */
+public class CacheLRU<K, V> {
+
+    @FunctionalInterface
+    public interface Cargador<K, V> {
+        V cargar(K clave) throws SQLException;
+    }
+
+    private final String nombre;
+    private final int tamanioMaximo;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entrada<V>> mapa;
+
+    // Cambia en cada invalidación: una carga que empezó antes no puede reinsertar un valor viejo
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+    private final AtomicLong expirados = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+
+    public CacheLRU(String nombre, int tamanioMaximo, long ttlMs) {
+        if (tamanioMaximo <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo de la cache debe ser positivo.");
+        }
+        this.nombre = nombre;
+        this.tamanioMaximo = tamanioMaximo;
+        this.ttlNanos = ttlMs * 1_000_000L;
+        this.mapa = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entrada<V>> mayor) {
+                if (size() > CacheLRU.this.tamanioMaximo) {
+                    desalojos.incrementAndGet();
+                    alQuitar(mayor.getKey(), mayor.getValue().valor);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve el valor cacheado o lo carga con {@code cargador} (read-through).
+     */
+    public V obtener(K clave, Cargador<K, V> cargador) throws SQLException {
+        V valor = buscar(clave);
+        if (valor != null) {
+            aciertos.incrementAndGet();
+            return valor;
+        }
+        fallos.incrementAndGet();
+        long gen = generacion.get();
+        valor = cargador.cargar(clave);
+        if (valor != null) {
+            poner(clave, valor, gen);
+        }
+        return valor;
+    }
+
+    /**
+     * Valor cacheado vigente, o null, sin cargar. Un acierto cuenta en las estadísticas; un
+     * fallo no, porque lo cuenta el {@link #obtener} que sigue.
+     */
+    public V obtenerSiEsta(K clave) {
+        V valor = buscar(clave);
+        if (valor != null) {
+            aciertos.incrementAndGet();
+        }
+        return valor;
+    }
+
+    /** Valor cacheado vigente, o null. No cuenta en las estadísticas. */
+    public synchronized V buscar(K clave) {
+        Entrada<V> e = mapa.get(clave);
+        if (e == null) {
+            return null;
+        }
+        if (System.nanoTime() - e.expira > 0) {
+            mapa.remove(clave);
+            expirados.incrementAndGet();
+            alQuitar(clave, e.valor);
+            return null;
+        }
+        return e.valor;
+    }
+
+    public void poner(K clave, V valor) {
+        poner(clave, valor, generacion.get());
+    }
+
+    /**
+     * Guarda el valor sólo si no hubo invalidaciones desde {@code gen} (ver {@link #getGeneracion()}).
+     * Para cargas hechas fuera de {@link #obtener}.
+     */
+    public synchronized void poner(K clave, V valor, long gen) {
+        if (generacion.get() != gen) {
+            return; // hubo una invalidación mientras se cargaba
+        }
+        Entrada<V> anterior = mapa.put(clave, new Entrada<>(valor, System.nanoTime() + ttlNanos));
+        if (anterior != null) {
+            alQuitar(clave, anterior.valor);
+        }
+        alGuardar(clave, valor);
+    }
+
+    public synchronized void invalidar(K clave) {
+        generacion.incrementAndGet();
+        Entrada<V> e = mapa.remove(clave);
+        if (e != null) {
+            invalidaciones.incrementAndGet();
+            alQuitar(clave, e.valor);
+        }
+    }
+
+    /** Invalida todas las entradas cuyo valor cumple la condición. */
+    public synchronized void invalidarSi(Predicate<V> condicion) {
+        generacion.incrementAndGet();
+        Iterator<Map.Entry<K, Entrada<V>>> it = mapa.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entrada<V>> e = it.next();
+            if (condicion.test(e.getValue().valor)) {
+                it.remove();
+                invalidaciones.incrementAndGet();
+                alQuitar(e.getKey(), e.getValue().valor);
+            }
+        }
+    }
+
+    public synchronized void invalidarTodo() {
+        generacion.incrementAndGet();
+        invalidaciones.addAndGet(mapa.size());
+        for (Map.Entry<K, Entrada<V>> e : mapa.entrySet()) {
+            alQuitar(e.getKey(), e.getValue().valor);
+        }
+        mapa.clear();
+    }
+
+    // Se llaman con el monitor de la cache tomado: tienen que ser baratos y no volver a la cache
+
+    /** Después de guardar {@code valor} bajo {@code clave}. */
+    protected void alGuardar(K clave, V valor) {
+    }
+
+    /** Después de sacar la entrada (invalidación, desalojo, vencimiento o reemplazo). */
+    protected void alQuitar(K clave, V valor) {
+    }
+
+    /** Generación actual: tomarla antes de leer de la BD y pasarla a {@link #poner(Object, Object, long)}. */
+    public long getGeneracion() {
+        return generacion.get();
+    }
+
+    public synchronized int getTamanio() {
+        return mapa.size();
+    }
+
+    public long getAciertos() { return aciertos.get(); }
+    public long getFallos() { return fallos.get(); }
+    public long getDesalojos() { return desalojos.get(); }
+    public long getExpirados() { return expirados.get(); }
+    public long getInvalidaciones() { return invalidaciones.get(); }
+
+    public double getTasaAciertos() {
+        long total = aciertos.get() + fallos.get();
+        return total == 0 ? 0 : (double) aciertos.get() / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Cache %s{tamaño=%d/%d, aciertos=%d, fallos=%d, tasa=%.1f%%, desalojos=%d, "
+                        + "expirados=%d, invalidaciones=%d}",
+                nombre, getTamanio(), tamanioMaximo, getAciertos(), getFallos(), getTasaAciertos() * 100,
+                getDesalojos(), getExpirados(), getInvalidaciones());
+    }
+
+    private static final class Entrada<V> {
+        final V valor;
+        final long expira;
+
+        Entrada(V valor, long expira) {
+            this.valor = valor;
+            this.expira = expira;
+        }
+    }
+}
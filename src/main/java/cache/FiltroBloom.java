@@ -0,0 +1,122 @@
+package cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Filtro de Bloom de cadenas: {@code puedeContener} responde "seguro que no" o "puede ser".
+ * No tiene falsos negativos; la tasa de falsos positivos depende de cuántos valores se agregan
+ * respecto de la capacidad con que se dimensionó.
+ *
+ * Para {@code n} valores y una tasa {@code p}: m = -n·ln(p) / ln(2)² bits y k = m/n·ln(2)
+ * funciones de hash (≈ 9,6 bits y 7 funciones por valor para p = 1%). Las k posiciones salen
+ * de dos hashes de 64 bits (h1 + i·h2, doble hashing). Seguro para varios hilos sin bloqueos.
+ */
+public final class FiltroBloom {
+
+    private static final int MAX_FUNCIONES = 16;
+
+    private final AtomicLongArray bits;
+    private final long cantidadBits;
+    private final int funciones;
+    private final long capacidad;
+    private final double tasaObjetivo;
+    private final LongAdder bitsEnUno = new LongAdder();
+
+    public FiltroBloom(long capacidad, double tasaFalsosPositivos) {
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("La capacidad del filtro debe ser positiva.");
+        }
+        if (!(tasaFalsosPositivos > 0 && tasaFalsosPositivos < 1)) {
+            throw new IllegalArgumentException("La tasa de falsos positivos debe estar entre 0 y 1.");
+        }
+        double ln2 = Math.log(2);
+        long m = (long) Math.ceil(-capacidad * Math.log(tasaFalsosPositivos) / (ln2 * ln2));
+        long palabras = Math.max(1, (m + 63) / 64);
+        if (palabras > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filtro demasiado grande para " + capacidad + " valores.");
+        }
+        this.bits = new AtomicLongArray((int) palabras);
+        this.cantidadBits = palabras * 64;
+        this.funciones = (int) Math.max(1, Math.min(MAX_FUNCIONES, Math.round((double) cantidadBits / capacidad * ln2)));
+        this.capacidad = capacidad;
+        this.tasaObjetivo = tasaFalsosPositivos;
+    }
+
+    public void agregar(String valor) {
+        long h1 = hash(valor);
+        long h2 = mezclar(h1 ^ 0x9e3779b97f4a7c15L) | 1; // impar: recorre posiciones distintas
+        for (int i = 0; i < funciones; i++) {
+            long pos = Long.remainderUnsigned(h1 + i * h2, cantidadBits);
+            int palabra = (int) (pos >>> 6);
+            long mascara = 1L << pos;
+            long actual = bits.get(palabra);
+            while ((actual & mascara) == 0) {
+                if (bits.compareAndSet(palabra, actual, actual | mascara)) {
+                    bitsEnUno.increment();
+                    break;
+                }
+                actual = bits.get(palabra);
+            }
+        }
+    }
+
+    /** false: el valor seguro no se agregó. true: puede haberse agregado. */
+    public boolean puedeContener(String valor) {
+        long h1 = hash(valor);
+        long h2 = mezclar(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < funciones; i++) {
+            long pos = Long.remainderUnsigned(h1 + i * h2, cantidadBits);
+            if ((bits.get((int) (pos >>> 6)) & (1L << pos)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getCapacidad() {
+        return capacidad;
+    }
+
+    public long getCantidadBits() {
+        return cantidadBits;
+    }
+
+    public int getFunciones() {
+        return funciones;
+    }
+
+    public long getBytes() {
+        return cantidadBits / 8;
+    }
+
+    public double getTasaObjetivo() {
+        return tasaObjetivo;
+    }
+
+    /** Fracción de bits en uno (0..1). */
+    public double getOcupacion() {
+        return (double) bitsEnUno.sum() / cantidadBits;
+    }
+
+    /** Tasa de falsos positivos con la ocupación actual: ocupación^k. */
+    public double getTasaEstimada() {
+        return Math.pow(getOcupacion(), funciones);
+    }
+
+    // FNV-1a de 64 bits sobre los caracteres, seguido del mezclador final de SplitMix64
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mezclar(h);
+    }
+
+    private static long mezclar(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
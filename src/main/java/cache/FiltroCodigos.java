@@ -0,0 +1,331 @@
+package cache;
+
+import cambios.DespachadorCambios;
+import cambios.EventoCambio;
+import config.DatabaseConnection;
+import metricas.RegistroMetricas;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Filtro de Bloom con todos los valores de codigo_barras, delante de las búsquedas por valor
+ * y de la verificación de unicidad: si dice que un valor no está, no hace falta ir a la BD.
+ *
+ * - Incluye los dados de baja: uq_cb_valor también los cubre, así que sirve para unicidad y
+ *   nunca hay que quitar valores (una baja o un archivado sólo dejan un falso positivo).
+ * - Los servicios llaman a agregar antes de escribir y a liberar después del commit o del
+ *   rollback: después del commit ningún lector puede ver "no está" para un valor que ya existe.
+ *   Los valores en vuelo (agregados y sin liberar) y los liberados durante una carga se vuelven
+ *   a aplicar al filtro nuevo, así una reconstrucción no pierde un commit que la lectura no vio.
+ * - Es opcional (cache.filtro.activo, apagado por defecto). Hasta la primera carga todo
+ *   "puede existir".
+ * - Sólo responde "no está" si ve todas las escrituras: con cache.filtro.unicoProceso=true
+ *   (ningún otro proceso escribe en la base) o mientras todos los despachadores de cambios a
+ *   los que se conectó (escucharCambios; con shards, uno por shard) corren en segundo plano
+ *   con el registro activo (cambios.activo=true: si no, las escrituras no dejan eventos).
+ *   En ese caso, lo que escribe otro proceso se ve recién cuando se despacha (cambios.intervaloMs).
+ */
+public final class FiltroCodigos {
+
+    private static final FiltroCodigos INSTANCIA = new FiltroCodigos();
+    private static final long CAPACIDAD_MINIMA = 100_000;
+
+    private static final LongAdder CONSULTAS = RegistroMetricas.contador("cache.filtro.consultas");
+    private static final LongAdder DESCARTES = RegistroMetricas.contador("cache.filtro.descartes");
+    private static final LongAdder FALSOS_POSITIVOS = RegistroMetricas.contador("cache.filtro.falsosPositivos");
+
+    /** Origen de la carga completa (p. ej. los valores de CodigoBarrasDaoImpl). */
+    public interface Fuente {
+        /** Cantidad de valores actual, para dimensionar el filtro. */
+        long contar() throws SQLException;
+
+        Stream<String> abrir() throws SQLException;
+    }
+
+    private final boolean activo;
+    private final boolean unicoProceso;
+    private final double tasaFalsosPositivos;
+    private final long capacidadFija; // 0 = el doble de los valores al cargar
+
+    private volatile FiltroBloom filtro; // null hasta la primera carga
+    private List<String> pendientes;     // != null mientras hay una carga en curso
+    private Fuente fuente;               // la de la última carga, para reconstruir si se satura
+    private boolean cargando;
+    private final Map<String, Integer> enVuelo = new HashMap<>(); // valor → escrituras sin terminar
+    private final List<DespachadorCambios> despachadores = new CopyOnWriteArrayList<>();
+
+    private FiltroCodigos() {
+        Properties p = new Properties();
+        try {
+            p = DatabaseConnection.getPropiedades();
+        } catch (IOException e) {
+            System.err.println("⚠ No se pudo leer la configuración del filtro de códigos, se usan valores por defecto: "
+                    + e.getMessage());
+        }
+        this.activo = Boolean.parseBoolean(p.getProperty("cache.filtro.activo", "false"));
+        this.unicoProceso = Boolean.parseBoolean(p.getProperty("cache.filtro.unicoProceso", "false"));
+        this.tasaFalsosPositivos = Double.parseDouble(p.getProperty("cache.filtro.tasaFalsosPositivos", "0.01"));
+        this.capacidadFija = Long.parseLong(p.getProperty("cache.filtro.capacidad", "0"));
+    }
+
+    public static FiltroCodigos getInstancia() {
+        return INSTANCIA;
+    }
+
+    public boolean estaActivo() {
+        return activo;
+    }
+
+    /** true si ya puede descartar valores (cargado y al tanto de todas las escrituras). */
+    public boolean estaCargado() {
+        return filtro != null && alDia();
+    }
+
+    private boolean alDia() {
+        if (unicoProceso) {
+            return true;
+        }
+        for (DespachadorCambios d : despachadores) {
+            if (!d.estaIniciado() || !d.registraCambios()) {
+                return false;
+            }
+        }
+        return !despachadores.isEmpty();
+    }
+
+    // ============================================================
+    //  CONSULTA
+    // ============================================================
+
+    /** false: ningún código (ni dado de baja) tiene ese valor. true: hay que preguntarle a la BD. */
+    public boolean puedeExistir(String valor) {
+        FiltroBloom f = filtro;
+        if (f == null || !alDia()) {
+            return true;
+        }
+        CONSULTAS.increment();
+        if (f.puedeContener(valor)) {
+            return true;
+        }
+        DESCARTES.increment();
+        return false;
+    }
+
+    /** Para el llamador que preguntó a la BD tras un "puede existir" y el valor no estaba. */
+    public void registrarFalsoPositivo() {
+        if (estaCargado()) {
+            FALSOS_POSITIVOS.increment();
+        }
+    }
+
+    // ============================================================
+    //  ACTUALIZACIÓN (agregar antes de escribir, liberar al terminar)
+    // ============================================================
+
+    /** Agrega el valor y lo marca en vuelo hasta {@link #liberar(String)}. */
+    public void agregar(String valor) {
+        if (valor == null || !activo) {
+            return;
+        }
+        synchronized (this) {
+            enVuelo.merge(valor, 1, Integer::sum);
+        }
+        agregarConfirmado(valor);
+    }
+
+    public void agregar(Collection<String> valores) {
+        for (String v : valores) {
+            agregar(v);
+        }
+    }
+
+    /**
+     * Después del commit o del rollback de la escritura que llamó a agregar (en un finally).
+     * Si hay una carga en curso el valor se guarda para el filtro nuevo: el commit pudo quedar
+     * fuera de lo que leyó.
+     */
+    public void liberar(String valor) {
+        if (valor == null || !activo) {
+            return;
+        }
+        synchronized (this) {
+            enVuelo.computeIfPresent(valor, (v, n) -> n == 1 ? null : n - 1);
+            if (pendientes != null) {
+                pendientes.add(valor);
+            }
+        }
+    }
+
+    public void liberar(Collection<String> valores) {
+        for (String v : valores) {
+            liberar(v);
+        }
+    }
+
+    /** Para valores ya confirmados (p. ej. los que llegan por el registro de cambios). */
+    private void agregarConfirmado(String valor) {
+        if (valor == null || !activo) {
+            return;
+        }
+        boolean saturado;
+        synchronized (this) {
+            if (pendientes != null) {
+                pendientes.add(valor);
+            }
+            FiltroBloom f = filtro;
+            if (f == null) {
+                return;
+            }
+            f.agregar(valor);
+            saturado = !cargando && f.getTasaEstimada() > 2 * f.getTasaObjetivo();
+        }
+        if (saturado) {
+            System.err.println("⚠ Filtro de códigos saturado, se reconstruye en segundo plano.");
+            cargarEnSegundoPlano(fuente);
+        }
+    }
+
+    /**
+     * Se suscribe al despachador para ver los valores que escriben otros procesos. Sin
+     * unicoProceso, el filtro sólo descarta valores mientras todos los despachadores a los que
+     * se suscribió están iniciados y registran cambios.
+     */
+    public void escucharCambios(DespachadorCambios despachador) {
+        despachador.suscribir(oyenteCambios());
+        despachadores.add(despachador);
+    }
+
+    Consumer<EventoCambio> oyenteCambios() {
+        return evento -> {
+            if (evento.esCodigoBarras()) {
+                agregarConfirmado(valorDe(evento.getDatos()));
+            }
+        };
+    }
+
+    // ============================================================
+    //  CARGA
+    // ============================================================
+
+    /**
+     * (Re)construye el filtro desde {@code fuente}. Los valores que se agregan o liberan mientras
+     * se lee, y los que siguen en vuelo al terminar, se aplican al filtro nuevo antes de usarlo:
+     * no se pierden aunque la lectura no los vea.
+     */
+    public void cargar(Fuente fuente) throws SQLException {
+        if (!activo) {
+            return;
+        }
+        synchronized (this) {
+            if (cargando) {
+                return;
+            }
+            cargando = true;
+            pendientes = new ArrayList<>();
+            this.fuente = fuente;
+        }
+
+        FiltroBloom nuevo = null;
+        try {
+            long capacidad = capacidadFija > 0 ? capacidadFija : Math.max(CAPACIDAD_MINIMA, 2 * fuente.contar());
+            FiltroBloom armado = new FiltroBloom(capacidad, tasaFalsosPositivos);
+            try (Stream<String> valores = fuente.abrir()) {
+                Iterator<String> it = valores.iterator();
+                while (it.hasNext()) {
+                    armado.agregar(it.next());
+                }
+            }
+            nuevo = armado;
+        } finally {
+            synchronized (this) {
+                if (nuevo != null) {
+                    for (String v : pendientes) {
+                        nuevo.agregar(v);
+                    }
+                    for (String v : enVuelo.keySet()) {
+                        nuevo.agregar(v);
+                    }
+                    filtro = nuevo;
+                }
+                pendientes = null;
+                cargando = false;
+            }
+        }
+    }
+
+    /** Carga en un hilo de fondo; mientras tanto las consultas van a la BD como siempre. */
+    public void cargarEnSegundoPlano(Fuente fuente) {
+        if (!activo || fuente == null) {
+            return;
+        }
+        Thread hilo = new Thread(() -> {
+            try {
+                cargar(fuente);
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("⚠ No se pudo cargar el filtro de códigos: " + e.getMessage());
+            }
+        }, "filtro-codigos-carga");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    public String getEstadisticas() {
+        return toString();
+    }
+
+    @Override
+    public String toString() {
+        if (!activo) {
+            return "Filtro codigos{inactivo}";
+        }
+        FiltroBloom f = filtro;
+        if (f == null) {
+            return "Filtro codigos{sin cargar}";
+        }
+        return String.format("Filtro codigos{" + (alDia() ? "" : "sin escucha de cambios: todo va a la BD, ")
+                        + "capacidad=%d, memoria=%.1f KiB, bits=%d, funciones=%d, ocupación=%.1f%%, "
+                        + "fp objetivo=%.2f%%, fp estimada=%.2f%%, consultas=%d, descartes=%d, falsosPositivos=%d}",
+                f.getCapacidad(), f.getBytes() / 1024.0, f.getCantidadBits(), f.getFunciones(), f.getOcupacion() * 100,
+                f.getTasaObjetivo() * 100, f.getTasaEstimada() * 100, CONSULTAS.sum(), DESCARTES.sum(),
+                FALSOS_POSITIVOS.sum());
+    }
+
+    // "valor" del JSON_OBJECT que arma OutboxDao (MySQL lo devuelve como "valor": "...")
+    static String valorDe(String datos) {
+        if (datos == null) {
+            return null;
+        }
+        int i = datos.indexOf("\"valor\"");
+        if (i < 0) {
+            return null;
+        }
+        i = datos.indexOf('"', datos.indexOf(':', i) + 1);
+        if (i < 0) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int j = i + 1; j < datos.length(); j++) {
+            char c = datos.charAt(j);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\' && j + 1 < datos.length()) {
+                c = datos.charAt(++j);
+            }
+            sb.append(c);
+        }
+        return null;
+    }
+}
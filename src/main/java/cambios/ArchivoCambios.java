@@ -0,0 +1,126 @@
+package cambios;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Archivo local de cambios, sólo de agregado: una línea JSON por evento (ver EventoCambio.aJson).
+ *
+ * Al abrirlo se lee el id de la última línea completa y se descarta una última línea cortada
+ * por una caída; los eventos con id menor o igual no se vuelven a escribir. Así, aunque el
+ * despachador reentregue eventos tras un reinicio, el archivo queda sin duplicados ni huecos.
+ */
+final class ArchivoCambios implements AutoCloseable {
+
+    private static final int COLA_MAXIMA = 64 * 1024;
+
+    private final Path ruta;
+    private final FileChannel canal;
+    private final StringBuilder pendiente = new StringBuilder();
+    private long ultimoId;
+
+    private ArchivoCambios(Path ruta, FileChannel canal) throws IOException {
+        this.ruta = ruta;
+        this.canal = canal;
+        recuperar();
+    }
+
+    static ArchivoCambios abrir(Path ruta) throws IOException {
+        FileChannel canal = FileChannel.open(ruta, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            return new ArchivoCambios(ruta, canal);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    /** Agrega el evento al buffer (se escribe con {@link #forzar()}), salvo que ya esté en el archivo. */
+    void escribir(EventoCambio evento) {
+        if (evento.getId() <= ultimoId) {
+            return;
+        }
+        pendiente.append(evento.aJson()).append('\n');
+        ultimoId = evento.getId();
+    }
+
+    /** Escribe lo pendiente y lo baja a disco. */
+    void forzar() throws IOException {
+        if (pendiente.length() == 0) {
+            return;
+        }
+        ByteBuffer buf = ByteBuffer.wrap(pendiente.toString().getBytes(StandardCharsets.UTF_8));
+        while (buf.hasRemaining()) {
+            canal.write(buf);
+        }
+        canal.force(false);
+        pendiente.setLength(0);
+    }
+
+    long getUltimoId() {
+        return ultimoId;
+    }
+
+    Path getRuta() {
+        return ruta;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            forzar();
+        } finally {
+            canal.close();
+        }
+    }
+
+    // Busca el último '\n' en la cola del archivo, trunca lo que sigue y lee el id de esa línea
+    private void recuperar() throws IOException {
+        long tamanio = canal.size();
+        int largo = (int) Math.min(tamanio, COLA_MAXIMA);
+        ByteBuffer cola = ByteBuffer.allocate(largo);
+        while (cola.hasRemaining() && canal.read(cola, tamanio - largo + cola.position()) >= 0) {
+            // lectura posicional hasta llenar la cola
+        }
+        byte[] b = cola.array();
+
+        int fin = largo - 1;
+        while (fin >= 0 && b[fin] != '\n') {
+            fin--;
+        }
+        long completo = fin < 0 ? (largo == tamanio ? 0 : -1) : tamanio - largo + fin + 1;
+        if (completo < 0) {
+            throw new IOException("Archivo de cambios inválido (línea de más de " + COLA_MAXIMA + " bytes): " + ruta);
+        }
+        if (completo < tamanio) {
+            canal.truncate(completo);
+        }
+        canal.position(completo);
+
+        if (fin > 0) {
+            int inicio = fin - 1;
+            while (inicio >= 0 && b[inicio] != '\n') {
+                inicio--;
+            }
+            ultimoId = leerId(new String(b, inicio + 1, fin - inicio - 1, StandardCharsets.UTF_8));
+        }
+    }
+
+    private long leerId(String linea) throws IOException {
+        String prefijo = "{\"id\":";
+        int i = prefijo.length();
+        int j = i;
+        while (j < linea.length() && Character.isDigit(linea.charAt(j))) {
+            j++;
+        }
+        if (!linea.startsWith(prefijo) || j == i) {
+            throw new IOException("Última línea del archivo de cambios sin id: " + ruta);
+        }
+        return Long.parseLong(linea.substring(i, j));
+    }
+}
@@ -0,0 +1,265 @@
+package cambios;
+
+import config.DatabaseConnection;
+import dao.OutboxDao;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Lee el outbox en orden de id y entrega cada evento a los oyentes registrados en este proceso
+ * y, si se configuró, al archivo local de cambios (JSON Lines, sólo agregado).
+ *
+ * La posición se guarda en outbox_consumidor con el nombre del consumidor después de entregar
+ * cada lote: la entrega es "al menos una vez" (tras una caída los oyentes pueden recibir otra vez
+ * los últimos eventos; el archivo los descarta por id). Cada proceso que tenga oyentes propios
+ * debe usar un nombre de consumidor distinto.
+ *
+ * Huecos: un id de AUTO_INCREMENT se asigna al insertar pero se ve recién con el commit, así que
+ * un id faltante puede ser una transacción todavía abierta (p. ej. un ajuste masivo de precios
+ * mientras confirma una escritura chica). El despachador se detiene en el hueco y lo saltea sólo
+ * cuando, pasados {@code esperaHuecoMs}, OutboxDao.huecoDescartable confirma que ninguna
+ * transacción abierta tiene filas en él (rollback o salto de AUTO_INCREMENT). Una transacción
+ * larga frena la entrega hasta que termina, pero nunca se pierden sus eventos.
+ */
+public class DespachadorCambios implements AutoCloseable {
+
+    public static final String CONSUMIDOR_POR_DEFECTO = "local";
+    public static final int TAMANIO_LOTE_POR_DEFECTO = 500;
+    public static final long ESPERA_HUECO_MS_POR_DEFECTO = 2000;
+    public static final int RETENCION_HORAS_POR_DEFECTO = 72;
+    private static final int PURGA_MAXIMA = 1000;
+
+    private static final Histograma LAT_LOTE = RegistroMetricas.latencia("cambios.despacharLote");
+    private static final LongAdder ENTREGADOS = RegistroMetricas.contador("cambios.entregados");
+    private static final LongAdder HUECOS_SALTEADOS = RegistroMetricas.contador("cambios.huecosSalteados");
+    private static final LongAdder ERRORES_OYENTE = RegistroMetricas.contador("cambios.erroresOyente");
+
+    private final OutboxDao dao;
+    private final String consumidor;
+    private final int tamanioLote;
+    private final long esperaHuecoMs;
+    private final int retencionHoras;
+    private final List<Consumer<EventoCambio>> oyentes = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private volatile ArchivoCambios archivo;
+    private long ultimoId = -1; // -1 = leerla de outbox_consumidor en la primera pasada
+    private long huecoDesde;    // System.nanoTime() del hueco actual, 0 = sin hueco
+    private volatile ScheduledExecutorService programador;
+
+    public DespachadorCambios() {
+        this(new OutboxDao(), CONSUMIDOR_POR_DEFECTO, TAMANIO_LOTE_POR_DEFECTO, ESPERA_HUECO_MS_POR_DEFECTO,
+                RETENCION_HORAS_POR_DEFECTO);
+    }
+
+    /**
+     * @param retencionHoras Horas que se conservan los eventos ya leídos por todos los consumidores (0 = no purgar).
+     */
+    public DespachadorCambios(OutboxDao dao, String consumidor, int tamanioLote, long esperaHuecoMs, int retencionHoras) {
+        if (consumidor == null || consumidor.isBlank() || consumidor.length() > 40) {
+            throw new IllegalArgumentException("El nombre del consumidor debe tener entre 1 y 40 caracteres.");
+        }
+        if (tamanioLote <= 0 || esperaHuecoMs < 0 || retencionHoras < 0) {
+            throw new IllegalArgumentException("tamanioLote debe ser positivo y esperaHuecoMs/retencionHoras no negativos.");
+        }
+        this.dao = dao;
+        this.consumidor = consumidor;
+        this.tamanioLote = tamanioLote;
+        this.esperaHuecoMs = esperaHuecoMs;
+        this.retencionHoras = retencionHoras;
+    }
+
+    /** Crea el despachador con los valores cambios.* de db.properties (incluido el archivo, si hay). */
+    public static DespachadorCambios desdeConfiguracion() throws IOException {
+        return desdeConfiguracion(new OutboxDao(), "");
+    }
+
+    /**
+     * Igual, sobre otro outbox (el de un shard: ver OutboxDao(Particiones, int)). Cada outbox
+     * numera sus ids por separado, así que el archivo de cambios lleva {@code sufijoArchivo}.
+     */
+    public static DespachadorCambios desdeConfiguracion(OutboxDao dao, String sufijoArchivo) throws IOException {
+        Properties p = DatabaseConnection.getPropiedades();
+        DespachadorCambios d = new DespachadorCambios(dao,
+                p.getProperty("cambios.consumidor", CONSUMIDOR_POR_DEFECTO),
+                Integer.parseInt(p.getProperty("cambios.tamanioLote", String.valueOf(TAMANIO_LOTE_POR_DEFECTO))),
+                Long.parseLong(p.getProperty("cambios.esperaHuecoMs", String.valueOf(ESPERA_HUECO_MS_POR_DEFECTO))),
+                Integer.parseInt(p.getProperty("cambios.retencionHoras", String.valueOf(RETENCION_HORAS_POR_DEFECTO))));
+        String archivo = p.getProperty("cambios.archivo", "").trim();
+        if (!archivo.isEmpty()) {
+            d.setArchivo(Paths.get(archivo + sufijoArchivo));
+        }
+        return d;
+    }
+
+    /** Registra un oyente; recibe los eventos en orden, en el hilo del despachador. */
+    public void suscribir(Consumer<EventoCambio> oyente) {
+        oyentes.add(oyente);
+    }
+
+    public void desuscribir(Consumer<EventoCambio> oyente) {
+        oyentes.remove(oyente);
+    }
+
+    /** Agrega los eventos al archivo JSON Lines {@code ruta} (se crea si no existe). */
+    public synchronized void setArchivo(Path ruta) throws IOException {
+        if (archivo != null) {
+            archivo.close();
+        }
+        archivo = ArchivoCambios.abrir(ruta);
+    }
+
+    public String getConsumidor() {
+        return consumidor;
+    }
+
+    // ============================================================
+    //  EJECUCIÓN PERIÓDICA
+    // ============================================================
+
+    /**
+     * Despacha cada {@code intervaloMs} en un hilo de fondo (daemon).
+     */
+    public synchronized void iniciar(long intervaloMs) {
+        if (programador != null) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "despachador-cambios");
+            t.setDaemon(true);
+            return t;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                despachar();
+            } catch (SQLException | IOException e) {
+                System.err.println("⚠ Despacho de cambios falló: " + e.getMessage());
+            }
+        }, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** true mientras despacha en segundo plano (iniciar sin detener). */
+    public boolean estaIniciado() {
+        return programador != null;
+    }
+
+    /** false con cambios.activo=false: las escrituras no dejan eventos y no hay nada que despachar. */
+    public boolean registraCambios() {
+        return dao.estaActivo();
+    }
+
+    public synchronized void detener() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        detener();
+        if (archivo != null) {
+            archivo.close();
+            archivo = null;
+        }
+    }
+
+    // ============================================================
+    //  PASADA DE DESPACHO
+    // ============================================================
+
+    /**
+     * Entrega todos los eventos confirmados hasta el primer hueco que todavía no venció.
+     * Si ya hay una pasada en curso, no hace nada.
+     * @return Eventos entregados.
+     * @throws SQLException Si falla la lectura o al guardar la posición (se reintenta en la próxima pasada).
+     */
+    public int despachar() throws SQLException, IOException {
+        if (!enCurso.compareAndSet(false, true)) {
+            return 0;
+        }
+        try {
+            if (ultimoId < 0) {
+                ultimoId = dao.leerPosicion(consumidor);
+            }
+            int entregados = 0;
+            while (true) {
+                long inicio = System.nanoTime();
+                List<EventoCambio> eventos = dao.leerDesde(ultimoId, tamanioLote);
+                int antes = entregados;
+                boolean enHueco = false;
+                for (EventoCambio e : eventos) {
+                    // Un consumidor nuevo (posición 0) arranca en el primer evento conservado
+                    if (ultimoId > 0 && e.getId() != ultimoId + 1 && !puedeSaltearHueco(e.getId())) {
+                        enHueco = true;
+                        break;
+                    }
+                    huecoDesde = 0;
+                    entregar(e);
+                    ultimoId = e.getId();
+                    entregados++;
+                }
+                if (entregados > antes) {
+                    if (archivo != null) {
+                        archivo.forzar();
+                    }
+                    dao.guardarPosicion(consumidor, ultimoId);
+                    ENTREGADOS.add(entregados - antes);
+                }
+                LAT_LOTE.registrarDesde(inicio);
+                if (enHueco || eventos.size() < tamanioLote) {
+                    break;
+                }
+            }
+            if (retencionHoras > 0) {
+                dao.purgar(retencionHoras, PURGA_MAXIMA);
+            }
+            return entregados;
+        } finally {
+            enCurso.set(false);
+        }
+    }
+
+    // La espera cubre los ids ya asignados cuya fila todavía no está en el índice (sin bloqueo
+    // que detectar); después decide el bloqueo, nunca el tiempo solo
+    private boolean puedeSaltearHueco(long siguienteId) throws SQLException {
+        long ahora = System.nanoTime();
+        if (huecoDesde == 0) {
+            huecoDesde = ahora;
+        }
+        if (ahora - huecoDesde < TimeUnit.MILLISECONDS.toNanos(esperaHuecoMs)
+                || !dao.huecoDescartable(ultimoId, siguienteId)) {
+            return false;
+        }
+        HUECOS_SALTEADOS.increment();
+        return true;
+    }
+
+    private void entregar(EventoCambio e) {
+        if (archivo != null) {
+            archivo.escribir(e);
+        }
+        for (Consumer<EventoCambio> oyente : oyentes) {
+            try {
+                oyente.accept(e);
+            } catch (RuntimeException ex) {
+                // Un oyente con errores no frena a los demás ni al archivo
+                ERRORES_OYENTE.increment();
+                System.err.println("⚠ Oyente de cambios falló con el evento " + e.getId() + ": " + ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cambios;
+
+import java.time.LocalDateTime;
+
+/**
+ * Un cambio confirmado sobre producto o codigo_barras, tal como quedó en el outbox.
+ * {@code datos} es un objeto JSON con los valores de la fila después de la escritura
+ * (todas las columnas de negocio, incluidas eliminado y version).
+ */
+public final class EventoCambio {
+
+    public static final String PRODUCTO = "producto";
+    public static final String CODIGO_BARRAS = "codigo_barras";
+
+    private final long id;
+    private final String entidad;
+    private final long entidadId;
+    private final OperacionCambio operacion;
+    private final String datos;
+    private final LocalDateTime fecha;
+
+    public EventoCambio(long id, String entidad, long entidadId, OperacionCambio operacion, String datos,
+                        LocalDateTime fecha) {
+        this.id = id;
+        this.entidad = entidad;
+        this.entidadId = entidadId;
+        this.operacion = operacion;
+        this.datos = datos;
+        this.fecha = fecha;
+    }
+
+    /** Posición en el outbox: creciente en el orden en que se despachan los eventos. */
+    public long getId() { return id; }
+    public String getEntidad() { return entidad; }
+    public long getEntidadId() { return entidadId; }
+    public OperacionCambio getOperacion() { return operacion; }
+    public String getDatos() { return datos; }
+    public LocalDateTime getFecha() { return fecha; }
+
+    public boolean esProducto() {
+        return PRODUCTO.equals(entidad);
+    }
+
+    public boolean esCodigoBarras() {
+        return CODIGO_BARRAS.equals(entidad);
+    }
+
+    /**
+     * Una línea JSON (sin salto final) para el archivo de cambios. Los campos propios no
+     * necesitan escape (nombres fijos, números y una fecha ISO); datos ya es JSON válido.
+     */
+    public String aJson() {
+        return "{\"id\":" + id + ",\"entidad\":\"" + entidad + "\",\"entidadId\":" + entidadId
+                + ",\"operacion\":\"" + operacion + "\",\"fecha\":\"" + fecha + "\",\"datos\":" + datos + "}";
+    }
+
+    @Override
+    public String toString() {
+        return "EventoCambio{" + id + " " + operacion + " " + entidad + "#" + entidadId + " " + datos + "}";
+    }
+}
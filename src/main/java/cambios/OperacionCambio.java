@@ -0,0 +1,11 @@
+package cambios;
+
+/**
+ * Tipo de escritura registrada en el outbox. Una baja lógica es BAJA; la reactivación
+ * de una baja (p. ej. al sincronizar) llega como MODIFICACION con eliminado=false.
+ */
+public enum OperacionCambio {
+    ALTA,
+    MODIFICACION,
+    BAJA
+}
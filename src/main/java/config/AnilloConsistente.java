@@ -0,0 +1,77 @@
+package config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash consistente: cada shard ocupa {@code nodosVirtuales} puntos de un anillo de 64 bits
+ * (derivados de su nombre) y una clave va al primer punto igual o mayor que su hash.
+ *
+ * Como los puntos dependen del nombre y no de la posición en la lista, agregar un shard sólo
+ * mueve las claves que caen en sus puntos (~1/N del total) y quitar uno sólo mueve las suyas.
+ */
+final class AnilloConsistente {
+
+    private final long[] puntos; // ordenados
+    private final int[] shards;  // shard dueño de cada punto
+
+    AnilloConsistente(List<String> nombres, int nodosVirtuales) {
+        if (nombres.isEmpty() || nodosVirtuales <= 0) {
+            throw new IllegalArgumentException("Se necesita al menos un shard y un nodo virtual por shard.");
+        }
+        int total = nombres.size() * nodosVirtuales;
+        long[] hashes = new long[total];
+        int[] duenios = new int[total];
+        Integer[] orden = new Integer[total];
+        for (int s = 0; s < nombres.size(); s++) {
+            for (int v = 0; v < nodosVirtuales; v++) {
+                int i = s * nodosVirtuales + v;
+                hashes[i] = hash(nombres.get(s) + "#" + v);
+                duenios[i] = s;
+                orden[i] = i;
+            }
+        }
+        // Empates (improbables) se resuelven por nombre, no por el orden de configuración
+        Arrays.sort(orden, (a, b) -> hashes[a] != hashes[b] ? Long.compareUnsigned(hashes[a], hashes[b])
+                : nombres.get(duenios[a]).compareTo(nombres.get(duenios[b])));
+        this.puntos = new long[total];
+        this.shards = new int[total];
+        for (int i = 0; i < total; i++) {
+            puntos[i] = hashes[orden[i]];
+            shards[i] = duenios[orden[i]];
+        }
+    }
+
+    /** Índice (en la lista de nombres) del shard dueño de {@code clave}. */
+    int shardDe(long clave) {
+        long h = mezclar(clave);
+        int lo = 0;
+        int hi = puntos.length;
+        while (lo < hi) {
+            int medio = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(puntos[medio], h) < 0) {
+                lo = medio + 1;
+            } else {
+                hi = medio;
+            }
+        }
+        return shards[lo == puntos.length ? 0 : lo];
+    }
+
+    // FNV-1a de 64 bits seguido del mezclador final de SplitMix64
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mezclar(h);
+    }
+
+    private static long mezclar(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,212 @@
+package config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache LRU de PreparedStatement de una conexión física, por SQL (y variante de
+ * prepareStatement). Con useServerPrepStmts=true cada sentencia se parsea una sola vez en el
+ * servidor por conexión, en lugar de una vez por llamada al DAO.
+ *
+ * Sólo guarda sentencias libres: prepareStatement las saca de la cache y close() las limpia
+ * (cierra los ResultSet que el DAO dejó abiertos, parámetros, lote y configuración) y las
+ * devuelve. getConnection() entrega la conexión prestada y ResultSet.getStatement() el proxy,
+ * nunca la conexión física ni la sentencia cacheada: cerrarlas no saltea el pool ni la cache. Si la misma SQL se abre dos veces a la vez, la segunda se prepara aparte y
+ * al cerrarse desplaza a la anterior (que se cierra). Como la conexión la usa un solo hilo
+ * por préstamo, no hace falta sincronizar.
+ */
+final class CacheSentencias {
+
+    private final Connection conn;
+    private final AtomicLong aciertos;
+    private final AtomicLong fallos;
+    private final AtomicLong desalojadas;
+    private final LinkedHashMap<String, PreparedStatement> libres;
+
+    CacheSentencias(Connection conn, int tamanioMaximo, AtomicLong aciertos, AtomicLong fallos,
+                    AtomicLong desalojadas) {
+        this.conn = conn;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.desalojadas = desalojadas;
+        this.libres = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> mayor) {
+                if (size() > tamanioMaximo) {
+                    desalojadas.incrementAndGet();
+                    cerrarSilencioso(mayor.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Equivalente a {@code conn.prepareStatement(args...)} pero reutilizando la sentencia.
+     * @param prestada El proxy de la conexión que la pide (lo que devuelve getConnection()).
+     */
+    PreparedStatement preparar(Method prepareStatement, Object[] args, Connection prestada) throws Throwable {
+        String clave = clave(args);
+        PreparedStatement ps = libres.remove(clave);
+        if (ps != null && !ps.isClosed()) {
+            aciertos.incrementAndGet();
+        } else {
+            fallos.incrementAndGet();
+            try {
+                ps = (PreparedStatement) prepareStatement.invoke(conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new SentenciaCacheada(clave, ps, prestada));
+    }
+
+    // La SQL sola es la clave del caso común; las variantes (claves generadas, tipo de cursor) la extienden
+    private static String clave(Object[] args) {
+        if (args.length == 1) {
+            return (String) args[0];
+        }
+        return args[0] + "\u0000" + Arrays.deepToString(Arrays.copyOfRange(args, 1, args.length));
+    }
+
+    private static void cerrarSilencioso(AutoCloseable recurso) {
+        try {
+            recurso.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * Proxy entregado al DAO: close() limpia el estado de la sentencia y la devuelve a la cache.
+     */
+    private final class SentenciaCacheada implements InvocationHandler {
+        private final String clave;
+        private final PreparedStatement ps;
+        private final Connection prestada;
+        private boolean cerrada;
+        private boolean conLote;
+        private boolean configurada; // fetchSize, maxRows o queryTimeout modificados
+        private List<ResultSet> resultados; // los entregados al DAO, para cerrarlos al devolver
+
+        SentenciaCacheada(String clave, PreparedStatement ps, Connection prestada) {
+            this.clave = clave;
+            this.ps = ps;
+            this.prestada = prestada;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!cerrada) {
+                        cerrada = true;
+                        devolver();
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrada || ps.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "addBatch":
+                    conLote = true;
+                    break;
+                case "setFetchSize":
+                case "setMaxRows":
+                case "setLargeMaxRows":
+                case "setQueryTimeout":
+                    configurada = true;
+                    break;
+                default:
+                    break;
+            }
+            if (cerrada) {
+                throw new SQLException("La sentencia ya fue cerrada.");
+            }
+            if (method.getName().equals("getConnection")) {
+                return prestada;
+            }
+            Object resultado;
+            try {
+                resultado = method.invoke(ps, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (resultado instanceof ResultSet rs) {
+                if (resultados == null) {
+                    resultados = new ArrayList<>(2);
+                }
+                resultados.add(rs);
+                return envolver(rs, (PreparedStatement) proxy);
+            }
+            return resultado;
+        }
+
+        // getStatement() devuelve el proxy: un close() sobre él vuelve a pasar por devolver()
+        private ResultSet envolver(ResultSet rs, PreparedStatement sentencia) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, metodo, args) -> {
+                        switch (metodo.getName()) {
+                            case "getStatement":
+                                return sentencia;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                try {
+                                    return metodo.invoke(rs, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                        }
+                    });
+        }
+
+        private void devolver() {
+            try {
+                if (ps.isClosed() || conn.isClosed()) {
+                    return;
+                }
+                // Un ResultSet abierto (p. ej. un cursor del servidor a medio leer) retiene
+                // recursos en el servidor mientras la sentencia espera en la cache
+                if (resultados != null) {
+                    for (ResultSet rs : resultados) {
+                        rs.close();
+                    }
+                }
+                ps.clearParameters();
+                if (conLote) {
+                    ps.clearBatch();
+                }
+                if (configurada) {
+                    ps.setFetchSize(0);
+                    ps.setMaxRows(0);
+                    ps.setQueryTimeout(0);
+                }
+                ps.clearWarnings();
+                PreparedStatement anterior = libres.put(clave, ps);
+                if (anterior != null && anterior != ps) {
+                    cerrarSilencioso(anterior);
+                }
+            } catch (SQLException e) {
+                cerrarSilencioso(ps);
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+package config;
+
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+import traza.TrazadorSql;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de conexiones JDBC acotado.
+ * - Precalienta {@code minimoLibres} conexiones al iniciar.
+ * - Valida la conexión al prestarla si estuvo inactiva más de {@code validacionTrasInactividadMs}.
+ * - Cierra conexiones libres que superan {@code inactividadMaximaMs} (sin bajar del mínimo).
+ * - Avisa por System.err cuando una conexión prestada supera {@code umbralFugaMs}, con el hilo
+ *   que la pidió; con {@code trazaFugas} también con la traza del préstamo (cuesta una traza
+ *   por préstamo, sólo para depurar).
+ * - Reutiliza hasta {@code cacheSentencias} PreparedStatement por conexión física (0 = sin cache).
+ * - Avisa a {@link #setAlEscribir} cuando vuelve una conexión que preparó o ejecutó (createStatement)
+ *   alguna sentencia que no es una lectura.
+ *
+ * Las conexiones entregadas son proxies: close() las devuelve al pool en lugar de cerrarlas.
+ */
+public class ConnectionPool {
+
+    private static final Histograma ESPERA_PRESTAMO = RegistroMetricas.latencia("pool.obtener");
+
+    private final String url;
+    private final Properties credenciales;
+    private final int tamanioMaximo;
+    private final int minimoLibres;
+    private final long timeoutPrestamoMs;
+    private final long inactividadMaximaMs;
+    private final long umbralFugaMs;
+    private final boolean trazaFugas;
+    private final long validacionTrasInactividadMs;
+    private final int cacheSentencias;
+
+    // LIFO: se reutiliza primero la conexión usada más recientemente (la más "caliente")
+    private final LinkedBlockingDeque<ConexionFisica> libres = new LinkedBlockingDeque<>();
+    private final Set<Prestamo> prestadas = ConcurrentHashMap.newKeySet();
+    private final Semaphore permisos;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado;
+    private volatile Runnable alEscribir;
+
+    // Estadísticas
+    private final AtomicLong prestamos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong esperaTotalNanos = new AtomicLong();
+    private final AtomicLong esperaMaximaNanos = new AtomicLong();
+    private final AtomicLong creadas = new AtomicLong();
+    private final AtomicLong cerradas = new AtomicLong();
+    private final AtomicLong validacionesFallidas = new AtomicLong();
+    private final AtomicLong fugasDetectadas = new AtomicLong();
+    private final AtomicLong sentenciasAciertos = new AtomicLong();
+    private final AtomicLong sentenciasFallos = new AtomicLong();
+    private final AtomicLong sentenciasDesalojadas = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password, int tamanioMaximo, int minimoLibres,
+                          long timeoutPrestamoMs, long inactividadMaximaMs, long umbralFugaMs, boolean trazaFugas,
+                          long validacionTrasInactividadMs, int cacheSentencias) throws SQLException {
+        if (tamanioMaximo <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo del pool debe ser positivo.");
+        }
+        this.url = url;
+        this.credenciales = new Properties();
+        if (user != null) credenciales.setProperty("user", user);
+        if (password != null) credenciales.setProperty("password", password);
+        this.tamanioMaximo = tamanioMaximo;
+        this.minimoLibres = Math.min(Math.max(minimoLibres, 0), tamanioMaximo);
+        this.timeoutPrestamoMs = timeoutPrestamoMs;
+        this.inactividadMaximaMs = inactividadMaximaMs;
+        this.umbralFugaMs = umbralFugaMs;
+        this.trazaFugas = trazaFugas && umbralFugaMs > 0;
+        this.validacionTrasInactividadMs = validacionTrasInactividadMs;
+        this.cacheSentencias = Math.max(cacheSentencias, 0);
+        this.permisos = new Semaphore(tamanioMaximo, true);
+
+        // Precalentamiento
+        for (int i = 0; i < this.minimoLibres; i++) {
+            libres.offerFirst(crearConexion());
+        }
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-mantenimiento");
+            t.setDaemon(true);
+            return t;
+        });
+        long referencia = umbralFugaMs > 0 ? Math.min(inactividadMaximaMs, umbralFugaMs) : inactividadMaximaMs;
+        long periodo = Math.max(1000, referencia / 2);
+        mantenimiento.scheduleWithFixedDelay(this::mantener, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    // ============================================================
+    //  PRÉSTAMO / DEVOLUCIÓN
+    // ============================================================
+
+    /**
+     * Presta una conexión del pool, esperando como máximo {@code timeoutPrestamoMs}.
+     * Debe cerrarse (close) para devolverla.
+     */
+    public Connection obtener() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado.");
+        }
+        long inicio = System.nanoTime();
+        try {
+            if (!permisos.tryAcquire(timeoutPrestamoMs, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new SQLException("Timeout esperando una conexión del pool (" + timeoutPrestamoMs + " ms, "
+                        + tamanioMaximo + " en uso).");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrumpido esperando una conexión del pool", e);
+        }
+
+        ConexionFisica fisica;
+        try {
+            fisica = tomarLibreValida();
+            if (fisica == null) {
+                fisica = crearConexion();
+            }
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+
+        long espera = System.nanoTime() - inicio;
+        prestamos.incrementAndGet();
+        esperaTotalNanos.addAndGet(espera);
+        esperaMaximaNanos.accumulateAndGet(espera, Math::max);
+        ESPERA_PRESTAMO.registrar(espera);
+
+        Prestamo prestamo = new Prestamo(fisica);
+        prestadas.add(prestamo);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, prestamo);
+    }
+
+    private ConexionFisica tomarLibreValida() {
+        ConexionFisica c;
+        while ((c = libres.pollFirst()) != null) {
+            long inactiva = System.currentTimeMillis() - c.ultimoUso;
+            if (inactiva < validacionTrasInactividadMs || esValida(c)) {
+                return c;
+            }
+            validacionesFallidas.incrementAndGet();
+            descartar(c);
+        }
+        return null;
+    }
+
+    private void devolver(Prestamo prestamo) {
+        if (!prestadas.remove(prestamo)) {
+            return; // ya devuelta
+        }
+        // Ya confirmada (o deshecha): lo que se lea desde ahora puede depender de esta escritura
+        if (prestamo.escribio) {
+            avisarEscritura();
+        }
+        ConexionFisica c = prestamo.fisica;
+        try {
+            if (c.conn.isClosed()) {
+                descartar(c);
+            } else {
+                // No dejamos transacciones abiertas para el próximo que la use
+                if (!c.conn.getAutoCommit()) {
+                    c.conn.rollback();
+                    c.conn.setAutoCommit(true);
+                }
+                c.ultimoUso = System.currentTimeMillis();
+                if (cerrado) {
+                    descartar(c);
+                } else {
+                    libres.offerFirst(c);
+                }
+            }
+        } catch (SQLException e) {
+            descartar(c);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    // ============================================================
+    //  MANTENIMIENTO: eviction por inactividad y detección de fugas
+    // ============================================================
+
+    private void mantener() {
+        try {
+            long ahora = System.currentTimeMillis();
+
+            // Libres más antiguas al final de la deque (LIFO)
+            ConexionFisica c;
+            while (total.get() > minimoLibres && (c = libres.peekLast()) != null
+                    && ahora - c.ultimoUso > inactividadMaximaMs) {
+                if (libres.removeLastOccurrence(c)) {
+                    descartar(c);
+                }
+            }
+
+            for (Prestamo p : prestadas) {
+                if (umbralFugaMs > 0 && !p.fugaReportada && ahora - p.inicio > umbralFugaMs) {
+                    p.fugaReportada = true;
+                    fugasDetectadas.incrementAndGet();
+                    System.err.println("⚠ Posible fuga de conexión: prestada hace " + (ahora - p.inicio)
+                            + " ms al hilo " + p.hilo + " sin devolver."
+                            + (p.origen == null ? " (db.pool.trazaFugas=true para ver dónde se obtuvo)" : ""));
+                    if (p.origen != null) {
+                        p.origen.printStackTrace();
+                    }
+                }
+            }
+
+            while (!cerrado && total.get() < minimoLibres) {
+                libres.offerLast(crearConexion());
+            }
+        } catch (SQLException e) {
+            System.err.println("⚠ Error en mantenimiento del pool: " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("⚠ Error inesperado en mantenimiento del pool: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres y detiene el mantenimiento.
+     * Las conexiones prestadas se cierran al ser devueltas.
+     */
+    public void cerrar() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        ConexionFisica c;
+        while ((c = libres.pollFirst()) != null) {
+            descartar(c);
+        }
+    }
+
+    // ============================================================
+    //  ESTADÍSTICAS
+    // ============================================================
+
+    public EstadisticasPool getEstadisticas() {
+        return new EstadisticasPool(tamanioMaximo, total.get(), prestadas.size(), libres.size(),
+                permisos.getQueueLength(), prestamos.get(), timeouts.get(), esperaTotalNanos.get(),
+                esperaMaximaNanos.get(), creadas.get(), cerradas.get(), validacionesFallidas.get(),
+                fugasDetectadas.get(), sentenciasAciertos.get(), sentenciasFallos.get(),
+                sentenciasDesalojadas.get());
+    }
+
+    public int getTamanioMaximo() {
+        return tamanioMaximo;
+    }
+
+    /** Conexiones prestadas en este momento (para elegir la réplica menos cargada). */
+    public int getEnUso() {
+        return prestadas.size();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Se ejecuta cuando una conexión que preparó INSERT/UPDATE/DELETE u otra sentencia que no
+     * es SELECT confirma (commit(), antes y después de confirmar) y cuando vuelve al pool (las
+     * escrituras en autocommit), en el hilo que la usa. Así lo que el llamador haga entre el
+     * commit y el close (p. ej. invalidar la cache) ya cae dentro de la ventana.
+     */
+    public void setAlEscribir(Runnable alEscribir) {
+        this.alEscribir = alEscribir;
+    }
+
+    private void avisarEscritura() {
+        Runnable aviso = alEscribir;
+        if (aviso != null) {
+            aviso.run();
+        }
+    }
+
+    // ============================================================
+    //  AUXILIARES
+    // ============================================================
+
+    private ConexionFisica crearConexion() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, credenciales);
+        total.incrementAndGet();
+        creadas.incrementAndGet();
+        CacheSentencias sentencias = cacheSentencias == 0 ? null : new CacheSentencias(conn, cacheSentencias,
+                sentenciasAciertos, sentenciasFallos, sentenciasDesalojadas);
+        return new ConexionFisica(conn, sentencias);
+    }
+
+    private boolean esValida(ConexionFisica c) {
+        try {
+            return c.conn.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void descartar(ConexionFisica c) {
+        total.decrementAndGet();
+        cerradas.incrementAndGet();
+        try {
+            c.conn.close();
+        } catch (SQLException ex) {
+            System.err.println("⚠ Error al cerrar conexión física: " + ex.getMessage());
+        }
+    }
+
+    private static boolean esLectura(String sql) {
+        int i = 0;
+        while (i < sql.length() && (Character.isWhitespace(sql.charAt(i)) || sql.charAt(i) == '(')) {
+            i++;
+        }
+        return sql.regionMatches(true, i, "SELECT", 0, 6) || sql.regionMatches(true, i, "EXPLAIN", 0, 7)
+                || sql.regionMatches(true, i, "SHOW", 0, 4);
+    }
+
+    private static final class ConexionFisica {
+        final Connection conn;
+        final CacheSentencias sentencias; // null si está deshabilitada
+        volatile long ultimoUso;
+
+        ConexionFisica(Connection conn, CacheSentencias sentencias) {
+            this.conn = conn;
+            this.sentencias = sentencias;
+            this.ultimoUso = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Handler del proxy entregado al DAO: close() devuelve la conexión al pool
+     * y cualquier uso posterior falla como lo haría una conexión cerrada.
+     */
+    private final class Prestamo implements InvocationHandler {
+        final ConexionFisica fisica;
+        final long inicio = System.currentTimeMillis();
+        final String hilo = Thread.currentThread().getName();
+        // La traza cuesta un Throwable por préstamo: sólo con trazaFugas
+        final Throwable origen = trazaFugas ? new Throwable("Conexión obtenida aquí") : null;
+        volatile boolean devuelta;
+        volatile boolean fugaReportada;
+        volatile boolean escribio;
+
+        Prestamo(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.conn.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + fisica.conn;
+                case "prepareStatement":
+                    verificarPrestada();
+                    if (!escribio && !esLectura((String) args[0])) {
+                        escribio = true;
+                    }
+                    PreparedStatement ps = fisica.sentencias != null
+                            ? fisica.sentencias.preparar(method, args, (Connection) proxy)
+                            : (PreparedStatement) invocar(method, args);
+                    return TrazadorSql.envolver(ps, (String) args[0]);
+                case "createStatement":
+                    verificarPrestada();
+                    return sentencia((Statement) invocar(method, args), (Connection) proxy);
+                case "commit":
+                    verificarPrestada();
+                    if (!escribio) {
+                        return invocar(method, args);
+                    }
+                    // Antes: nadie lee una réplica mientras se confirma; después: la ventana
+                    // cuenta desde el commit, no desde el close
+                    avisarEscritura();
+                    try {
+                        return invocar(method, args);
+                    } finally {
+                        avisarEscritura();
+                    }
+                default:
+                    verificarPrestada();
+                    return invocar(method, args);
+            }
+        }
+
+        // Statement: la SQL llega recién al ejecutar (execute*, addBatch), ahí se marca la escritura
+        private Statement sentencia(Statement st, Connection prestada) {
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                    (proxy, metodo, args) -> {
+                        if (metodo.getName().equals("getConnection")) {
+                            return prestada;
+                        }
+                        if (!escribio && args != null && args.length > 0 && args[0] instanceof String sql
+                                && (metodo.getName().startsWith("execute") || metodo.getName().equals("addBatch"))
+                                && !esLectura(sql)) {
+                            escribio = true;
+                        }
+                        try {
+                            return metodo.invoke(st, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+
+        private void verificarPrestada() throws SQLException {
+            if (devuelta) {
+                throw new SQLException("La conexión ya fue devuelta al pool.");
+            }
+        }
+
+        private Object invocar(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(fisica.conn, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
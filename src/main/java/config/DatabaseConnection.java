@@ -1,8 +1,11 @@
 package config;
 
+import migracion.MigradorEsquema;
+import traza.TrazadorSql;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.List;
 import java.util.Properties;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -10,14 +13,122 @@ import java.io.IOException;
 public class DatabaseConnection {
     private static final String PROPERTIES_FILE = "db.properties";
 
+    // Se cargan una sola vez (primer uso) y se comparten en toda la aplicación
+    private static volatile Properties props;
+    private static volatile ConnectionPool pool;
+    private static volatile EnrutadorLecturas lecturas;
+
+    /**
+     * Devuelve una conexión del pool del primario. Al cerrarla vuelve al pool.
+     * Para escrituras, transacciones y lecturas que deciden una escritura.
+     */
     public static Connection getConnection() throws SQLException, IOException {
-        Properties props = new Properties();
-        try (FileInputStream fis = new FileInputStream(PROPERTIES_FILE)) {
-            props.load(fis);
+        return getPool().obtener();
+    }
+
+    /**
+     * Conexión para una lectura fuera de transacción: de una réplica de db.replicas si hay
+     * (ver EnrutadorLecturas), o del primario si no hay réplicas, si el proceso escribió hace
+     * menos de db.replicas.ventanaLecturaPropiaMs o si ninguna réplica responde.
+     * Lo leído puede llegar con el atraso de la replicación.
+     */
+    public static Connection getConnectionLectura() throws SQLException, IOException {
+        getPool();
+        return lecturas.obtener();
+    }
+
+    public static ConnectionPool getPool() throws SQLException, IOException {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseConnection.class) {
+                p = pool;
+                if (p == null) {
+                    TrazadorSql.configurar(getPropiedades());
+                    Properties config = getPropiedades();
+                    p = crearPool(config.getProperty("db.url"), config.getProperty("db.user"),
+                            config.getProperty("db.password"), config);
+                    migrar(p);
+                    // Las réplicas reciben el esquema por replicación: sólo se migra el primario
+                    EnrutadorLecturas e = EnrutadorLecturas.crear(p, config);
+                    lecturas = e;
+                    pool = p;
+                    ConnectionPool primario = p;
+                    Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        e.cerrar();
+                        primario.cerrar();
+                    }, "pool-cierre"));
+                }
+            }
         }
-        String url = props.getProperty("db.url");
-        String user = props.getProperty("db.user");
-        String password = props.getProperty("db.password");
-        return DriverManager.getConnection(url, user, password);
+        return p;
+    }
+
+    public static Properties getPropiedades() throws IOException {
+        Properties p = props;
+        if (p == null) {
+            synchronized (DatabaseConnection.class) {
+                p = props;
+                if (p == null) {
+                    p = new Properties();
+                    try (FileInputStream fis = new FileInputStream(System.getProperty("db.config", PROPERTIES_FILE))) {
+                        p.load(fis);
+                    }
+                    // -Ddb.url=... (etc.) pisa al archivo: permite apuntar benchmarks o pruebas a otra BD
+                    for (String clave : System.getProperties().stringPropertyNames()) {
+                        if (clave.startsWith("db.") || clave.startsWith("cache.")) {
+                            p.setProperty(clave, System.getProperty(clave));
+                        }
+                    }
+                    props = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Filas por viaje al leer con cursor del servidor (requiere useCursorFetch=true en db.url).
+     */
+    public static int getFetchSize() throws IOException {
+        return Integer.parseInt(getPropiedades().getProperty("db.fetchSize", "1000"));
+    }
+
+    public static EstadisticasPool getEstadisticas() throws SQLException, IOException {
+        return getPool().getEstadisticas();
+    }
+
+    /** Una línea por réplica configurada (URL y estadísticas de su pool); vacía si no hay réplicas. */
+    public static List<String> getEstadisticasReplicas() throws SQLException, IOException {
+        getPool();
+        return lecturas.describirReplicas();
+    }
+
+    // Aplica las migraciones pendientes antes de entregar la primera conexión
+    private static void migrar(ConnectionPool p) throws SQLException, IOException {
+        if (!Boolean.parseBoolean(getPropiedades().getProperty("db.migraciones.automaticas", "true"))) {
+            return;
+        }
+        try (Connection conn = p.obtener()) {
+            new MigradorEsquema().migrar(conn);
+        } catch (SQLException e) {
+            p.cerrar();
+            throw e;
+        }
+    }
+
+    // Mismos parámetros db.pool.* para el primario y para cada réplica
+    static ConnectionPool crearPool(String url, String user, String password, Properties p) throws SQLException {
+        return new ConnectionPool(
+                url,
+                user,
+                password,
+                Integer.parseInt(p.getProperty("db.pool.tamanioMaximo", "10")),
+                Integer.parseInt(p.getProperty("db.pool.minimoLibres", "2")),
+                Long.parseLong(p.getProperty("db.pool.timeoutPrestamoMs", "30000")),
+                Long.parseLong(p.getProperty("db.pool.inactividadMaximaMs", "600000")),
+                Long.parseLong(p.getProperty("db.pool.umbralFugaMs", "60000")),
+                Boolean.parseBoolean(p.getProperty("db.pool.trazaFugas", "false")),
+                Long.parseLong(p.getProperty("db.pool.validacionTrasInactividadMs", "500")),
+                Integer.parseInt(p.getProperty("db.pool.cacheSentencias", "64")));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,200 @@
+package config;
+
+import metricas.RegistroMetricas;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reparte las lecturas fuera de transacción entre las réplicas de db.replicas.
+ * - Balanceo MENOS_CARGADA (menos conexiones prestadas; empate por turno) o ROUND_ROBIN.
+ * - Lectura de lo propio: durante {@code ventanaMs} después de una escritura del proceso
+ *   (ver ConnectionPool.setAlEscribir) todas las lecturas van al primario, así quien acaba de
+ *   confirmar un cambio (y la cache, que se vuelve a llenar tras invalidar) no lee una réplica atrasada.
+ * - Una réplica que no entrega conexión se saltea durante {@code esperaTrasFalloMs}; sin
+ *   réplicas disponibles se lee del primario.
+ *
+ * El pool de cada réplica se crea en el primer uso, con los mismos parámetros que el del primario.
+ */
+final class EnrutadorLecturas {
+
+    enum Balanceo { MENOS_CARGADA, ROUND_ROBIN }
+
+    private static final LongAdder LECTURAS_REPLICA = RegistroMetricas.contador("db.lecturas.replica");
+    private static final LongAdder LECTURAS_PRIMARIO = RegistroMetricas.contador("db.lecturas.primario");
+    private static final LongAdder EN_VENTANA = RegistroMetricas.contador("db.lecturas.ventanaLecturaPropia");
+    private static final LongAdder FALLOS_REPLICA = RegistroMetricas.contador("db.lecturas.fallosReplica");
+
+    private final ConnectionPool primario;
+    private final List<Replica> replicas;
+    private final Balanceo balanceo;
+    private final long ventanaNanos;
+    private final long esperaTrasFalloNanos;
+    private final AtomicInteger turno = new AtomicInteger();
+    private volatile long ultimaEscritura;
+    private volatile boolean huboEscritura;
+
+    private EnrutadorLecturas(ConnectionPool primario, List<Replica> replicas, Balanceo balanceo,
+                              long ventanaMs, long esperaTrasFalloMs) {
+        this.primario = primario;
+        this.replicas = replicas;
+        this.balanceo = balanceo;
+        this.ventanaNanos = TimeUnit.MILLISECONDS.toNanos(ventanaMs);
+        this.esperaTrasFalloNanos = TimeUnit.MILLISECONDS.toNanos(esperaTrasFalloMs);
+        primario.setAlEscribir(this::marcarEscritura);
+    }
+
+    /**
+     * Lee db.replicas (URLs separadas por coma; vacío = sin réplicas) y el resto de db.replicas.*.
+     */
+    static EnrutadorLecturas crear(ConnectionPool primario, Properties p) {
+        String user = p.getProperty("db.replicas.user", p.getProperty("db.user"));
+        String password = p.getProperty("db.replicas.password", p.getProperty("db.password"));
+        List<Replica> replicas = new ArrayList<>();
+        for (String url : p.getProperty("db.replicas", "").split(",")) {
+            if (!url.isBlank()) {
+                replicas.add(new Replica(url.trim(), user, password, p));
+            }
+        }
+        return new EnrutadorLecturas(primario, replicas,
+                Balanceo.valueOf(p.getProperty("db.replicas.balanceo", Balanceo.MENOS_CARGADA.name()).trim().toUpperCase()),
+                Long.parseLong(p.getProperty("db.replicas.ventanaLecturaPropiaMs", "1000")),
+                Long.parseLong(p.getProperty("db.replicas.esperaTrasFalloMs", "5000")));
+    }
+
+    void marcarEscritura() {
+        ultimaEscritura = System.nanoTime();
+        huboEscritura = true;
+    }
+
+    /**
+     * Conexión para una lectura fuera de transacción: de una réplica o, si no corresponde o
+     * ninguna responde, del primario.
+     */
+    Connection obtener() throws SQLException {
+        if (replicas.isEmpty()) {
+            return primario.obtener();
+        }
+        if (huboEscritura && System.nanoTime() - ultimaEscritura < ventanaNanos) {
+            EN_VENTANA.increment();
+            return primario.obtener();
+        }
+        int n = replicas.size();
+        int desde = elegir();
+        for (int i = 0; i < n; i++) {
+            Replica r = replicas.get((desde + i) % n);
+            if (r.enEspera(esperaTrasFalloNanos)) {
+                continue;
+            }
+            try {
+                Connection conn = r.obtener();
+                LECTURAS_REPLICA.increment();
+                return conn;
+            } catch (SQLException e) {
+                FALLOS_REPLICA.increment();
+                r.marcarFallo();
+                System.err.println("⚠ Réplica " + r.url + " no disponible, se saltea "
+                        + TimeUnit.NANOSECONDS.toMillis(esperaTrasFalloNanos) + " ms: " + e.getMessage());
+            }
+        }
+        LECTURAS_PRIMARIO.increment();
+        return primario.obtener();
+    }
+
+    private int elegir() {
+        int n = replicas.size();
+        int inicio = Math.floorMod(turno.getAndIncrement(), n);
+        if (balanceo == Balanceo.ROUND_ROBIN) {
+            return inicio;
+        }
+        int mejor = inicio;
+        int menorUso = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            int j = (inicio + i) % n;
+            int uso = replicas.get(j).getEnUso();
+            if (uso < menorUso) {
+                menorUso = uso;
+                mejor = j;
+            }
+        }
+        return mejor;
+    }
+
+    boolean tieneReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /** Estadísticas de los pools de réplica ya creados. */
+    List<String> describirReplicas() {
+        List<String> lineas = new ArrayList<>(replicas.size());
+        for (Replica r : replicas) {
+            ConnectionPool pool = r.pool;
+            lineas.add(r.url + " → " + (pool == null ? "sin usar" : pool.getEstadisticas().toString())
+                    + (r.enEspera(esperaTrasFalloNanos) ? " [en espera tras fallo]" : ""));
+        }
+        return lineas;
+    }
+
+    void cerrar() {
+        for (Replica r : replicas) {
+            r.cerrar();
+        }
+    }
+
+    private static final class Replica {
+        final String url;
+        final String user;
+        final String password;
+        final Properties parametros;
+        volatile ConnectionPool pool;
+        volatile long ultimoFallo;
+        volatile boolean fallo;
+
+        Replica(String url, String user, String password, Properties parametros) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.parametros = parametros;
+        }
+
+        Connection obtener() throws SQLException {
+            ConnectionPool p = pool;
+            if (p == null) {
+                synchronized (this) {
+                    p = pool;
+                    if (p == null) {
+                        p = DatabaseConnection.crearPool(url, user, password, parametros);
+                        pool = p;
+                    }
+                }
+            }
+            return p.obtener();
+        }
+
+        int getEnUso() {
+            ConnectionPool p = pool;
+            return p == null ? 0 : p.getEnUso();
+        }
+
+        boolean enEspera(long esperaNanos) {
+            return fallo && System.nanoTime() - ultimoFallo < esperaNanos;
+        }
+
+        void marcarFallo() {
+            ultimoFallo = System.nanoTime();
+            fallo = true;
+        }
+
+        synchronized void cerrar() {
+            if (pool != null) {
+                pool.cerrar();
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package config;
+
+/**
+ * Foto de las estadísticas del pool de conexiones en un instante dado.
+ */
+public class EstadisticasPool {
+    private final int tamanioMaximo;
+    private final int total;
+    private final int activas;
+    private final int libres;
+    private final int esperando;
+    private final long prestamos;
+    private final long timeouts;
+    private final long esperaTotalNanos;
+    private final long esperaMaximaNanos;
+    private final long creadas;
+    private final long cerradas;
+    private final long validacionesFallidas;
+    private final long fugasDetectadas;
+    private final long sentenciasAciertos;
+    private final long sentenciasFallos;
+    private final long sentenciasDesalojadas;
+
+    public EstadisticasPool(int tamanioMaximo, int total, int activas, int libres, int esperando,
+                            long prestamos, long timeouts, long esperaTotalNanos, long esperaMaximaNanos,
+                            long creadas, long cerradas, long validacionesFallidas, long fugasDetectadas,
+                            long sentenciasAciertos, long sentenciasFallos, long sentenciasDesalojadas) {
+        this.tamanioMaximo = tamanioMaximo;
+        this.total = total;
+        this.activas = activas;
+        this.libres = libres;
+        this.esperando = esperando;
+        this.prestamos = prestamos;
+        this.timeouts = timeouts;
+        this.esperaTotalNanos = esperaTotalNanos;
+        this.esperaMaximaNanos = esperaMaximaNanos;
+        this.creadas = creadas;
+        this.cerradas = cerradas;
+        this.validacionesFallidas = validacionesFallidas;
+        this.fugasDetectadas = fugasDetectadas;
+        this.sentenciasAciertos = sentenciasAciertos;
+        this.sentenciasFallos = sentenciasFallos;
+        this.sentenciasDesalojadas = sentenciasDesalojadas;
+    }
+
+    // Getters
+    public int getTamanioMaximo() { return tamanioMaximo; }
+    public int getTotal() { return total; }
+    public int getActivas() { return activas; }
+    public int getLibres() { return libres; }
+    public int getEsperando() { return esperando; }
+    public long getPrestamos() { return prestamos; }
+    public long getTimeouts() { return timeouts; }
+    public long getEsperaTotalNanos() { return esperaTotalNanos; }
+    public long getEsperaMaximaNanos() { return esperaMaximaNanos; }
+    public long getCreadas() { return creadas; }
+    public long getCerradas() { return cerradas; }
+    public long getValidacionesFallidas() { return validacionesFallidas; }
+    public long getFugasDetectadas() { return fugasDetectadas; }
+    public long getSentenciasAciertos() { return sentenciasAciertos; }
+    public long getSentenciasFallos() { return sentenciasFallos; }
+    public long getSentenciasDesalojadas() { return sentenciasDesalojadas; }
+
+    /** Espera promedio para obtener una conexión, en microsegundos. */
+    public double getEsperaPromedioMicros() {
+        return prestamos == 0 ? 0 : esperaTotalNanos / 1000.0 / prestamos;
+    }
+
+    /** Proporción del pool en uso (0..1). */
+    public double getUso() {
+        return (double) activas / tamanioMaximo;
+    }
+
+    /** Proporción de prepareStatement resueltos por la cache de sentencias (0..1). */
+    public double getTasaAciertosSentencias() {
+        long total = sentenciasAciertos + sentenciasFallos;
+        return total == 0 ? 0 : (double) sentenciasAciertos / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Pool{max=%d, total=%d, activas=%d, libres=%d, esperando=%d, prestamos=%d, "
+                        + "timeouts=%d, esperaProm=%.1fµs, esperaMax=%.1fµs, creadas=%d, cerradas=%d, "
+                        + "validacionesFallidas=%d, fugas=%d, sentencias(aciertos=%d, fallos=%d, "
+                        + "desalojadas=%d, tasa=%.1f%%)}",
+                tamanioMaximo, total, activas, libres, esperando, prestamos, timeouts,
+                getEsperaPromedioMicros(), esperaMaximaNanos / 1000.0, creadas, cerradas,
+                validacionesFallidas, fugasDetectadas, sentenciasAciertos, sentenciasFallos,
+                sentenciasDesalojadas, getTasaAciertosSentencias() * 100);
+    }
+}
@@ -0,0 +1,134 @@
+package config;
+
+import migracion.MigradorEsquema;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Shards del catálogo: un pool por base de particion.shards y el anillo de hash consistente
+ * que asigna cada producto (por id) a un shard. Un producto y su código viven en el mismo shard.
+ *
+ * db.properties:
+ * <pre>
+ * particion.shards=s0,s1
+ * particion.shard.s0.url=jdbc:mysql://host0:3306/tfi_bd?...
+ * particion.shard.s1.url=jdbc:mysql://host1:3306/tfi_bd?...
+ * </pre>
+ * Usuario y contraseña: particion.shard.&lt;nombre&gt;.user/.password, o db.user/db.password.
+ * La secuencia de ids y el directorio de códigos quedan en la base de db.url.
+ */
+public final class Particiones {
+
+    private static volatile Particiones instancia;
+
+    private final List<String> nombres;
+    private final List<ConnectionPool> pools;
+    private final AnilloConsistente anillo;
+
+    private Particiones(List<String> nombres, List<ConnectionPool> pools, int nodosVirtuales) {
+        this.nombres = Collections.unmodifiableList(nombres);
+        this.pools = pools;
+        this.anillo = new AnilloConsistente(nombres, nodosVirtuales);
+    }
+
+    public static Particiones getInstancia() throws SQLException, IOException {
+        Particiones p = instancia;
+        if (p == null) {
+            synchronized (Particiones.class) {
+                p = instancia;
+                if (p == null) {
+                    p = crear(DatabaseConnection.getPropiedades());
+                    instancia = p;
+                    Runtime.getRuntime().addShutdownHook(new Thread(p::cerrar, "particiones-cierre"));
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * true si db.properties define particion.shards: los servicios usan ProductoDaoParticionado
+     * en lugar de la base única. Sin configuración legible, false.
+     */
+    public static boolean estanConfiguradas() {
+        try {
+            return !nombres(DatabaseConnection.getPropiedades()).isEmpty();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static List<String> nombres(Properties p) {
+        List<String> nombres = new ArrayList<>();
+        for (String nombre : p.getProperty("particion.shards", "").split(",")) {
+            if (!nombre.isBlank()) {
+                nombres.add(nombre.trim());
+            }
+        }
+        return nombres;
+    }
+
+    private static Particiones crear(Properties p) throws SQLException {
+        List<String> nombres = nombres(p);
+        if (nombres.isEmpty()) {
+            throw new SQLException("No hay shards configurados (particion.shards en db.properties).");
+        }
+        boolean migrar = Boolean.parseBoolean(p.getProperty("db.migraciones.automaticas", "true"));
+        List<ConnectionPool> pools = new ArrayList<>(nombres.size());
+        try {
+            for (String nombre : nombres) {
+                String prefijo = "particion.shard." + nombre + ".";
+                String url = p.getProperty(prefijo + "url");
+                if (url == null || url.isBlank()) {
+                    throw new SQLException("Falta " + prefijo + "url en db.properties.");
+                }
+                ConnectionPool pool = DatabaseConnection.crearPool(url,
+                        p.getProperty(prefijo + "user", p.getProperty("db.user")),
+                        p.getProperty(prefijo + "password", p.getProperty("db.password")), p);
+                pools.add(pool);
+                if (migrar) {
+                    try (Connection conn = pool.obtener()) {
+                        new MigradorEsquema().migrar(conn);
+                    }
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            pools.forEach(ConnectionPool::cerrar);
+            throw e;
+        }
+        return new Particiones(nombres, pools,
+                Integer.parseInt(p.getProperty("particion.nodosVirtuales", "160")));
+    }
+
+    public int getCantidad() {
+        return nombres.size();
+    }
+
+    public List<String> getNombres() {
+        return nombres;
+    }
+
+    /** Shard (0..getCantidad()-1) del producto con ese id. */
+    public int shardDe(long productoId) {
+        return anillo.shardDe(productoId);
+    }
+
+    /** Conexión del pool del shard. Al cerrarla vuelve al pool. */
+    public Connection getConnection(int shard) throws SQLException {
+        return pools.get(shard).obtener();
+    }
+
+    public EstadisticasPool getEstadisticas(int shard) {
+        return pools.get(shard).getEstadisticas();
+    }
+
+    private void cerrar() {
+        pools.forEach(ConnectionPool::cerrar);
+    }
+}
@@ -0,0 +1,123 @@
+package dao;
+
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mueve filas dadas de baja hace más de un límite a las tablas de archivo
+ * (codigo_barras_archivo, producto_archivo) y las borra de las tablas activas.
+ *
+ * Cada tramo se hace en dos pasos sobre la Connection externa (una transacción por tramo):
+ * primero se bloquean los ids del tramo (bloquear*), después copiar y borrar usan el mismo
+ * predicado acotado a (despuesDeId, hastaId], así afectan exactamente las filas bloqueadas.
+ */
+public class ArchivoBajasDao {
+
+    private static final String BLOQUEAR_CODIGOS_SQL = "SELECT id FROM codigo_barras "
+            + "WHERE eliminado = true AND fecha_baja < ? AND id > ? ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String COPIAR_CODIGOS_SQL = "INSERT INTO codigo_barras_archivo "
+            + "(id, producto_id, tipo, valor, fecha_asignacion, observaciones, fecha_baja, fecha_archivo) "
+            + "SELECT id, producto_id, tipo, valor, fecha_asignacion, observaciones, fecha_baja, NOW() "
+            + "FROM codigo_barras WHERE eliminado = true AND fecha_baja < ? AND id > ? AND id <= ?";
+    private static final String BORRAR_CODIGOS_SQL = "DELETE FROM codigo_barras "
+            + "WHERE eliminado = true AND fecha_baja < ? AND id > ? AND id <= ?";
+
+    // Un producto se archiva sólo cuando ya no le queda ningún código (ni activo ni sin archivar):
+    // así el ON DELETE CASCADE de fk_cb_producto nunca borra un código sin pasar por el archivo.
+    private static final String SIN_CODIGOS = " AND NOT EXISTS (SELECT 1 FROM codigo_barras c WHERE c.producto_id = producto.id)";
+    private static final String BLOQUEAR_PRODUCTOS_SQL = "SELECT id FROM producto "
+            + "WHERE eliminado = true AND fecha_baja < ? AND id > ?" + SIN_CODIGOS + " ORDER BY id LIMIT ? FOR UPDATE";
+    private static final String COPIAR_PRODUCTOS_SQL = "INSERT INTO producto_archivo "
+            + "(id, nombre, marca, categoria, precio, peso, fecha_baja, fecha_archivo) "
+            + "SELECT id, nombre, marca, categoria, precio, peso, fecha_baja, NOW() "
+            + "FROM producto WHERE eliminado = true AND fecha_baja < ? AND id > ? AND id <= ?" + SIN_CODIGOS;
+    private static final String BORRAR_PRODUCTOS_SQL = "DELETE FROM producto "
+            + "WHERE eliminado = true AND fecha_baja < ? AND id > ? AND id <= ?" + SIN_CODIGOS;
+
+    private static final Histograma LAT_CODIGOS = RegistroMetricas.latencia("dao.archivo.codigos");
+    private static final Histograma LAT_PRODUCTOS = RegistroMetricas.latencia("dao.archivo.productos");
+
+    // =======================================================
+    // CÓDIGOS DE BARRAS
+    // =======================================================
+
+    /**
+     * Bloquea (FOR UPDATE) hasta {@code tamanio} códigos archivables con id mayor a {@code despuesDeId}.
+     * @return Ids bloqueados, en orden.
+     */
+    public List<Long> bloquearCodigos(LocalDateTime limite, long despuesDeId, int tamanio, Connection conn)
+            throws SQLException {
+        return bloquear(BLOQUEAR_CODIGOS_SQL, limite, despuesDeId, tamanio, conn);
+    }
+
+    /**
+     * Copia al archivo y borra los códigos archivables con id en (despuesDeId, hastaId].
+     * @return Filas movidas.
+     */
+    public int moverCodigos(LocalDateTime limite, long despuesDeId, long hastaId, Connection conn) throws SQLException {
+        return mover(COPIAR_CODIGOS_SQL, BORRAR_CODIGOS_SQL, limite, despuesDeId, hastaId, conn, LAT_CODIGOS);
+    }
+
+    // =======================================================
+    // PRODUCTOS
+    // =======================================================
+
+    public List<Long> bloquearProductos(LocalDateTime limite, long despuesDeId, int tamanio, Connection conn)
+            throws SQLException {
+        return bloquear(BLOQUEAR_PRODUCTOS_SQL, limite, despuesDeId, tamanio, conn);
+    }
+
+    public int moverProductos(LocalDateTime limite, long despuesDeId, long hastaId, Connection conn) throws SQLException {
+        return mover(COPIAR_PRODUCTOS_SQL, BORRAR_PRODUCTOS_SQL, limite, despuesDeId, hastaId, conn, LAT_PRODUCTOS);
+    }
+
+    // =======================================================
+    // AUXILIARES
+    // =======================================================
+
+    private List<Long> bloquear(String sql, LocalDateTime limite, long despuesDeId, int tamanio, Connection conn)
+            throws SQLException {
+        List<Long> ids = new ArrayList<>(tamanio);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(limite));
+            ps.setLong(2, despuesDeId);
+            ps.setInt(3, tamanio);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    ids.add(rs.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private int mover(String copiarSql, String borrarSql, LocalDateTime limite, long despuesDeId, long hastaId,
+                      Connection conn, Histograma latencia) throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            int copiadas = ejecutar(copiarSql, limite, despuesDeId, hastaId, conn);
+            int borradas = ejecutar(borrarSql, limite, despuesDeId, hastaId, conn);
+            if (copiadas != borradas) {
+                throw new SQLException("Archivo inconsistente: " + copiadas + " filas copiadas y " + borradas + " borradas.");
+            }
+            return borradas;
+        } finally {
+            latencia.registrarDesde(inicio);
+        }
+    }
+
+    private int ejecutar(String sql, LocalDateTime limite, long despuesDeId, long hastaId, Connection conn)
+            throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setTimestamp(1, Timestamp.valueOf(limite));
+            ps.setLong(2, despuesDeId);
+            ps.setLong(3, hastaId);
+            return ps.executeUpdate();
+        }
+    }
+}
@@ -3,12 +3,15 @@ package dao;
 import config.DatabaseConnection;
 import entities.CodigoBarras;
 import entities.TipoCodigo;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
 
 import java.io.IOException;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 // Asumimos que GenericDao<T> tiene al menos: crear(T), leer(long), leerTodos(), actualizar(T), eliminar(long)
 public class CodigoBarrasDaoImpl implements GenericDao<CodigoBarras> {
@@ -17,68 +20,241 @@ public class CodigoBarrasDaoImpl implements GenericDao<CodigoBarras> {
     private static final String SELECT_BY_VALOR_SQL = "SELECT * FROM codigo_barras WHERE valor = ? AND eliminado = false";
     private static final String SELECT_BY_PRODUCTO_SQL = "SELECT * FROM codigo_barras WHERE producto_id = ? AND eliminado = false";
     private static final String SELECT_BY_TIPO_SQL = "SELECT * FROM codigo_barras WHERE tipo = ? AND eliminado = false";
+    // Unicidad: uq_cb_valor también cubre las filas dadas de baja
+    private static final String EXISTE_VALOR_SQL = "SELECT 1 FROM codigo_barras WHERE valor = ?";
+    // Las dos recorren un índice entero sin leer las filas (índice de cobertura, type = index)
+    @RecorridoCompleto("carga del filtro de códigos: todos los valores, incluidas las bajas")
+    private static final String SELECT_VALORES_SQL = "SELECT valor FROM codigo_barras";
+    @RecorridoCompleto("dimensiona el filtro de códigos antes de cargarlo")
+    private static final String CONTAR_VALORES_SQL = "SELECT COUNT(*) FROM codigo_barras";
     
     // Consultas SQL del CRUD
     private static final String INSERT_SQL = "INSERT INTO codigo_barras (producto_id, tipo, valor, fecha_asignacion, observaciones, eliminado) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_CON_ID_SQL = "INSERT INTO codigo_barras (producto_id, tipo, valor, fecha_asignacion, observaciones, eliminado, id) VALUES (?, ?, ?, ?, ?, ?, ?)";
     private static final String SELECT_BY_ID_SQL = "SELECT * FROM codigo_barras WHERE id = ? AND eliminado = false";
+    @RecorridoCompleto("listado completo de activos")
     private static final String SELECT_ALL_SQL = "SELECT * FROM codigo_barras WHERE eliminado = false";
-    private static final String UPDATE_SQL = "UPDATE codigo_barras SET producto_id = ?, tipo = ?, valor = ?, fecha_asignacion = ?, observaciones = ?, eliminado = ? WHERE id = ?";
-    private static final String DELETE_SQL = "UPDATE codigo_barras SET eliminado = true WHERE id = ?"; // Baja lógica
+    // MySQL asigna de izquierda a derecha: fecha_baja ve el valor nuevo de eliminado.
+    // Concurrencia optimista: sólo escribe si la fila sigue en la versión leída (un version null no controla)
+    private static final String UPDATE_SQL = "UPDATE codigo_barras SET producto_id = ?, tipo = ?, valor = ?, fecha_asignacion = ?, observaciones = ?, eliminado = ?, "
+            + "fecha_baja = IF(eliminado, IFNULL(fecha_baja, NOW()), NULL), version = version + 1 WHERE id = ? AND version = IFNULL(?, version)";
+    private static final String DELETE_SQL = "UPDATE codigo_barras SET eliminado = true, fecha_baja = NOW(), version = version + 1 WHERE id = ?"; // Baja lógica (fecha_baja la usa ArchivadorBajas)
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM codigo_barras WHERE id = ?";
+    // Sincronización, sólo para códigos que ya existen (y que la transacción tiene bloqueados): la
+    // clave es uq_cb_valor; el código conserva su producto y su fecha de asignación si el feed no
+    // trae una. Los nuevos van por INSERT_SQL. VALUES() permite que Connector/J reescriba el lote.
+    private static final String UPSERT_SQL = INSERT_SQL + " ON DUPLICATE KEY UPDATE tipo = VALUES(tipo), "
+            + "fecha_asignacion = IFNULL(VALUES(fecha_asignacion), fecha_asignacion), observaciones = VALUES(observaciones), "
+            + "eliminado = VALUES(eliminado), fecha_baja = IF(eliminado, IFNULL(fecha_baja, NOW()), NULL), version = version + 1";
+
+    // Paginación keyset (id > ? ORDER BY id LIMIT ?)
+    private static final String SELECT_PAGINA_SQL = "SELECT * FROM codigo_barras WHERE eliminado = false AND id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_BY_TIPO_PAGINA_SQL = "SELECT * FROM codigo_barras WHERE tipo = ? AND eliminado = false AND id > ? ORDER BY id LIMIT ?";
+
+    // Métricas de latencia por operación y filas por consulta (ver RegistroMetricas)
+    private static final Histograma LAT_BUSCAR_POR_VALOR = RegistroMetricas.latencia("dao.codigo.buscarPorValor");
+    private static final Histograma LAT_EXISTE_VALOR = RegistroMetricas.latencia("dao.codigo.existeValor");
+    private static final Histograma LAT_BUSCAR_POR_PRODUCTO = RegistroMetricas.latencia("dao.codigo.buscarPorProductoId");
+    private static final Histograma LAT_BUSCAR_POR_TIPO = RegistroMetricas.latencia("dao.codigo.buscarPorTipo");
+    private static final Histograma LAT_BUSCAR_POR_TIPO_PAGINA = RegistroMetricas.latencia("dao.codigo.buscarPorTipoPagina");
+    private static final Histograma LAT_LEER_PAGINA = RegistroMetricas.latencia("dao.codigo.leerPagina");
+    private static final Histograma LAT_CREAR = RegistroMetricas.latencia("dao.codigo.crear");
+    private static final Histograma LAT_LEER = RegistroMetricas.latencia("dao.codigo.leer");
+    private static final Histograma LAT_LEER_TODOS = RegistroMetricas.latencia("dao.codigo.leerTodos");
+    private static final Histograma LAT_ACTUALIZAR = RegistroMetricas.latencia("dao.codigo.actualizar");
+    private static final Histograma LAT_ELIMINAR = RegistroMetricas.latencia("dao.codigo.eliminar");
+    private static final Histograma LAT_LOTE = RegistroMetricas.latencia("dao.codigo.lote");
+    private static final Histograma FILAS = RegistroMetricas.valores("dao.codigo.filas");
+
+    private int tamanioLote = TAMANIO_LOTE_POR_DEFECTO;
 
     // =======================================================
     // MÉTODOS DE BÚSQUEDA OPTIMIZADA
     // =======================================================
 
     public CodigoBarras buscarPorValor(String valor) throws SQLException {
-        // ... (código interno igual, busca y mapea el ResultSet)
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_VALOR_SQL)) {
-            
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return buscarPorValor(valor, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión para buscarPorValor", e);
+        }
+    }
+
+    public CodigoBarras buscarPorValor(String valor, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_VALOR_SQL)) {
             ps.setString(1, valor);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     return mapResultSet(rs);
                 }
             }
-        } catch (IOException e) {
-            throw new SQLException("Error al obtener conexión para buscarPorValor", e);
+        } finally {
+            LAT_BUSCAR_POR_VALOR.registrarDesde(inicio);
         }
         return null;
     }
 
+    /**
+     * true si alguna fila (activa o dada de baja) tiene ese valor, es decir, si uq_cb_valor
+     * rechazaría un alta con él. Lee del primario: es la verificación previa a escribir.
+     */
+    public boolean existeValor(String valor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return existeValor(valor, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    public boolean existeValor(String valor, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(EXISTE_VALOR_SQL)) {
+            ps.setString(1, valor);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        } finally {
+            LAT_EXISTE_VALOR.registrarDesde(inicio);
+        }
+    }
+
+    /** Cantidad de filas (activas y dadas de baja): dimensiona el filtro de valores. */
+    public long contarValores() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(CONTAR_VALORES_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
     public List<CodigoBarras> buscarPorProductoId(Long productoId) throws SQLException {
-        // ... (código interno igual, busca y mapea el ResultSet)
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return buscarPorProductoId(productoId, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión para buscarPorProductoId", e);
+        }
+    }
+
+    public List<CodigoBarras> buscarPorProductoId(Long productoId, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         List<CodigoBarras> lista = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_PRODUCTO_SQL)) {
-            
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_PRODUCTO_SQL)) {
             ps.setLong(1, productoId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     lista.add(mapResultSet(rs));
                 }
             }
-        } catch (IOException e) {
-            throw new SQLException("Error al obtener conexión para buscarPorProductoId", e);
+        } finally {
+            LAT_BUSCAR_POR_PRODUCTO.registrarDesde(inicio);
         }
+        FILAS.registrar(lista.size());
         return lista;
     }
 
     public List<CodigoBarras> buscarPorTipo(TipoCodigo tipo) throws SQLException {
-        // ... (código interno igual, busca y mapea el ResultSet)
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return buscarPorTipo(tipo, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión para buscarPorTipo", e);
+        }
+    }
+
+    public List<CodigoBarras> buscarPorTipo(TipoCodigo tipo, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         List<CodigoBarras> lista = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_TIPO_SQL)) {
-            
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_TIPO_SQL)) {
             ps.setString(1, tipo.name()); // Guardamos el enum como String
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     lista.add(mapResultSet(rs));
                 }
             }
+        } finally {
+            LAT_BUSCAR_POR_TIPO.registrarDesde(inicio);
+        }
+        FILAS.registrar(lista.size());
+        return lista;
+    }
+
+    // =======================================================
+    // LECTURA EN STREAMING Y POR PÁGINAS (memoria constante)
+    // =======================================================
+
+    /**
+     * Recorre todos los códigos activos con un cursor del servidor.
+     * Usar con try-with-resources: el Stream retiene la conexión hasta cerrarse.
+     */
+    public Stream<CodigoBarras> streamTodos() throws SQLException {
+        return ResultSetStream.abrir(SELECT_ALL_SQL, null, this::mapResultSet, FILAS);
+    }
+
+    /**
+     * Todos los valores, incluidos los dados de baja (carga de cache.FiltroCodigos). Lee del
+     * primario: un valor que falte por retraso de una réplica sería un falso negativo.
+     */
+    public Stream<String> streamValores() throws SQLException {
+        return ResultSetStream.abrir(SELECT_VALORES_SQL, null, rs -> rs.getString(1), FILAS, true);
+    }
+
+    public Stream<CodigoBarras> streamPorTipo(TipoCodigo tipo) throws SQLException {
+        return ResultSetStream.abrir(SELECT_BY_TIPO_SQL, ps -> ps.setString(1, tipo.name()), this::mapResultSet, FILAS);
+    }
+
+    /**
+     * Página de códigos activos con id mayor a {@code despuesDeId}, ordenada por id.
+     */
+    public List<CodigoBarras> leerPagina(long despuesDeId, int limite) throws SQLException {
+        long inicio = System.nanoTime();
+        List<CodigoBarras> lista = new ArrayList<>(limite);
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement ps = conn.prepareStatement(SELECT_PAGINA_SQL)) {
+
+            ps.setLong(1, despuesDeId);
+            ps.setInt(2, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapResultSet(rs));
+                }
+            }
         } catch (IOException e) {
-            throw new SQLException("Error al obtener conexión para buscarPorTipo", e);
+            throw new SQLException("Error al obtener conexión para leerPagina", e);
+        } finally {
+            LAT_LEER_PAGINA.registrarDesde(inicio);
+        }
+        FILAS.registrar(lista.size());
+        return lista;
+    }
+
+    public List<CodigoBarras> buscarPorTipoPagina(TipoCodigo tipo, long despuesDeId, int limite) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return buscarPorTipoPagina(tipo, despuesDeId, limite, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión para buscarPorTipoPagina", e);
+        }
+    }
+
+    public List<CodigoBarras> buscarPorTipoPagina(TipoCodigo tipo, long despuesDeId, int limite, Connection conn)
+            throws SQLException {
+        long inicio = System.nanoTime();
+        List<CodigoBarras> lista = new ArrayList<>(limite);
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_TIPO_PAGINA_SQL)) {
+            ps.setString(1, tipo.name());
+            ps.setLong(2, despuesDeId);
+            ps.setInt(3, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapResultSet(rs));
+                }
+            }
+        } finally {
+            LAT_BUSCAR_POR_TIPO_PAGINA.registrarDesde(inicio);
         }
+        FILAS.registrar(lista.size());
         return lista;
     }
 
@@ -93,18 +269,14 @@ public class CodigoBarrasDaoImpl implements GenericDao<CodigoBarras> {
 
     // Eliminamos @Override aquí, ya que la firma de la interfaz solo suele tener crear(T entidad)
     public void crear(CodigoBarras entidad, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         boolean closeConn = (conn == null);
         try {
             if (closeConn) {
                 conn = DatabaseConnection.getConnection();
             }
             try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
-                ps.setLong(1, entidad.getProductoId());
-                ps.setString(2, entidad.getTipo().name());
-                ps.setString(3, entidad.getValor());
-                ps.setDate(4, Date.valueOf(entidad.getFechaAsignacion()));
-                ps.setString(5, entidad.getObservaciones());
-                ps.setBoolean(6, entidad.getEliminado()); // 🚨 CORREGIDO: Usamos getEliminado()
+                setParametros(ps, entidad);
                 ps.executeUpdate();
 
                 try (ResultSet rs = ps.getGeneratedKeys()) {
@@ -112,48 +284,79 @@ public class CodigoBarrasDaoImpl implements GenericDao<CodigoBarras> {
                         entidad.setId(rs.getLong(1));
                     }
                 }
+                entidad.setVersion(0L);
             }
         } catch (IOException e) {
             throw new SQLException("Error al obtener conexión", e);
         } finally {
+            LAT_CREAR.registrarDesde(inicio);
             if (closeConn && conn != null) {
                 conn.close();
             }
         }
     }
 
+    /** Inserta con el id que ya trae la entidad (asignado por GeneradorIds), sobre la transacción del llamador. */
+    public void crearConId(CodigoBarras entidad, Connection conn) throws SQLException {
+        if (entidad.getId() == null) {
+            throw new SQLException("El código de barras no tiene id asignado.");
+        }
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_CON_ID_SQL)) {
+            setParametros(ps, entidad);
+            ps.setLong(7, entidad.getId());
+            ps.executeUpdate();
+            entidad.setVersion(0L);
+        } finally {
+            LAT_CREAR.registrarDesde(inicio);
+        }
+    }
+
     @Override
     public CodigoBarras leer(long id) throws SQLException {
-        // ... (código interno igual, busca y mapea el ResultSet)
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID_SQL)) {
-            
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return leer(id, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    public CodigoBarras leer(long id, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID_SQL)) {
             ps.setLong(1, id);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     return mapResultSet(rs);
                 }
             }
-        } catch (IOException e) {
-            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_LEER.registrarDesde(inicio);
         }
         return null;
     }
 
     @Override
     public List<CodigoBarras> leerTodos() throws SQLException {
-        // ... (código interno igual, busca y mapea el ResultSet)
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return leerTodos(conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    public List<CodigoBarras> leerTodos(Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         List<CodigoBarras> lista = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_ALL_SQL);
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_ALL_SQL);
              ResultSet rs = ps.executeQuery()) {
-            
             while (rs.next()) {
                 lista.add(mapResultSet(rs));
             }
-        } catch (IOException e) {
-            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_LEER_TODOS.registrarDesde(inicio);
         }
+        FILAS.registrar(lista.size());
         return lista;
     }
 
@@ -162,26 +365,25 @@ public class CodigoBarrasDaoImpl implements GenericDao<CodigoBarras> {
         actualizar(entidad, null);
     }
     
-    // Eliminamos @Override aquí
+    /**
+     * Actualiza si la fila sigue en {@code entidad.getVersion()} y avanza la versión del objeto.
+     * @throws ConflictoVersionException Si otra transacción la modificó desde que se leyó.
+     */
     public void actualizar(CodigoBarras entidad, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         boolean closeConn = (conn == null);
         try {
             if (closeConn) {
                 conn = DatabaseConnection.getConnection();
             }
             try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
-                ps.setLong(1, entidad.getProductoId());
-                ps.setString(2, entidad.getTipo().name());
-                ps.setString(3, entidad.getValor());
-                ps.setDate(4, Date.valueOf(entidad.getFechaAsignacion()));
-                ps.setString(5, entidad.getObservaciones());
-                ps.setBoolean(6, entidad.getEliminado()); // 🚨 CORREGIDO: Usamos getEliminado()
-                ps.setLong(7, entidad.getId());
-                ps.executeUpdate();
+                setParametrosUpdate(ps, entidad);
+                verificarVersion(ps.executeUpdate(), entidad, conn);
             }
         } catch (IOException e) {
             throw new SQLException("Error al obtener conexión", e);
         } finally {
+            LAT_ACTUALIZAR.registrarDesde(inicio);
             if (closeConn && conn != null) {
                 conn.close();
             }
@@ -195,6 +397,7 @@ public class CodigoBarrasDaoImpl implements GenericDao<CodigoBarras> {
     
     // Eliminamos @Override aquí
     public void eliminar(long id, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         boolean closeConn = (conn == null);
         try {
             if (closeConn) {
@@ -207,29 +410,231 @@ public class CodigoBarrasDaoImpl implements GenericDao<CodigoBarras> {
         } catch (IOException e) {
             throw new SQLException("Error al obtener conexión", e);
         } finally {
+            LAT_ELIMINAR.registrarDesde(inicio);
+            if (closeConn && conn != null) {
+                conn.close();
+            }
+        }
+    }
+
+    // =======================================================
+    // OPERACIONES EN LOTE (addBatch / executeBatch por tramos)
+    // =======================================================
+
+    @Override
+    public void crearLote(List<CodigoBarras> codigos, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        boolean closeConn = (conn == null);
+        try {
+            if (closeConn) {
+                conn = DatabaseConnection.getConnection();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                int desde = 0;
+                for (int i = 0; i < codigos.size(); i++) {
+                    setParametros(ps, codigos.get(i));
+                    ps.addBatch();
+                    if (i - desde + 1 == tamanioLote || i == codigos.size() - 1) {
+                        ps.executeBatch();
+                        // Las claves generadas vuelven en el mismo orden del lote
+                        try (ResultSet rs = ps.getGeneratedKeys()) {
+                            for (int j = desde; j <= i && rs.next(); j++) {
+                                codigos.get(j).setId(rs.getLong(1));
+                                codigos.get(j).setVersion(0L);
+                            }
+                        }
+                        desde = i + 1;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_LOTE.registrarDesde(inicio);
+            if (closeConn && conn != null) {
+                conn.close();
+            }
+        }
+    }
+
+    @Override
+    public void actualizarLote(List<CodigoBarras> codigos, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        boolean closeConn = (conn == null);
+        try {
+            if (closeConn) {
+                conn = DatabaseConnection.getConnection();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+                int desde = 0;
+                for (int i = 0; i < codigos.size(); i++) {
+                    setParametrosUpdate(ps, codigos.get(i));
+                    ps.addBatch();
+                    if (i - desde + 1 == tamanioLote || i == codigos.size() - 1) {
+                        int[] filas = ps.executeBatch();
+                        for (int j = desde; j <= i; j++) {
+                            verificarVersion(filas[j - desde], codigos.get(j), conn);
+                        }
+                        desde = i + 1;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_LOTE.registrarDesde(inicio);
+            if (closeConn && conn != null) {
+                conn.close();
+            }
+        }
+    }
+
+    /**
+     * Inserta los códigos nuevos y actualiza los existentes por valor (INSERT ... ON DUPLICATE KEY
+     * UPDATE sobre uq_cb_valor), sin control optimista. Con rewriteBatchedStatements cada tramo de
+     * tamanioLote filas viaja como una sola sentencia multi-fila; no asigna ids.
+     * Ojo: uq_cb_producto también dispara el UPDATE, así que el producto_id de un código nuevo
+     * debe ser de un producto sin código.
+     */
+    public void upsertLote(List<CodigoBarras> codigos, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+            int pendientes = 0;
+            for (CodigoBarras cb : codigos) {
+                setParametros(ps, cb);
+                ps.addBatch();
+                if (++pendientes == tamanioLote) {
+                    ps.executeBatch();
+                    pendientes = 0;
+                }
+            }
+            if (pendientes > 0) {
+                ps.executeBatch();
+            }
+        } finally {
+            LAT_LOTE.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void eliminarLote(List<Long> ids, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        boolean closeConn = (conn == null);
+        try {
+            if (closeConn) {
+                conn = DatabaseConnection.getConnection();
+            }
+            try (PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+                int pendientes = 0;
+                for (Long id : ids) {
+                    ps.setLong(1, id);
+                    ps.addBatch();
+                    if (++pendientes == tamanioLote) {
+                        ps.executeBatch();
+                        pendientes = 0;
+                    }
+                }
+                if (pendientes > 0) {
+                    ps.executeBatch();
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_LOTE.registrarDesde(inicio);
             if (closeConn && conn != null) {
                 conn.close();
             }
         }
     }
 
-    // Método auxiliar de mapeo de resultados
-    private CodigoBarras mapResultSet(ResultSet rs) throws SQLException {
+    @Override
+    public int getTamanioLote() {
+        return tamanioLote;
+    }
+
+    @Override
+    public void setTamanioLote(int tamanioLote) {
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo.");
+        }
+        this.tamanioLote = tamanioLote;
+    }
+
+    // Parámetros 1..6 comunes a INSERT_SQL y UPDATE_SQL
+    private void setParametros(PreparedStatement ps, CodigoBarras entidad) throws SQLException {
+        ps.setLong(1, entidad.getProductoId());
+        ps.setString(2, entidad.getTipo().name());
+        ps.setString(3, entidad.getValor());
+        if (entidad.getFechaAsignacion() != null) {
+            ps.setDate(4, Date.valueOf(entidad.getFechaAsignacion()));
+        } else {
+            ps.setNull(4, Types.DATE);
+        }
+        ps.setString(5, entidad.getObservaciones());
+        ps.setBoolean(6, entidad.getEliminado()); // 🚨 CORREGIDO: Usamos getEliminado()
+    }
+
+    private void setParametrosUpdate(PreparedStatement ps, CodigoBarras entidad) throws SQLException {
+        setParametros(ps, entidad);
+        ps.setLong(7, entidad.getId());
+        if (entidad.getVersion() != null) {
+            ps.setLong(8, entidad.getVersion());
+        } else {
+            ps.setNull(8, Types.BIGINT);
+        }
+    }
+
+    // 0 filas con versión esperada = otra transacción ganó; el llamador hace rollback
+    private void verificarVersion(int filas, CodigoBarras entidad, Connection conn) throws SQLException {
+        if (entidad.getVersion() == null) {
+            return;
+        }
+        if (filas == 0) {
+            Long actual = null;
+            try (PreparedStatement ps = conn.prepareStatement(SELECT_VERSION_SQL)) {
+                ps.setLong(1, entidad.getId());
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        actual = rs.getLong(1);
+                    }
+                }
+            }
+            throw new ConflictoVersionException("codigo_barras", entidad.getId(), entidad.getVersion(), actual);
+        }
+        entidad.setVersion(entidad.getVersion() + 1);
+    }
+
+    // Método auxiliar de mapeo de resultados (package-private para los benchmarks de src/jmh)
+    CodigoBarras mapResultSet(ResultSet rs) throws SQLException {
+        return mapResultSet(rs, "");
+    }
+
+    /**
+     * Mapea las columnas de codigo_barras con un prefijo de alias (p. ej. "cb_" en los JOIN
+     * de ProductoDaoImpl). Devuelve null si el id es NULL (LEFT JOIN sin código).
+     */
+    static CodigoBarras mapResultSet(ResultSet rs, String prefijo) throws SQLException {
+        long id = rs.getLong(prefijo + "id");
+        if (rs.wasNull()) {
+            return null;
+        }
         CodigoBarras cb = new CodigoBarras();
-        cb.setId(rs.getLong("id"));
-        cb.setProductoId(rs.getLong("producto_id"));
-        cb.setTipo(TipoCodigo.valueOf(rs.getString("tipo")));
-        cb.setValor(rs.getString("valor"));
+        cb.setId(id);
+        cb.setProductoId(rs.getLong(prefijo + "producto_id"));
+        cb.setTipo(TipoCodigo.valueOf(rs.getString(prefijo + "tipo")));
+        cb.setValor(rs.getString(prefijo + "valor"));
         
-        Date fechaSQL = rs.getDate("fecha_asignacion");
+        Date fechaSQL = rs.getDate(prefijo + "fecha_asignacion");
         if (fechaSQL != null) {
             cb.setFechaAsignacion(fechaSQL.toLocalDate());
         } else {
             cb.setFechaAsignacion(null);
         }
         
-        cb.setObservaciones(rs.getString("observaciones"));
-        cb.setEliminado(rs.getBoolean("eliminado"));
+        cb.setObservaciones(rs.getString(prefijo + "observaciones"));
+        cb.setEliminado(rs.getBoolean(prefijo + "eliminado"));
+        cb.setVersion(rs.getLong(prefijo + "version"));
         return cb;
     }
 }
\ No newline at end of file
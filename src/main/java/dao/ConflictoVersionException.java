@@ -0,0 +1,46 @@
+package dao;
+
+import java.sql.SQLException;
+
+/**
+ * La fila cambió (u otra transacción la dio de baja definitiva) desde que se leyó: el UPDATE
+ * con {@code WHERE id = ? AND version = ?} no encontró la versión esperada y no modificó nada.
+ *
+ * No se pierde ninguna escritura; hay que volver a leer, reaplicar el cambio y reintentar
+ * (ver service.ReintentoOptimista).
+ */
+public class ConflictoVersionException extends SQLException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String tabla;
+    private final long id;
+    private final long versionEsperada;
+    private final Long versionActual;
+
+    public ConflictoVersionException(String tabla, long id, long versionEsperada, Long versionActual) {
+        super("Conflicto de versión en " + tabla + " id=" + id + ": se esperaba la versión " + versionEsperada
+                + (versionActual == null ? " y la fila ya no existe." : " y la actual es " + versionActual + "."));
+        this.tabla = tabla;
+        this.id = id;
+        this.versionEsperada = versionEsperada;
+        this.versionActual = versionActual;
+    }
+
+    public String getTabla() {
+        return tabla;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getVersionEsperada() {
+        return versionEsperada;
+    }
+
+    /** Versión que tiene hoy la fila, o null si ya no existe. */
+    public Long getVersionActual() {
+        return versionActual;
+    }
+}
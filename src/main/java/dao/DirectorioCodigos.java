@@ -0,0 +1,153 @@
+package dao;
+
+import config.DatabaseConnection;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.stream.Stream;
+
+/**
+ * Directorio global valor de código → id de producto (tabla directorio_codigo en la base de
+ * db.url). Con shards, uq_cb_valor sólo es única dentro de cada uno: la PK del directorio es
+ * la que impide repetir un valor entre shards, y buscarPorValor la usa para ir directo al
+ * shard del producto (que sale del id, así el directorio no cambia si se reparten los shards).
+ *
+ * Una reserva cuyo producto no tiene el código en su shard (el proceso cayó entre la reserva y
+ * el commit) la puede tomar otra alta. Para que eso no le quite el valor a una alta que está
+ * confirmando, ProductoDaoParticionado confirma el shard con la fila del directorio bloqueada
+ * (bloquear) y la toma de una reserva se decide con ese mismo bloqueo.
+ */
+public class DirectorioCodigos {
+
+    private static final String RESERVAR_SQL = "INSERT INTO directorio_codigo (valor, producto_id) VALUES (?, ?)";
+    private static final String BUSCAR_SQL = "SELECT producto_id FROM directorio_codigo WHERE valor = ?";
+    private static final String LIBERAR_SQL = "DELETE FROM directorio_codigo WHERE valor = ? AND producto_id = ?";
+    private static final String BLOQUEAR_SQL = "SELECT producto_id FROM directorio_codigo WHERE valor = ? FOR UPDATE";
+    private static final String REASIGNAR_SQL = "UPDATE directorio_codigo SET producto_id = ? WHERE valor = ?";
+    // Carga del filtro de códigos con shards: recorren la clave primaria (type = index)
+    @RecorridoCompleto("carga del filtro de códigos con shards: todos los valores")
+    private static final String SELECT_VALORES_SQL = "SELECT valor FROM directorio_codigo";
+    @RecorridoCompleto("dimensiona el filtro de códigos antes de cargarlo")
+    private static final String CONTAR_SQL = "SELECT COUNT(*) FROM directorio_codigo";
+
+    private static final Histograma LAT_BUSCAR = RegistroMetricas.latencia("dao.directorio.buscar");
+    private static final Histograma FILAS = RegistroMetricas.valores("dao.directorio.filas");
+
+    /**
+     * Reserva {@code valor} para el producto.
+     * @throws java.sql.SQLIntegrityConstraintViolationException Si el valor ya tiene dueño.
+     */
+    public void reservar(String valor, long productoId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(RESERVAR_SQL)) {
+            ps.setString(1, valor);
+            ps.setLong(2, productoId);
+            ps.executeUpdate();
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    /** Id del producto dueño del valor, o null si no está registrado. */
+    public Long buscar(String valor) throws SQLException {
+        long inicio = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement ps = conn.prepareStatement(BUSCAR_SQL)) {
+            ps.setString(1, valor);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_BUSCAR.registrarDesde(inicio);
+        }
+    }
+
+    /** Libera el valor si sigue reservado para ese producto (compensación o cambio de valor). */
+    public void liberar(String valor, long productoId) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(LIBERAR_SQL)) {
+            ps.setString(1, valor);
+            ps.setLong(2, productoId);
+            ps.executeUpdate();
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    // =======================================================
+    // BLOQUEO DE UNA RESERVA (confirmación y toma)
+    // =======================================================
+
+    /**
+     * Conexión en una transacción sobre la base del directorio. Cerrarla sin commit deshace lo
+     * hecho y suelta los bloqueos.
+     */
+    public Connection abrirTransaccion() throws SQLException {
+        try {
+            Connection conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            return conn;
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    /** Bloquea la fila de {@code valor} hasta el fin de la transacción de {@code conn} y devuelve su dueño (null si no hay). */
+    public Long bloquear(String valor, Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(BLOQUEAR_SQL)) {
+            ps.setString(1, valor);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    /** reservar dentro de la transacción de {@code conn}. */
+    public void reservar(String valor, long productoId, Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(RESERVAR_SQL)) {
+            ps.setString(1, valor);
+            ps.setLong(2, productoId);
+            ps.executeUpdate();
+        }
+    }
+
+    /** Pasa el valor a otro producto; la fila debe estar bloqueada por {@code conn}. */
+    public void reasignar(String valor, long productoId, Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(REASIGNAR_SQL)) {
+            ps.setLong(1, productoId);
+            ps.setString(2, valor);
+            ps.executeUpdate();
+        }
+    }
+
+    // =======================================================
+    // CARGA DEL FILTRO DE VALORES
+    // =======================================================
+
+    /** Cantidad de valores reservados (todos los shards). */
+    public long contar() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement ps = conn.prepareStatement(CONTAR_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    /**
+     * Todos los valores reservados, del primario. Una reserva sin código sólo agrega un falso
+     * positivo al filtro. Usar con try-with-resources.
+     */
+    public Stream<String> streamValores() throws SQLException {
+        return ResultSetStream.abrir(SELECT_VALORES_SQL, null, rs -> rs.getString(1), FILAS, true);
+    }
+}
@@ -0,0 +1,112 @@
+package dao;
+
+import entities.Producto;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.text.Collator;
+import java.util.Locale;
+
+/**
+ * Filtro sobre productos activos para operaciones masivas (p. ej. ajuste de precios).
+ * Sin condiciones abarca todo el catálogo activo.
+ *
+ * <pre>
+ * FiltroProductos f = new FiltroProductos().categoria("Bebidas").precioHasta(5000);
+ * </pre>
+ */
+public class FiltroProductos {
+
+    private String categoria;
+    private String marca;
+    private Double precioDesde;
+    private Double precioHasta;
+    private Collator collator; // sólo para coincide()
+
+    public FiltroProductos categoria(String categoria) {
+        this.categoria = categoria;
+        return this;
+    }
+
+    public FiltroProductos marca(String marca) {
+        this.marca = marca;
+        return this;
+    }
+
+    /** Precio mayor o igual a {@code desde}. */
+    public FiltroProductos precioDesde(double desde) {
+        this.precioDesde = desde;
+        return this;
+    }
+
+    /** Precio menor o igual a {@code hasta}. */
+    public FiltroProductos precioHasta(double hasta) {
+        this.precioHasta = hasta;
+        return this;
+    }
+
+    public boolean esVacio() {
+        return categoria == null && marca == null && precioDesde == null && precioHasta == null;
+    }
+
+    // ============================================================
+    //  SQL (para los DAOs)
+    // ============================================================
+
+    /** Condiciones a agregar después de un WHERE existente, cada una con su " AND ". */
+    String condicion() {
+        StringBuilder sb = new StringBuilder();
+        if (categoria != null) sb.append(" AND categoria = ?");
+        if (marca != null) sb.append(" AND marca = ?");
+        if (precioDesde != null) sb.append(" AND precio >= ?");
+        if (precioHasta != null) sb.append(" AND precio <= ?");
+        return sb.toString();
+    }
+
+    /**
+     * Asigna los parámetros de {@link #condicion()} a partir de la posición {@code indice}.
+     * @return La siguiente posición libre.
+     */
+    int asignar(PreparedStatement ps, int indice) throws SQLException {
+        if (categoria != null) ps.setString(indice++, categoria);
+        if (marca != null) ps.setString(indice++, marca);
+        if (precioDesde != null) ps.setDouble(indice++, precioDesde);
+        if (precioHasta != null) ps.setDouble(indice++, precioHasta);
+        return indice;
+    }
+
+    // ============================================================
+    //  EN MEMORIA
+    // ============================================================
+
+    /**
+     * Evalúa el filtro sobre un producto ya cargado (p. ej. para invalidar la cache).
+     * Compara marca y categoría sin distinguir mayúsculas ni acentos, como la collation
+     * de la tabla; ante la duda, coincide.
+     */
+    public synchronized boolean coincide(Producto p) {
+        if (p == null || Boolean.TRUE.equals(p.getEliminado())) return false;
+        if (precioDesde != null && p.getPrecio() < precioDesde) return false;
+        if (precioHasta != null && p.getPrecio() > precioHasta) return false;
+        if (collator == null) {
+            collator = Collator.getInstance(Locale.forLanguageTag("es"));
+            collator.setStrength(Collator.PRIMARY);
+        }
+        return iguales(categoria, p.getCategoria()) && iguales(marca, p.getMarca());
+    }
+
+    private boolean iguales(String filtro, String valor) {
+        return filtro == null || (valor != null && collator.compare(filtro.strip(), valor.strip()) == 0);
+    }
+
+    @Override
+    public String toString() {
+        if (esVacio()) return "todo el catálogo activo";
+        StringBuilder sb = new StringBuilder();
+        if (categoria != null) sb.append("categoría='").append(categoria).append("' ");
+        if (marca != null) sb.append("marca='").append(marca).append("' ");
+        if (precioDesde != null) sb.append("precio>=").append(precioDesde).append(' ');
+        if (precioHasta != null) sb.append("precio<=").append(precioHasta).append(' ');
+        return sb.toString().trim();
+    }
+}
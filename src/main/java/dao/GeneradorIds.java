@@ -0,0 +1,80 @@
+package dao;
+
+import config.DatabaseConnection;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ids globales para los shards, sin AUTO_INCREMENT: reserva bloques de {@code tamanioBloque}
+ * ids de la tabla secuencia (base de db.url) y los entrega desde memoria. Un viaje a la BD
+ * cada tamanioBloque altas; los ids quedan densos y crecientes por proceso (un reinicio
+ * deja sin usar el resto del bloque).
+ */
+public class GeneradorIds {
+
+    public static final String PRODUCTO = "producto";
+    public static final String CODIGO_BARRAS = "codigo_barras";
+    public static final int TAMANIO_BLOQUE_POR_DEFECTO = 1000;
+
+    // LAST_INSERT_ID(expr) deja el valor nuevo en la sesión: reserva y lectura sin carrera
+    private static final String RESERVAR_SQL = "UPDATE secuencia SET siguiente = LAST_INSERT_ID(siguiente + ?) WHERE nombre = ?";
+    private static final String ULTIMO_RESERVADO_SQL = "SELECT LAST_INSERT_ID()";
+
+    private static final Histograma LAT_RESERVAR = RegistroMetricas.latencia("dao.generadorIds.reservar");
+
+    private final int tamanioBloque;
+    private final Map<String, long[]> bloques = new HashMap<>(); // secuencia → {siguiente, límite}
+
+    public GeneradorIds() {
+        this(TAMANIO_BLOQUE_POR_DEFECTO);
+    }
+
+    public GeneradorIds(int tamanioBloque) {
+        if (tamanioBloque <= 0) {
+            throw new IllegalArgumentException("El tamaño de bloque debe ser positivo.");
+        }
+        this.tamanioBloque = tamanioBloque;
+    }
+
+    /** Próximo id de la secuencia (PRODUCTO o CODIGO_BARRAS). */
+    public synchronized long siguiente(String secuencia) throws SQLException {
+        long[] bloque = bloques.get(secuencia);
+        if (bloque == null || bloque[0] == bloque[1]) {
+            long limite = reservar(secuencia, tamanioBloque);
+            bloque = new long[]{limite - tamanioBloque, limite};
+            bloques.put(secuencia, bloque);
+        }
+        return bloque[0]++;
+    }
+
+    /** @return El límite (exclusivo) del bloque reservado: los ids son [límite - cantidad, límite). */
+    private long reservar(String secuencia, int cantidad) throws SQLException {
+        long inicio = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement(RESERVAR_SQL)) {
+                ps.setInt(1, cantidad);
+                ps.setString(2, secuencia);
+                if (ps.executeUpdate() == 0) {
+                    throw new SQLException("No existe la secuencia " + secuencia + " (falta la migración V6).");
+                }
+            }
+            try (PreparedStatement ps = conn.prepareStatement(ULTIMO_RESERVADO_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_RESERVAR.registrarDesde(inicio);
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package dao;
 
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
 
 public interface GenericDao<T> {
+    // Tamaño de cada executeBatch cuando no se configura otro
+    int TAMANIO_LOTE_POR_DEFECTO = 1000;
+
     void crear(T entidad) throws SQLException;
     T leer(long id) throws SQLException;
     List<T> leerTodos() throws SQLException;
     void actualizar(T entidad) throws SQLException;
     void eliminar(long id) throws SQLException; // baja lógica
-}
\ No newline at end of file
+
+    // Operaciones en lote (addBatch/executeBatch por tramos de getTamanioLote())
+    void crearLote(List<T> entidades, Connection conn) throws SQLException; // asigna los IDs generados
+    void actualizarLote(List<T> entidades, Connection conn) throws SQLException;
+    void eliminarLote(List<Long> ids, Connection conn) throws SQLException; // baja lógica
+
+    int getTamanioLote();
+    void setTamanioLote(int tamanioLote);
+}
@@ -0,0 +1,22 @@
+package dao;
+
+import java.sql.SQLException;
+
+/**
+ * Error de base de datos ocurrido mientras se consume un Stream del DAO.
+ * Los Stream no admiten excepciones chequeadas, así que la SQLException original
+ * viaja como causa.
+ */
+public class LecturaStreamException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LecturaStreamException(SQLException causa) {
+        super(causa.getMessage(), causa);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
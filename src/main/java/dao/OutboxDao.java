@@ -0,0 +1,271 @@
+package dao;
+
+import cambios.EventoCambio;
+import cambios.OperacionCambio;
+import config.DatabaseConnection;
+import config.Particiones;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Registro de cambios (tabla outbox) para consumidores incrementales: ver cambios.DespachadorCambios.
+ *
+ * Los métodos registrar* van sobre la Connection de la transacción que escribió los datos, justo
+ * después de la escritura: el evento se arma con INSERT ... SELECT JSON_OBJECT(...) desde la fila
+ * ya modificada, así lleva exactamente los valores que quedan y se confirma (o se descarta) con ellos.
+ * Con cambios.activo=false en db.properties no registran nada.
+ */
+public class OutboxDao {
+
+    // Valores de la fila después de la escritura; las claves siguen los nombres de las entidades
+    private static final String ELIMINADO = "IF(eliminado, CAST('true' AS JSON), CAST('false' AS JSON))";
+    private static final String DATOS_CODIGO = "JSON_OBJECT('id', id, 'productoId', producto_id, 'tipo', tipo, "
+            + "'valor', valor, 'fechaAsignacion', fecha_asignacion, 'observaciones', observaciones, "
+            + "'eliminado', " + ELIMINADO + ", 'version', version)";
+
+    private static final String INSERTAR = "INSERT INTO outbox (entidad, entidad_id, operacion, datos) ";
+    private static final String REGISTRAR_PRODUCTO_SQL = INSERTAR + "SELECT 'producto', id, ?, "
+            + datosProducto("precio", "version") + " FROM producto WHERE id = ?";
+    private static final String REGISTRAR_CODIGO_SQL = INSERTAR + "SELECT 'codigo_barras', id, ?, "
+            + DATOS_CODIGO + " FROM codigo_barras WHERE id = ?";
+    // Ajuste masivo: se registra ANTES del UPDATE, con el precio y la versión que va a dejar
+    // (mismo predicado, sobre las filas que el ajuste ya tiene bloqueadas)
+    @RecorridoCompleto("sin filtro el ajuste abarca todo el catálogo; con filtro usa idx_producto_categoria")
+    private static final String REGISTRAR_AJUSTE_PRECIOS_SQL = INSERTAR + "SELECT 'producto', id, 'MODIFICACION', "
+            + datosProducto(ProductoDaoImpl.NUEVO_PRECIO, "version + 1") + " FROM producto WHERE eliminado = false";
+
+    // Lectura en orden de id (PK) y posición de cada consumidor
+    private static final String SELECT_DESDE_SQL = "SELECT id, entidad, entidad_id, operacion, datos, fecha "
+            + "FROM outbox WHERE id > ? ORDER BY id LIMIT ?";
+    // Lectura con bloqueo de los ids de un hueco: una fila insertada por una transacción abierta
+    // está bloqueada por ella, y NOWAIT falla en lugar de esperar (ver huecoDescartable)
+    private static final String HUECO_SQL = "SELECT COUNT(*) FROM outbox WHERE id > ? AND id < ? FOR SHARE NOWAIT";
+    private static final String SELECT_POSICION_SQL = "SELECT ultimo_id FROM outbox_consumidor WHERE nombre = ?";
+    private static final String GUARDAR_POSICION_SQL = "INSERT INTO outbox_consumidor (nombre, ultimo_id, actualizado) "
+            + "VALUES (?, ?, NOW()) ON DUPLICATE KEY UPDATE ultimo_id = GREATEST(ultimo_id, VALUES(ultimo_id)), actualizado = NOW()";
+    // Sólo lo que ya leyeron todos los consumidores y pasó la retención
+    private static final String PURGAR_SQL = "DELETE FROM outbox WHERE id <= ? AND fecha < NOW() - INTERVAL ? HOUR ORDER BY id LIMIT ?";
+    @RecorridoCompleto("tabla de consumidores: una fila por consumidor")
+    private static final String MINIMA_POSICION_SQL = "SELECT MIN(ultimo_id) FROM outbox_consumidor";
+
+    private static final int ER_LOCK_NOWAIT = 3572;
+
+    private static final Histograma LAT_REGISTRAR = RegistroMetricas.latencia("dao.outbox.registrar");
+    private static final Histograma LAT_LEER = RegistroMetricas.latencia("dao.outbox.leerDesde");
+    private static final Histograma FILAS = RegistroMetricas.valores("dao.outbox.filas");
+
+    private final boolean activo;
+    private final Particiones particiones; // null = outbox de la base de db.url
+    private final int shard;
+
+    public OutboxDao() {
+        this(null, 0);
+    }
+
+    /**
+     * Outbox de un shard, para su despachador (lectura, posición y purga). Los registrar* van
+     * siempre sobre la conexión que reciben, así que cada escritura deja su evento en su shard.
+     */
+    public OutboxDao(Particiones particiones, int shard) {
+        this.particiones = particiones;
+        this.shard = shard;
+        Properties p = new Properties();
+        try {
+            p = DatabaseConnection.getPropiedades();
+        } catch (IOException e) {
+            System.err.println("⚠ No se pudo leer la configuración de cambios, se usan valores por defecto: "
+                    + e.getMessage());
+        }
+        this.activo = Boolean.parseBoolean(p.getProperty("cambios.activo", "true"));
+    }
+
+    /** false si cambios.activo=false: los registrar* no hacen nada. */
+    public boolean estaActivo() {
+        return activo;
+    }
+
+    // =======================================================
+    // REGISTRO (dentro de la transacción del llamador)
+    // =======================================================
+
+    public void registrarProducto(long id, OperacionCambio operacion, Connection conn) throws SQLException {
+        registrarProductos(List.of(id), operacion, conn);
+    }
+
+    public void registrarProductos(List<Long> ids, OperacionCambio operacion, Connection conn) throws SQLException {
+        registrar(REGISTRAR_PRODUCTO_SQL, ids, operacion, conn);
+    }
+
+    public void registrarCodigo(long id, OperacionCambio operacion, Connection conn) throws SQLException {
+        registrarCodigos(List.of(id), operacion, conn);
+    }
+
+    public void registrarCodigos(List<Long> ids, OperacionCambio operacion, Connection conn) throws SQLException {
+        registrar(REGISTRAR_CODIGO_SQL, ids, operacion, conn);
+    }
+
+    /**
+     * Registra una MODIFICACION por cada producto que va a tocar el ajuste masivo de precios.
+     * Lo llama ProductoDaoImpl.ajustarPrecios, con las filas ya bloqueadas y antes del UPDATE.
+     * @return Eventos registrados.
+     */
+    public int registrarAjustePrecios(FiltroProductos filtro, BigDecimal factor, BigDecimal monto, Connection conn)
+            throws SQLException {
+        if (!activo) {
+            return 0;
+        }
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(REGISTRAR_AJUSTE_PRECIOS_SQL + filtro.condicion())) {
+            ps.setBigDecimal(1, factor);
+            ps.setBigDecimal(2, monto);
+            filtro.asignar(ps, 3);
+            return ps.executeUpdate();
+        } finally {
+            LAT_REGISTRAR.registrarDesde(inicio);
+        }
+    }
+
+    private void registrar(String sql, List<?> claves, OperacionCambio operacion, Connection conn) throws SQLException {
+        if (!activo || claves.isEmpty()) {
+            return;
+        }
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, operacion.name());
+            if (claves.size() == 1) {
+                ps.setObject(2, claves.get(0));
+                ps.executeUpdate();
+                return;
+            }
+            for (Object clave : claves) {
+                ps.setObject(2, clave);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } finally {
+            LAT_REGISTRAR.registrarDesde(inicio);
+        }
+    }
+
+    // =======================================================
+    // LECTURA (consumidores)
+    // =======================================================
+
+    /**
+     * Hasta {@code limite} eventos con id mayor a {@code despuesDeId}, en orden de id.
+     */
+    public List<EventoCambio> leerDesde(long despuesDeId, int limite) throws SQLException {
+        long inicio = System.nanoTime();
+        List<EventoCambio> eventos = new ArrayList<>();
+        try (Connection conn = conexion();
+             PreparedStatement ps = conn.prepareStatement(SELECT_DESDE_SQL)) {
+            ps.setLong(1, despuesDeId);
+            ps.setInt(2, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    eventos.add(new EventoCambio(rs.getLong("id"), rs.getString("entidad"), rs.getLong("entidad_id"),
+                            OperacionCambio.valueOf(rs.getString("operacion")), rs.getString("datos"),
+                            rs.getTimestamp("fecha").toLocalDateTime()));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_LEER.registrarDesde(inicio);
+        }
+        FILAS.registrar(eventos.size());
+        return eventos;
+    }
+
+    /**
+     * Decide si los ids entre {@code despuesDeId} y {@code antesDeId} (exclusivos) que faltan se
+     * pueden saltear: sólo si ninguna transacción abierta tiene filas ahí (las insertadas y sin
+     * confirmar están bloqueadas, NOWAIT lo detecta sin esperar) y el rango sigue vacío, es
+     * decir, se deshicieron o fueron saltos de AUTO_INCREMENT.
+     * @return false si el hueco todavía puede llenarse (o ya se llenó: se lee en la próxima pasada).
+     */
+    public boolean huecoDescartable(long despuesDeId, long antesDeId) throws SQLException {
+        try (Connection conn = conexion();
+             PreparedStatement ps = conn.prepareStatement(HUECO_SQL)) {
+            ps.setLong(1, despuesDeId);
+            ps.setLong(2, antesDeId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getLong(1) == 0;
+            }
+        } catch (SQLException e) {
+            if (e.getErrorCode() == ER_LOCK_NOWAIT) {
+                return false;
+            }
+            throw e;
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    /** Último id entregado por el consumidor, o 0 si nunca leyó. */
+    public long leerPosicion(String consumidor) throws SQLException {
+        try (Connection conn = conexion();
+             PreparedStatement ps = conn.prepareStatement(SELECT_POSICION_SQL)) {
+            ps.setString(1, consumidor);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    /** Avanza la posición del consumidor (nunca la retrocede). */
+    public void guardarPosicion(String consumidor, long ultimoId) throws SQLException {
+        try (Connection conn = conexion();
+             PreparedStatement ps = conn.prepareStatement(GUARDAR_POSICION_SQL)) {
+            ps.setString(1, consumidor);
+            ps.setLong(2, ultimoId);
+            ps.executeUpdate();
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    /**
+     * Borra hasta {@code limite} eventos ya leídos por todos los consumidores y más viejos que
+     * la retención.
+     * @return Eventos borrados.
+     */
+    public int purgar(int retencionHoras, int limite) throws SQLException {
+        try (Connection conn = conexion()) {
+            long minimo;
+            try (PreparedStatement ps = conn.prepareStatement(MINIMA_POSICION_SQL);
+                 ResultSet rs = ps.executeQuery()) {
+                minimo = rs.next() ? rs.getLong(1) : 0;
+            }
+            if (minimo <= 0) {
+                return 0;
+            }
+            try (PreparedStatement ps = conn.prepareStatement(PURGAR_SQL)) {
+                ps.setLong(1, minimo);
+                ps.setInt(2, retencionHoras);
+                ps.setInt(3, limite);
+                return ps.executeUpdate();
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    private Connection conexion() throws SQLException, IOException {
+        return particiones == null ? DatabaseConnection.getConnection() : particiones.getConnection(shard);
+    }
+
+    private static String datosProducto(String precio, String version) {
+        return "JSON_OBJECT('id', id, 'nombre', nombre, 'marca', marca, 'categoria', categoria, "
+                + "'precio', " + precio + ", 'peso', peso, 'eliminado', " + ELIMINADO + ", 'version', " + version + ")";
+    }
+}
@@ -2,18 +2,101 @@ package dao;
 
 import config.DatabaseConnection;
 import entities.Producto;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
 
+import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import java.io.IOException;
 
 public class ProductoDaoImpl implements GenericDao<Producto> {
     private static final String INSERT_SQL = "INSERT INTO producto (nombre, marca, categoria, precio, peso, eliminado) VALUES (?, ?, ?, ?, ?, false)";
+    // Con id asignado por GeneradorIds (shards: no hay AUTO_INCREMENT global)
+    private static final String INSERT_CON_ID_SQL = "INSERT INTO producto (nombre, marca, categoria, precio, peso, eliminado, id) VALUES (?, ?, ?, ?, ?, false, ?)";
     private static final String SELECT_BY_ID_SQL = "SELECT * FROM producto WHERE id = ?";
+    @RecorridoCompleto("listado completo de activos")
     private static final String SELECT_ALL_SQL = "SELECT * FROM producto WHERE eliminado = false";
-    private static final String UPDATE_SQL = "UPDATE producto SET nombre=?, marca=?, categoria=?, precio=?, peso=? WHERE id=?";
-    private static final String DELETE_SQL = "UPDATE producto SET eliminado=true WHERE id=?";
+    // Concurrencia optimista: sólo escribe si la fila sigue en la versión leída (un version null no controla)
+    private static final String UPDATE_SQL = "UPDATE producto SET nombre=?, marca=?, categoria=?, precio=?, peso=?, "
+            + "version=version+1 WHERE id=? AND version=IFNULL(?, version)";
+    private static final String DELETE_SQL = "UPDATE producto SET eliminado=true, fecha_baja=NOW(), version=version+1 WHERE id=?";
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM producto WHERE id = ?";
+
+    // Producto + su código activo en una sola consulta (las columnas del código llevan prefijo cb_)
+    private static final String COLUMNAS_CON_CODIGO = "SELECT p.id, p.nombre, p.marca, p.categoria, p.precio, p.peso, p.eliminado, p.version, "
+            + "c.id AS cb_id, c.producto_id AS cb_producto_id, c.tipo AS cb_tipo, c.valor AS cb_valor, "
+            + "c.fecha_asignacion AS cb_fecha_asignacion, c.observaciones AS cb_observaciones, c.eliminado AS cb_eliminado, c.version AS cb_version ";
+    private static final String SELECT_CON_CODIGO_BY_ID_SQL = COLUMNAS_CON_CODIGO
+            + "FROM producto p LEFT JOIN codigo_barras c ON c.producto_id = p.id AND c.eliminado = false WHERE p.id = ?";
+    @RecorridoCompleto("listado completo de activos")
+    private static final String SELECT_ALL_CON_CODIGO_SQL = COLUMNAS_CON_CODIGO
+            + "FROM producto p LEFT JOIN codigo_barras c ON c.producto_id = p.id AND c.eliminado = false WHERE p.eliminado = false";
+    private static final String SELECT_BY_VALOR_CODIGO_SQL = COLUMNAS_CON_CODIGO
+            + "FROM codigo_barras c JOIN producto p ON p.id = c.producto_id WHERE c.valor = ? AND c.eliminado = false "
+            + "AND p.eliminado = false";
+
+    // Paginación keyset: el índice de la PK resuelve "id > ?" sin recorrer las páginas anteriores
+    private static final String SELECT_PAGINA_SQL = "SELECT * FROM producto WHERE eliminado = false AND id > ? ORDER BY id LIMIT ?";
+    private static final String SELECT_PAGINA_CON_CODIGO_SQL = COLUMNAS_CON_CODIGO
+            + "FROM producto p LEFT JOIN codigo_barras c ON c.producto_id = p.id AND c.eliminado = false "
+            + "WHERE p.eliminado = false AND p.id > ? ORDER BY p.id LIMIT ?";
+
+    // Métricas de latencia por operación y filas por consulta (ver RegistroMetricas)
+    private static final Histograma LAT_LEER_TODOS = RegistroMetricas.latencia("dao.producto.leerTodos");
+    private static final Histograma LAT_LEER_CON_CODIGO = RegistroMetricas.latencia("dao.producto.leerConCodigo");
+    private static final Histograma LAT_LEER_TODOS_CON_CODIGO = RegistroMetricas.latencia("dao.producto.leerTodosConCodigo");
+    private static final Histograma LAT_BUSCAR_POR_CODIGO = RegistroMetricas.latencia("dao.producto.buscarPorCodigo");
+    private static final Histograma LAT_LEER_PAGINA = RegistroMetricas.latencia("dao.producto.leerPagina");
+    private static final Histograma LAT_LEER_POR_IDS = RegistroMetricas.latencia("dao.producto.leerPorIds");
+    private static final Histograma LAT_BUSCAR_POR_VALORES = RegistroMetricas.latencia("dao.producto.buscarPorValores");
+    private static final Histograma LAT_FIRMAS = RegistroMetricas.latencia("dao.producto.firmasPorBloque");
+    private static final Histograma LAT_CREAR = RegistroMetricas.latencia("dao.producto.crear");
+    private static final Histograma LAT_LEER = RegistroMetricas.latencia("dao.producto.leer");
+    private static final Histograma LAT_ACTUALIZAR = RegistroMetricas.latencia("dao.producto.actualizar");
+    private static final Histograma LAT_ELIMINAR = RegistroMetricas.latencia("dao.producto.eliminar");
+    private static final Histograma LAT_LOTE = RegistroMetricas.latencia("dao.producto.lote");
+    private static final Histograma FILAS = RegistroMetricas.valores("dao.producto.filas");
+
+    private static final String SELECT_BY_IDS_SQL = "SELECT * FROM producto WHERE id IN (";
+
+    // Sincronización con feeds: estado actual por valor de código (incluye bajas, uq_cb_valor las cubre)
+    // y upsert por PK. VALUES() en lugar del alias de fila para que Connector/J pueda reescribir el lote.
+    private static final String SELECT_CON_CODIGO_BY_VALORES_SQL = COLUMNAS_CON_CODIGO
+            + "FROM codigo_barras c JOIN producto p ON p.id = c.producto_id WHERE c.valor IN (";
+    private static final String UPSERT_SQL = "INSERT INTO producto (id, nombre, marca, categoria, precio, peso, eliminado) "
+            + "VALUES (?, ?, ?, ?, ?, ?, false) ON DUPLICATE KEY UPDATE nombre = VALUES(nombre), marca = VALUES(marca), "
+            + "categoria = VALUES(categoria), precio = VALUES(precio), peso = VALUES(peso), eliminado = false, "
+            + "fecha_baja = NULL, version = version + 1";
+
+    // Snapshots: filas por rango de id (incluye bajas) y una firma por bloque de ids para detectar cambios.
+    // CONCAT_WS saltea los NULL: sin IFNULL, marca=NULL/categoria='X' firmaría igual que marca='X'/categoria=NULL.
+    // version (V4) cambia en cada escritura, aunque el texto quede igual
+    private static final String SELECT_RANGO_SQL = "SELECT * FROM producto WHERE id >= ? AND id < ? ORDER BY id";
+    @RecorridoCompleto("la firma de un snapshot lee todas las filas")
+    private static final String FIRMAS_BLOQUES_SQL = "SELECT id DIV ? AS bloque, "
+            + "(COUNT(*) << 32) + BIT_XOR(CRC32(CONCAT_WS('|', id, version, nombre, IFNULL(marca, '\\0'), "
+            + "IFNULL(categoria, '\\0'), precio, IFNULL(peso, ''), eliminado))) AS firma FROM producto GROUP BY bloque";
+
+    // Ajuste masivo de precios: una sola sentencia sobre el conjunto filtrado (ver FiltroProductos)
+    static final String NUEVO_PRECIO = "ROUND(precio * ? + ?, 2)"; // también lo usa OutboxDao
+    @RecorridoCompleto("sin filtro el ajuste abarca todo el catálogo; con filtro usa idx_producto_categoria")
+    private static final String ESTADISTICAS_AJUSTE_SQL = "SELECT COUNT(*) AS cantidad, "
+            + "MIN(precio) AS min_antes, MAX(precio) AS max_antes, SUM(precio) AS suma_antes, "
+            + "MIN(" + NUEVO_PRECIO + ") AS min_despues, MAX(" + NUEVO_PRECIO + ") AS max_despues, "
+            + "SUM(" + NUEVO_PRECIO + ") AS suma_despues FROM producto WHERE eliminado = false";
+    @RecorridoCompleto("sin filtro el ajuste abarca todo el catálogo; con filtro usa idx_producto_categoria")
+    private static final String AJUSTAR_PRECIOS_SQL = "UPDATE producto SET precio = " + NUEVO_PRECIO
+            + ", version = version + 1 WHERE eliminado = false";
+    // Máximo que admite la columna precio DECIMAL(10,2)
+    private static final BigDecimal PRECIO_MAXIMO = new BigDecimal("99999999.99");
+    private static final Histograma LAT_AJUSTAR_PRECIOS = RegistroMetricas.latencia("dao.producto.ajustarPrecios");
+
+    private int tamanioLote = TAMANIO_LOTE_POR_DEFECTO;
 
     // Métodos originales (compatibilidad)
     @Override
@@ -27,7 +110,7 @@ public class ProductoDaoImpl implements GenericDao<Producto> {
 
     @Override
     public Producto leer(long id) throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
             return leer(id, conn);
         } catch (IOException e) {
             throw new SQLException("Error al obtener conexión", e);
@@ -36,16 +119,25 @@ public class ProductoDaoImpl implements GenericDao<Producto> {
 
     @Override
     public List<Producto> leerTodos() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return leerTodos(conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    public List<Producto> leerTodos(Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         List<Producto> lista = new ArrayList<>();
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement ps = conn.prepareStatement(SELECT_ALL_SQL);
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_ALL_SQL);
              ResultSet rs = ps.executeQuery()) {
             while (rs.next()) {
                 lista.add(mapResultSet(rs));
             }
-        } catch (IOException e) {
-            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_LEER_TODOS.registrarDesde(inicio);
         }
+        FILAS.registrar(lista.size());
         return lista;
     }
 
@@ -67,28 +159,291 @@ public class ProductoDaoImpl implements GenericDao<Producto> {
         }
     }
 
+    // ✅ Lecturas con el código de barras hidratado (un solo JOIN, sin N+1)
+    public Producto leerConCodigo(long id) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return leerConCodigo(id, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    public Producto leerConCodigo(long id, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_CON_CODIGO_BY_ID_SQL)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetConCodigo(rs);
+                }
+            }
+        } finally {
+            LAT_LEER_CON_CODIGO.registrarDesde(inicio);
+        }
+        return null;
+    }
+
+    public List<Producto> leerTodosConCodigo() throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return leerTodosConCodigo(conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    public List<Producto> leerTodosConCodigo(Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        List<Producto> lista = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_ALL_CON_CODIGO_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                lista.add(mapResultSetConCodigo(rs));
+            }
+        } finally {
+            LAT_LEER_TODOS_CON_CODIGO.registrarDesde(inicio);
+        }
+        FILAS.registrar(lista.size());
+        return lista;
+    }
+
+    /**
+     * Camino de escaneo: del valor del código al producto (con su código) en una consulta.
+     */
+    public Producto buscarPorCodigo(String valor) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return buscarPorCodigo(valor, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    public Producto buscarPorCodigo(String valor, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_VALOR_CODIGO_SQL)) {
+            ps.setString(1, valor);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return mapResultSetConCodigo(rs);
+                }
+            }
+        } finally {
+            LAT_BUSCAR_POR_CODIGO.registrarDesde(inicio);
+        }
+        return null;
+    }
+
+    /**
+     * Productos activos con esos ids, en una sola consulta (el orden no está garantizado).
+     * La lista IN se completa hasta la siguiente potencia de 2 repitiendo el último id,
+     * así hay pocas SQL distintas y la cache de sentencias del pool las reutiliza.
+     */
+    public List<Producto> leerPorIds(List<Long> ids) throws SQLException {
+        List<Producto> lista = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return lista;
+        }
+        int parametros = Math.max(Integer.highestOneBit(ids.size() - 1) << 1, 1);
+        StringBuilder sql = new StringBuilder(SELECT_BY_IDS_SQL);
+        for (int i = 0; i < parametros; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(") AND eliminado = false");
+
+        long inicio = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < parametros; i++) {
+                ps.setLong(i + 1, ids.get(Math.min(i, ids.size() - 1)));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(mapResultSet(rs));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_LEER_POR_IDS.registrarDesde(inicio);
+        }
+        FILAS.registrar(lista.size());
+        return lista;
+    }
+
+    /**
+     * Productos con su código para cada valor de código dado, activos o dados de baja, en una
+     * sola consulta por la clave única uq_cb_valor. La lista IN se completa como en leerPorIds.
+     * @return Mapa valor del código → producto con el código hidratado (los que no existen no están).
+     */
+    public Map<String, Producto> buscarPorValores(List<String> valores, Connection conn) throws SQLException {
+        return buscarPorValores(valores, conn, false);
+    }
+
+    /**
+     * @param bloquear true para leer con FOR UPDATE: bloquea las filas encontradas y, en
+     *                 REPEATABLE READ, el hueco de uq_cb_valor de cada valor que falta, así nadie
+     *                 puede darlo de alta hasta el commit de {@code conn}.
+     */
+    public Map<String, Producto> buscarPorValores(List<String> valores, Connection conn, boolean bloquear)
+            throws SQLException {
+        Map<String, Producto> resultado = new HashMap<>(valores.size() * 2);
+        if (valores.isEmpty()) {
+            return resultado;
+        }
+        int parametros = Math.max(Integer.highestOneBit(valores.size() - 1) << 1, 1);
+        StringBuilder sql = new StringBuilder(SELECT_CON_CODIGO_BY_VALORES_SQL);
+        for (int i = 0; i < parametros; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        sql.append(bloquear ? ") FOR UPDATE" : ")");
+
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            for (int i = 0; i < parametros; i++) {
+                ps.setString(i + 1, valores.get(Math.min(i, valores.size() - 1)));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Producto p = mapResultSetConCodigo(rs);
+                    resultado.put(p.getCodigoBarras().getValor(), p);
+                }
+            }
+        } finally {
+            LAT_BUSCAR_POR_VALORES.registrarDesde(inicio);
+        }
+        FILAS.registrar(resultado.size());
+        return resultado;
+    }
+
+    // ✅ Lectura en streaming y por páginas (memoria constante)
+
+    /**
+     * Recorre todos los productos activos con un cursor del servidor.
+     * Usar con try-with-resources: el Stream retiene la conexión hasta cerrarse.
+     */
+    public Stream<Producto> streamTodos() throws SQLException {
+        return ResultSetStream.abrir(SELECT_ALL_SQL, null, this::mapResultSet, FILAS);
+    }
+
+    /**
+     * Como streamTodos() pero con el código de barras hidratado (JOIN en el cursor).
+     */
+    public Stream<Producto> streamTodosConCodigo() throws SQLException {
+        return ResultSetStream.abrir(SELECT_ALL_CON_CODIGO_SQL, null, this::mapResultSetConCodigo, FILAS);
+    }
+
+    /**
+     * Todos los productos con id en [desdeId, hastaId), incluidos los dados de baja, por cursor.
+     * Usar con try-with-resources.
+     */
+    public Stream<Producto> streamRango(long desdeId, long hastaId) throws SQLException {
+        return ResultSetStream.abrir(SELECT_RANGO_SQL, ps -> {
+            ps.setLong(1, desdeId);
+            ps.setLong(2, hastaId);
+        }, this::mapResultSet, FILAS);
+    }
+
+    /**
+     * Firma de cada bloque de {@code tamanioBloque} ids (cantidad de filas y XOR de un CRC32 por
+     * fila). Si la firma de un bloque no cambió, sus filas tampoco (salvo colisión de CRC).
+     * @return bloque (id DIV tamanioBloque) → firma; los bloques sin filas no aparecen.
+     */
+    public Map<Long, Long> firmasPorBloque(int tamanioBloque) throws SQLException {
+        Map<Long, Long> firmas = new HashMap<>();
+        long inicio = System.nanoTime();
+        try (Connection conn = DatabaseConnection.getConnectionLectura();
+             PreparedStatement ps = conn.prepareStatement(FIRMAS_BLOQUES_SQL)) {
+            ps.setInt(1, tamanioBloque);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    firmas.put(rs.getLong("bloque"), rs.getLong("firma"));
+                }
+            }
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } finally {
+            LAT_FIRMAS.registrarDesde(inicio);
+        }
+        return firmas;
+    }
+
+    /**
+     * Página de productos activos con id mayor a {@code despuesDeId}, ordenada por id.
+     * Para la siguiente página pasar el id del último elemento devuelto.
+     */
+    public List<Producto> leerPagina(long despuesDeId, int limite) throws SQLException {
+        return leerPagina(SELECT_PAGINA_SQL, despuesDeId, limite, false);
+    }
+
+    public List<Producto> leerPaginaConCodigo(long despuesDeId, int limite) throws SQLException {
+        return leerPagina(SELECT_PAGINA_CON_CODIGO_SQL, despuesDeId, limite, true);
+    }
+
+    public List<Producto> leerPaginaConCodigo(long despuesDeId, int limite, Connection conn) throws SQLException {
+        return leerPagina(SELECT_PAGINA_CON_CODIGO_SQL, despuesDeId, limite, true, conn);
+    }
+
+    private List<Producto> leerPagina(String sql, long despuesDeId, int limite, boolean conCodigo) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnectionLectura()) {
+            return leerPagina(sql, despuesDeId, limite, conCodigo, conn);
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        }
+    }
+
+    private List<Producto> leerPagina(String sql, long despuesDeId, int limite, boolean conCodigo, Connection conn)
+            throws SQLException {
+        long inicio = System.nanoTime();
+        List<Producto> lista = new ArrayList<>(limite);
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, despuesDeId);
+            ps.setInt(2, limite);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    lista.add(conCodigo ? mapResultSetConCodigo(rs) : mapResultSet(rs));
+                }
+            }
+        } finally {
+            LAT_LEER_PAGINA.registrarDesde(inicio);
+        }
+        FILAS.registrar(lista.size());
+        return lista;
+    }
+
     // ✅ Sobrecargas con Connection externa
     public void crear(Producto p, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
-            ps.setString(1, p.getNombre());
-            ps.setString(2, p.getMarca());
-            ps.setString(3, p.getCategoria());
-            ps.setDouble(4, p.getPrecio());
-            if (p.getPeso() != null) {
-                ps.setDouble(5, p.getPeso());
-            } else {
-                ps.setNull(5, Types.DOUBLE);
-            }
+            setParametrosInsert(ps, p);
             ps.executeUpdate();
             try (ResultSet rs = ps.getGeneratedKeys()) {
                 if (rs.next()) {
                     p.setId(rs.getLong(1));
                 }
             }
+            p.setVersion(0L);
+        } finally {
+            LAT_CREAR.registrarDesde(inicio);
+        }
+    }
+
+    /** Inserta con el id que ya trae {@code p} (asignado por GeneradorIds) en lugar del AUTO_INCREMENT. */
+    public void crearConId(Producto p, Connection conn) throws SQLException {
+        if (p.getId() == null) {
+            throw new SQLException("El producto no tiene id asignado.");
+        }
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_CON_ID_SQL)) {
+            setParametrosInsert(ps, p);
+            ps.setLong(6, p.getId());
+            ps.executeUpdate();
+            p.setVersion(0L);
+        } finally {
+            LAT_CREAR.registrarDesde(inicio);
         }
     }
 
     public Producto leer(long id, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         try (PreparedStatement ps = conn.prepareStatement(SELECT_BY_ID_SQL)) {
             ps.setLong(1, id);
             try (ResultSet rs = ps.executeQuery()) {
@@ -96,34 +451,278 @@ public class ProductoDaoImpl implements GenericDao<Producto> {
                     return mapResultSet(rs);
                 }
             }
+        } finally {
+            LAT_LEER.registrarDesde(inicio);
         }
         return null;
     }
 
+    /**
+     * Actualiza si la fila sigue en {@code p.getVersion()} y avanza la versión del objeto.
+     * @throws ConflictoVersionException Si otra transacción la modificó desde que se leyó.
+     */
     public void actualizar(Producto p, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
-            ps.setString(1, p.getNombre());
-            ps.setString(2, p.getMarca());
-            ps.setString(3, p.getCategoria());
-            ps.setDouble(4, p.getPrecio());
-            if (p.getPeso() != null) {
-                ps.setDouble(5, p.getPeso());
-            } else {
-                ps.setNull(5, Types.DOUBLE);
-            }
-            ps.setLong(6, p.getId());
-            ps.executeUpdate();
+            setParametrosUpdate(ps, p);
+            verificarVersion(ps.executeUpdate(), p, conn);
+        } finally {
+            LAT_ACTUALIZAR.registrarDesde(inicio);
         }
     }
 
     public void eliminar(long id, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
         try (PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
             ps.setLong(1, id);
             ps.executeUpdate();
+        } finally {
+            LAT_ELIMINAR.registrarDesde(inicio);
+        }
+    }
+
+    // ✅ Ajuste masivo de precios: precio nuevo = ROUND(precio * factor + monto, 2)
+
+    /**
+     * Calcula cuántos productos activos toca el ajuste y sus precios antes/después, sin modificar nada.
+     * @param bloquear Si es true las filas quedan bloqueadas (FOR UPDATE) hasta el fin de la transacción.
+     */
+    public ResultadoAjustePrecios simularAjustePrecios(FiltroProductos filtro, BigDecimal factor, BigDecimal monto,
+                                                      Connection conn, boolean bloquear) throws SQLException {
+        String sql = ESTADISTICAS_AJUSTE_SQL + filtro.condicion() + (bloquear ? " FOR UPDATE" : "");
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            int i = 1;
+            for (int k = 0; k < 3; k++) {
+                ps.setBigDecimal(i++, factor);
+                ps.setBigDecimal(i++, monto);
+            }
+            filtro.asignar(ps, i);
+            try (ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                long cantidad = rs.getLong("cantidad");
+                return new ResultadoAjustePrecios(
+                        new ResultadoAjustePrecios.Estadisticas(cantidad, rs.getBigDecimal("min_antes"),
+                                rs.getBigDecimal("max_antes"), rs.getBigDecimal("suma_antes")),
+                        new ResultadoAjustePrecios.Estadisticas(cantidad, rs.getBigDecimal("min_despues"),
+                                rs.getBigDecimal("max_despues"), rs.getBigDecimal("suma_despues")));
+            }
+        }
+    }
+
+    /**
+     * Ajusta el precio de todos los productos activos del filtro con un único UPDATE.
+     * Antes bloquea las filas y verifica que ningún precio nuevo viole chk_precio (>= 0) ni
+     * exceda la columna, así el error es claro y no se escribe nada.
+     * Debe correr dentro de una transacción (autoCommit en false).
+     */
+    public ResultadoAjustePrecios ajustarPrecios(FiltroProductos filtro, BigDecimal factor, BigDecimal monto,
+                                                 Connection conn) throws SQLException {
+        return ajustarPrecios(filtro, factor, monto, null, conn);
+    }
+
+    /**
+     * Igual que {@link #ajustarPrecios(FiltroProductos, BigDecimal, BigDecimal, Connection)}, pero
+     * registra en {@code outbox} un evento por producto con las filas ya bloqueadas y validadas,
+     * justo antes del UPDATE (registrarlo antes del bloqueo podría trabar dos ajustes concurrentes).
+     */
+    public ResultadoAjustePrecios ajustarPrecios(FiltroProductos filtro, BigDecimal factor, BigDecimal monto,
+                                                 OutboxDao outbox, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            ResultadoAjustePrecios resultado = simularAjustePrecios(filtro, factor, monto, conn, true);
+            ResultadoAjustePrecios.Estadisticas despues = resultado.getDespues();
+            if (despues.getCantidad() == 0) {
+                resultado.marcarAplicado(0);
+                return resultado;
+            }
+            if (despues.getMinimo().signum() < 0) {
+                throw new SQLException("El ajuste dejaría precios negativos (mínimo " + despues.getMinimo() + ").");
+            }
+            if (despues.getMaximo().compareTo(PRECIO_MAXIMO) > 0) {
+                throw new SQLException("El ajuste supera el precio máximo admitido (" + despues.getMaximo() + ").");
+            }
+
+            if (outbox != null) {
+                outbox.registrarAjustePrecios(filtro, factor, monto, conn);
+            }
+            try (PreparedStatement ps = conn.prepareStatement(AJUSTAR_PRECIOS_SQL + filtro.condicion())) {
+                ps.setBigDecimal(1, factor);
+                ps.setBigDecimal(2, monto);
+                filtro.asignar(ps, 3);
+                resultado.marcarAplicado(ps.executeUpdate());
+            }
+            return resultado;
+        } finally {
+            LAT_AJUSTAR_PRECIOS.registrarDesde(inicio);
+        }
+    }
+
+    // ✅ Operaciones en lote: un executeBatch cada tamanioLote filas, sobre la Connection externa
+    @Override
+    public void crearLote(List<Producto> productos, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            int desde = 0;
+            for (int i = 0; i < productos.size(); i++) {
+                setParametrosInsert(ps, productos.get(i));
+                ps.addBatch();
+                if (i - desde + 1 == tamanioLote || i == productos.size() - 1) {
+                    ps.executeBatch();
+                    // Las claves generadas vuelven en el mismo orden del lote
+                    try (ResultSet rs = ps.getGeneratedKeys()) {
+                        for (int j = desde; j <= i && rs.next(); j++) {
+                            productos.get(j).setId(rs.getLong(1));
+                            productos.get(j).setVersion(0L);
+                        }
+                    }
+                    desde = i + 1;
+                }
+            }
+        } finally {
+            LAT_LOTE.registrarDesde(inicio);
         }
     }
 
-    private Producto mapResultSet(ResultSet rs) throws SQLException {
+    @Override
+    public void actualizarLote(List<Producto> productos, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(UPDATE_SQL)) {
+            int desde = 0;
+            for (int i = 0; i < productos.size(); i++) {
+                setParametrosUpdate(ps, productos.get(i));
+                ps.addBatch();
+                if (i - desde + 1 == tamanioLote || i == productos.size() - 1) {
+                    int[] filas = ps.executeBatch();
+                    for (int j = desde; j <= i; j++) {
+                        verificarVersion(filas[j - desde], productos.get(j), conn);
+                    }
+                    desde = i + 1;
+                }
+            }
+        } finally {
+            LAT_LOTE.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Inserta o reemplaza por id (INSERT ... ON DUPLICATE KEY UPDATE), reactivando los dados de
+     * baja y avanzando su versión, sin control optimista. Con rewriteBatchedStatements cada
+     * tramo de tamanioLote filas viaja como una sola sentencia multi-fila.
+     * Todos los productos deben tener id: los nuevos se crean con crearLote (claves generadas).
+     */
+    public void upsertLote(List<Producto> productos, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+            int pendientes = 0;
+            for (Producto p : productos) {
+                ps.setLong(1, p.getId());
+                ps.setString(2, p.getNombre());
+                ps.setString(3, p.getMarca());
+                ps.setString(4, p.getCategoria());
+                ps.setDouble(5, p.getPrecio());
+                if (p.getPeso() != null) {
+                    ps.setDouble(6, p.getPeso());
+                } else {
+                    ps.setNull(6, Types.DOUBLE);
+                }
+                ps.addBatch();
+                if (++pendientes == tamanioLote) {
+                    ps.executeBatch();
+                    pendientes = 0;
+                }
+            }
+            if (pendientes > 0) {
+                ps.executeBatch();
+            }
+        } finally {
+            LAT_LOTE.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public void eliminarLote(List<Long> ids, Connection conn) throws SQLException {
+        long inicio = System.nanoTime();
+        try (PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+            int pendientes = 0;
+            for (Long id : ids) {
+                ps.setLong(1, id);
+                ps.addBatch();
+                if (++pendientes == tamanioLote) {
+                    ps.executeBatch();
+                    pendientes = 0;
+                }
+            }
+            if (pendientes > 0) {
+                ps.executeBatch();
+            }
+        } finally {
+            LAT_LOTE.registrarDesde(inicio);
+        }
+    }
+
+    @Override
+    public int getTamanioLote() {
+        return tamanioLote;
+    }
+
+    @Override
+    public void setTamanioLote(int tamanioLote) {
+        if (tamanioLote <= 0) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo.");
+        }
+        this.tamanioLote = tamanioLote;
+    }
+
+    private void setParametrosInsert(PreparedStatement ps, Producto p) throws SQLException {
+        ps.setString(1, p.getNombre());
+        ps.setString(2, p.getMarca());
+        ps.setString(3, p.getCategoria());
+        ps.setDouble(4, p.getPrecio());
+        if (p.getPeso() != null) {
+            ps.setDouble(5, p.getPeso());
+        } else {
+            ps.setNull(5, Types.DOUBLE);
+        }
+    }
+
+    private void setParametrosUpdate(PreparedStatement ps, Producto p) throws SQLException {
+        setParametrosInsert(ps, p);
+        ps.setLong(6, p.getId());
+        if (p.getVersion() != null) {
+            ps.setLong(7, p.getVersion());
+        } else {
+            ps.setNull(7, Types.BIGINT);
+        }
+    }
+
+    // 0 filas con versión esperada = otra transacción ganó; el lote entero se descarta con el rollback
+    private void verificarVersion(int filas, Producto p, Connection conn) throws SQLException {
+        if (p.getVersion() == null) {
+            return;
+        }
+        if (filas == 0) {
+            throw new ConflictoVersionException("producto", p.getId(), p.getVersion(), versionActual(p.getId(), conn));
+        }
+        p.setVersion(p.getVersion() + 1);
+    }
+
+    private Long versionActual(long id, Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_VERSION_SQL)) {
+            ps.setLong(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    // Package-private para los benchmarks de mapeo (src/jmh)
+    Producto mapResultSetConCodigo(ResultSet rs) throws SQLException {
+        Producto p = mapResultSet(rs);
+        p.setCodigoBarras(CodigoBarrasDaoImpl.mapResultSet(rs, "cb_"));
+        return p;
+    }
+
+    Producto mapResultSet(ResultSet rs) throws SQLException {
         Producto p = new Producto();
         p.setId(rs.getLong("id"));
         p.setEliminado(rs.getBoolean("eliminado"));
@@ -136,6 +735,7 @@ public class ProductoDaoImpl implements GenericDao<Producto> {
             peso = null;
         }
         p.setPeso(peso);
+        p.setVersion(rs.getLong("version"));
         return p;
     }
 }
\ No newline at end of file
@@ -0,0 +1,495 @@
+package dao;
+
+import cambios.OperacionCambio;
+import config.Particiones;
+import entities.CodigoBarras;
+import entities.Producto;
+import entities.TipoCodigo;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Productos con su código repartidos en shards (ver config.Particiones). Con particion.shards
+ * en db.properties, ProductoService y CodigoBarrasService pasan por acá.
+ *
+ * - El shard sale del id del producto (hash consistente) y el código va siempre con su
+ *   producto: alta, modificación y baja de ambos son una transacción local de un shard, con
+ *   sus eventos en el outbox de ese shard (cada shard tiene su despachador).
+ * - Los ids los asigna GeneradorIds antes de insertar (no hay AUTO_INCREMENT global).
+ * - Las búsquedas por valor consultan DirectorioCodigos (valor → producto) y van a un solo shard.
+ * - Los listados consultan todos los shards en paralelo y juntan; las páginas se ordenan por id.
+ *
+ * El directorio está en otra base que el shard, así que no entra en su transacción: el valor
+ * se reserva antes y se libera si la transacción falla. El shard confirma con la fila del
+ * directorio bloqueada y sólo si la reserva sigue siendo suya. Si el proceso cae entre la
+ * reserva y el commit queda una reserva sin código: las búsquedas la tratan como inexistente y
+ * la próxima alta de ese valor la toma (ver reservar).
+ */
+public class ProductoDaoParticionado {
+
+    private static final Histograma LAT_CREAR = RegistroMetricas.latencia("dao.particion.crearConCodigo");
+    private static final Histograma LAT_BUSCAR_POR_CODIGO = RegistroMetricas.latencia("dao.particion.buscarPorCodigo");
+    private static final Histograma LAT_DISPERSION = RegistroMetricas.latencia("dao.particion.dispersionReunion");
+    private static final LongAdder RESERVAS_TOMADAS = RegistroMetricas.contador("dao.particion.reservasTomadas");
+
+    private static volatile ProductoDaoParticionado instancia;
+
+    @FunctionalInterface
+    private interface EnShard<T> {
+        T ejecutar(Connection conn) throws SQLException;
+    }
+
+    private final Particiones particiones;
+    private final ProductoDaoImpl productoDao = new ProductoDaoImpl();
+    private final CodigoBarrasDaoImpl codigoDao = new CodigoBarrasDaoImpl();
+    private final OutboxDao outbox = new OutboxDao();
+    private final GeneradorIds generador;
+    private final DirectorioCodigos directorio = new DirectorioCodigos();
+    private final ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ProductoDaoParticionado() throws SQLException {
+        this(obtenerParticiones(), new GeneradorIds());
+    }
+
+    public ProductoDaoParticionado(Particiones particiones, GeneradorIds generador) {
+        this.particiones = particiones;
+        this.generador = generador;
+    }
+
+    /** El de los servicios: uno por proceso (comparte pools y bloques de ids). */
+    public static ProductoDaoParticionado getInstancia() throws SQLException {
+        ProductoDaoParticionado d = instancia;
+        if (d == null) {
+            synchronized (ProductoDaoParticionado.class) {
+                d = instancia;
+                if (d == null) {
+                    d = new ProductoDaoParticionado();
+                    instancia = d;
+                }
+            }
+        }
+        return d;
+    }
+
+    public int shardDe(long productoId) {
+        return particiones.shardDe(productoId);
+    }
+
+    // =======================================================
+    // ESCRITURAS (una transacción en el shard del producto)
+    // =======================================================
+
+    /**
+     * Asigna ids, reserva el valor del código y crea producto y código en su shard.
+     * @throws SQLException Si el valor ya existe en algún shard o falla la transacción (no queda nada creado).
+     */
+    public void crearConCodigo(Producto producto, CodigoBarras codigo) throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            long id = generador.siguiente(GeneradorIds.PRODUCTO);
+            long codigoId = generador.siguiente(GeneradorIds.CODIGO_BARRAS);
+            reservar(codigo.getValor(), id);
+            producto.setId(id);
+            codigo.setId(codigoId);
+            codigo.setProductoId(id);
+            try {
+                enTransaccion(id, new String[] {codigo.getValor()}, conn -> {
+                    productoDao.crearConId(producto, conn);
+                    codigoDao.crearConId(codigo, conn);
+                    outbox.registrarProducto(id, OperacionCambio.ALTA, conn);
+                    outbox.registrarCodigo(codigoId, OperacionCambio.ALTA, conn);
+                    return null;
+                });
+            } catch (SQLException | RuntimeException e) {
+                producto.setId(null);
+                codigo.setId(null);
+                liberarSinFallar(codigo.getValor(), id);
+                throw e;
+            }
+        } finally {
+            LAT_CREAR.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Alta de un código para un producto existente (en el shard de {@code codigo.getProductoId()}).
+     * Las restricciones del shard (fk_cb_producto, uq_cb_producto) se reportan igual que en una base.
+     */
+    public void crearCodigo(CodigoBarras codigo) throws SQLException {
+        long productoId = codigo.getProductoId();
+        long codigoId = generador.siguiente(GeneradorIds.CODIGO_BARRAS);
+        reservar(codigo.getValor(), productoId);
+        codigo.setId(codigoId);
+        try {
+            enTransaccion(productoId, new String[] {codigo.getValor()}, conn -> {
+                codigoDao.crearConId(codigo, conn);
+                outbox.registrarCodigo(codigoId, OperacionCambio.ALTA, conn);
+                return null;
+            });
+        } catch (SQLException | RuntimeException e) {
+            codigo.setId(null);
+            liberarSinFallar(codigo.getValor(), productoId);
+            throw e;
+        }
+    }
+
+    /**
+     * Actualiza producto y código (con control de versión) en su shard. Si cambia el valor del
+     * código, reserva el nuevo en el directorio antes y libera el anterior después del commit.
+     */
+    public void actualizarConCodigo(Producto producto, CodigoBarras codigo) throws SQLException {
+        if (producto.getId() == null || codigo.getId() == null) {
+            throw new SQLException("Producto y código deben tener id para actualizar.");
+        }
+        codigo.setProductoId(producto.getId());
+        actualizar(producto, codigo);
+    }
+
+    /** Como actualizarConCodigo, sólo el código; no puede pasarlo a un producto de otro shard. */
+    public void actualizarCodigo(CodigoBarras codigo) throws SQLException {
+        if (codigo.getId() == null || codigo.getProductoId() == null) {
+            throw new SQLException("El código debe tener id y producto para actualizar.");
+        }
+        actualizar(null, codigo);
+    }
+
+    /**
+     * Baja lógica de ambos en su shard. El valor sigue reservado, igual que uq_cb_valor
+     * lo reserva en una sola base mientras la fila dada de baja exista.
+     * @return El valor del código (para invalidar la cache), o null si no existe.
+     */
+    public String eliminarConCodigo(long productoId, long codigoId) throws SQLException {
+        return enTransaccion(productoId, null, conn -> {
+            CodigoBarras actual = codigoDao.leer(codigoId, conn);
+            codigoDao.eliminar(codigoId, conn);
+            productoDao.eliminar(productoId, conn);
+            outbox.registrarCodigo(codigoId, OperacionCambio.BAJA, conn);
+            outbox.registrarProducto(productoId, OperacionCambio.BAJA, conn);
+            return actual != null ? actual.getValor() : null;
+        });
+    }
+
+    /**
+     * Baja lógica de un código activo; el shard se busca por id en todos. Si no existe, no hace nada.
+     * @return El valor del código dado de baja, o null si no existe.
+     */
+    public String eliminarCodigo(long codigoId) throws SQLException {
+        CodigoBarras actual = leerCodigo(codigoId);
+        if (actual == null) {
+            return null;
+        }
+        enTransaccion(actual.getProductoId(), null, conn -> {
+            codigoDao.eliminar(codigoId, conn);
+            outbox.registrarCodigo(codigoId, OperacionCambio.BAJA, conn);
+            return null;
+        });
+        return actual.getValor();
+    }
+
+    // =======================================================
+    // LECTURAS DE PRODUCTOS
+    // =======================================================
+
+    public Producto leer(long id) throws SQLException {
+        try (Connection conn = particiones.getConnection(shardDe(id))) {
+            return productoDao.leer(id, conn);
+        }
+    }
+
+    public Producto leerConCodigo(long id) throws SQLException {
+        try (Connection conn = particiones.getConnection(shardDe(id))) {
+            return productoDao.leerConCodigo(id, conn);
+        }
+    }
+
+    /** Directorio → shard del producto → una consulta. null si el valor no existe o está dado de baja. */
+    public Producto buscarPorCodigo(String valor) throws SQLException {
+        long inicio = System.nanoTime();
+        try {
+            Long id = directorio.buscar(valor);
+            if (id == null) {
+                return null;
+            }
+            try (Connection conn = particiones.getConnection(shardDe(id))) {
+                return productoDao.buscarPorCodigo(valor, conn);
+            }
+        } finally {
+            LAT_BUSCAR_POR_CODIGO.registrarDesde(inicio);
+        }
+    }
+
+    /** Todos los productos activos: una consulta por shard, en paralelo. */
+    public List<Producto> leerTodos() throws SQLException {
+        return juntar(enTodos(productoDao::leerTodos));
+    }
+
+    /** Todos los productos activos con su código: una consulta por shard, en paralelo. */
+    public List<Producto> leerTodosConCodigo() throws SQLException {
+        return juntar(enTodos(productoDao::leerTodosConCodigo));
+    }
+
+    /**
+     * Página keyset global: pide {@code limite} filas con id mayor a {@code despuesDeId} a cada
+     * shard en paralelo, las ordena por id y se queda con las primeras {@code limite}.
+     */
+    public List<Producto> getPaginaConCodigo(long despuesDeId, int limite) throws SQLException {
+        return primeros(enTodos(conn -> productoDao.leerPaginaConCodigo(despuesDeId, limite, conn)),
+                Producto::getId, limite);
+    }
+
+    // =======================================================
+    // LECTURAS DE CÓDIGOS
+    // =======================================================
+
+    /** Código activo por id (no dice en qué shard está: pregunta a todos). */
+    public CodigoBarras leerCodigo(long id) throws SQLException {
+        for (CodigoBarras cb : enTodos(conn -> codigoDao.leer(id, conn))) {
+            if (cb != null) {
+                return cb;
+            }
+        }
+        return null;
+    }
+
+    public List<CodigoBarras> leerTodosCodigos() throws SQLException {
+        return juntar(enTodos(codigoDao::leerTodos));
+    }
+
+    public CodigoBarras buscarCodigoPorValor(String valor) throws SQLException {
+        Long id = directorio.buscar(valor);
+        if (id == null) {
+            return null;
+        }
+        try (Connection conn = particiones.getConnection(shardDe(id))) {
+            return codigoDao.buscarPorValor(valor, conn);
+        }
+    }
+
+    /** true si algún shard tiene (o está dando de alta) un código con ese valor. */
+    public boolean existeValor(String valor) throws SQLException {
+        return directorio.buscar(valor) != null;
+    }
+
+    public List<CodigoBarras> buscarCodigosPorProductoId(long productoId) throws SQLException {
+        try (Connection conn = particiones.getConnection(shardDe(productoId))) {
+            return codigoDao.buscarPorProductoId(productoId, conn);
+        }
+    }
+
+    public List<CodigoBarras> buscarCodigosPorTipo(TipoCodigo tipo) throws SQLException {
+        return juntar(enTodos(conn -> codigoDao.buscarPorTipo(tipo, conn)));
+    }
+
+    /** Página keyset global de códigos de un tipo (igual que getPaginaConCodigo). */
+    public List<CodigoBarras> buscarCodigosPorTipoPagina(TipoCodigo tipo, long despuesDeId, int limite)
+            throws SQLException {
+        return primeros(enTodos(conn -> codigoDao.buscarPorTipoPagina(tipo, despuesDeId, limite, conn)),
+                CodigoBarras::getId, limite);
+    }
+
+    /** Cantidad de valores reservados en el directorio (dimensiona el filtro de valores). */
+    public long contarValores() throws SQLException {
+        return directorio.contar();
+    }
+
+    /** Todos los valores del directorio (carga del filtro de valores). Usar con try-with-resources. */
+    public Stream<String> streamValores() throws SQLException {
+        return directorio.streamValores();
+    }
+
+    // =======================================================
+    // AUXILIARES
+    // =======================================================
+
+    // producto == null: sólo el código
+    private void actualizar(Producto producto, CodigoBarras codigo) throws SQLException {
+        long id = codigo.getProductoId();
+        Long versionProducto = producto == null ? null : producto.getVersion();
+        Long versionCodigo = codigo.getVersion();
+        String[] reservado = new String[1];
+        String anterior;
+        try {
+            anterior = enTransaccion(id, reservado, conn -> {
+                CodigoBarras actual = codigoDao.leer(codigo.getId(), conn);
+                if (actual == null || actual.getProductoId() != id) {
+                    throw new SQLException("El código ID " + codigo.getId() + " no es un código activo del producto "
+                            + id + " en su shard.");
+                }
+                if (!actual.getValor().equals(codigo.getValor())) {
+                    reservar(codigo.getValor(), id);
+                    reservado[0] = codigo.getValor();
+                }
+                if (producto != null) {
+                    productoDao.actualizar(producto, conn);
+                    outbox.registrarProducto(id, OperacionCambio.MODIFICACION, conn);
+                }
+                codigoDao.actualizar(codigo, conn);
+                outbox.registrarCodigo(codigo.getId(), OperacionCambio.MODIFICACION, conn);
+                return actual.getValor();
+            });
+        } catch (SQLException | RuntimeException e) {
+            if (producto != null) {
+                producto.setVersion(versionProducto);
+            }
+            codigo.setVersion(versionCodigo);
+            if (reservado[0] != null) {
+                liberarSinFallar(reservado[0], id);
+            }
+            throw e;
+        }
+        if (reservado[0] != null) {
+            liberarSinFallar(anterior, id);
+        }
+    }
+
+    /*
+     * Reserva el valor para el producto. Si ya tiene dueño pero el shard del dueño no tiene un
+     * código con ese valor, la reserva quedó de una escritura que no terminó y se toma. La
+     * decisión se hace con la fila del directorio bloqueada, el mismo bloqueo con que el dueño
+     * confirma (enTransaccion): si el dueño estaba por confirmar, ve que perdió la reserva y se
+     * deshace en lugar de dejar el valor repetido en dos shards.
+     */
+    private void reservar(String valor, long productoId) throws SQLException {
+        SQLIntegrityConstraintViolationException duplicado;
+        try {
+            directorio.reservar(valor, productoId);
+            return;
+        } catch (SQLIntegrityConstraintViolationException e) {
+            duplicado = e;
+        }
+        try (Connection dir = directorio.abrirTransaccion()) {
+            Long duenio = directorio.bloquear(valor, dir);
+            if (duenio == null) {
+                directorio.reservar(valor, productoId, dir); // se liberó en el medio
+            } else if (duenio != productoId) {
+                if (tieneCodigo(duenio, valor)) {
+                    throw new SQLException("Ya existe un código de barras con valor " + valor + ".", duplicado);
+                }
+                directorio.reasignar(valor, productoId, dir);
+                RESERVAS_TOMADAS.increment();
+                System.err.println("⚠ Reserva sin código del valor " + valor + " (producto " + duenio
+                        + ") reasignada al producto " + productoId + ".");
+            }
+            dir.commit();
+        }
+    }
+
+    // Lectura confirmada en el shard del dueño (incluye códigos dados de baja, como uq_cb_valor)
+    private boolean tieneCodigo(long productoId, String valor) throws SQLException {
+        try (Connection conn = particiones.getConnection(shardDe(productoId))) {
+            return codigoDao.existeValor(valor, conn);
+        }
+    }
+
+    /*
+     * Al cerrar, el pool deshace lo pendiente y restaura el autocommit. Si el trabajo dejó un
+     * valor en reservado[0], el shard confirma con esa fila del directorio bloqueada y sólo si
+     * sigue reservada para el producto.
+     */
+    private <T> T enTransaccion(long productoId, String[] reservado, EnShard<T> trabajo) throws SQLException {
+        Connection conn = particiones.getConnection(shardDe(productoId));
+        try {
+            conn.setAutoCommit(false);
+            T resultado = trabajo.ejecutar(conn);
+            if (reservado == null || reservado[0] == null) {
+                conn.commit();
+            } else {
+                try (Connection dir = directorio.abrirTransaccion()) {
+                    Long duenio = directorio.bloquear(reservado[0], dir);
+                    if (duenio == null || duenio != productoId) {
+                        throw new SQLException("El valor " + reservado[0] + " pasó a otro producto antes de confirmar.");
+                    }
+                    conn.commit();
+                } // cerrar dir suelta el bloqueo
+            }
+            return resultado;
+        } catch (SQLException | RuntimeException e) {
+            try {
+                conn.rollback();
+            } catch (SQLException ex) {
+                System.err.println("⚠ Error en rollback del shard: " + ex.getMessage());
+            }
+            throw e;
+        } finally {
+            conn.close();
+        }
+    }
+
+    // Dispersión y reunión: una tarea por shard; si uno falla, falla la consulta entera
+    private <T> List<T> enTodos(EnShard<T> consulta) throws SQLException {
+        long inicio = System.nanoTime();
+        List<Future<T>> tareas = new ArrayList<>(particiones.getCantidad());
+        for (int s = 0; s < particiones.getCantidad(); s++) {
+            int shard = s;
+            tareas.add(hilos.submit(() -> {
+                try (Connection conn = particiones.getConnection(shard)) {
+                    return consulta.ejecutar(conn);
+                }
+            }));
+        }
+        List<T> resultados = new ArrayList<>(tareas.size());
+        try {
+            for (int s = 0; s < tareas.size(); s++) {
+                try {
+                    resultados.add(tareas.get(s).get());
+                } catch (ExecutionException e) {
+                    throw new SQLException("Falló la consulta en el shard " + particiones.getNombres().get(s)
+                            + ": " + e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Consulta a los shards interrumpida", e);
+        } finally {
+            tareas.forEach(t -> t.cancel(true));
+            LAT_DISPERSION.registrarDesde(inicio);
+        }
+        return resultados;
+    }
+
+    private static <T> List<T> juntar(List<List<T>> partes) {
+        List<T> todos = new ArrayList<>();
+        for (List<T> parte : partes) {
+            todos.addAll(parte);
+        }
+        return todos;
+    }
+
+    // Cada shard ya trae sus primeras {@code limite} por id: entre todas están las globales
+    private static <T> List<T> primeros(List<List<T>> partes, ToLongFunction<T> id, int limite) {
+        List<T> candidatos = juntar(partes);
+        candidatos.sort(Comparator.comparingLong(id));
+        return candidatos.size() > limite ? new ArrayList<>(candidatos.subList(0, limite)) : candidatos;
+    }
+
+    private void liberarSinFallar(String valor, long productoId) {
+        try {
+            directorio.liberar(valor, productoId);
+        } catch (SQLException e) {
+            System.err.println("⚠ No se pudo liberar el valor " + valor + " del directorio: " + e.getMessage());
+        }
+    }
+
+    private static Particiones obtenerParticiones() throws SQLException {
+        try {
+            return Particiones.getInstancia();
+        } catch (IOException e) {
+            throw new SQLException("Error al leer la configuración de shards", e);
+        }
+    }
+}
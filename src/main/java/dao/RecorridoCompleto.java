@@ -0,0 +1,17 @@
+package dao;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marca una constante SQL de un DAO que recorre la tabla completa a propósito (listados
+ * completos, firmas de snapshot). VerificadorPlanes no la cuenta como falla.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface RecorridoCompleto {
+    /** Por qué el recorrido completo es correcto. */
+    String value();
+}
@@ -0,0 +1,110 @@
+package dao;
+
+import config.DatabaseConnection;
+import metricas.Histograma;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Convierte una consulta en un Stream que se lee fila a fila desde un cursor del servidor
+ * (useCursorFetch=true + setFetchSize), así la memoria no depende del tamaño de la tabla.
+ *
+ * El Stream retiene una conexión del pool hasta cerrarse: usarlo siempre con try-with-resources.
+ * Al cerrarse registra en {@code filas} la cantidad de filas leídas.
+ */
+final class ResultSetStream {
+
+    @FunctionalInterface
+    interface Mapeador<T> {
+        T mapear(ResultSet rs) throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface Parametros {
+        void asignar(PreparedStatement ps) throws SQLException;
+    }
+
+    private ResultSetStream() {
+    }
+
+    static <T> Stream<T> abrir(String sql, Parametros parametros, Mapeador<T> mapeador, Histograma filas)
+            throws SQLException {
+        return abrir(sql, parametros, mapeador, filas, false);
+    }
+
+    /**
+     * @param primario true para leer del primario aunque haya réplicas (cargas que no toleran
+     *                 el retraso de replicación).
+     */
+    static <T> Stream<T> abrir(String sql, Parametros parametros, Mapeador<T> mapeador, Histograma filas,
+                               boolean primario) throws SQLException {
+        Connection conn = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            conn = primario ? DatabaseConnection.getConnection() : DatabaseConnection.getConnectionLectura();
+            ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(DatabaseConnection.getFetchSize());
+            if (parametros != null) {
+                parametros.asignar(ps);
+            }
+            rs = ps.executeQuery();
+        } catch (IOException e) {
+            cerrar(rs, ps, conn);
+            throw new SQLException("Error al obtener conexión", e);
+        } catch (SQLException | RuntimeException e) {
+            cerrar(rs, ps, conn);
+            throw e;
+        }
+
+        final Connection c = conn;
+        final PreparedStatement s = ps;
+        final ResultSet r = rs;
+        final long[] leidas = new long[1];
+        Spliterator<T> cursor = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    if (!r.next()) {
+                        return false;
+                    }
+                    leidas[0]++;
+                    accion.accept(mapeador.mapear(r));
+                    return true;
+                } catch (SQLException e) {
+                    throw new LecturaStreamException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(cursor, false).onClose(() -> {
+            filas.registrar(leidas[0]);
+            cerrar(r, s, c);
+        });
+    }
+
+    private static void cerrar(ResultSet rs, PreparedStatement ps, Connection conn) {
+        try {
+            if (rs != null) rs.close();
+        } catch (SQLException ignored) {
+        }
+        try {
+            if (ps != null) ps.close();
+        } catch (SQLException ignored) {
+        }
+        try {
+            if (conn != null) conn.close();
+        } catch (SQLException e) {
+            System.err.println("⚠ Error al cerrar conexión: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package dao;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Resultado de un ajuste masivo de precios: filas afectadas y estadísticas de precio
+ * de esas mismas filas antes y después del ajuste.
+ */
+public class ResultadoAjustePrecios {
+
+    private final Estadisticas antes;
+    private final Estadisticas despues;
+    private long afectados;
+    private boolean aplicado;
+
+    ResultadoAjustePrecios(Estadisticas antes, Estadisticas despues) {
+        this.antes = antes;
+        this.despues = despues;
+    }
+
+    void marcarAplicado(long afectados) {
+        this.afectados = afectados;
+        this.aplicado = true;
+    }
+
+    // Getters
+    public Estadisticas getAntes() { return antes; }
+    public Estadisticas getDespues() { return despues; }
+    /** Filas actualizadas (0 si fue una simulación). */
+    public long getAfectados() { return afectados; }
+    /** false si sólo se simuló el ajuste. */
+    public boolean isAplicado() { return aplicado; }
+
+    @Override
+    public String toString() {
+        return String.format("%s %d productos%n  antes:   %s%n  después: %s",
+                aplicado ? "Ajustados" : "Se ajustarían", aplicado ? afectados : antes.getCantidad(), antes, despues);
+    }
+
+    /** Cantidad, mínimo, máximo y suma de precios (DECIMAL, sin redondeos de double). */
+    public static class Estadisticas {
+        private final long cantidad;
+        private final BigDecimal minimo;
+        private final BigDecimal maximo;
+        private final BigDecimal suma;
+
+        Estadisticas(long cantidad, BigDecimal minimo, BigDecimal maximo, BigDecimal suma) {
+            this.cantidad = cantidad;
+            this.minimo = minimo;
+            this.maximo = maximo;
+            this.suma = suma == null ? BigDecimal.ZERO : suma;
+        }
+
+        // Getters
+        public long getCantidad() { return cantidad; }
+        /** null si no hay filas. */
+        public BigDecimal getMinimo() { return minimo; }
+        /** null si no hay filas. */
+        public BigDecimal getMaximo() { return maximo; }
+        public BigDecimal getSuma() { return suma; }
+
+        public BigDecimal getPromedio() {
+            return cantidad == 0 ? null : suma.divide(BigDecimal.valueOf(cantidad), 2, RoundingMode.HALF_UP);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d, prom=%s, min=%s, max=%s, total=%s", cantidad, getPromedio(), minimo, maximo, suma);
+        }
+    }
+}
@@ -10,6 +10,7 @@ public class CodigoBarras {
     private LocalDate fechaAsignacion;
     private String observaciones;
     private Long productoId; // FK hacia Producto
+    private Long version; // Concurrencia optimista; null = actualizar sin control de versión
 
     public CodigoBarras() {}
 
@@ -46,6 +47,9 @@ public class CodigoBarras {
     public Long getProductoId() { return productoId; }
     public void setProductoId(Long productoId) { this.productoId = productoId; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     @Override
     public String toString() {
         return "CodigoBarras{" +
@@ -56,6 +60,7 @@ public class CodigoBarras {
                 ", fechaAsignacion=" + fechaAsignacion +
                 ", observaciones='" + observaciones + '\'' +
                 ", productoId=" + productoId +
+                ", version=" + version +
                 '}';
     }
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ public class Producto {
     private double precio;
     private Double peso;
     private CodigoBarras codigoBarras;
+    private Long version; // Concurrencia optimista; null = actualizar sin control de versión
 
     public Producto() {}
 
@@ -49,6 +50,9 @@ public class Producto {
     public CodigoBarras getCodigoBarras() { return codigoBarras; }
     public void setCodigoBarras(CodigoBarras codigoBarras) { this.codigoBarras = codigoBarras; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     @Override
     public String toString() {
         return "Producto{" +
@@ -59,6 +63,7 @@ public class Producto {
                 ", categoria='" + categoria + '\'' +
                 ", precio=" + precio +
                 ", peso=" + peso +
+                ", version=" + version +
                 ", codigoBarras=" + (codigoBarras != null ? codigoBarras.toString() : "null") +
                 '}';
     }
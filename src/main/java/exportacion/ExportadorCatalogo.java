@@ -0,0 +1,216 @@
+package exportacion;
+
+import dao.LecturaStreamException;
+import dao.ProductoDaoImpl;
+import entities.CodigoBarras;
+import entities.Producto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta los productos activos con su código (JOIN leído con cursor del servidor) a CSV o
+ * JSON Lines, opcionalmente comprimido con gzip. Cada fila se escribe apenas se lee, a través
+ * de un buffer fijo: la memoria no depende de la cantidad de filas.
+ *
+ * El archivo se escribe en un temporal y se reemplaza de forma atómica, así quien lo consume
+ * nunca ve una exportación a medias.
+ *
+ * <pre>
+ * java ... exportacion.ExportadorCatalogo catalogo.jsonl.gz
+ * </pre>
+ */
+public class ExportadorCatalogo {
+
+    public static final int TAMANIO_BUFFER = 1 << 20;
+    private static final int FILAS_POR_PROGRESO = 100_000;
+    private static final String ENCABEZADO_CSV =
+            "nombre,marca,categoria,precio,peso,tipo,valor,observaciones,id,codigo_id,fecha_asignacion";
+
+    private final ProductoDaoImpl productoDao;
+    private Consumer<ResultadoExportacion> progreso = r -> { };
+
+    public ExportadorCatalogo() {
+        this(new ProductoDaoImpl());
+    }
+
+    public ExportadorCatalogo(ProductoDaoImpl productoDao) {
+        this.productoDao = productoDao;
+    }
+
+    /** Callback invocado cada {@value #FILAS_POR_PROGRESO} filas. */
+    public void setProgreso(Consumer<ResultadoExportacion> progreso) {
+        this.progreso = progreso;
+    }
+
+    // ============================================================
+    //  EXPORTAR
+    // ============================================================
+
+    /**
+     * Exporta deduciendo formato y compresión del nombre (p. ej. "catalogo.csv.gz").
+     */
+    public ResultadoExportacion exportar(Path destino) throws SQLException, IOException {
+        String nombre = destino.getFileName().toString();
+        return exportar(destino, FormatoExportacion.porNombre(nombre), nombre.toLowerCase().endsWith(".gz"));
+    }
+
+    /**
+     * Exporta el catálogo activo completo a {@code destino}.
+     * @param gzip Si es true se comprime (nivel rápido: la exportación no debe quedar limitada por la CPU).
+     * @return Filas, bytes y velocidad.
+     */
+    public ResultadoExportacion exportar(Path destino, FormatoExportacion formato, boolean gzip)
+            throws SQLException, IOException {
+        ResultadoExportacion resultado = new ResultadoExportacion();
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            try (SalidaUtf8 salida = new SalidaUtf8(abrir(temporal, gzip), TAMANIO_BUFFER);
+                 Stream<Producto> productos = productoDao.streamTodosConCodigo()) {
+                if (formato == FormatoExportacion.CSV) {
+                    salida.ascii(ENCABEZADO_CSV).ascii('\n');
+                }
+                long filas = 0;
+                Iterator<Producto> it = productos.iterator();
+                while (it.hasNext()) {
+                    Producto p = it.next();
+                    if (formato == FormatoExportacion.CSV) {
+                        escribirCsv(salida, p);
+                    } else {
+                        escribirJson(salida, p);
+                    }
+                    if (++filas % FILAS_POR_PROGRESO == 0) {
+                        resultado.actualizar(filas, salida.getBytes());
+                        progreso.accept(resultado);
+                    }
+                }
+                resultado.actualizar(filas, salida.getBytes());
+            } catch (LecturaStreamException e) {
+                throw e.getCause();
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+        resultado.finalizar(Files.size(destino));
+        return resultado;
+    }
+
+    private static WritableByteChannel abrir(Path archivo, boolean gzip) throws IOException {
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        if (!gzip) {
+            return canal;
+        }
+        OutputStream comprimido = new GZIPOutputStream(Channels.newOutputStream(canal), 1 << 16) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+        return Channels.newChannel(comprimido);
+    }
+
+    // ============================================================
+    //  FORMATOS
+    // ============================================================
+
+    private static void escribirCsv(SalidaUtf8 s, Producto p) throws IOException {
+        CodigoBarras cb = p.getCodigoBarras();
+        s.csv(p.getNombre(), ',').ascii(',')
+         .csv(p.getMarca(), ',').ascii(',')
+         .csv(p.getCategoria(), ',').ascii(',')
+         .decimal(p.getPrecio(), 2).ascii(',');
+        if (p.getPeso() != null) {
+            s.decimal(p.getPeso(), 3);
+        }
+        s.ascii(',');
+        if (cb != null) {
+            s.ascii(cb.getTipo().name()).ascii(',')
+             .csv(cb.getValor(), ',').ascii(',')
+             .csv(cb.getObservaciones(), ',').ascii(',');
+        } else {
+            s.ascii(",,,");
+        }
+        s.entero(p.getId()).ascii(',');
+        if (cb != null) {
+            s.entero(cb.getId()).ascii(',');
+            fecha(s, cb.getFechaAsignacion());
+        } else {
+            s.ascii(',');
+        }
+        s.ascii('\n');
+    }
+
+    private static void escribirJson(SalidaUtf8 s, Producto p) throws IOException {
+        s.ascii("{\"id\":").entero(p.getId())
+         .ascii(",\"nombre\":").json(p.getNombre())
+         .ascii(",\"marca\":").json(p.getMarca())
+         .ascii(",\"categoria\":").json(p.getCategoria())
+         .ascii(",\"precio\":").decimal(p.getPrecio(), 2)
+         .ascii(",\"peso\":");
+        if (p.getPeso() != null) {
+            s.decimal(p.getPeso(), 3);
+        } else {
+            s.ascii("null");
+        }
+        CodigoBarras cb = p.getCodigoBarras();
+        if (cb == null) {
+            s.ascii(",\"codigo\":null}\n");
+            return;
+        }
+        s.ascii(",\"codigo\":{\"id\":").entero(cb.getId())
+         .ascii(",\"tipo\":\"").ascii(cb.getTipo().name())
+         .ascii("\",\"valor\":").json(cb.getValor())
+         .ascii(",\"fechaAsignacion\":");
+        if (cb.getFechaAsignacion() != null) {
+            s.ascii('"');
+            fecha(s, cb.getFechaAsignacion());
+            s.ascii('"');
+        } else {
+            s.ascii("null");
+        }
+        s.ascii(",\"observaciones\":").json(cb.getObservaciones())
+         .ascii("}}\n");
+    }
+
+    // ISO-8601 (aaaa-mm-dd) sin pasar por LocalDate.toString()
+    private static void fecha(SalidaUtf8 s, LocalDate f) throws IOException {
+        if (f == null) {
+            return;
+        }
+        s.entero(f.getYear()).ascii('-');
+        if (f.getMonthValue() < 10) s.ascii('0');
+        s.entero(f.getMonthValue()).ascii('-');
+        if (f.getDayOfMonth() < 10) s.ascii('0');
+        s.entero(f.getDayOfMonth());
+    }
+
+    // ============================================================
+    //  LÍNEA DE COMANDOS
+    // ============================================================
+
+    public static void main(String[] args) throws SQLException, IOException {
+        if (args.length != 1) {
+            System.err.println("Uso: ExportadorCatalogo <destino.csv|.jsonl>[.gz]");
+            System.exit(2);
+        }
+        ExportadorCatalogo exportador = new ExportadorCatalogo();
+        exportador.setProgreso(r -> System.out.println("⏳ " + r));
+        System.out.println("✅ " + exportador.exportar(Paths.get(args[0])));
+    }
+}
@@ -0,0 +1,23 @@
+package exportacion;
+
+/**
+ * Formatos de exportación del catálogo.
+ */
+public enum FormatoExportacion {
+    /**
+     * Columnas de ImportadorCatalogo más id, código_id y fecha de asignación, una fila por línea.
+     * Los productos sin código salen con tipo y valor vacíos: el importador los rechaza.
+     */
+    CSV,
+    /** Un objeto JSON por línea, con el código anidado. */
+    JSONL;
+
+    /** Deduce el formato por la extensión (".jsonl"/".json", con o sin ".gz"); por defecto CSV. */
+    public static FormatoExportacion porNombre(String archivo) {
+        String n = archivo.toLowerCase();
+        if (n.endsWith(".gz")) {
+            n = n.substring(0, n.length() - 3);
+        }
+        return n.endsWith(".jsonl") || n.endsWith(".json") ? JSONL : CSV;
+    }
+}
@@ -0,0 +1,53 @@
+package exportacion;
+
+/**
+ * Contadores de una exportación de catálogo. Se actualiza a medida que avanza
+ * y se entrega al callback de progreso.
+ */
+public class ResultadoExportacion {
+    private final long inicioNanos = System.nanoTime();
+    private long filas;
+    private long bytes;
+    private long bytesArchivo;
+    private long finNanos;
+
+    void actualizar(long filas, long bytes) {
+        this.filas = filas;
+        this.bytes = bytes;
+    }
+
+    void finalizar(long bytesArchivo) {
+        this.bytesArchivo = bytesArchivo;
+        this.finNanos = System.nanoTime();
+    }
+
+    // Getters
+    public long getFilas() { return filas; }
+    /** Bytes de texto generados (antes de comprimir). */
+    public long getBytes() { return bytes; }
+    /** Tamaño final del archivo (0 hasta terminar). */
+    public long getBytesArchivo() { return bytesArchivo; }
+
+    public double getSegundos() {
+        long fin = finNanos != 0 ? finNanos : System.nanoTime();
+        return (fin - inicioNanos) / 1_000_000_000.0;
+    }
+
+    public double getFilasPorSegundo() {
+        double seg = getSegundos();
+        return seg == 0 ? 0 : filas / seg;
+    }
+
+    /** MB de texto generados por segundo. */
+    public double getMbPorSegundo() {
+        double seg = getSegundos();
+        return seg == 0 ? 0 : bytes / seg / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Exportación{filas=%d, %.1f MB (archivo %.1f MB), %.1f s, %.0f filas/s, %.1f MB/s}",
+                filas, bytes / (1024.0 * 1024), bytesArchivo / (1024.0 * 1024), getSegundos(),
+                getFilasPorSegundo(), getMbPorSegundo());
+    }
+}
@@ -0,0 +1,216 @@
+package exportacion;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Escritor de texto UTF-8 sobre un canal, con un buffer fijo y sin objetos por campo:
+ * los String se codifican a mano dentro del buffer y los números con decimales fijos
+ * se escriben como enteros escalados (sin String.format ni notación científica).
+ */
+final class SalidaUtf8 implements AutoCloseable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final long[] ESCALAS = {1, 10, 100, 1000, 10000};
+
+    private final WritableByteChannel canal;
+    private final ByteBuffer buffer;
+    private final byte[] b;
+    private int pos;
+    private long bytes;
+
+    SalidaUtf8(WritableByteChannel canal, int tamanioBuffer) {
+        this.canal = canal;
+        this.b = new byte[tamanioBuffer];
+        this.buffer = ByteBuffer.wrap(b);
+    }
+
+    // ============================================================
+    //  TEXTO
+    // ============================================================
+
+    SalidaUtf8 ascii(char c) throws IOException {
+        asegurar(1);
+        b[pos++] = (byte) c;
+        return this;
+    }
+
+    SalidaUtf8 ascii(String s) throws IOException {
+        asegurar(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            b[pos++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    SalidaUtf8 texto(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            i = caracter(s, i);
+        }
+        return this;
+    }
+
+    /**
+     * Campo CSV de una sola línea: entre comillas sólo si contiene separador o comillas, y los
+     * saltos de línea se escriben como espacios (ImportadorCatalogo lee una fila por línea).
+     */
+    SalidaUtf8 csv(String s, char separador) throws IOException {
+        if (s == null) {
+            return this;
+        }
+        boolean comillas = false;
+        boolean saltos = false;
+        for (int i = 0; i < s.length() && !comillas; i++) {
+            char c = s.charAt(i);
+            comillas = c == separador || c == '"';
+            saltos |= c == '\n' || c == '\r';
+        }
+        if (!comillas && !saltos) {
+            return texto(s);
+        }
+        if (comillas) {
+            ascii('"');
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                ascii('"');
+            }
+            if (c == '\n' || c == '\r') {
+                ascii(' ');
+            } else {
+                i = caracter(s, i);
+            }
+        }
+        return comillas ? ascii('"') : this;
+    }
+
+    /** Cadena JSON entre comillas (o null), con los escapes de RFC 8259. */
+    SalidaUtf8 json(String s) throws IOException {
+        if (s == null) {
+            return ascii("null");
+        }
+        ascii('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                ascii('\\').ascii(c);
+            } else if (c < 0x20) {
+                switch (c) {
+                    case '\n': ascii("\\n"); break;
+                    case '\r': ascii("\\r"); break;
+                    case '\t': ascii("\\t"); break;
+                    default:
+                        ascii("\\u00").ascii(HEX[c >> 4]).ascii(HEX[c & 0xF]);
+                }
+            } else {
+                i = caracter(s, i);
+            }
+        }
+        return ascii('"');
+    }
+
+    // ============================================================
+    //  NÚMEROS
+    // ============================================================
+
+    SalidaUtf8 entero(long n) throws IOException {
+        if (n == Long.MIN_VALUE) {
+            return ascii(Long.toString(n));
+        }
+        asegurar(20);
+        if (n < 0) {
+            b[pos++] = '-';
+            n = -n;
+        }
+        int inicio = pos;
+        do {
+            b[pos++] = (byte) ('0' + n % 10);
+            n /= 10;
+        } while (n > 0);
+        // Los dígitos quedaron al revés
+        for (int i = inicio, j = pos - 1; i < j; i++, j--) {
+            byte t = b[i];
+            b[i] = b[j];
+            b[j] = t;
+        }
+        return this;
+    }
+
+    /** Número con {@code decimales} cifras fijas, p. ej. decimal(1450.5, 2) → "1450.50". */
+    SalidaUtf8 decimal(double valor, int decimales) throws IOException {
+        long escala = ESCALAS[decimales];
+        long unidades = Math.round(valor * escala);
+        if (unidades < 0) {
+            ascii('-');
+            unidades = -unidades;
+        }
+        entero(unidades / escala);
+        if (decimales > 0) {
+            ascii('.');
+            long resto = unidades % escala;
+            for (long d = escala / 10; d > 0; d /= 10) {
+                ascii((char) ('0' + resto / d % 10));
+            }
+        }
+        return this;
+    }
+
+    // ============================================================
+    //  BUFFER
+    // ============================================================
+
+    long getBytes() {
+        return bytes + pos;
+    }
+
+    void vaciar() throws IOException {
+        buffer.clear().limit(pos);
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+        bytes += pos;
+        pos = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vaciar();
+        } finally {
+            canal.close();
+        }
+    }
+
+    private void asegurar(int n) throws IOException {
+        if (pos + n > b.length) {
+            vaciar();
+        }
+    }
+
+    // Codifica el carácter en i (y su par sustituto, si lo tiene); devuelve el último índice usado
+    private int caracter(String s, int i) throws IOException {
+        char c = s.charAt(i);
+        asegurar(4);
+        if (c < 0x80) {
+            b[pos++] = (byte) c;
+        } else if (c < 0x800) {
+            b[pos++] = (byte) (0xC0 | c >> 6);
+            b[pos++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(++i));
+            b[pos++] = (byte) (0xF0 | cp >> 18);
+            b[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            b[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            b[pos++] = (byte) (0x80 | cp & 0x3F);
+        } else if (Character.isSurrogate(c)) {
+            b[pos++] = '?'; // sustituto suelto: no es UTF-8 válido
+        } else {
+            b[pos++] = (byte) (0xE0 | c >> 12);
+            b[pos++] = (byte) (0x80 | c >> 6 & 0x3F);
+            b[pos++] = (byte) (0x80 | c & 0x3F);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,231 @@
+package indice;
+
+import dao.ProductoDaoImpl;
+import entities.CodigoBarras;
+import entities.Producto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Genera el archivo de índice de códigos (ver {@link FormatoIndice}) a partir de los
+ * productos activos con código. Los valores no numéricos o de más de 17 dígitos se omiten;
+ * "0123" y "123" son códigos distintos (la clave incluye la cantidad de dígitos).
+ *
+ * El archivo se escribe en un temporal y se reemplaza de forma atómica, así un lector
+ * nunca ve un índice a medio escribir.
+ */
+public class ExportadorIndiceCodigos {
+
+    private final ProductoDaoImpl productoDao;
+
+    // Columnas en arrays primitivos: ~28 bytes por código más el nombre
+    private long[] codigos = new long[1024];
+    private long[] productoIds = new long[1024];
+    private double[] precios = new double[1024];
+    private int[] offsetsNombre = new int[1024];
+    private int[] largosNombre = new int[1024];
+    private byte[] cadenas = new byte[32 * 1024];
+    private int cantidad;
+    private int largoCadenas;
+    private long omitidos;
+
+    public ExportadorIndiceCodigos() {
+        this(new ProductoDaoImpl());
+    }
+
+    public ExportadorIndiceCodigos(ProductoDaoImpl productoDao) {
+        this.productoDao = productoDao;
+    }
+
+    /**
+     * Exporta el índice completo a {@code destino}.
+     * @return Cantidad de códigos escritos.
+     */
+    public int exportar(Path destino) throws SQLException, IOException {
+        reiniciar();
+        try (Stream<Producto> productos = productoDao.streamTodosConCodigo()) {
+            Iterator<Producto> it = productos.iterator();
+            while (it.hasNext()) {
+                agregar(it.next());
+            }
+        }
+
+        int[] orden = ordenar();
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        escribir(temporal, orden);
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return orden.length;
+    }
+
+    /** Códigos omitidos en la última exportación (no numéricos o demasiado largos). */
+    public long getOmitidos() {
+        return omitidos;
+    }
+
+    // ============================================================
+    //  CARGA
+    // ============================================================
+
+    private void agregar(Producto p) {
+        CodigoBarras cb = p.getCodigoBarras();
+        if (cb == null) {
+            return;
+        }
+        long codigo = FormatoIndice.clave(cb.getValor());
+        if (codigo < 0) {
+            omitidos++;
+            return;
+        }
+        if (cantidad == codigos.length) {
+            int n = cantidad * 2;
+            codigos = Arrays.copyOf(codigos, n);
+            productoIds = Arrays.copyOf(productoIds, n);
+            precios = Arrays.copyOf(precios, n);
+            offsetsNombre = Arrays.copyOf(offsetsNombre, n);
+            largosNombre = Arrays.copyOf(largosNombre, n);
+        }
+        byte[] nombre = p.getNombre() == null ? new byte[0] : p.getNombre().getBytes(StandardCharsets.UTF_8);
+        if (largoCadenas + nombre.length > cadenas.length) {
+            cadenas = Arrays.copyOf(cadenas, Math.max(cadenas.length * 2, largoCadenas + nombre.length));
+        }
+        System.arraycopy(nombre, 0, cadenas, largoCadenas, nombre.length);
+
+        codigos[cantidad] = codigo;
+        productoIds[cantidad] = p.getId();
+        precios[cantidad] = p.getPrecio();
+        offsetsNombre[cantidad] = largoCadenas;
+        largosNombre[cantidad] = nombre.length;
+        largoCadenas += nombre.length;
+        cantidad++;
+    }
+
+    /**
+     * Devuelve las posiciones ordenadas por código, sin duplicados.
+     */
+    private int[] ordenar() {
+        long[] claves = Arrays.copyOf(codigos, cantidad);
+        int[] orden = new int[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            orden[i] = i;
+        }
+        quicksort(claves, orden, 0, cantidad - 1);
+
+        int unicos = 0;
+        for (int i = 0; i < cantidad; i++) {
+            if (unicos > 0 && claves[i] == claves[unicos - 1]) {
+                omitidos++;
+                continue;
+            }
+            claves[unicos] = claves[i];
+            orden[unicos++] = orden[i];
+        }
+        return Arrays.copyOf(orden, unicos);
+    }
+
+    // Ordena claves y arrastra el índice original en paralelo (sin boxing)
+    private static void quicksort(long[] claves, int[] orden, int desde, int hasta) {
+        while (hasta - desde > 16) {
+            long pivote = claves[(desde + hasta) >>> 1];
+            int i = desde, j = hasta;
+            while (i <= j) {
+                while (claves[i] < pivote) i++;
+                while (claves[j] > pivote) j--;
+                if (i <= j) {
+                    intercambiar(claves, orden, i++, j--);
+                }
+            }
+            // Recursión sobre la parte menor para acotar la profundidad de pila
+            if (j - desde < hasta - i) {
+                quicksort(claves, orden, desde, j);
+                desde = i;
+            } else {
+                quicksort(claves, orden, i, hasta);
+                hasta = j;
+            }
+        }
+        for (int i = desde + 1; i <= hasta; i++) {
+            for (int j = i; j > desde && claves[j - 1] > claves[j]; j--) {
+                intercambiar(claves, orden, j, j - 1);
+            }
+        }
+    }
+
+    private static void intercambiar(long[] claves, int[] orden, int a, int b) {
+        long c = claves[a];
+        claves[a] = claves[b];
+        claves[b] = c;
+        int o = orden[a];
+        orden[a] = orden[b];
+        orden[b] = o;
+    }
+
+    // ============================================================
+    //  ESCRITURA
+    // ============================================================
+
+    private void escribir(Path archivo, int[] orden) throws IOException {
+        long offsetCadenas = FormatoIndice.TAMANIO_ENCABEZADO + (long) orden.length * FormatoIndice.TAMANIO_REGISTRO;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+            buf.putInt(FormatoIndice.MAGIA)
+               .putInt(FormatoIndice.VERSION)
+               .putInt(orden.length)
+               .putInt(0)
+               .putLong(offsetCadenas)
+               .putLong(0); // largoCadenas, se completa al final
+
+            // Los nombres se reescriben compactados en el orden de los registros
+            int offset = 0;
+            for (int pos : orden) {
+                if (buf.remaining() < FormatoIndice.TAMANIO_REGISTRO) {
+                    vaciar(canal, buf);
+                }
+                buf.putLong(codigos[pos])
+                   .putLong(productoIds[pos])
+                   .putDouble(precios[pos])
+                   .putInt(offset)
+                   .putInt(largosNombre[pos]);
+                offset += largosNombre[pos];
+            }
+            for (int pos : orden) {
+                int largo = largosNombre[pos];
+                if (buf.remaining() < largo) {
+                    vaciar(canal, buf);
+                }
+                buf.put(cadenas, offsetsNombre[pos], largo);
+            }
+            vaciar(canal, buf);
+
+            ByteBuffer largo = ByteBuffer.allocate(8).putLong(0, offset);
+            canal.write(largo, 24);
+            canal.force(true);
+        }
+    }
+
+    private static void vaciar(FileChannel canal, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            canal.write(buf);
+        }
+        buf.clear();
+    }
+
+    private void reiniciar() {
+        cantidad = 0;
+        largoCadenas = 0;
+        omitidos = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package indice;
+
+/**
+ * Formato binario del índice de códigos (big-endian).
+ *
+ * <pre>
+ * Encabezado (32 bytes)
+ *   int  MAGIA             "TPIX"
+ *   int  VERSION
+ *   int  cantidad          registros
+ *   int  reservado
+ *   long offsetCadenas     inicio de la sección de nombres
+ *   long largoCadenas
+ * Registros (32 bytes c/u, ordenados por clave)
+ *   long clave             valor numérico · 32 + cantidad de dígitos (ver {@link #clave})
+ *   long productoId
+ *   double precio
+ *   int  offsetNombre      relativo a offsetCadenas
+ *   int  largoNombre       bytes UTF-8
+ * Cadenas
+ *   nombres de producto en UTF-8, uno tras otro
+ * </pre>
+ */
+final class FormatoIndice {
+    static final int MAGIA = 0x54504958; // "TPIX"
+    static final int VERSION = 2;
+    static final int TAMANIO_ENCABEZADO = 32;
+    static final int TAMANIO_REGISTRO = 32;
+
+    static final int REG_CODIGO = 0;
+    static final int REG_PRODUCTO_ID = 8;
+    static final int REG_PRECIO = 16;
+    static final int REG_OFFSET_NOMBRE = 24;
+    static final int REG_LARGO_NOMBRE = 28;
+
+    // EAN13/EAN8/UPC caben holgados; con 17 dígitos valor · 32 + largo no desborda un long
+    static final int MAX_DIGITOS = 17;
+    static final int BITS_LARGO = 5;
+
+    private FormatoIndice() {
+    }
+
+    /**
+     * Clave del registro sin crear objetos, o -1 si el valor no es numérico. Lleva la cantidad
+     * de dígitos en los 5 bits bajos: "0123" y "123" son claves distintas. El orden por clave
+     * sigue siendo el numérico (a igual número, primero el más corto).
+     */
+    static long clave(CharSequence valor) {
+        int largo = valor.length();
+        if (largo == 0 || largo > MAX_DIGITOS) {
+            return -1;
+        }
+        long n = 0;
+        for (int i = 0; i < largo; i++) {
+            char c = valor.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return (n << BITS_LARGO) | largo;
+    }
+}
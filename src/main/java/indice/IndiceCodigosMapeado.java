@@ -0,0 +1,145 @@
+package indice;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lector del índice de códigos mapeado en memoria. Responde búsquedas por valor sin BD
+ * y sin crear objetos: {@link #buscar(CharSequence)} devuelve la posición del registro y
+ * los getters leen directo del archivo mapeado.
+ *
+ * <pre>
+ * int pos = indice.buscar("7791234567890");
+ * if (pos >= 0) { long id = indice.getProductoId(pos); double precio = indice.getPrecio(pos); }
+ * </pre>
+ *
+ * Es de sólo lectura y seguro entre hilos (se usan lecturas absolutas sobre el buffer).
+ * El archivo debe ser menor a 2 GB (≈ 60 millones de códigos).
+ */
+public class IndiceCodigosMapeado implements AutoCloseable {
+
+    private final FileChannel canal;
+    private final MappedByteBuffer buf;
+    private final int cantidad;
+    private final int offsetCadenas;
+
+    private IndiceCodigosMapeado(FileChannel canal, MappedByteBuffer buf) throws IOException {
+        this.canal = canal;
+        this.buf = buf;
+        if (buf.capacity() < FormatoIndice.TAMANIO_ENCABEZADO || buf.getInt(0) != FormatoIndice.MAGIA) {
+            throw new IOException("El archivo no es un índice de códigos válido.");
+        }
+        if (buf.getInt(4) != FormatoIndice.VERSION) {
+            throw new IOException("Versión de índice no soportada: " + buf.getInt(4));
+        }
+        this.cantidad = buf.getInt(8);
+        this.offsetCadenas = (int) buf.getLong(16);
+    }
+
+    public static IndiceCodigosMapeado abrir(Path archivo) throws IOException {
+        FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ);
+        try {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IOException("El índice supera los 2 GB.");
+            }
+            MappedByteBuffer buf = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            return new IndiceCodigosMapeado(canal, buf);
+        } catch (IOException | RuntimeException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    // ============================================================
+    //  BÚSQUEDA (sin asignaciones)
+    // ============================================================
+
+    /**
+     * Posición del registro para el valor dado, o -1 si no está o no es numérico.
+     */
+    public int buscar(CharSequence valor) {
+        long clave = FormatoIndice.clave(valor);
+        return clave < 0 ? -1 : buscarClave(clave);
+    }
+
+    /**
+     * Búsqueda binaria sobre los registros ordenados por clave.
+     */
+    private int buscarClave(long clave) {
+        int bajo = 0;
+        int alto = cantidad - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            long actual = buf.getLong(base(medio) + FormatoIndice.REG_CODIGO);
+            if (actual < clave) {
+                bajo = medio + 1;
+            } else if (actual > clave) {
+                alto = medio - 1;
+            } else {
+                return medio;
+            }
+        }
+        return -1;
+    }
+
+    // ============================================================
+    //  ACCESO A LOS CAMPOS DEL REGISTRO
+    // ============================================================
+
+    /** Valor numérico del código (sin los ceros a la izquierda, ver getDigitos). */
+    public long getCodigo(int pos) {
+        return buf.getLong(base(pos) + FormatoIndice.REG_CODIGO) >>> FormatoIndice.BITS_LARGO;
+    }
+
+    /** Cantidad de dígitos del valor original, contando los ceros a la izquierda. */
+    public int getDigitos(int pos) {
+        return (int) (buf.getLong(base(pos) + FormatoIndice.REG_CODIGO) & ((1 << FormatoIndice.BITS_LARGO) - 1));
+    }
+
+    public long getProductoId(int pos) {
+        return buf.getLong(base(pos) + FormatoIndice.REG_PRODUCTO_ID);
+    }
+
+    public double getPrecio(int pos) {
+        return buf.getDouble(base(pos) + FormatoIndice.REG_PRECIO);
+    }
+
+    /**
+     * Copia el nombre (UTF-8) en {@code destino} sin crear objetos.
+     * @return Bytes copiados (el nombre se trunca si no entra).
+     */
+    public int copiarNombre(int pos, byte[] destino) {
+        int base = base(pos);
+        int offset = offsetCadenas + buf.getInt(base + FormatoIndice.REG_OFFSET_NOMBRE);
+        int largo = Math.min(buf.getInt(base + FormatoIndice.REG_LARGO_NOMBRE), destino.length);
+        buf.get(offset, destino, 0, largo);
+        return largo;
+    }
+
+    /** Nombre del producto como String (crea objetos; para uso fuera del camino caliente). */
+    public String getNombre(int pos) {
+        byte[] nombre = new byte[buf.getInt(base(pos) + FormatoIndice.REG_LARGO_NOMBRE)];
+        int largo = copiarNombre(pos, nombre);
+        return new String(nombre, 0, largo, StandardCharsets.UTF_8);
+    }
+
+    public int getCantidad() {
+        return cantidad;
+    }
+
+    private int base(int pos) {
+        if (pos < 0 || pos >= cantidad) {
+            throw new IndexOutOfBoundsException("Posición fuera del índice: " + pos);
+        }
+        return FormatoIndice.TAMANIO_ENCABEZADO + pos * FormatoIndice.TAMANIO_REGISTRO;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
@@ -1,16 +1,51 @@
 package main;
 
+import analisis.ConsultaCatalogo;
+import analisis.ConsultaCatalogo.Dimension;
+import analisis.ConsultaCatalogo.Medida;
+import analisis.FilaCatalogo;
+import analisis.Resumen;
+import analisis.SnapshotCatalogo;
+import cache.CacheCatalogo;
+import cache.FiltroCodigos;
+import cambios.DespachadorCambios;
+import cambios.EventoCambio;
+import config.DatabaseConnection;
+import config.Particiones;
+import dao.ConflictoVersionException;
+import dao.FiltroProductos;
+import dao.OutboxDao;
+import dao.ProductoDaoImpl;
+import dao.ResultadoAjustePrecios;
 import entities.CodigoBarras;
 import entities.Producto;
 import entities.TipoCodigo;
+import exportacion.ExportadorCatalogo;
+import indice.ExportadorIndiceCodigos;
+import metricas.RegistroMetricas;
+import migracion.PlanConsulta;
+import migracion.VerificadorPlanes;
+import traza.ConsultaLenta;
+import traza.TrazadorSql;
+import service.ArchivadorBajas;
 import service.ProductoService;
 import service.CodigoBarrasService; 
+import service.ImportadorCatalogo;
+import service.ResultadoArchivado;
+import service.ResultadoImportacion;
 
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.function.Consumer;
 import java.time.LocalDate;
 import java.util.InputMismatchException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 // Importaciones para solucionar la codificación
 import java.io.PrintStream; 
@@ -20,6 +55,9 @@ public class AppMenu {
     private static final Scanner scanner = new Scanner(System.in);
     private static final ProductoService productoService = new ProductoService();
     private static final CodigoBarrasService codigoService = new CodigoBarrasService();
+    private static final int TAMANIO_PAGINA = 50;
+    private static SnapshotCatalogo snapshot; // se arma en el primer reporte y luego se refresca
+    private static List<DespachadorCambios> despachadores; // uno por outbox: el de fondo y la opción 15 comparten posición
 
     public static void main(String[] args) {
         // 🚨 SOLUCIÓN PARA SYSTEM.OUT (Mensajes normales del menú)
@@ -36,9 +74,61 @@ public class AppMenu {
             // En este punto, no podemos hacer mucho si falla System.err
         }
 
+        codigoService.cargarFiltroEnSegundoPlano();
+        iniciarArchivadoPeriodico();
+        iniciarDespachoCambios();
         menuPrincipal();
     }
 
+    // Archivado de bajas en segundo plano si db.properties define archivo.intervaloMinutos > 0
+    private static void iniciarArchivadoPeriodico() {
+        try {
+            long intervalo = Long.parseLong(DatabaseConnection.getPropiedades().getProperty("archivo.intervaloMinutos", "0"));
+            if (intervalo > 0) {
+                ArchivadorBajas.desdeConfiguracion().iniciar(intervalo);
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("⚠ No se pudo iniciar el archivado periódico: " + e.getMessage());
+        }
+    }
+
+    // Despacho del outbox en segundo plano si db.properties define cambios.intervaloMs > 0
+    private static void iniciarDespachoCambios() {
+        try {
+            long intervalo = Long.parseLong(DatabaseConnection.getPropiedades().getProperty("cambios.intervaloMs", "0"));
+            if (intervalo > 0) {
+                for (DespachadorCambios d : getDespachadores()) {
+                    d.iniciar(intervalo);
+                }
+            }
+        } catch (SQLException | IOException | NumberFormatException e) {
+            System.err.println("⚠ No se pudo iniciar el despacho de cambios: " + e.getMessage());
+        }
+    }
+
+    // El outbox de db.url y, con shards, el de cada shard (cada escritura deja su evento en su base)
+    private static synchronized List<DespachadorCambios> getDespachadores() throws SQLException, IOException {
+        if (despachadores == null) {
+            List<DespachadorCambios> lista = new ArrayList<>();
+            lista.add(DespachadorCambios.desdeConfiguracion());
+            if (Particiones.estanConfiguradas()) {
+                Particiones particiones = Particiones.getInstancia();
+                for (int s = 0; s < particiones.getCantidad(); s++) {
+                    lista.add(DespachadorCambios.desdeConfiguracion(new OutboxDao(particiones, s),
+                            "." + particiones.getNombres().get(s)));
+                }
+            }
+            for (DespachadorCambios d : lista) {
+                // Valores que dan de alta otros procesos (sin esto el filtro no descarta nada)
+                FiltroCodigos.getInstancia().escucharCambios(d);
+                // Precios y códigos que cambian otros procesos (sin esto la cache sólo vence por TTL)
+                CacheCatalogo.getInstancia().escucharCambios(d);
+            }
+            despachadores = lista;
+        }
+        return despachadores;
+    }
+
     // ===============================================
     //               MENU PRINCIPAL
     // ===============================================
@@ -51,6 +141,16 @@ public class AppMenu {
             System.out.println("3. Eliminar Producto y Código (Baja Lógica Transaccional)");
             System.out.println("4. Búsquedas");
             System.out.println("5. Listar Todos los Productos Activos");
+            System.out.println("6. Importar Catálogo desde CSV/TSV");
+            System.out.println("7. Exportar Índice de Códigos para Terminales");
+            System.out.println("8. Ver Métricas");
+            System.out.println("9. Activar/Desactivar Traza SQL");
+            System.out.println("10. Reportes del Catálogo");
+            System.out.println("11. Ajustar Precios (por categoría/marca)");
+            System.out.println("12. Archivar Bajas Antiguas");
+            System.out.println("13. Verificar Planes de Consultas (EXPLAIN)");
+            System.out.println("14. Exportar Catálogo (CSV/JSONL, opcional .gz)");
+            System.out.println("15. Despachar Cambios Pendientes (outbox)");
             System.out.println("0. Salir");
             System.out.print("Seleccione una opción: ");
             
@@ -85,11 +185,44 @@ public class AppMenu {
                 case 5:
                     listarProductos();
                     break;
+                case 6:
+                    importarCatalogo();
+                    break;
+                case 7:
+                    exportarIndiceCodigos();
+                    break;
+                case 8:
+                    verMetricas();
+                    break;
+                case 9:
+                    alternarTrazaSql();
+                    break;
+                case 10:
+                    reportesCatalogo();
+                    break;
+                case 11:
+                    ajustarPrecios();
+                    break;
+                case 12:
+                    archivarBajas();
+                    break;
+                case 13:
+                    verificarPlanes();
+                    break;
+                case 14:
+                    exportarCatalogo();
+                    break;
+                case 15:
+                    despacharCambios();
+                    break;
                 case 0:
                     break;
                 default:
                     System.out.println("Opción no válida.");
             }
+        } catch (ConflictoVersionException e) {
+            System.err.println("❌ Otro usuario modificó el registro mientras lo editaba; no se guardó nada. "
+                    + "Vuelva a cargarlo y repita el cambio. (" + e.getMessage() + ")");
         } catch (SQLException e) {
             // Manejo de errores de la capa de Servicio/BD (Rollbacks y Validaciones)
             System.err.println("❌ ERROR DE TRANSACCIÓN/VALIDACIÓN: " + e.getMessage());
@@ -134,6 +267,10 @@ public class AppMenu {
         cb.setTipo(TipoCodigo.EAN13); // Simplificado
         System.out.print("Valor del Código de Barras: ");
         cb.setValor(scanner.nextLine());
+        if (!codigoService.valorDisponible(cb.getValor())) {
+            System.err.println("❌ Ya existe un código de barras con valor " + cb.getValor() + ".");
+            return;
+        }
         cb.setFechaAsignacion(LocalDate.now());
         cb.setObservaciones("Creado por AppMenu");
         cb.setProductoId(null); 
@@ -148,20 +285,18 @@ public class AppMenu {
         System.out.print("Ingrese ID del Producto a actualizar: ");
         Long productoId = Long.parseLong(scanner.nextLine());
 
-        // 1. Cargar el Producto y su Código asociado
-        Producto p = productoService.leer(productoId); 
+        // 1. Cargar el Producto y su Código asociado (un solo JOIN)
+        Producto p = productoService.leerConCodigo(productoId); 
         if (p == null) {
             System.err.println("❌ Producto ID " + productoId + " no encontrado.");
             return;
         }
 
-        // Asumiendo relación 1:1, buscamos el código 
-        List<CodigoBarras> codigos = codigoService.buscarPorProductoId(productoId);
-        if (codigos.isEmpty()) {
+        CodigoBarras cb = p.getCodigoBarras();
+        if (cb == null) {
              System.err.println("❌ El producto no tiene código de barras asociado.");
              return;
         }
-        CodigoBarras cb = codigos.get(0);
 
         // 2. Modificar datos
         System.out.println("Nombre actual: " + p.getNombre() + ". Nuevo Nombre (dejar vacío para no cambiar): ");
@@ -199,35 +334,228 @@ public class AppMenu {
         System.out.println("✅ Baja lógica aplicada transaccionalmente al Producto ID " + productoId + " y Código ID " + codigoId);
     }
 
+    private static void importarCatalogo() throws IOException {
+        System.out.println("\n--- IMPORTAR CATÁLOGO ---");
+        System.out.println("Columnas: nombre, marca, categoria, precio, peso, tipo, valor[, observaciones]");
+        System.out.print("Ruta del archivo: ");
+        Path archivo = Paths.get(scanner.nextLine().trim());
+        Path rechazos = Paths.get(archivo + ".rechazos.tsv");
+        System.out.print("¿Sincronizar? Actualiza los códigos que ya existen en lugar de rechazarlos (s/N): ");
+        boolean sincronizar = scanner.nextLine().trim().equalsIgnoreCase("s");
+
+        ImportadorCatalogo importador = new ImportadorCatalogo(productoService);
+        importador.setSincronizar(sincronizar);
+        ResultadoImportacion r = importador.importar(archivo, rechazos);
+        System.out.println("✅ " + r);
+        if (r.getRechazadas() > 0) {
+            System.out.println("Filas rechazadas en: " + rechazos);
+        }
+    }
+
+    private static void exportarIndiceCodigos() throws SQLException, IOException {
+        System.out.println("\n--- EXPORTAR ÍNDICE DE CÓDIGOS ---");
+        System.out.print("Archivo destino (Enter = codigos.idx): ");
+        String ruta = scanner.nextLine().trim();
+        Path destino = Paths.get(ruta.isEmpty() ? "codigos.idx" : ruta);
+
+        ExportadorIndiceCodigos exportador = new ExportadorIndiceCodigos();
+        int cantidad = exportador.exportar(destino);
+        System.out.println("✅ Índice generado en " + destino + " con " + cantidad + " códigos ("
+                + exportador.getOmitidos() + " omitidos por no numéricos o demasiado largos).");
+    }
+
+    private static void verMetricas() throws SQLException, IOException {
+        System.out.println("\n--- MÉTRICAS ---");
+        String reporte = RegistroMetricas.getInstancia().reporte();
+        System.out.print(reporte.isEmpty() ? "Sin operaciones registradas todavía.\n" : reporte);
+        System.out.println(DatabaseConnection.getEstadisticas());
+        for (String replica : DatabaseConnection.getEstadisticasReplicas()) {
+            System.out.println("Réplica " + replica);
+        }
+        System.out.println(CacheCatalogo.getInstancia().getEstadisticas());
+        System.out.println(FiltroCodigos.getInstancia().getEstadisticas());
+
+        List<ConsultaLenta> lentas = TrazadorSql.getConsultasLentas();
+        System.out.println("Traza SQL: " + (TrazadorSql.isActiva() ? "activa" : "inactiva")
+                + " | consultas lentas registradas: " + lentas.size());
+        for (ConsultaLenta c : lentas) {
+            System.out.println("  " + c);
+        }
+    }
+
+    private static void alternarTrazaSql() {
+        TrazadorSql.setActiva(!TrazadorSql.isActiva());
+        System.out.println("✅ Traza SQL " + (TrazadorSql.isActiva() ? "activada." : "desactivada."));
+    }
+
+    private static void reportesCatalogo() throws SQLException {
+        System.out.println("\n--- REPORTES DEL CATÁLOGO ---");
+        ProductoDaoImpl dao = new ProductoDaoImpl();
+        snapshot = snapshot == null ? SnapshotCatalogo.construir(dao) : snapshot.refrescar(dao);
+        System.out.println(snapshot);
+
+        System.out.print("Categoría (Enter = todas): ");
+        String categoria = scanner.nextLine().trim();
+        ConsultaCatalogo consulta = snapshot.consulta();
+        if (!categoria.isEmpty()) {
+            consulta.categoria(categoria);
+        }
+
+        Resumen precios = consulta.resumen(Medida.PRECIO);
+        System.out.println("Productos activos: " + precios.getCantidad() + " | Precio: " + precios);
+        if (precios.getCantidad() == 0) {
+            return;
+        }
+
+        System.out.println("\nPrecio por " + (categoria.isEmpty() ? "categoría:" : "marca:"));
+        Map<String, Resumen> grupos = consulta.agrupar(categoria.isEmpty() ? Dimension.CATEGORIA : Dimension.MARCA, Medida.PRECIO);
+        grupos.forEach((grupo, r) -> System.out.printf("  %-25s %s%n", grupo, r));
+
+        int cubetas = 10;
+        long[] histograma = consulta.histograma(Medida.PRECIO, precios.getMinimo(), Math.nextUp(precios.getMaximo()), cubetas);
+        double ancho = (Math.nextUp(precios.getMaximo()) - precios.getMinimo()) / cubetas;
+        System.out.println("\nDistribución de precios:");
+        for (int i = 0; i < cubetas; i++) {
+            System.out.printf("  %10.2f - %10.2f : %d%n", precios.getMinimo() + i * ancho,
+                    precios.getMinimo() + (i + 1) * ancho, histograma[i]);
+        }
+
+        System.out.println("\nMás pesados por marca:");
+        for (Map.Entry<String, List<FilaCatalogo>> e : consulta.mayoresPorGrupo(Dimension.MARCA, Medida.PESO, 3).entrySet()) {
+            System.out.println("  " + e.getKey());
+            for (FilaCatalogo f : e.getValue()) {
+                System.out.println("    " + f);
+            }
+        }
+    }
+
+    private static void ajustarPrecios() throws SQLException {
+        System.out.println("\n--- AJUSTE MASIVO DE PRECIOS ---");
+        FiltroProductos filtro = new FiltroProductos();
+        System.out.print("Categoría (Enter = todas): ");
+        String categoria = scanner.nextLine().trim();
+        if (!categoria.isEmpty()) filtro.categoria(categoria);
+        System.out.print("Marca (Enter = todas): ");
+        String marca = scanner.nextLine().trim();
+        if (!marca.isEmpty()) filtro.marca(marca);
+
+        System.out.print("¿Ajuste por (P)orcentaje o (M)onto fijo? ");
+        boolean porcentaje = !scanner.nextLine().trim().equalsIgnoreCase("M");
+        System.out.print(porcentaje ? "Porcentaje (ej. 8.5 o -10): " : "Monto (ej. 150 o -50): ");
+        double valor = Double.parseDouble(scanner.nextLine().trim().replace(',', '.'));
+
+        ResultadoAjustePrecios simulacion = porcentaje
+                ? productoService.simularAjustePrecios(filtro, valor, 0)
+                : productoService.simularAjustePrecios(filtro, 0, valor);
+        System.out.println("Filtro: " + filtro);
+        System.out.println(simulacion);
+        if (simulacion.getAntes().getCantidad() == 0) {
+            return;
+        }
+        System.out.print("¿Confirmar el ajuste? (S/N): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("S")) {
+            System.out.println("Ajuste cancelado.");
+            return;
+        }
+
+        ResultadoAjustePrecios resultado = porcentaje
+                ? productoService.ajustarPreciosPorcentaje(filtro, valor)
+                : productoService.ajustarPreciosMonto(filtro, valor);
+        System.out.println("✅ " + resultado);
+    }
+
+    private static void exportarCatalogo() throws SQLException, IOException {
+        System.out.println("\n--- EXPORTAR CATÁLOGO ---");
+        System.out.print("Archivo destino (.csv o .jsonl, agregar .gz para comprimir; Enter = catalogo.csv.gz): ");
+        String ruta = scanner.nextLine().trim();
+        ExportadorCatalogo exportador = new ExportadorCatalogo();
+        exportador.setProgreso(r -> System.out.println("⏳ " + r));
+        System.out.println("✅ " + exportador.exportar(Paths.get(ruta.isEmpty() ? "catalogo.csv.gz" : ruta)));
+    }
+
+    private static void despacharCambios() throws SQLException, IOException {
+        System.out.println("\n--- DESPACHAR CAMBIOS PENDIENTES ---");
+        Consumer<EventoCambio> mostrar = e -> System.out.println("  " + e);
+        for (DespachadorCambios d : getDespachadores()) {
+            d.suscribir(mostrar);
+            try {
+                int entregados = d.despachar();
+                System.out.println("✅ " + entregados + " cambios entregados (consumidor " + d.getConsumidor() + ").");
+            } finally {
+                d.desuscribir(mostrar);
+            }
+        }
+    }
+
+    private static void archivarBajas() throws SQLException, IOException {
+        System.out.println("\n--- ARCHIVAR BAJAS ANTIGUAS ---");
+        ArchivadorBajas archivador = ArchivadorBajas.desdeConfiguracion();
+        archivador.setProgreso(r -> System.out.println("⏳ " + r));
+        ResultadoArchivado resultado = archivador.archivar();
+        System.out.println("✅ " + resultado);
+    }
+
+    private static void verificarPlanes() throws SQLException, IOException {
+        System.out.println("\n--- PLANES DE CONSULTAS DE LOS DAOs ---");
+        List<PlanConsulta> planes;
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            planes = new VerificadorPlanes().verificar(conn);
+        }
+        planes.forEach(System.out::println);
+        long fallas = planes.stream().filter(p -> !p.isOk()).count();
+        System.out.println(fallas == 0 ? "✅ Ninguna consulta caliente recorre una tabla completa."
+                : "❌ " + fallas + " consultas calientes hacen un recorrido completo.");
+    }
+
     // ===============================================
     //               BUSQUEDAS Y LISTADOS
     // ===============================================
 
     private static void listarProductos() throws SQLException {
         System.out.println("\n--- LISTADO DE PRODUCTOS ACTIVOS ---");
-        List<Producto> productos = productoService.getAll(); 
+        long ultimoId = 0;
+        int mostrados = 0;
 
-        if (productos.isEmpty()) {
-            System.out.println("No hay productos activos para mostrar.");
-            return;
-        }
+        while (true) {
+            // Paginación keyset: cada página parte del último id mostrado
+            List<Producto> productos = productoService.getPaginaConCodigo(ultimoId, TAMANIO_PAGINA);
 
-        for (Producto p : productos) {
-            // Se usa el CodigoBarrasService para completar la información
-            String codigoInfo = "N/A";
-            List<CodigoBarras> codigos = codigoService.buscarPorProductoId(p.getId());
-            if (!codigos.isEmpty()) {
-                codigoInfo = codigos.get(0).getValor() + " (" + codigos.get(0).getTipo().name() + ")";
+            if (productos.isEmpty()) {
+                if (mostrados == 0) {
+                    System.out.println("No hay productos activos para mostrar.");
+                }
+                return;
+            }
+
+            for (Producto p : productos) {
+                // El código ya viene cargado por el JOIN
+                String codigoInfo = "N/A";
+                CodigoBarras cb = p.getCodigoBarras();
+                if (cb != null) {
+                    codigoInfo = cb.getValor() + " (" + cb.getTipo().name() + ")";
+                }
+
+                System.out.printf("ID: %d | Nombre: %s | Marca: %s | Precio: %.2f | Código: %s%n", 
+                                  p.getId(), p.getNombre(), p.getMarca(), p.getPrecio(), codigoInfo);
+            }
+            mostrados += productos.size();
+            ultimoId = productos.get(productos.size() - 1).getId();
+
+            if (productos.size() < TAMANIO_PAGINA) {
+                return;
+            }
+            System.out.print("-- " + mostrados + " mostrados. Enter para continuar, 'q' para salir: ");
+            if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                return;
             }
-            
-            System.out.printf("ID: %d | Nombre: %s | Marca: %s | Precio: %.2f | Código: %s%n", 
-                              p.getId(), p.getNombre(), p.getMarca(), p.getPrecio(), codigoInfo);
         }
     }
 
     private static void menuBusquedas() throws SQLException {
         System.out.println("\n--- BÚSQUEDAS ---");
         System.out.println("1. Buscar Código de Barras por Valor");
+        System.out.println("2. Buscar Producto por Código de Barras (escaneo)");
+        System.out.println("3. Buscar Productos por Nombre, Marca o Categoría");
         System.out.print("Seleccione una opción: ");
         
         int opcion = Integer.parseInt(scanner.nextLine());
@@ -243,6 +571,27 @@ public class AppMenu {
             } else {
                 System.out.println("❌ Código no encontrado.");
             }
+        } else if (opcion == 2) {
+            System.out.print("Escanee o ingrese el código: ");
+            Producto p = productoService.buscarPorCodigo(scanner.nextLine().trim());
+
+            if (p != null) {
+                System.out.printf("✅ %s | Marca: %s | Precio: %.2f | Código: %s%n",
+                                  p.getNombre(), p.getMarca(), p.getPrecio(), p.getCodigoBarras().getValor());
+            } else {
+                System.out.println("❌ Producto no encontrado para ese código.");
+            }
+        } else if (opcion == 3) {
+            System.out.print("Texto a buscar (palabras o comienzos de palabra): ");
+            List<Producto> productos = productoService.buscarPorTexto(scanner.nextLine(), 20);
+
+            if (productos.isEmpty()) {
+                System.out.println("❌ No se encontraron productos.");
+            }
+            for (Producto p : productos) {
+                System.out.printf("ID: %d | %s | Marca: %s | Categoría: %s | Precio: %.2f%n",
+                                  p.getId(), p.getNombre(), p.getMarca(), p.getCategoria(), p.getPrecio());
+            }
         }
     }
 }
\ No newline at end of file
@@ -5,7 +5,11 @@ import dao.ProductoDaoImpl;
 import entities.CodigoBarras;
 import entities.Producto;
 import entities.TipoCodigo;
+import indice.ExportadorIndiceCodigos;
+import indice.IndiceCodigosMapeado;
 import service.ProductoService;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 
 public class AppTest {
@@ -79,6 +83,35 @@ public class AppTest {
             // Eliminar ambos en una transacción
             service.eliminarProductoConCodigo(productoTx.getId(), codigoTx.getId());
 
+            // --- PRUEBA DE ÍNDICE: "0123" y "123" son códigos distintos ---
+            System.out.println("\n--- PRUEBA DE ÍNDICE CON CEROS A LA IZQUIERDA ---");
+            String corto = String.valueOf(System.currentTimeMillis() % 1_000_000_000_000L);
+            Producto conCero = new Producto(null, false, "Con cero", "MarcaX", "CategoriaX", 100.0, null, null);
+            CodigoBarras codigoConCero = new CodigoBarras(null, false, TipoCodigo.UPC, "0" + corto,
+                    LocalDate.now(), "Prueba índice", null);
+            Producto sinCero = new Producto(null, false, "Sin cero", "MarcaX", "CategoriaX", 200.0, null, null);
+            CodigoBarras codigoSinCero = new CodigoBarras(null, false, TipoCodigo.UPC, corto,
+                    LocalDate.now(), "Prueba índice", null);
+            service.crearProductoConCodigo(conCero, codigoConCero);
+            service.crearProductoConCodigo(sinCero, codigoSinCero);
+
+            Path archivo = Files.createTempFile("indice-prueba", ".idx");
+            new ExportadorIndiceCodigos().exportar(archivo);
+            try (IndiceCodigosMapeado indice = IndiceCodigosMapeado.abrir(archivo)) {
+                int pConCero = indice.buscar("0" + corto);
+                int pSinCero = indice.buscar(corto);
+                int pDosCeros = indice.buscar("00" + corto);
+                boolean ok = pConCero >= 0 && indice.getProductoId(pConCero) == conCero.getId()
+                        && pSinCero >= 0 && indice.getProductoId(pSinCero) == sinCero.getId()
+                        && pDosCeros < 0;
+                System.out.println(ok ? "Índice OK: cada valor devuelve su producto."
+                        : "❌ Índice confunde valores que sólo difieren en ceros a la izquierda.");
+            } finally {
+                Files.deleteIfExists(archivo);
+                service.eliminarProductoConCodigo(conCero.getId(), codigoConCero.getId());
+                service.eliminarProductoConCodigo(sinCero.getId(), codigoSinCero.getId());
+            }
+
         } catch (Exception e) {
             e.printStackTrace();
         }
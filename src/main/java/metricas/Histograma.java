@@ -0,0 +1,131 @@
+package metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma sin locks de escala log-lineal: 8 sub-buckets por potencia de 2
+ * (error relativo ≤ 12,5%). Registrar es un par de operaciones atómicas, sin asignaciones.
+ *
+ * Sirve para latencias en nanosegundos ({@link #registrarDesde(long)}) o para cualquier
+ * otra magnitud positiva (filas por consulta, etc.).
+ */
+public class Histograma {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final String nombre;
+    private final boolean latencia;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder cantidad = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    Histograma(String nombre, boolean latencia) {
+        this.nombre = nombre;
+        this.latencia = latencia;
+    }
+
+    /** Registra el tiempo transcurrido desde {@code inicioNanos} (System.nanoTime()). */
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    public void registrar(long valor) {
+        if (valor < 0) {
+            valor = 0;
+        }
+        buckets.incrementAndGet(indice(valor));
+        cantidad.increment();
+        suma.add(valor);
+        if (valor > maximo.get()) {
+            maximo.accumulateAndGet(valor, Math::max);
+        }
+    }
+
+    // ============================================================
+    //  LECTURA
+    // ============================================================
+
+    public String getNombre() { return nombre; }
+    public boolean esLatencia() { return latencia; }
+    public long getCantidad() { return cantidad.sum(); }
+    public long getMaximo() { return maximo.get(); }
+
+    public double getPromedio() {
+        long n = cantidad.sum();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    /**
+     * Valor aproximado del percentil (0..100). Lectura sin bloquear: con escrituras
+     * concurrentes el resultado puede mezclar muestras de instantes muy próximos.
+     */
+    public long getPercentil(double percentil) {
+        long total = 0;
+        long[] copia = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copia[i] = buckets.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = (long) Math.ceil(total * percentil / 100.0);
+        long acumulado = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= Math.max(objetivo, 1)) {
+                return Math.min(limiteSuperior(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    public void reiniciar() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        cantidad.reset();
+        suma.reset();
+        maximo.set(0);
+    }
+
+    @Override
+    public String toString() {
+        if (latencia) {
+            return String.format("%-40s n=%-9d p50=%9.1fµs p99=%9.1fµs p999=%9.1fµs max=%9.1fµs",
+                    nombre, getCantidad(), getPercentil(50) / 1000.0, getPercentil(99) / 1000.0,
+                    getPercentil(99.9) / 1000.0, getMaximo() / 1000.0);
+        }
+        return String.format("%-40s n=%-9d p50=%9d   p99=%9d   p999=%9d   max=%9d   prom=%.1f",
+                nombre, getCantidad(), getPercentil(50), getPercentil(99), getPercentil(99.9), getMaximo(),
+                getPromedio());
+    }
+
+    // ============================================================
+    //  BUCKETS
+    // ============================================================
+
+    static int indice(long valor) {
+        if (valor < SUB_BUCKETS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int sub = (int) ((valor >>> (exponente - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return (exponente - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long limiteSuperior(int indice) {
+        if (indice < SUB_BUCKETS) {
+            return indice;
+        }
+        int exponente = indice / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = indice % SUB_BUCKETS;
+        long base = (SUB_BUCKETS + sub) << (exponente - SUB_BITS);
+        return base + (1L << (exponente - SUB_BITS)) - 1;
+    }
+}
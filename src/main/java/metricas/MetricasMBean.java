@@ -0,0 +1,106 @@
+package metricas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+
+/**
+ * Expone el registro por JMX. Los atributos se arman al vuelo según las métricas existentes:
+ * {@code <histograma>.count|p50|p99|p999|max} y {@code <contador>}; las latencias en microsegundos.
+ */
+class MetricasMBean implements DynamicMBean {
+
+    private static final String[] SUFIJOS = {"count", "p50", "p99", "p999", "max"};
+
+    private final RegistroMetricas registro;
+
+    MetricasMBean(RegistroMetricas registro) {
+        this.registro = registro;
+    }
+
+    @Override
+    public Object getAttribute(String atributo) throws AttributeNotFoundException {
+        Long contador = registro.getContadores().get(atributo);
+        if (contador != null) {
+            return contador;
+        }
+        int punto = atributo.lastIndexOf('.');
+        if (punto > 0) {
+            Histograma h = registro.getHistogramas().get(atributo.substring(0, punto));
+            if (h != null) {
+                double escala = h.esLatencia() ? 1000.0 : 1.0;
+                switch (atributo.substring(punto + 1)) {
+                    case "count": return (double) h.getCantidad();
+                    case "p50": return h.getPercentil(50) / escala;
+                    case "p99": return h.getPercentil(99) / escala;
+                    case "p999": return h.getPercentil(99.9) / escala;
+                    case "max": return h.getMaximo() / escala;
+                    default: break;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(atributo);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] atributos) {
+        AttributeList lista = new AttributeList();
+        for (String a : atributos) {
+            try {
+                lista.add(new Attribute(a, getAttribute(a)));
+            } catch (AttributeNotFoundException ignored) {
+            }
+        }
+        return lista;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+        throw new UnsupportedOperationException("Las métricas son de sólo lectura.");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String operacion, Object[] params, String[] firma) {
+        switch (operacion) {
+            case "reporte": return registro.reporte();
+            case "reiniciar": registro.reiniciar(); return null;
+            default: throw new UnsupportedOperationException(operacion);
+        }
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> atributos = new ArrayList<>();
+        for (Map.Entry<String, Histograma> e : registro.getHistogramas().entrySet()) {
+            String unidad = e.getValue().esLatencia() ? " (µs)" : "";
+            for (String sufijo : SUFIJOS) {
+                atributos.add(new MBeanAttributeInfo(e.getKey() + "." + sufijo, "java.lang.Double",
+                        sufijo + unidad, true, false, false));
+            }
+        }
+        for (String contador : registro.getContadores().keySet()) {
+            atributos.add(new MBeanAttributeInfo(contador, "java.lang.Long", "contador", true, false, false));
+        }
+        MBeanOperationInfo[] operaciones = {
+            new MBeanOperationInfo("reporte", "Volcado de texto de todas las métricas",
+                    new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO),
+            new MBeanOperationInfo("reiniciar", "Pone todas las métricas en cero",
+                    new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+        };
+        return new MBeanInfo(getClass().getName(), "Métricas de DAO y servicios",
+                atributos.toArray(new MBeanAttributeInfo[0]), null, operaciones, null);
+    }
+}
@@ -0,0 +1,80 @@
+package metricas;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * Registro central de métricas en proceso. Los DAOs y servicios guardan sus histogramas y
+ * contadores en campos static final, así el camino caliente no hace búsquedas por nombre.
+ *
+ * Se publica por JMX como {@code tpi:type=Metricas} (ver {@link MetricasMBean}).
+ */
+public final class RegistroMetricas {
+
+    private static final RegistroMetricas INSTANCIA = new RegistroMetricas();
+
+    private final Map<String, Histograma> histogramas = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> contadores = new ConcurrentHashMap<>();
+
+    private RegistroMetricas() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new MetricasMBean(this), new ObjectName("tpi:type=Metricas"));
+        } catch (Exception e) {
+            System.err.println("⚠ No se pudieron publicar las métricas por JMX: " + e.getMessage());
+        }
+    }
+
+    public static RegistroMetricas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /** Histograma de latencia (nanosegundos) con ese nombre; se crea la primera vez. */
+    public static Histograma latencia(String nombre) {
+        return INSTANCIA.histogramas.computeIfAbsent(nombre, n -> new Histograma(n, true));
+    }
+
+    /** Histograma de valores (filas, tamaños, etc.) con ese nombre. */
+    public static Histograma valores(String nombre) {
+        return INSTANCIA.histogramas.computeIfAbsent(nombre, n -> new Histograma(n, false));
+    }
+
+    public static LongAdder contador(String nombre) {
+        return INSTANCIA.contadores.computeIfAbsent(nombre, n -> new LongAdder());
+    }
+
+    // ============================================================
+    //  CONSULTA
+    // ============================================================
+
+    public Map<String, Histograma> getHistogramas() {
+        return new TreeMap<>(histogramas);
+    }
+
+    public Map<String, Long> getContadores() {
+        Map<String, Long> copia = new TreeMap<>();
+        contadores.forEach((n, c) -> copia.put(n, c.sum()));
+        return copia;
+    }
+
+    public void reiniciar() {
+        histogramas.values().forEach(Histograma::reiniciar);
+        contadores.values().forEach(LongAdder::reset);
+    }
+
+    /** Volcado legible de todas las métricas con datos. */
+    public String reporte() {
+        StringBuilder sb = new StringBuilder();
+        for (Histograma h : getHistogramas().values()) {
+            if (h.getCantidad() > 0) {
+                sb.append(h).append('\n');
+            }
+        }
+        getContadores().forEach((n, v) -> sb.append(String.format("%-40s %d%n", n, v)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,96 @@
+package migracion;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Una migración versionada del esquema: una lista ordenada de sentencias, cada una con una
+ * condición opcional para que sea idempotente (MySQL no tiene ADD COLUMN/INDEX IF NOT EXISTS).
+ * El checksum cubre todas las sentencias: si una migración ya aplicada cambia, el migrador
+ * se niega a seguir.
+ *
+ * <pre>
+ * new Migracion(2, "fecha de baja")
+ *     .siFaltaColumna("producto", "fecha_baja", "ALTER TABLE producto ADD COLUMN fecha_baja DATETIME NULL")
+ *     .sql("UPDATE producto SET fecha_baja = NOW() WHERE eliminado = true AND fecha_baja IS NULL");
+ * </pre>
+ */
+public final class Migracion {
+
+    private final int version;
+    private final String descripcion;
+    private final List<Paso> pasos = new ArrayList<>();
+
+    public Migracion(int version, String descripcion) {
+        if (version <= 0) {
+            throw new IllegalArgumentException("La versión debe ser positiva.");
+        }
+        this.version = version;
+        this.descripcion = descripcion;
+    }
+
+    /** Sentencia que se ejecuta siempre (debe ser idempotente: CREATE ... IF NOT EXISTS, UPDATE acotado). */
+    public Migracion sql(String sql) {
+        pasos.add(new Paso(sql, null));
+        return this;
+    }
+
+    public Migracion siFaltaColumna(String tabla, String columna, String sql) {
+        pasos.add(new Paso(sql, "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() "
+                + "AND TABLE_NAME = '" + tabla + "' AND COLUMN_NAME = '" + columna + "'"));
+        return this;
+    }
+
+    public Migracion siFaltaIndice(String tabla, String indice, String sql) {
+        pasos.add(new Paso(sql, "SELECT COUNT(*) FROM information_schema.STATISTICS WHERE TABLE_SCHEMA = DATABASE() "
+                + "AND TABLE_NAME = '" + tabla + "' AND INDEX_NAME = '" + indice + "'"));
+        return this;
+    }
+
+    public Migracion siFaltaTabla(String tabla, String sql) {
+        pasos.add(new Paso(sql, "SELECT COUNT(*) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() "
+                + "AND TABLE_NAME = '" + tabla + "'"));
+        return this;
+    }
+
+    // Getters
+    public int getVersion() { return version; }
+    public String getDescripcion() { return descripcion; }
+
+    List<Paso> getPasos() {
+        return Collections.unmodifiableList(pasos);
+    }
+
+    /** CRC32 de las sentencias y sus condiciones, en orden. */
+    public long getChecksum() {
+        CRC32 crc = new CRC32();
+        for (Paso p : pasos) {
+            crc.update(p.sql.getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+            if (p.condicion != null) {
+                crc.update(p.condicion.getBytes(StandardCharsets.UTF_8));
+            }
+            crc.update('\n');
+        }
+        return crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " " + descripcion;
+    }
+
+    /** Sentencia de una migración. Si tiene condición, se ejecuta sólo cuando ésta devuelve 0. */
+    static final class Paso {
+        final String sql;
+        final String condicion;
+
+        Paso(String sql, String condicion) {
+            this.sql = sql;
+            this.condicion = condicion;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package migracion;
+
+import java.util.List;
+
+/**
+ * Migraciones del esquema, en orden. Nunca modificar una migración publicada (cambia su
+ * checksum): los cambios nuevos van en una versión nueva al final de la lista.
+ */
+final class Migraciones {
+
+    private Migraciones() {
+    }
+
+    static List<Migracion> todas() {
+        return List.of(
+            new Migracion(1, "esquema inicial")
+                .sql("CREATE TABLE IF NOT EXISTS producto ("
+                    + " id BIGINT PRIMARY KEY AUTO_INCREMENT,"
+                    + " nombre VARCHAR(120) NOT NULL,"
+                    + " marca VARCHAR(80),"
+                    + " categoria VARCHAR(80),"
+                    + " precio DECIMAL(10,2) NOT NULL,"
+                    + " peso DECIMAL(10,3),"
+                    + " eliminado BOOLEAN NOT NULL DEFAULT FALSE,"
+                    + " CONSTRAINT chk_precio CHECK (precio >= 0),"
+                    + " CONSTRAINT chk_peso CHECK (peso IS NULL OR peso >= 0)"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4")
+                .sql("CREATE TABLE IF NOT EXISTS codigo_barras ("
+                    + " id BIGINT PRIMARY KEY AUTO_INCREMENT,"
+                    + " producto_id BIGINT NOT NULL,"
+                    + " tipo ENUM('EAN13','EAN8','UPC') NOT NULL,"
+                    + " valor VARCHAR(20) NOT NULL,"
+                    + " fecha_asignacion DATE,"
+                    + " observaciones VARCHAR(255),"
+                    + " eliminado BOOLEAN NOT NULL DEFAULT FALSE,"
+                    + " CONSTRAINT uq_cb_producto UNIQUE (producto_id),"
+                    + " CONSTRAINT uq_cb_valor UNIQUE (valor),"
+                    + " CONSTRAINT fk_cb_producto FOREIGN KEY (producto_id) REFERENCES producto(id) ON DELETE CASCADE ON UPDATE CASCADE"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"),
+
+            // Las bajas previas a esta versión no tienen fecha: cuentan desde hoy para el archivado
+            new Migracion(2, "fecha de baja y tablas de archivo")
+                .siFaltaColumna("producto", "fecha_baja", "ALTER TABLE producto ADD COLUMN fecha_baja DATETIME NULL")
+                .siFaltaColumna("codigo_barras", "fecha_baja", "ALTER TABLE codigo_barras ADD COLUMN fecha_baja DATETIME NULL")
+                .sql("UPDATE producto SET fecha_baja = NOW() WHERE eliminado = true AND fecha_baja IS NULL")
+                .sql("UPDATE codigo_barras SET fecha_baja = NOW() WHERE eliminado = true AND fecha_baja IS NULL")
+                .sql("CREATE TABLE IF NOT EXISTS producto_archivo ("
+                    + " id BIGINT PRIMARY KEY,"
+                    + " nombre VARCHAR(120) NOT NULL,"
+                    + " marca VARCHAR(80),"
+                    + " categoria VARCHAR(80),"
+                    + " precio DECIMAL(10,2) NOT NULL,"
+                    + " peso DECIMAL(10,3),"
+                    + " fecha_baja DATETIME,"
+                    + " fecha_archivo DATETIME NOT NULL"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPRESSED")
+                .sql("CREATE TABLE IF NOT EXISTS codigo_barras_archivo ("
+                    + " id BIGINT PRIMARY KEY,"
+                    + " producto_id BIGINT NOT NULL,"
+                    + " tipo ENUM('EAN13','EAN8','UPC') NOT NULL,"
+                    + " valor VARCHAR(20) NOT NULL,"
+                    + " fecha_asignacion DATE,"
+                    + " observaciones VARCHAR(255),"
+                    + " fecha_baja DATETIME,"
+                    + " fecha_archivo DATETIME NOT NULL,"
+                    + " KEY idx_cba_valor (valor)"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 ROW_FORMAT=COMPRESSED"),
+
+            // Índices de las consultas calientes (ver VerificadorPlanes)
+            new Migracion(3, "índices de consultas frecuentes")
+                // FiltroProductos (ajuste de precios): categoria = ? [AND marca = ?]
+                .siFaltaIndice("producto", "idx_producto_categoria",
+                    "CREATE INDEX idx_producto_categoria ON producto (categoria, marca)")
+                .siFaltaIndice("producto", "idx_producto_marca",
+                    "CREATE INDEX idx_producto_marca ON producto (marca)")
+                // ArchivadorBajas: eliminado = true AND fecha_baja < ?
+                .siFaltaIndice("producto", "idx_producto_baja",
+                    "CREATE INDEX idx_producto_baja ON producto (eliminado, fecha_baja)")
+                // buscarPorTipo / buscarPorTipoPagina: tipo = ? AND eliminado = false [AND id > ? ORDER BY id];
+                // InnoDB agrega el id al final del índice, así que también resuelve el ORDER BY
+                .siFaltaIndice("codigo_barras", "idx_cb_tipo",
+                    "CREATE INDEX idx_cb_tipo ON codigo_barras (tipo, eliminado)")
+                .siFaltaIndice("codigo_barras", "idx_cb_baja",
+                    "CREATE INDEX idx_cb_baja ON codigo_barras (eliminado, fecha_baja)"),
+
+            // Concurrencia optimista: UPDATE ... WHERE id = ? AND version = ? (ver ConflictoVersionException)
+            new Migracion(4, "versión de fila en producto y codigo_barras")
+                .siFaltaColumna("producto", "version",
+                    "ALTER TABLE producto ADD COLUMN version INT UNSIGNED NOT NULL DEFAULT 0")
+                .siFaltaColumna("codigo_barras", "version",
+                    "ALTER TABLE codigo_barras ADD COLUMN version INT UNSIGNED NOT NULL DEFAULT 0"),
+
+            // Cambios (outbox): los servicios registran cada escritura en la misma transacción
+            // y DespachadorCambios los lee en orden de id; cada consumidor guarda su posición
+            new Migracion(5, "registro de cambios (outbox)")
+                .sql("CREATE TABLE IF NOT EXISTS outbox ("
+                    + " id BIGINT PRIMARY KEY AUTO_INCREMENT,"
+                    + " entidad VARCHAR(20) NOT NULL,"
+                    + " entidad_id BIGINT NOT NULL,"
+                    + " operacion ENUM('ALTA','MODIFICACION','BAJA') NOT NULL,"
+                    + " datos JSON NOT NULL,"
+                    + " fecha DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4")
+                .sql("CREATE TABLE IF NOT EXISTS outbox_consumidor ("
+                    + " nombre VARCHAR(40) PRIMARY KEY,"
+                    + " ultimo_id BIGINT NOT NULL,"
+                    + " actualizado DATETIME NOT NULL"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4"),
+
+            // Shards (config.Particiones): ids globales por bloques y dueño de cada valor de código.
+            // Viven en la base de db.url; la secuencia arranca después de los ids ya usados
+            new Migracion(6, "secuencia de ids y directorio de códigos para shards")
+                .sql("CREATE TABLE IF NOT EXISTS secuencia ("
+                    + " nombre VARCHAR(40) PRIMARY KEY,"
+                    + " siguiente BIGINT NOT NULL"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4")
+                .sql("INSERT IGNORE INTO secuencia (nombre, siguiente) SELECT 'producto', IFNULL(MAX(id), 0) + 1 FROM producto")
+                .sql("INSERT IGNORE INTO secuencia (nombre, siguiente) SELECT 'codigo_barras', IFNULL(MAX(id), 0) + 1 FROM codigo_barras")
+                .sql("CREATE TABLE IF NOT EXISTS directorio_codigo ("
+                    + " valor VARCHAR(20) PRIMARY KEY,"
+                    + " producto_id BIGINT NOT NULL"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4")
+        );
+    }
+}
@@ -0,0 +1,212 @@
+package migracion;
+
+import config.DatabaseConnection;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aplica las migraciones pendientes (ver {@link Migraciones}) en orden de versión y registra
+ * cada una en la tabla esquema_version con su checksum. Antes de aplicar nada verifica que las
+ * ya aplicadas no hayan cambiado. Un lock de MySQL (GET_LOCK) evita que dos instancias migren
+ * a la vez.
+ *
+ * DatabaseConnection lo ejecuta al crear el pool (db.migraciones.automaticas=true). A mano:
+ * <pre>
+ * java ... migracion.MigradorEsquema [migrar | estado | verificar]
+ * </pre>
+ */
+public final class MigradorEsquema {
+
+    private static final String CREAR_TABLA_SQL = "CREATE TABLE IF NOT EXISTS esquema_version ("
+            + " version INT PRIMARY KEY,"
+            + " descripcion VARCHAR(200) NOT NULL,"
+            + " checksum BIGINT NOT NULL,"
+            + " aplicada DATETIME NOT NULL,"
+            + " duracion_ms BIGINT NOT NULL"
+            + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4";
+    private static final String SELECT_APLICADAS_SQL = "SELECT version, checksum FROM esquema_version ORDER BY version";
+    private static final String INSERT_VERSION_SQL = "INSERT INTO esquema_version (version, descripcion, checksum, aplicada, duracion_ms) "
+            + "VALUES (?, ?, ?, NOW(), ?)";
+    private static final String NOMBRE_LOCK = "tpi_migraciones";
+    private static final int ESPERA_LOCK_SEGUNDOS = 60;
+
+    private final List<Migracion> migraciones;
+
+    public MigradorEsquema() {
+        this(Migraciones.todas());
+    }
+
+    MigradorEsquema(List<Migracion> migraciones) {
+        int anterior = 0;
+        for (Migracion m : migraciones) {
+            if (m.getVersion() <= anterior) {
+                throw new IllegalArgumentException("Migraciones fuera de orden o repetidas en " + m);
+            }
+            anterior = m.getVersion();
+        }
+        this.migraciones = migraciones;
+    }
+
+    // ============================================================
+    //  MIGRAR
+    // ============================================================
+
+    /**
+     * Aplica las migraciones pendientes.
+     * @param conn Conexión en autoCommit (las sentencias DDL de MySQL confirman solas).
+     * @return Migraciones aplicadas en esta llamada (vacía si el esquema ya estaba al día).
+     * @throws SQLException Si una migración aplicada cambió, la base es más nueva que el código
+     *                      o falla una sentencia (las migraciones son idempotentes: se puede reintentar).
+     */
+    public List<Migracion> migrar(Connection conn) throws SQLException {
+        List<Migracion> aplicadasAhora = new ArrayList<>();
+        bloquear(conn);
+        try {
+            try (Statement st = conn.createStatement()) {
+                st.execute(CREAR_TABLA_SQL);
+            }
+            Map<Integer, Long> aplicadas = leerAplicadas(conn);
+            validar(aplicadas);
+
+            for (Migracion m : migraciones) {
+                if (aplicadas.containsKey(m.getVersion())) {
+                    continue;
+                }
+                long inicio = System.nanoTime();
+                aplicar(m, conn);
+                try (PreparedStatement ps = conn.prepareStatement(INSERT_VERSION_SQL)) {
+                    ps.setInt(1, m.getVersion());
+                    ps.setString(2, m.getDescripcion());
+                    ps.setLong(3, m.getChecksum());
+                    ps.setLong(4, (System.nanoTime() - inicio) / 1_000_000);
+                    ps.executeUpdate();
+                }
+                aplicadasAhora.add(m);
+                System.out.println("✔ Migración aplicada: " + m);
+            }
+        } finally {
+            liberar(conn);
+        }
+        return aplicadasAhora;
+    }
+
+    /** Versión → checksum de las migraciones registradas en la base. */
+    public Map<Integer, Long> leerAplicadas(Connection conn) throws SQLException {
+        Map<Integer, Long> aplicadas = new TreeMap<>();
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_APLICADAS_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                aplicadas.put(rs.getInt("version"), rs.getLong("checksum"));
+            }
+        }
+        return aplicadas;
+    }
+
+    public List<Migracion> getMigraciones() {
+        return migraciones;
+    }
+
+    private void validar(Map<Integer, Long> aplicadas) throws SQLException {
+        Map<Integer, Migracion> conocidas = new TreeMap<>();
+        for (Migracion m : migraciones) {
+            conocidas.put(m.getVersion(), m);
+        }
+        for (Map.Entry<Integer, Long> e : aplicadas.entrySet()) {
+            Migracion m = conocidas.get(e.getKey());
+            if (m == null) {
+                throw new SQLException("La base tiene aplicada la migración V" + e.getKey()
+                        + ", que esta versión de la aplicación no conoce.");
+            }
+            if (m.getChecksum() != e.getValue()) {
+                throw new SQLException("La migración " + m + " cambió después de aplicada (checksum "
+                        + e.getValue() + " en la base, " + m.getChecksum() + " en el código).");
+            }
+        }
+    }
+
+    private void aplicar(Migracion m, Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            for (Migracion.Paso paso : m.getPasos()) {
+                if (paso.condicion != null) {
+                    try (ResultSet rs = st.executeQuery(paso.condicion)) {
+                        if (rs.next() && rs.getLong(1) > 0) {
+                            continue; // ya estaba hecho (p. ej. esquema creado desde el README)
+                        }
+                    }
+                }
+                try {
+                    st.execute(paso.sql);
+                } catch (SQLException e) {
+                    throw new SQLException("Falló la migración " + m + " en: " + paso.sql, e);
+                }
+            }
+        }
+    }
+
+    private static void bloquear(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            ps.setString(1, NOMBRE_LOCK);
+            ps.setInt(2, ESPERA_LOCK_SEGUNDOS);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("Otra instancia está migrando el esquema (lock " + NOMBRE_LOCK + ").");
+                }
+            }
+        }
+    }
+
+    private static void liberar(Connection conn) {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            ps.setString(1, NOMBRE_LOCK);
+            ps.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("⚠ No se pudo liberar el lock de migraciones: " + e.getMessage());
+        }
+    }
+
+    // ============================================================
+    //  LÍNEA DE COMANDOS
+    // ============================================================
+
+    public static void main(String[] args) throws SQLException, IOException {
+        String modo = args.length > 0 ? args[0] : "migrar";
+        // La conexión del pool ya aplica las migraciones si db.migraciones.automaticas=true
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            MigradorEsquema migrador = new MigradorEsquema();
+            switch (modo) {
+                case "migrar":
+                    List<Migracion> aplicadas = migrador.migrar(conn);
+                    System.out.println(aplicadas.isEmpty() ? "Esquema al día." : aplicadas.size() + " migraciones aplicadas.");
+                    break;
+                case "estado":
+                    Map<Integer, Long> registradas = migrador.leerAplicadas(conn);
+                    for (Migracion m : migrador.getMigraciones()) {
+                        System.out.println((registradas.containsKey(m.getVersion()) ? "[x] " : "[ ] ") + m);
+                    }
+                    break;
+                case "verificar":
+                    List<PlanConsulta> planes = new VerificadorPlanes().verificar(conn);
+                    planes.forEach(System.out::println);
+                    long fallas = planes.stream().filter(p -> !p.isOk()).count();
+                    if (fallas > 0) {
+                        System.err.println("❌ " + fallas + " consultas calientes hacen un recorrido completo.");
+                        System.exit(1);
+                    }
+                    System.out.println("✅ Ninguna consulta caliente recorre una tabla completa.");
+                    break;
+                default:
+                    System.err.println("Uso: MigradorEsquema [migrar | estado | verificar]");
+                    System.exit(2);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package migracion;
+
+/**
+ * Resultado de EXPLAIN para una constante SQL de un DAO.
+ */
+public final class PlanConsulta {
+    private final String origen;
+    private final String sql;
+    private final String plan;
+    private final boolean recorridoCompleto;
+    private final boolean recorridoEsperado;
+    private final String error;
+
+    PlanConsulta(String origen, String sql, String plan, boolean recorridoCompleto, boolean recorridoEsperado, String error) {
+        this.origen = origen;
+        this.sql = sql;
+        this.plan = plan;
+        this.recorridoCompleto = recorridoCompleto;
+        this.recorridoEsperado = recorridoEsperado;
+        this.error = error;
+    }
+
+    // Getters
+    /** Clase.CONSTANTE de donde sale la consulta. */
+    public String getOrigen() { return origen; }
+    public String getSql() { return sql; }
+    /** Resumen por tabla: tabla:tipo(índice)~filas. */
+    public String getPlan() { return plan; }
+    public boolean isRecorridoCompleto() { return recorridoCompleto; }
+    public String getError() { return error; }
+
+    /** false si es una consulta caliente que recorre una tabla completa o si EXPLAIN falló. */
+    public boolean isOk() {
+        return error == null && (!recorridoCompleto || recorridoEsperado);
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) {
+            return "❌ " + origen + " → error: " + error;
+        }
+        String marca = isOk() ? (recorridoCompleto ? "➖ " : "✔ ") : "❌ ";
+        return marca + origen + " → " + plan + (recorridoCompleto && recorridoEsperado ? " (recorrido esperado)" : "");
+    }
+}
@@ -0,0 +1,158 @@
+package migracion;
+
+import dao.ArchivoBajasDao;
+import dao.CodigoBarrasDaoImpl;
+import dao.DirectorioCodigos;
+import dao.GeneradorIds;
+import dao.OutboxDao;
+import dao.ProductoDaoImpl;
+import dao.RecorridoCompleto;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Corre EXPLAIN sobre cada constante *_SQL de los DAOs y marca como falla toda consulta que
+ * recorre una tabla o un índice completos (type = ALL o index), salvo las anotadas con
+ * {@link RecorridoCompleto}.
+ * Los '?' se reemplazan por literales de ejemplo ('1', un tipo, una fecha, o 10 en un LIMIT).
+ *
+ * Con tablas casi vacías el optimizador prefiere recorrerlas aunque haya índice: conviene
+ * verificar contra una base con volumen real (p. ej. la de benchmarks).
+ */
+public final class VerificadorPlanes {
+
+    // DAOs cuyas constantes se verifican
+    private static final Class<?>[] DAOS = {ProductoDaoImpl.class, CodigoBarrasDaoImpl.class, ArchivoBajasDao.class, OutboxDao.class,
+            GeneradorIds.class, DirectorioCodigos.class};
+
+    // Variantes armadas en tiempo de ejecución que también son calientes: constante + sufijo
+    private static final String[][] VARIANTES = {
+        {"ProductoDaoImpl", "AJUSTAR_PRECIOS_SQL", " AND categoria = ?"},
+        {"ProductoDaoImpl", "ESTADISTICAS_AJUSTE_SQL", " AND categoria = ? AND marca = ?"},
+        {"OutboxDao", "REGISTRAR_AJUSTE_PRECIOS_SQL", " AND categoria = ?"},
+    };
+
+    public List<PlanConsulta> verificar(Connection conn) throws SQLException {
+        List<PlanConsulta> planes = new ArrayList<>();
+        for (Class<?> dao : DAOS) {
+            for (Field f : dao.getDeclaredFields()) {
+                if (!esConstanteSql(f)) {
+                    continue;
+                }
+                String sql = leer(f);
+                String origen = dao.getSimpleName() + "." + f.getName();
+                if (sql.startsWith("INSERT") && sql.contains("VALUES")) {
+                    continue; // sin lectura: nada que verificar
+                }
+                boolean esperado = f.isAnnotationPresent(RecorridoCompleto.class);
+                planes.add(explicar(conn, origen, sql, esperado));
+                for (String[] v : VARIANTES) {
+                    if (v[0].equals(dao.getSimpleName()) && v[1].equals(f.getName())) {
+                        planes.add(explicar(conn, origen + " + filtro", sql + v[2], false));
+                    }
+                }
+            }
+        }
+        return planes;
+    }
+
+    private PlanConsulta explicar(Connection conn, String origen, String sql, boolean esperado) throws SQLException {
+        String completa = sql.endsWith("(") ? sql + "?)" : sql;
+        StringBuilder plan = new StringBuilder();
+        boolean recorrido = false;
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("EXPLAIN " + conLiterales(completa))) {
+            while (rs.next()) {
+                String tabla = rs.getString("table");
+                String tipo = rs.getString("type");
+                if (tabla == null) {
+                    // p. ej. "no matching row in const table": acceso por clave única
+                    plan.append(plan.length() > 0 ? ", " : "").append(rs.getString("Extra"));
+                    continue;
+                }
+                if (tabla.startsWith("<") || "INSERT".equals(rs.getString("select_type"))) {
+                    continue; // tablas derivadas y el destino de un INSERT ... SELECT
+                }
+                // index: lee el índice entero (más barato que ALL, pero igual proporcional a la tabla)
+                if ("ALL".equals(tipo) || "index".equals(tipo)) {
+                    recorrido = true;
+                }
+                if (plan.length() > 0) {
+                    plan.append(", ");
+                }
+                plan.append(tabla).append(':').append(tipo);
+                if (rs.getString("key") != null) {
+                    plan.append('(').append(rs.getString("key")).append(')');
+                }
+                plan.append('~').append(rs.getLong("rows"));
+            }
+        } catch (SQLException e) {
+            if (conn.isClosed()) {
+                throw e;
+            }
+            return new PlanConsulta(origen, sql, null, false, esperado, e.getMessage());
+        }
+        return new PlanConsulta(origen, sql, plan.toString(), recorrido, esperado, null);
+    }
+
+    /** Reemplaza cada '?' por un literal de ejemplo según la palabra que lo precede (columna o LIMIT). */
+    static String conLiterales(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length() + 32);
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c != '?') {
+                sb.append(c);
+                continue;
+            }
+            String previa = palabraPrevia(sql, i).toUpperCase();
+            if (previa.equals("LIMIT")) {
+                sb.append("10");
+            } else if (previa.equals("TIPO")) {
+                sb.append("'EAN13'");
+            } else if (previa.startsWith("FECHA")) {
+                sb.append("'2000-01-01 00:00:00'");
+            } else {
+                sb.append("'1'");
+            }
+        }
+        return sb.toString();
+    }
+
+    // Identificador inmediatamente anterior a la posición, salteando operadores y espacios
+    private static String palabraPrevia(String sql, int pos) {
+        int fin = pos;
+        while (fin > 0 && !esParteDeIdentificador(sql.charAt(fin - 1))) {
+            fin--;
+        }
+        int inicio = fin;
+        while (inicio > 0 && esParteDeIdentificador(sql.charAt(inicio - 1))) {
+            inicio--;
+        }
+        return sql.substring(inicio, fin);
+    }
+
+    private static boolean esParteDeIdentificador(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.';
+    }
+
+    private static boolean esConstanteSql(Field f) {
+        int m = f.getModifiers();
+        return Modifier.isStatic(m) && Modifier.isFinal(m) && f.getType() == String.class && f.getName().endsWith("_SQL");
+    }
+
+    private static String leer(Field f) {
+        try {
+            f.setAccessible(true);
+            return ((String) f.get(null)).trim();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("No se pudo leer " + f, e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package service;
+
+import cache.CacheCatalogo;
+import config.DatabaseConnection;
+import dao.ArchivoBajasDao;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Tarea de mantenimiento que mueve a las tablas de archivo los códigos y productos dados de
+ * baja hace más de {@code diasRetencion} días, para que las tablas activas (y sus índices)
+ * no crezcan con filas que nadie consulta y los valores de código retirados liberen uq_cb_valor.
+ *
+ * Trabaja en tramos cortos (una transacción de pocos cientos de filas, cada una con su propia
+ * conexión del pool) con una pausa entre tramos. Si un tramo tarda más que
+ * {@link #OBJETIVO_TRAMO_MS}, el siguiente es más chico; si tarda poco, crece hasta
+ * {@code tamanioTramo}. Así nunca retiene bloqueos ni conexiones que necesiten las cajas.
+ * Primero se archivan los códigos y después los productos que ya no tienen ninguno.
+ */
+public class ArchivadorBajas {
+
+    public static final int DIAS_RETENCION_POR_DEFECTO = 30;
+    public static final int TAMANIO_TRAMO_POR_DEFECTO = 500;
+    public static final long PAUSA_MS_POR_DEFECTO = 50;
+    static final long OBJETIVO_TRAMO_MS = 100;
+    private static final int TAMANIO_TRAMO_MINIMO = 10;
+
+    private static final Histograma LAT_TRAMO = RegistroMetricas.latencia("mantenimiento.archivo.tramo");
+    private static final LongAdder FILAS = RegistroMetricas.contador("mantenimiento.archivo.filas");
+
+    private final ArchivoBajasDao dao = new ArchivoBajasDao();
+    private final CacheCatalogo cache = CacheCatalogo.getInstancia();
+    private final int diasRetencion;
+    private final int tamanioTramo;
+    private final long pausaMs;
+    private final AtomicBoolean enCurso = new AtomicBoolean();
+    private ScheduledExecutorService programador;
+    private Consumer<ResultadoArchivado> progreso = r -> { };
+
+    public ArchivadorBajas() {
+        this(DIAS_RETENCION_POR_DEFECTO, TAMANIO_TRAMO_POR_DEFECTO, PAUSA_MS_POR_DEFECTO);
+    }
+
+    public ArchivadorBajas(int diasRetencion, int tamanioTramo, long pausaMs) {
+        if (diasRetencion < 0 || tamanioTramo <= 0 || pausaMs < 0) {
+            throw new IllegalArgumentException("diasRetencion y pausaMs no pueden ser negativos y tamanioTramo debe ser positivo.");
+        }
+        this.diasRetencion = diasRetencion;
+        this.tamanioTramo = tamanioTramo;
+        this.pausaMs = pausaMs;
+    }
+
+    /** Crea el archivador con los valores archivo.* de db.properties. */
+    public static ArchivadorBajas desdeConfiguracion() throws IOException {
+        Properties p = DatabaseConnection.getPropiedades();
+        return new ArchivadorBajas(
+                Integer.parseInt(p.getProperty("archivo.retencionDias", String.valueOf(DIAS_RETENCION_POR_DEFECTO))),
+                Integer.parseInt(p.getProperty("archivo.tamanioTramo", String.valueOf(TAMANIO_TRAMO_POR_DEFECTO))),
+                Long.parseLong(p.getProperty("archivo.pausaMs", String.valueOf(PAUSA_MS_POR_DEFECTO))));
+    }
+
+    /** Callback invocado después de cada tramo. */
+    public void setProgreso(Consumer<ResultadoArchivado> progreso) {
+        this.progreso = progreso;
+    }
+
+    // ============================================================
+    //  EJECUCIÓN PERIÓDICA
+    // ============================================================
+
+    /**
+     * Ejecuta una pasada cada {@code intervaloMinutos} en un hilo de fondo (daemon).
+     */
+    public synchronized void iniciar(long intervaloMinutos) {
+        if (programador != null) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "archivador-bajas");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        programador.scheduleWithFixedDelay(() -> {
+            try {
+                ResultadoArchivado r = archivar();
+                if (r.getCodigos() + r.getProductos() > 0) {
+                    System.out.println("🗄 " + r);
+                }
+            } catch (SQLException e) {
+                System.err.println("⚠ Archivado de bajas falló: " + e.getMessage());
+            }
+        }, intervaloMinutos, intervaloMinutos, TimeUnit.MINUTES);
+    }
+
+    public synchronized void detener() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+        }
+    }
+
+    // ============================================================
+    //  PASADA DE ARCHIVADO
+    // ============================================================
+
+    /**
+     * Archiva todo lo archivable ahora. Si ya hay una pasada en curso, no hace nada.
+     * @return Filas movidas y velocidad.
+     * @throws SQLException Si falla un tramo (los tramos anteriores quedan archivados).
+     */
+    public ResultadoArchivado archivar() throws SQLException {
+        ResultadoArchivado resultado = new ResultadoArchivado();
+        if (!enCurso.compareAndSet(false, true)) {
+            resultado.finalizar();
+            return resultado;
+        }
+        try {
+            LocalDateTime limite = LocalDateTime.now().minusDays(diasRetencion);
+            pasada(limite, true, resultado);
+            pasada(limite, false, resultado);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            enCurso.set(false);
+            resultado.finalizar();
+        }
+        return resultado;
+    }
+
+    private void pasada(LocalDateTime limite, boolean codigos, ResultadoArchivado resultado)
+            throws SQLException, InterruptedException {
+        long despuesDeId = 0;
+        int tamanio = tamanioTramo;
+        while (true) {
+            long inicio = System.nanoTime();
+            List<Long> ids = tramo(limite, codigos, despuesDeId, tamanio);
+            long ms = (System.nanoTime() - inicio) / 1_000_000;
+            if (ids.isEmpty()) {
+                return;
+            }
+            LAT_TRAMO.registrarDesde(inicio);
+            FILAS.add(ids.size());
+            if (codigos) {
+                resultado.sumarCodigos(ids.size());
+            } else {
+                resultado.sumarProductos(ids.size());
+            }
+            resultado.sumarTramo();
+            progreso.accept(resultado);
+
+            if (ids.size() < tamanio) {
+                return;
+            }
+            despuesDeId = ids.get(ids.size() - 1);
+            // Tramos cortos: se ajusta el tamaño para que cada transacción dure ~OBJETIVO_TRAMO_MS
+            if (ms > OBJETIVO_TRAMO_MS) {
+                tamanio = Math.max(TAMANIO_TRAMO_MINIMO, tamanio / 2);
+            } else if (ms < OBJETIVO_TRAMO_MS / 2) {
+                tamanio = Math.min(tamanioTramo, tamanio * 2);
+            }
+            Thread.sleep(pausaMs);
+        }
+    }
+
+    /** Una transacción: bloquea el tramo, lo copia al archivo y lo borra. */
+    private List<Long> tramo(LocalDateTime limite, boolean codigos, long despuesDeId, int tamanio) throws SQLException {
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            List<Long> ids = codigos
+                    ? dao.bloquearCodigos(limite, despuesDeId, tamanio, conn)
+                    : dao.bloquearProductos(limite, despuesDeId, tamanio, conn);
+            if (!ids.isEmpty()) {
+                long hastaId = ids.get(ids.size() - 1);
+                int movidas = codigos
+                        ? dao.moverCodigos(limite, despuesDeId, hastaId, conn)
+                        : dao.moverProductos(limite, despuesDeId, hastaId, conn);
+                if (movidas != ids.size()) {
+                    throw new SQLException("Se bloquearon " + ids.size() + " filas pero se movieron " + movidas + ".");
+                }
+            }
+            conn.commit();
+
+            if (!ids.isEmpty()) {
+                Set<Long> archivados = new HashSet<>(ids);
+                if (codigos) {
+                    cache.getCodigos().invalidarSi(cb -> archivados.contains(cb.getId()));
+                } else {
+                    cache.getProductos().invalidarSi(p -> archivados.contains(p.getId()));
+                }
+            }
+            return ids;
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } catch (SQLException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("⚠ Error en rollback: " + ex.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException ex) {
+                    System.err.println("⚠ Error al cerrar conexión: " + ex.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,35 +1,79 @@
 package service;
 
+import cache.CacheCatalogo;
+import cache.FiltroCodigos;
+import cambios.OperacionCambio;
+import config.DatabaseConnection;
+import config.Particiones;
 import dao.CodigoBarrasDaoImpl;
-import dao.ProductoDaoImpl;
+import dao.OutboxDao;
+import dao.ProductoDaoParticionado;
 import entities.CodigoBarras;
-import entities.Producto;
 import entities.TipoCodigo;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
 
+import java.io.IOException;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
 import java.util.ArrayList; // Necesario para el listado
+import java.util.stream.Stream;
 
 /**
- * Service para manejar la lógica de negocio de Código de Barras.
+ * Service para manejar la lógica de negocio de Código de Barras. Con particion.shards cada
+ * código va al shard de su producto (ver dao.ProductoDaoParticionado); streamPorTipo es de
+ * base única.
  */
 public class CodigoBarrasService {
 
+    private static final Histograma LAT_BUSCAR_POR_VALOR = RegistroMetricas.latencia("service.codigo.buscarPorValor");
+    private static final Histograma LAT_INSERTAR = RegistroMetricas.latencia("service.codigo.insertar");
+    private static final Histograma LAT_ACTUALIZAR = RegistroMetricas.latencia("service.codigo.actualizar");
+
     private final CodigoBarrasDaoImpl codigoDao;
-    private final ProductoDaoImpl productoDao;
+    private final OutboxDao outbox = new OutboxDao();
+    private final CacheCatalogo cache = CacheCatalogo.getInstancia();
+    private final FiltroCodigos filtro = FiltroCodigos.getInstancia();
+    private final boolean conShards = Particiones.estanConfiguradas();
 
     public CodigoBarrasService() {
         this.codigoDao = new CodigoBarrasDaoImpl();
-        this.productoDao = new ProductoDaoImpl();
     }
 
     // ================== CRUD BÁSICO ==================
 
+    /*
+     * La existencia del producto y la regla 1→1 las garantizan fk_cb_producto y uq_cb_producto:
+     * el alta/actualización es una sola sentencia (un viaje a la BD) y las violaciones de
+     * restricción se traducen a los mismos errores de dominio que antes. Con el registro de
+     * cambios activo (cambios.activo) la sentencia y su evento van juntos en una transacción.
+     */
+
     public CodigoBarras insertar(CodigoBarras cb) throws SQLException {
-        validarCodigoBarras(cb, true);
-        codigoDao.crear(cb); 
+        validarCodigoBarras(cb);
+        long inicio = System.nanoTime();
+        String valor = cb.getValor();
+        filtro.agregar(valor); // antes de escribir, liberar al terminar (ver FiltroCodigos)
+        try {
+            if (conShards) {
+                shards().crearCodigo(cb);
+            } else {
+                escribir(conn -> {
+                    codigoDao.crear(cb, conn);
+                    return cb.getId();
+                }, OperacionCambio.ALTA);
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw traducirRestriccion(e, cb);
+        } finally {
+            filtro.liberar(valor);
+            LAT_INSERTAR.registrarDesde(inicio);
+        }
+        cache.invalidarCodigo(null, cb.getValor());
         return cb;
     }
 
@@ -37,34 +81,128 @@ public class CodigoBarrasService {
         if (cb.getId() == null) {
             throw new SQLException("El ID del código no puede ser nulo para actualizar.");
         }
-        validarCodigoBarras(cb, false);
-        codigoDao.actualizar(cb);
+        validarCodigoBarras(cb);
+        long inicio = System.nanoTime();
+        String valor = cb.getValor();
+        filtro.agregar(valor);
+        try {
+            if (conShards) {
+                shards().actualizarCodigo(cb);
+            } else {
+                escribir(conn -> {
+                    codigoDao.actualizar(cb, conn);
+                    return cb.getId();
+                }, OperacionCambio.MODIFICACION);
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            throw traducirRestriccion(e, cb);
+        } finally {
+            filtro.liberar(valor);
+            LAT_ACTUALIZAR.registrarDesde(inicio);
+        }
+        // Por id cubre el valor anterior si cambió
+        cache.invalidarCodigo(cb.getId(), cb.getValor());
         return cb;
     }
 
     public void eliminar(long idCodigo) throws SQLException {
-        codigoDao.eliminar(idCodigo); // baja lógica
+        String valor; // para invalidar la cache por valor, sin recorrerla
+        if (conShards) {
+            valor = shards().eliminarCodigo(idCodigo);
+        } else {
+            String[] leido = new String[1];
+            escribir(conn -> {
+                CodigoBarras actual = conn != null ? codigoDao.leer(idCodigo, conn) : codigoDao.leer(idCodigo);
+                leido[0] = actual != null ? actual.getValor() : null;
+                codigoDao.eliminar(idCodigo, conn); // baja lógica
+                return idCodigo;
+            }, OperacionCambio.BAJA);
+            valor = leido[0];
+        }
+        cache.invalidarCodigo(idCodigo, valor);
     }
 
     public CodigoBarras getById(long id) throws SQLException {
-        return codigoDao.leer(id);
+        return conShards ? shards().leerCodigo(id) : codigoDao.leer(id);
     }
 
     public List<CodigoBarras> getAll() throws SQLException {
-        return codigoDao.leerTodos();
+        return conShards ? shards().leerTodosCodigos() : codigoDao.leerTodos();
     }
 
     // ================== BÚSQUEDAS OPTIMIZADAS ==================
 
     /**
-     * Busca un código de barras por su valor exacto (ahora usa cláusula WHERE).
+     * Busca un código de barras por su valor exacto (filtro de valores y cache read-through
+     * delante del DAO). Un valor que el filtro descarta no llega a la BD.
      */
     public CodigoBarras buscarPorValor(String valor) throws SQLException {
         if (valor == null || valor.trim().isEmpty()) {
             throw new SQLException("El valor del código no puede ser vacío.");
         }
-        // DELEGACIÓN EFICIENTE AL DAO
-        return codigoDao.buscarPorValor(valor); 
+        // DELEGACIÓN EFICIENTE AL DAO (sólo si puede existir y no está en cache)
+        long inicio = System.nanoTime();
+        try {
+            if (!filtro.puedeExistir(valor)) {
+                return null;
+            }
+            return CacheCatalogo.copiar(cache.getCodigos().obtener(valor, this::buscarEnBase));
+        } finally {
+            LAT_BUSCAR_POR_VALOR.registrarDesde(inicio);
+        }
+    }
+
+    /**
+     * Lo que buscarPorValor responde sin consultar la BD, para CodigoBarrasServiceAsync (que así
+     * no ocupa un permiso de BD): true si el filtro descarta el valor o está en la cache, y en
+     * ese caso el código (o null) en {@code resultado[0]}. false: hay que llamar a buscarPorValor.
+     */
+    boolean resolverSinBd(String valor, CodigoBarras[] resultado) {
+        if (valor == null || valor.trim().isEmpty()) {
+            return false; // buscarPorValor informa el error
+        }
+        if (!filtro.puedeExistir(valor)) {
+            resultado[0] = null;
+            return true;
+        }
+        CodigoBarras cb = cache.getCodigos().obtenerSiEsta(valor);
+        resultado[0] = CacheCatalogo.copiar(cb);
+        return cb != null;
+    }
+
+    /**
+     * true si ningún código (activo o dado de baja) usa {@code valor}, es decir, si un alta con
+     * él no chocaría con uq_cb_valor. Si el filtro lo descarta responde sin ir a la BD.
+     */
+    public boolean valorDisponible(String valor) throws SQLException {
+        if (valor == null || valor.trim().isEmpty()) {
+            throw new SQLException("El valor del código no puede ser vacío.");
+        }
+        if (!filtro.puedeExistir(valor)) {
+            return true;
+        }
+        boolean existe = conShards ? shards().existeValor(valor) : codigoDao.existeValor(valor);
+        if (!existe) {
+            filtro.registrarFalsoPositivo();
+        }
+        return !existe;
+    }
+
+    /**
+     * Arma el filtro de valores en un hilo de fondo (con cache.filtro.activo=false no hace nada).
+     */
+    public void cargarFiltroEnSegundoPlano() {
+        filtro.cargarEnSegundoPlano(new FiltroCodigos.Fuente() {
+            @Override
+            public long contar() throws SQLException {
+                return conShards ? shards().contarValores() : codigoDao.contarValores();
+            }
+
+            @Override
+            public Stream<String> abrir() throws SQLException {
+                return conShards ? shards().streamValores() : codigoDao.streamValores();
+            }
+        });
     }
 
     /**
@@ -75,7 +213,7 @@ public class CodigoBarrasService {
             throw new SQLException("El id de producto no puede ser nulo.");
         }
         // DELEGACIÓN EFICIENTE AL DAO
-        return codigoDao.buscarPorProductoId(productoId);
+        return conShards ? shards().buscarCodigosPorProductoId(productoId) : codigoDao.buscarPorProductoId(productoId);
     }
 
     /**
@@ -86,15 +224,41 @@ public class CodigoBarrasService {
             throw new SQLException("El tipo de código no puede ser nulo.");
         }
         // DELEGACIÓN EFICIENTE AL DAO
-        return codigoDao.buscarPorTipo(tipo);
+        return conShards ? shards().buscarCodigosPorTipo(tipo) : codigoDao.buscarPorTipo(tipo);
+    }
+
+    /**
+     * Recorre los códigos de un tipo en streaming (cerrar con try-with-resources).
+     */
+    public Stream<CodigoBarras> streamPorTipo(TipoCodigo tipo) throws SQLException {
+        if (tipo == null) {
+            throw new SQLException("El tipo de código no puede ser nulo.");
+        }
+        if (conShards) {
+            throw new SQLException("El recorrido en streaming no está disponible con shards (particion.shards).");
+        }
+        return codigoDao.streamPorTipo(tipo);
+    }
+
+    /**
+     * Página de códigos de un tipo a partir del último id visto (keyset).
+     */
+    public List<CodigoBarras> buscarPorTipoPagina(TipoCodigo tipo, long despuesDeId, int limite) throws SQLException {
+        if (tipo == null) {
+            throw new SQLException("El tipo de código no puede ser nulo.");
+        }
+        return conShards ? shards().buscarCodigosPorTipoPagina(tipo, despuesDeId, limite)
+                : codigoDao.buscarPorTipoPagina(tipo, despuesDeId, limite);
     }
 
     // ================== VALIDACIONES ==================
 
     /**
-     * Valida los datos del código de barras y aplica la regla 1→1.
+     * Valida los datos del código de barras (sin acceso a la BD; la regla 1→1 y la existencia
+     * del producto las aplican las restricciones, ver traducirRestriccion).
+     * Package-private para los benchmarks de src/jmh.
      */
-    private void validarCodigoBarras(CodigoBarras cb, boolean esNuevo) throws SQLException {
+    void validarCodigoBarras(CodigoBarras cb) throws SQLException {
         if (cb == null) {
             throw new SQLException("El código de barras no puede ser nulo.");
         }
@@ -103,11 +267,6 @@ public class CodigoBarrasService {
             throw new SQLException("Debe asociarse el código a un producto (productoId no puede ser nulo).");
         }
 
-        Producto p = productoDao.leer(cb.getProductoId());
-        if (p == null) {
-            throw new SQLException("El producto con ID " + cb.getProductoId() + " no existe.");
-        }
-
         if (cb.getTipo() == null) {
             throw new SQLException("El tipo de código es obligatorio.");
         }
@@ -127,18 +286,92 @@ public class CodigoBarrasService {
             cb.setFechaAsignacion(LocalDate.now());
         }
 
+        if (cb.getEliminado() == null) {
+            cb.setEliminado(false);
+        }
+    }
+
+    /**
+     * Convierte una violación de restricción de codigo_barras en el error de dominio equivalente.
+     */
+    private SQLException traducirRestriccion(SQLIntegrityConstraintViolationException e, CodigoBarras cb)
+            throws SQLException {
+        String mensaje = e.getMessage() == null ? "" : e.getMessage();
+
+        if (mensaje.contains("fk_cb_producto")) {
+            return new SQLException("El producto con ID " + cb.getProductoId() + " no existe.", e);
+        }
+
         // Regla 1→1: un producto solo puede tener un código de barras
-        List<CodigoBarras> existentes = buscarPorProductoId(cb.getProductoId());
-        for (CodigoBarras otro : existentes) {
-            if (esNuevo || !otro.getId().equals(cb.getId())) {
-                throw new SQLException("El producto " + cb.getProductoId()
-                        + " ya tiene un código de barras asociado (ID " + otro.getId() + ").");
-            }
+        if (mensaje.contains("uq_cb_producto")) {
+            // Sólo en el camino de error: buscamos el código existente para informarlo
+            List<CodigoBarras> existentes = buscarPorProductoId(cb.getProductoId());
+            String detalle = existentes.isEmpty() ? "dado de baja" : "ID " + existentes.get(0).getId();
+            return new SQLException("El producto " + cb.getProductoId()
+                    + " ya tiene un código de barras asociado (" + detalle + ").", e);
+        }
+
+        if (mensaje.contains("uq_cb_valor")) {
+            return new SQLException("Ya existe un código de barras con valor " + cb.getValor() + ".", e);
         }
+        return e;
     }
 
     // ================== HELPERS ==================
 
+    private CodigoBarras buscarEnBase(String valor) throws SQLException {
+        return conShards ? shards().buscarCodigoPorValor(valor) : codigoDao.buscarPorValor(valor);
+    }
+
+    private static ProductoDaoParticionado shards() throws SQLException {
+        return ProductoDaoParticionado.getInstancia();
+    }
+
+    @FunctionalInterface
+    private interface Escritura {
+        /** Escribe con {@code conn} (null = conexión propia en autocommit) y devuelve el id del código. */
+        long ejecutar(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Sin registro de cambios es la sentencia sola; con él, sentencia y evento en una transacción.
+     * Las excepciones salen sin envolver para que traducirRestriccion las reconozca.
+     */
+    private void escribir(Escritura escritura, OperacionCambio operacion) throws SQLException {
+        if (!outbox.estaActivo()) {
+            escritura.ejecutar(null);
+            return;
+        }
+        Connection conn = null;
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+            long id = escritura.ejecutar(conn);
+            outbox.registrarCodigo(id, operacion, conn);
+            conn.commit();
+        } catch (IOException e) {
+            throw new SQLException("Error al obtener conexión", e);
+        } catch (SQLException | RuntimeException e) {
+            if (conn != null) {
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    System.err.println("⚠ Error en rollback: " + ex.getMessage());
+                }
+            }
+            throw e;
+        } finally {
+            if (conn != null) {
+                try {
+                    conn.setAutoCommit(true);
+                    conn.close();
+                } catch (SQLException ex) {
+                    System.err.println("⚠ Error al cerrar conexión: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
     private boolean esNumerico(String valor) {
         for (int i = 0; i < valor.length(); i++) {
             if (!Character.isDigit(valor.charAt(i))) {
@@ -0,0 +1,82 @@
+package service;
+
+import entities.CodigoBarras;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Versión asíncrona de CodigoBarrasService sobre hilos virtuales (ver EjecutorAsincrono).
+ */
+public class CodigoBarrasServiceAsync {
+
+    private final CodigoBarrasService service;
+    private final EjecutorAsincrono ejecutor = EjecutorAsincrono.getInstancia();
+
+    public CodigoBarrasServiceAsync() {
+        this(new CodigoBarrasService());
+    }
+
+    public CodigoBarrasServiceAsync(CodigoBarrasService service) {
+        this.service = service;
+    }
+
+    // ================== LECTURAS ==================
+
+    public CompletableFuture<CodigoBarras> getById(long id) {
+        return ejecutor.ejecutar(() -> service.getById(id));
+    }
+
+    /** Si el filtro de valores o la cache ya tienen la respuesta, no pasa por el ejecutor ni toma un permiso de BD. */
+    public CompletableFuture<CodigoBarras> buscarPorValor(String valor) {
+        CodigoBarras[] resultado = new CodigoBarras[1];
+        if (service.resolverSinBd(valor, resultado)) {
+            return CompletableFuture.completedFuture(resultado[0]);
+        }
+        return ejecutor.ejecutar(() -> service.buscarPorValor(valor));
+    }
+
+    public CompletableFuture<List<CodigoBarras>> buscarPorProductoId(Long productoId) {
+        return ejecutor.ejecutar(() -> service.buscarPorProductoId(productoId));
+    }
+
+    /**
+     * Busca muchos valores en paralelo (un hilo virtual por valor).
+     * @return Mapa valor → código; los valores sin resultado no aparecen.
+     */
+    public CompletableFuture<Map<String, CodigoBarras>> buscarPorValores(Collection<String> valores) {
+        List<String> claves = new ArrayList<>(valores);
+        List<CompletableFuture<CodigoBarras>> futuros = new ArrayList<>(claves.size());
+        for (String v : claves) {
+            futuros.add(buscarPorValor(v));
+        }
+        return CompletableFuture.allOf(futuros.toArray(new CompletableFuture<?>[0])).thenApply(nada -> {
+            Map<String, CodigoBarras> resultado = new HashMap<>();
+            for (int i = 0; i < claves.size(); i++) {
+                CodigoBarras cb = futuros.get(i).join();
+                if (cb != null) {
+                    resultado.put(claves.get(i), cb);
+                }
+            }
+            return resultado;
+        });
+    }
+
+    // ================== ESCRITURAS ==================
+
+    public CompletableFuture<CodigoBarras> insertar(CodigoBarras cb) {
+        return ejecutor.ejecutar(() -> service.insertar(cb));
+    }
+
+    public CompletableFuture<CodigoBarras> actualizar(CodigoBarras cb) {
+        return ejecutor.ejecutar(() -> service.actualizar(cb));
+    }
+
+    public CompletableFuture<Void> eliminar(long idCodigo) {
+        return ejecutor.ejecutarSinResultado(() -> service.eliminar(idCodigo));
+    }
+}
@@ -0,0 +1,96 @@
+package service;
+
+import config.DatabaseConnection;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Ejecuta operaciones de servicio en hilos virtuales (uno por tarea) con la concurrencia
+ * hacia la BD acotada al tamaño del pool de conexiones.
+ *
+ * Sin el semáforo, miles de hilos virtuales harían cola en el pool y vencerían su timeout;
+ * además Connector/J 8.0 usa synchronized, que fija el hilo virtual a su carrier mientras
+ * espera el socket. Con el límite, los que sobran esperan baratos (sin carrier) en el semáforo.
+ */
+final class EjecutorAsincrono {
+
+    @FunctionalInterface
+    interface OperacionSql<T> {
+        T ejecutar() throws SQLException;
+    }
+
+    @FunctionalInterface
+    interface OperacionSinResultado {
+        void ejecutar() throws SQLException;
+    }
+
+    private static volatile EjecutorAsincrono instancia;
+
+    private final ExecutorService hilosVirtuales = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permisosBd;
+
+    private EjecutorAsincrono(int maxConcurrencia) {
+        this.permisosBd = new Semaphore(maxConcurrencia);
+    }
+
+    static EjecutorAsincrono getInstancia() {
+        EjecutorAsincrono e = instancia;
+        if (e == null) {
+            synchronized (EjecutorAsincrono.class) {
+                e = instancia;
+                if (e == null) {
+                    int max;
+                    try {
+                        max = DatabaseConnection.getPool().getTamanioMaximo();
+                    } catch (SQLException | IOException ex) {
+                        // Sin pool no hay a quién proteger; el primer uso informará el error real
+                        max = Runtime.getRuntime().availableProcessors();
+                    }
+                    e = new EjecutorAsincrono(max);
+                    instancia = e;
+                }
+            }
+        }
+        return e;
+    }
+
+    /**
+     * Ejecuta la operación en un hilo virtual. Si falla, el futuro termina con la
+     * SQLException original (envuelta en CompletionException al usar join()).
+     */
+    <T> CompletableFuture<T> ejecutar(OperacionSql<T> operacion) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                permisosBd.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(new SQLException("Operación asíncrona interrumpida", e));
+            }
+            try {
+                return operacion.ejecutar();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } finally {
+                permisosBd.release();
+            }
+        }, hilosVirtuales);
+    }
+
+    CompletableFuture<Void> ejecutarSinResultado(OperacionSinResultado operacion) {
+        return ejecutar(() -> {
+            operacion.ejecutar();
+            return null;
+        });
+    }
+
+    /** Operaciones en curso o esperando turno para la BD. */
+    int getEsperando() {
+        return permisosBd.getQueueLength();
+    }
+}
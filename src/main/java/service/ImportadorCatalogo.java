@@ -0,0 +1,355 @@
+package service;
+
+import cache.FiltroCodigos;
+import entities.CodigoBarras;
+import entities.Producto;
+import entities.TipoCodigo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Importación masiva de catálogo desde CSV/TSV.
+ *
+ * Columnas: nombre, marca, categoria, precio, peso, tipo, valor[, observaciones]
+ * (la primera línea se toma como encabezado si empieza con "nombre").
+ *
+ * El archivo se lee en tramos de {@code tamanioTramo} filas; cada tramo se parsea y valida
+ * en paralelo y se escribe en orden con ProductoService.crearProductosConCodigos (una
+ * transacción por tramo). Sólo hay en memoria unos pocos tramos a la vez, sin importar
+ * el tamaño del archivo. Las filas inválidas van al archivo de rechazos con su motivo.
+ *
+ * Con {@link #setSincronizar(boolean)} cada tramo pasa por ProductoService.sincronizar: los
+ * códigos que ya existen se actualizan (o se dejan igual) en lugar de rechazarse, para feeds
+ * de proveedores que reenvían el catálogo completo.
+ *
+ * Sin sincronizar y con el filtro de valores cargado (cache.FiltroCodigos), los valores que
+ * ya existen se rechazan antes de escribir: el tramo no falla entero por un duplicado, y sólo
+ * los valores que el filtro no descarta cuestan una consulta.
+ */
+public class ImportadorCatalogo {
+
+    public static final int TAMANIO_TRAMO_POR_DEFECTO = 5000;
+
+    private final ProductoService productoService;
+    private final CodigoBarrasService codigoService = new CodigoBarrasService();
+    private final FiltroCodigos filtro = FiltroCodigos.getInstancia();
+    private final int tamanioTramo;
+    private final int hilos;
+    private char separador; // 0 = detectar con la primera línea
+    private boolean sincronizar;
+    private Consumer<ResultadoImportacion> progreso = r -> System.out.println("⏳ " + r);
+
+    public ImportadorCatalogo(ProductoService productoService) {
+        this(productoService, TAMANIO_TRAMO_POR_DEFECTO, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ImportadorCatalogo(ProductoService productoService, int tamanioTramo, int hilos) {
+        if (tamanioTramo <= 0 || hilos <= 0) {
+            throw new IllegalArgumentException("tamanioTramo e hilos deben ser positivos.");
+        }
+        this.productoService = productoService;
+        this.tamanioTramo = tamanioTramo;
+        this.hilos = hilos;
+    }
+
+    public void setSeparador(char separador) {
+        this.separador = separador;
+    }
+
+    /** Si es true, los códigos existentes se actualizan en lugar de rechazarse. */
+    public void setSincronizar(boolean sincronizar) {
+        this.sincronizar = sincronizar;
+    }
+
+    /** Callback invocado después de escribir cada tramo. */
+    public void setProgreso(Consumer<ResultadoImportacion> progreso) {
+        this.progreso = progreso;
+    }
+
+    // ============================================================
+    //  IMPORTAR
+    // ============================================================
+
+    /**
+     * Importa el archivo completo.
+     * @param archivo CSV/TSV de entrada (UTF-8).
+     * @param archivoRechazos Destino de las filas rechazadas (linea, motivo, contenido).
+     * @return Contadores finales de la importación.
+     */
+    public ResultadoImportacion importar(Path archivo, Path archivoRechazos) throws IOException {
+        ResultadoImportacion resultado = new ResultadoImportacion();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos, r -> {
+            Thread t = new Thread(r, "importador-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        // Tramos en vuelo acotados: memoria constante aunque el archivo tenga millones de filas
+        int maxEnVuelo = hilos * 2;
+        Deque<Future<List<Fila>>> enVuelo = new ArrayDeque<>();
+
+        try (BufferedReader in = Files.newBufferedReader(archivo, StandardCharsets.UTF_8);
+             BufferedWriter rechazos = Files.newBufferedWriter(archivoRechazos, StandardCharsets.UTF_8)) {
+
+            String linea = in.readLine();
+            long numero = 1;
+            // Local: el importador se puede reusar con otro archivo y volver a detectar
+            final char sep = separador != 0 || linea == null ? separador : detectarSeparador(linea);
+            if (linea != null && linea.trim().toLowerCase().startsWith("nombre")) {
+                linea = in.readLine(); // encabezado
+                numero++;
+            }
+
+            List<Fila> tramo = new ArrayList<>(tamanioTramo);
+            while (linea != null) {
+                if (!linea.isBlank()) {
+                    tramo.add(new Fila(numero, linea));
+                }
+                if (tramo.size() == tamanioTramo) {
+                    resultado.sumarLeidas(tramo.size());
+                    final List<Fila> aParsear = tramo;
+                    enVuelo.addLast(ejecutor.submit(() -> parsearTramo(aParsear, sep)));
+                    tramo = new ArrayList<>(tamanioTramo);
+                    if (enVuelo.size() >= maxEnVuelo) {
+                        escribirTramo(esperar(enVuelo.pollFirst()), rechazos, resultado);
+                    }
+                }
+                linea = in.readLine();
+                numero++;
+            }
+            if (!tramo.isEmpty()) {
+                resultado.sumarLeidas(tramo.size());
+                final List<Fila> aParsear = tramo;
+                enVuelo.addLast(ejecutor.submit(() -> parsearTramo(aParsear, sep)));
+            }
+            while (!enVuelo.isEmpty()) {
+                escribirTramo(esperar(enVuelo.pollFirst()), rechazos, resultado);
+            }
+        } finally {
+            ejecutor.shutdownNow();
+        }
+
+        resultado.finalizar();
+        return resultado;
+    }
+
+    // ============================================================
+    //  ESCRITURA (en orden, un tramo por transacción)
+    // ============================================================
+
+    private void escribirTramo(List<Fila> filas, BufferedWriter rechazos, ResultadoImportacion resultado)
+            throws IOException {
+        List<Producto> validos = new ArrayList<>(filas.size());
+        List<Fila> filasValidas = new ArrayList<>(filas.size());
+        for (Fila f : filas) {
+            if (f.motivo == null && !sincronizar && filtro.estaCargado()) {
+                f.motivo = duplicado(f.producto.getCodigoBarras().getValor());
+            }
+            if (f.motivo != null) {
+                rechazar(rechazos, f, f.motivo, resultado);
+            } else {
+                validos.add(f.producto);
+                filasValidas.add(f);
+            }
+        }
+
+        if (!validos.isEmpty()) {
+            try {
+                escribir(validos, resultado);
+            } catch (SQLException e) {
+                // El tramo falló entero (p. ej. un valor de código duplicado en la BD):
+                // se reintenta fila por fila para aislar las que realmente fallan, sin
+                // avisos por consola (el resultado y los rechazos ya lo cuentan).
+                for (Fila f : filasValidas) {
+                    try {
+                        f.producto.setId(null);
+                        f.producto.getCodigoBarras().setId(null);
+                        escribir(List.of(f.producto), resultado);
+                    } catch (SQLException ex) {
+                        String motivo = ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage();
+                        rechazar(rechazos, f, motivo, resultado);
+                    }
+                }
+            }
+        }
+
+        rechazos.flush();
+        resultado.sumarTramo();
+        if (progreso != null) {
+            progreso.accept(resultado);
+        }
+    }
+
+    // Motivo de rechazo si el valor ya existe; ante un error de BD se deja decidir a uq_cb_valor
+    private String duplicado(String valor) {
+        try {
+            return codigoService.valorDisponible(valor) ? null : "Ya existe un código de barras con valor " + valor + ".";
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private void escribir(List<Producto> productos, ResultadoImportacion resultado) throws SQLException {
+        if (sincronizar) {
+            ResultadoSincronizacion s = productoService.sincronizar(productos);
+            resultado.sumarImportadas(s.getInsertados());
+            resultado.sumarActualizadas(s.getActualizados());
+            resultado.sumarSinCambios(s.getSinCambios() + s.getRepetidos());
+        } else if (productos.size() == 1) {
+            Producto p = productos.get(0);
+            productoService.crearProductoConCodigo(p, p.getCodigoBarras(), false);
+            resultado.sumarImportadas(1);
+        } else {
+            productoService.crearProductosConCodigos(productos);
+            resultado.sumarImportadas(productos.size());
+        }
+    }
+
+    private void rechazar(BufferedWriter rechazos, Fila f, String motivo, ResultadoImportacion resultado)
+            throws IOException {
+        rechazos.write(f.numero + "\t" + String.valueOf(motivo).replace('\t', ' ').replace('\n', ' ') + "\t" + f.texto);
+        rechazos.newLine();
+        resultado.sumarRechazadas(1);
+    }
+
+    // ============================================================
+    //  PARSEO Y VALIDACIÓN (en paralelo, sin acceso a la BD)
+    // ============================================================
+
+    private List<Fila> parsearTramo(List<Fila> filas, char sep) {
+        for (Fila f : filas) {
+            try {
+                f.producto = parsearFila(f.texto, sep);
+            } catch (SQLException | IllegalArgumentException e) {
+                f.motivo = e.getMessage();
+            }
+        }
+        return filas;
+    }
+
+    private Producto parsearFila(String linea, char sep) throws SQLException {
+        List<String> campos = dividir(linea, sep);
+        if (campos.size() < 7) {
+            throw new IllegalArgumentException("Se esperaban al menos 7 columnas y hay " + campos.size() + ".");
+        }
+
+        Producto p = new Producto();
+        p.setEliminado(false);
+        p.setNombre(campos.get(0).trim());
+        p.setMarca(campos.get(1).trim());
+        p.setCategoria(campos.get(2).trim());
+        p.setPrecio(parsearNumero(campos.get(3), "precio"));
+        String peso = campos.get(4).trim();
+        p.setPeso(peso.isEmpty() ? null : parsearNumero(peso, "peso"));
+
+        CodigoBarras cb = new CodigoBarras();
+        cb.setEliminado(false);
+        try {
+            cb.setTipo(TipoCodigo.valueOf(campos.get(5).trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Tipo de código inválido: '" + campos.get(5).trim() + "'.");
+        }
+        cb.setValor(campos.get(6).trim());
+        // Al sincronizar, una fecha nula conserva la de los códigos existentes (los nuevos toman hoy)
+        cb.setFechaAsignacion(sincronizar ? null : LocalDate.now());
+        cb.setObservaciones(campos.size() > 7 ? campos.get(7).trim() : "Importación masiva");
+        p.setCodigoBarras(cb);
+
+        // Mismas reglas que el alta individual
+        productoService.validarProducto(p);
+        productoService.validarCodigoBasico(cb);
+        return p;
+    }
+
+    private static double parsearNumero(String texto, String campo) {
+        try {
+            return Double.parseDouble(texto.trim().replace(',', '.'));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor numérico inválido para " + campo + ": '" + texto.trim() + "'.");
+        }
+    }
+
+    /** Divide una línea respetando campos entre comillas dobles ("" escapa una comilla). */
+    static List<String> dividir(String linea, char sep) {
+        List<String> campos = new ArrayList<>(8);
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"') {
+                    if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        actual.append('"');
+                        i++;
+                    } else {
+                        entreComillas = false;
+                    }
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == sep) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    /** Elige entre tabulador, punto y coma o coma según cuál aparece más en la línea. */
+    static char detectarSeparador(String linea) {
+        char[] candidatos = {'\t', ';', ','};
+        char elegido = ',';
+        long max = 0;
+        for (char c : candidatos) {
+            long n = linea.chars().filter(ch -> ch == c).count();
+            if (n > max) {
+                max = n;
+                elegido = c;
+            }
+        }
+        return elegido;
+    }
+
+    private static List<Fila> esperar(Future<List<Fila>> futuro) throws IOException {
+        try {
+            return futuro.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Importación interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error parseando el archivo", e.getCause());
+        }
+    }
+
+    private static final class Fila {
+        final long numero;
+        final String texto;
+        Producto producto;
+        String motivo; // != null si la fila es inválida
+
+        Fila(long numero, String texto) {
+            this.numero = numero;
+            this.texto = texto;
+        }
+    }
+}
@@ -1,19 +1,69 @@
 package service;
 
+import busqueda.Coincidencia;
+import busqueda.IndiceTexto;
+import cache.CacheCatalogo;
+import cache.FiltroCodigos;
+import cambios.OperacionCambio;
 import config.DatabaseConnection;
+import config.Particiones;
+import dao.FiltroProductos;
 import dao.ProductoDaoImpl;
 import dao.CodigoBarrasDaoImpl;
+import dao.ConflictoVersionException;
+import dao.OutboxDao;
+import dao.ProductoDaoParticionado;
+import dao.ResultadoAjustePrecios;
 import entities.Producto;
 import entities.CodigoBarras;
+import metricas.Histograma;
+import metricas.RegistroMetricas;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List; // Necesario para el método getAll()
-
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Lógica de negocio de productos con su código. Con particion.shards en db.properties las
+ * operaciones de a un producto y los listados van a dao.ProductoDaoParticionado; las de todo
+ * el catálogo en una transacción o un cursor (lote, sincronización, ajuste de precios,
+ * streaming y búsqueda por texto) siguen siendo de base única y con shards fallan.
+ */
 public class ProductoService {
 
+    // Latencia de punta a punta por operación (incluye cache y transacción)
+    private static final Histograma LAT_LEER = RegistroMetricas.latencia("service.producto.leer");
+    private static final Histograma LAT_BUSCAR_POR_CODIGO = RegistroMetricas.latencia("service.producto.buscarPorCodigo");
+    private static final Histograma LAT_CREAR = RegistroMetricas.latencia("service.producto.crearConCodigo");
+    private static final Histograma LAT_CREAR_LOTE = RegistroMetricas.latencia("service.producto.crearLote");
+    private static final Histograma LAT_ACTUALIZAR = RegistroMetricas.latencia("service.producto.actualizarConCodigo");
+    private static final Histograma LAT_ELIMINAR = RegistroMetricas.latencia("service.producto.eliminarConCodigo");
+    private static final Histograma LAT_AJUSTAR_PRECIOS = RegistroMetricas.latencia("service.producto.ajustarPrecios");
+    private static final Histograma LAT_SINCRONIZAR_TRAMO = RegistroMetricas.latencia("service.producto.sincronizarTramo");
+    private static final int INTENTOS_TRAMO = 3;
+    private static final LongAdder COMMITS = RegistroMetricas.contador("service.transacciones.commit");
+    private static final LongAdder ROLLBACKS = RegistroMetricas.contador("service.transacciones.rollback");
+
     private final ProductoDaoImpl productoDao;
     private final CodigoBarrasDaoImpl codigoDao;
+    private final OutboxDao outbox = new OutboxDao();
+    private final CacheCatalogo cache = CacheCatalogo.getInstancia();
+    private final FiltroCodigos filtro = FiltroCodigos.getInstancia();
+    private final IndiceTexto indiceTexto = IndiceTexto.getInstancia();
+    private final boolean conShards = Particiones.estanConfiguradas();
+    private ReintentoOptimista reintentos = ReintentoOptimista.desdeConfiguracion();
 
     public ProductoService() {
         this.productoDao = new ProductoDaoImpl();
@@ -25,13 +75,18 @@ public class ProductoService {
     // ============================================================
 
     /**
-     * Lee un producto por su ID (delegación directa al DAO).
+     * Lee un producto por su ID (cache read-through delante del DAO).
      * @param id El ID del producto.
      * @return El objeto Producto.
      * @throws SQLException Si ocurre un error de base de datos.
      */
     public Producto leer(long id) throws SQLException {
-        return productoDao.leer(id);
+        long inicio = System.nanoTime();
+        try {
+            return CacheCatalogo.copiar(cache.getProductos().obtener(id, this::leerDeBase));
+        } finally {
+            LAT_LEER.registrarDesde(inicio);
+        }
     }
 
     /**
@@ -40,44 +95,485 @@ public class ProductoService {
      * @throws SQLException Si ocurre un error de base de datos.
      */
     public List<Producto> getAll() throws SQLException {
-        return productoDao.leerTodos();
+        return conShards ? shards().leerTodos() : productoDao.leerTodos();
+    }
+
+    /**
+     * Lee un producto con su código de barras ya cargado (un solo JOIN).
+     * @param id El ID del producto.
+     * @return El Producto con getCodigoBarras() completo (o null si no tiene código activo).
+     * @throws SQLException Si ocurre un error de base de datos.
+     */
+    public Producto leerConCodigo(long id) throws SQLException {
+        return conShards ? shards().leerConCodigo(id) : productoDao.leerConCodigo(id);
+    }
+
+    /**
+     * Devuelve todos los productos activos con su código de barras en una sola consulta.
+     * @return Lista de Productos hidratados.
+     * @throws SQLException Si ocurre un error de base de datos.
+     */
+    public List<Producto> getAllConCodigo() throws SQLException {
+        return conShards ? shards().leerTodosConCodigo() : productoDao.leerTodosConCodigo();
+    }
+
+    /**
+     * Recorre los productos activos en streaming (cursor del servidor, memoria constante).
+     * Debe cerrarse con try-with-resources.
+     * @return Stream de Productos.
+     * @throws SQLException Si ocurre un error de base de datos.
+     */
+    public Stream<Producto> streamTodos() throws SQLException {
+        soloBaseUnica("El recorrido en streaming");
+        return productoDao.streamTodos();
+    }
+
+    /**
+     * Página de productos activos con su código, a partir del último id visto (keyset).
+     * @param despuesDeId Último id de la página anterior (0 para la primera).
+     * @param limite Cantidad máxima de productos.
+     * @return Productos ordenados por id.
+     * @throws SQLException Si ocurre un error de base de datos.
+     */
+    public List<Producto> getPaginaConCodigo(long despuesDeId, int limite) throws SQLException {
+        if (limite <= 0) throw new SQLException("El tamaño de página debe ser positivo.");
+        return conShards ? shards().getPaginaConCodigo(despuesDeId, limite)
+                : productoDao.leerPaginaConCodigo(despuesDeId, limite);
+    }
+
+    /**
+     * Busca el producto al que pertenece un código de barras (camino de escaneo).
+     * @param valor Valor exacto del código.
+     * @return El Producto con su código, o null si no existe.
+     * @throws SQLException Si el valor es vacío o hay un error de base de datos.
+     */
+    public Producto buscarPorCodigo(String valor) throws SQLException {
+        if (valor == null || valor.trim().isEmpty()) {
+            throw new SQLException("El valor del código no puede ser vacío.");
+        }
+        long inicio = System.nanoTime();
+        try {
+            // Un código leído en el escáner que nunca se dio de alta no llega a la BD
+            if (!filtro.puedeExistir(valor)) {
+                return null;
+            }
+            // En un fallo, el JOIN carga ambas caches con un solo viaje a la BD
+            long genProductos = cache.getProductos().getGeneracion();
+            CodigoBarras cb = cache.getCodigos().obtener(valor, v -> {
+                Producto encontrado = conShards ? shards().buscarPorCodigo(v) : productoDao.buscarPorCodigo(v);
+                if (encontrado == null) {
+                    return null;
+                }
+                CodigoBarras codigo = encontrado.getCodigoBarras();
+                encontrado.setCodigoBarras(null);
+                cache.getProductos().poner(encontrado.getId(), encontrado, genProductos);
+                return codigo;
+            });
+            if (cb == null) {
+                return null;
+            }
+            Producto p = CacheCatalogo.copiar(cache.getProductos().obtener(cb.getProductoId(), this::leerDeBase));
+            if (p != null) {
+                p.setCodigoBarras(CacheCatalogo.copiar(cb));
+            }
+            return p;
+        } finally {
+            LAT_BUSCAR_POR_CODIGO.registrarDesde(inicio);
+        }
     }
      
+    /**
+     * Búsqueda por texto libre sobre nombre, marca y categoría (palabras o prefijos, sin
+     * acentos ni mayúsculas). El índice se carga en memoria la primera vez que se usa.
+     * @param consulta Texto a buscar, p. ej. "yerba" o "auricul sony".
+     * @param limite Cantidad máxima de resultados.
+     * @return Productos de mayor a menor relevancia.
+     * @throws SQLException Si la consulta es vacía o hay un error de base de datos.
+     */
+    public List<Producto> buscarPorTexto(String consulta, int limite) throws SQLException {
+        if (consulta == null || consulta.trim().isEmpty()) {
+            throw new SQLException("El texto a buscar no puede ser vacío.");
+        }
+        if (limite <= 0) throw new SQLException("El límite debe ser positivo.");
+        soloBaseUnica("La búsqueda por texto");
+        if (!indiceTexto.estaCargado()) {
+            synchronized (indiceTexto) {
+                if (!indiceTexto.estaCargado()) {
+                    indiceTexto.cargar(productoDao::streamTodos);
+                }
+            }
+        }
+
+        List<Coincidencia> coincidencias = indiceTexto.buscar(consulta, limite);
+        List<Long> ids = new ArrayList<>(coincidencias.size());
+        for (Coincidencia c : coincidencias) {
+            ids.add(c.getProductoId());
+        }
+        // Un solo viaje a la BD para los datos completos, devueltos en el orden del ranking
+        Map<Long, Producto> porId = new HashMap<>();
+        for (Producto p : productoDao.leerPorIds(ids)) {
+            porId.put(p.getId(), p);
+        }
+        List<Producto> resultado = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Producto p = porId.get(id);
+            if (p != null) {
+                resultado.add(p);
+            }
+        }
+        return resultado;
+    }
+
     // ============================================================
     //  CREAR Producto + Código (transacción) - CÓDIGO EXISTENTE
     // ============================================================
     public void crearProductoConCodigo(Producto producto, CodigoBarras codigo) throws SQLException {
+        crearProductoConCodigo(producto, codigo, true);
+    }
+
+    /** Con avisar=false no escribe en consola (ImportadorCatalogo al reintentar fila por fila). */
+    void crearProductoConCodigo(Producto producto, CodigoBarras codigo, boolean avisar) throws SQLException {
         validarProducto(producto);
         validarCodigoBasico(codigo);
 
+        long inicio = System.nanoTime();
         Connection conn = null;
+        // Antes de escribir y liberado al terminar: ningún lector ve "no existe" tras el commit
+        String valor = codigo.getValor();
+        filtro.agregar(valor);
+
+        try {
+            if (conShards) {
+                // Ids, directorio, ambas filas y sus eventos en el shard del producto
+                shards().crearConCodigo(producto, codigo);
+            } else {
+                conn = DatabaseConnection.getConnection();
+                conn.setAutoCommit(false);
+
+                // CREAR PRODUCTO
+                productoDao.crear(producto, conn);
+
+                // Asociar FK
+                codigo.setProductoId(producto.getId());
+
+                // CREAR CÓDIGO
+                codigoDao.crear(codigo, conn);
+
+                // Registro de cambios en la misma transacción
+                outbox.registrarProducto(producto.getId(), OperacionCambio.ALTA, conn);
+                outbox.registrarCodigo(codigo.getId(), OperacionCambio.ALTA, conn);
+
+                conn.commit();
+            }
+            COMMITS.increment();
+            indiceTexto.indexar(producto);
+            if (avisar) {
+                System.out.println("✔ Transacción OK: Producto y Código creados.");
+            }
+
+        } catch (Exception e) {
+            rollback(conn, e, avisar);
+        } finally {
+            cerrarConexion(conn);
+            filtro.liberar(valor);
+            LAT_CREAR.registrarDesde(inicio);
+        }
+    }
+
+    // ============================================================
+    //  CREAR Productos + Códigos en lote (una sola transacción)
+    // ============================================================
+    /**
+     * Crea muchos productos con su código (Producto.getCodigoBarras()) en una única transacción,
+     * usando executeBatch en ambos DAOs. Si algo falla no se crea ninguno.
+     * @param productos Productos con su CodigoBarras asociado.
+     * @throws SQLException Si falla una validación o la transacción.
+     */
+    public void crearProductosConCodigos(List<Producto> productos) throws SQLException {
+        if (productos == null) throw new SQLException("La lista de productos no puede ser nula.");
+        soloBaseUnica("El alta en lote");
+        if (productos.isEmpty()) return;
+
+        List<CodigoBarras> codigos = new ArrayList<>(productos.size());
+        List<String> valores = new ArrayList<>(productos.size());
+        for (Producto p : productos) {
+            validarProducto(p);
+            CodigoBarras c = p.getCodigoBarras();
+            validarCodigoBasico(c);
+            if (c.getFechaAsignacion() == null) c.setFechaAsignacion(LocalDate.now());
+            if (c.getEliminado() == null) c.setEliminado(false);
+            codigos.add(c);
+            valores.add(c.getValor());
+        }
+
+        long inicio = System.nanoTime();
+        Connection conn = null;
+        filtro.agregar(valores);
 
         try {
             conn = DatabaseConnection.getConnection();
             conn.setAutoCommit(false);
 
-            // CREAR PRODUCTO
-            productoDao.crear(producto, conn);
+            productoDao.crearLote(productos, conn);
 
-            // Asociar FK
-            codigo.setProductoId(producto.getId());
+            // Asociar FK con los IDs generados
+            for (Producto p : productos) {
+                p.getCodigoBarras().setProductoId(p.getId());
+            }
 
-            // CREAR CÓDIGO
-            codigoDao.crear(codigo, conn);
+            codigoDao.crearLote(codigos, conn);
+
+            if (outbox.estaActivo()) {
+                List<Long> idsProductos = new ArrayList<>(productos.size());
+                List<Long> idsCodigos = new ArrayList<>(codigos.size());
+                for (Producto p : productos) {
+                    idsProductos.add(p.getId());
+                    idsCodigos.add(p.getCodigoBarras().getId());
+                }
+                outbox.registrarProductos(idsProductos, OperacionCambio.ALTA, conn);
+                outbox.registrarCodigos(idsCodigos, OperacionCambio.ALTA, conn);
+            }
 
             conn.commit();
-            System.out.println("✔ Transacción OK: Producto y Código creados.");
+            COMMITS.increment();
+            for (Producto p : productos) {
+                indiceTexto.indexar(p);
+            }
+            System.out.println("✔ Transacción OK: " + productos.size() + " Productos y Códigos creados.");
 
         } catch (Exception e) {
             rollback(conn, e);
         } finally {
             cerrarConexion(conn);
+            filtro.liberar(valores);
+            LAT_CREAR_LOTE.registrarDesde(inicio);
         }
     }
 
+    // ============================================================
+    //  SINCRONIZAR con un feed de proveedor (upsert por valor de código)
+    // ============================================================
+    /**
+     * Deja el catálogo igual al feed: por cada producto con su código (Producto.getCodigoBarras()),
+     * crea los dos si el valor del código no existe, o actualiza el producto y el código que ya
+     * lo tienen (reactivándolos si estaban dados de baja). Lo que ya está igual no se escribe.
+     *
+     * Por cada tramo de tamanioLote códigos: una consulta IN ... FOR UPDATE por uq_cb_valor para
+     * conocer el estado actual y a lo sumo cuatro sentencias en lote (alta de productos y códigos
+     * nuevos, upsert de productos y códigos modificados), en una transacción. Un feed de un
+     * millón de códigos son unos mil tramos en lugar de millones de consultas individuales.
+     *
+     * La consulta bloquea también los valores que faltan (hueco de uq_cb_valor): otro escritor no
+     * puede darlos de alta entre la consulta y el INSERT. Si dos sincronizaciones se bloquean
+     * mutuamente, MySQL deshace una y su tramo se reintenta (hasta INTENTOS_TRAMO veces).
+     *
+     * Se valida todo antes de escribir. Si un tramo falla, los anteriores quedan aplicados; la
+     * operación es idempotente y se puede volver a correr con el mismo feed. Si el valor se repite,
+     * gana la última aparición. Una fecha de asignación nula conserva la existente.
+     * @param productos Productos con su CodigoBarras asociado.
+     * @return Insertados, actualizados y sin cambios.
+     * @throws SQLException Si falla una validación o la transacción de un tramo.
+     */
+    public ResultadoSincronizacion sincronizar(List<Producto> productos) throws SQLException {
+        if (productos == null) throw new SQLException("La lista de productos no puede ser nula.");
+        soloBaseUnica("La sincronización");
+
+        ResultadoSincronizacion resultado = new ResultadoSincronizacion();
+        Map<String, Producto> porValor = new LinkedHashMap<>();
+        for (Producto p : productos) {
+            validarProducto(p);
+            validarCodigoBasico(p.getCodigoBarras());
+            if (porValor.put(p.getCodigoBarras().getValor(), p) != null) {
+                resultado.sumarRepetidos(1);
+            }
+        }
+
+        int tamanio = productoDao.getTamanioLote();
+        List<Producto> tramo = new ArrayList<>(tamanio);
+        for (Producto p : porValor.values()) {
+            tramo.add(p);
+            if (tramo.size() == tamanio) {
+                sincronizarTramoConReintento(tramo, resultado);
+                tramo.clear();
+            }
+        }
+        if (!tramo.isEmpty()) {
+            sincronizarTramoConReintento(tramo, resultado);
+        }
+        resultado.finalizar();
+        return resultado;
+    }
+
+    // Cada intento vuelve a consultar: lo que la otra transacción dio de alta pasa a "existente"
+    private void sincronizarTramoConReintento(List<Producto> tramo, ResultadoSincronizacion resultado)
+            throws SQLException {
+        for (int intento = 1; ; intento++) {
+            try {
+                sincronizarTramo(tramo, resultado);
+                return;
+            } catch (SQLException e) {
+                if (intento == INTENTOS_TRAMO || !esBloqueoMutuo(e)) {
+                    throw e;
+                }
+                System.err.println("⚠ Bloqueo mutuo al sincronizar, se reintenta el tramo (intento " + (intento + 1) + ").");
+            }
+        }
+    }
+
+    private static boolean esBloqueoMutuo(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sincronizarTramo(List<Producto> tramo, ResultadoSincronizacion resultado) throws SQLException {
+        List<String> valores = new ArrayList<>(tramo.size());
+        for (Producto p : tramo) {
+            valores.add(p.getCodigoBarras().getValor());
+        }
+
+        long inicio = System.nanoTime();
+        Connection conn = null;
+        // Los que ya existen no cambian el filtro; los nuevos quedan antes del commit
+        filtro.agregar(valores);
+
+        try {
+            conn = DatabaseConnection.getConnection();
+            conn.setAutoCommit(false);
+
+            // Con bloqueo: un valor que falta no puede aparecer antes del INSERT de este tramo
+            Map<String, Producto> actuales = productoDao.buscarPorValores(valores, conn, true);
+            List<Producto> nuevos = new ArrayList<>();
+            List<Producto> productosModificados = new ArrayList<>();
+            List<CodigoBarras> codigosModificados = new ArrayList<>();
+            int actualizados = 0;
+
+            for (Producto p : tramo) {
+                CodigoBarras cb = p.getCodigoBarras();
+                p.setEliminado(false);
+                cb.setEliminado(false);
+                Producto actual = actuales.get(cb.getValor());
+                if (actual == null) {
+                    if (cb.getFechaAsignacion() == null) cb.setFechaAsignacion(LocalDate.now());
+                    cb.setVersion(0L);
+                    nuevos.add(p);
+                    continue;
+                }
+                // El código identifica al producto: se conservan ids y asociación existentes
+                CodigoBarras cbActual = actual.getCodigoBarras();
+                p.setId(actual.getId());
+                cb.setId(cbActual.getId());
+                cb.setProductoId(actual.getId());
+                boolean productoCambia = !mismoProducto(p, actual);
+                boolean codigoCambia = !mismoCodigo(cb, cbActual);
+                p.setVersion(actual.getVersion() + (productoCambia ? 1 : 0));
+                cb.setVersion(cbActual.getVersion() + (codigoCambia ? 1 : 0));
+                if (productoCambia) productosModificados.add(p);
+                if (codigoCambia) codigosModificados.add(cb);
+                if (productoCambia || codigoCambia) actualizados++;
+            }
+
+            productoDao.crearLote(nuevos, conn);
+            List<CodigoBarras> codigosNuevos = new ArrayList<>(nuevos.size());
+            for (Producto p : nuevos) {
+                p.getCodigoBarras().setProductoId(p.getId());
+                codigosNuevos.add(p.getCodigoBarras());
+            }
+            productoDao.upsertLote(productosModificados, conn);
+            codigoDao.upsertLote(codigosModificados, conn);
+            // INSERT simple: si el valor apareciera igual, falla en lugar de pisar otro código
+            codigoDao.crearLote(codigosNuevos, conn);
+            registrarSincronizacion(nuevos, productosModificados, codigosNuevos, codigosModificados, conn);
+
+            conn.commit();
+            COMMITS.increment();
+            for (Producto p : nuevos) {
+                indiceTexto.indexar(p);
+            }
+            for (Producto p : productosModificados) {
+                cache.invalidarProducto(p.getId());
+                indiceTexto.indexar(p);
+            }
+            // El valor no cambia en una sincronización: basta invalidar por valor (sin recorrer la cache)
+            for (CodigoBarras cb : codigosModificados) {
+                cache.invalidarCodigo(null, cb.getValor());
+            }
+            for (CodigoBarras cb : codigosNuevos) {
+                cache.invalidarCodigo(null, cb.getValor());
+            }
+            resultado.sumarInsertados(nuevos.size());
+            resultado.sumarActualizados(actualizados);
+            resultado.sumarSinCambios(tramo.size() - nuevos.size() - actualizados);
+            resultado.sumarTramo();
+
+        } catch (Exception e) {
+            rollback(conn, e);
+        } finally {
+            cerrarConexion(conn);
+            filtro.liberar(valores);
+            LAT_SINCRONIZAR_TRAMO.registrarDesde(inicio);
+        }
+    }
+
+    private void registrarSincronizacion(List<Producto> nuevos, List<Producto> productosModificados,
+                                         List<CodigoBarras> codigosNuevos, List<CodigoBarras> codigosModificados,
+                                         Connection conn) throws SQLException {
+        if (!outbox.estaActivo()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(nuevos.size());
+        for (Producto p : nuevos) {
+            ids.add(p.getId());
+        }
+        outbox.registrarProductos(ids, OperacionCambio.ALTA, conn);
+
+        ids = new ArrayList<>(codigosNuevos.size());
+        for (CodigoBarras cb : codigosNuevos) {
+            ids.add(cb.getId());
+        }
+        outbox.registrarCodigos(ids, OperacionCambio.ALTA, conn);
+
+        ids = new ArrayList<>(productosModificados.size());
+        for (Producto p : productosModificados) {
+            ids.add(p.getId());
+        }
+        outbox.registrarProductos(ids, OperacionCambio.MODIFICACION, conn);
+
+        ids = new ArrayList<>(codigosModificados.size());
+        for (CodigoBarras cb : codigosModificados) {
+            ids.add(cb.getId());
+        }
+        outbox.registrarCodigos(ids, OperacionCambio.MODIFICACION, conn);
+    }
+
+    // Comparación con la precisión de las columnas: precio DECIMAL(10,2), peso DECIMAL(10,3)
+    private static boolean mismoProducto(Producto nuevo, Producto actual) {
+        return !Boolean.TRUE.equals(actual.getEliminado())
+                && Objects.equals(nuevo.getNombre(), actual.getNombre())
+                && Objects.equals(nuevo.getMarca(), actual.getMarca())
+                && Objects.equals(nuevo.getCategoria(), actual.getCategoria())
+                && Math.round(nuevo.getPrecio() * 100) == Math.round(actual.getPrecio() * 100)
+                && (nuevo.getPeso() == null ? actual.getPeso() == null
+                    : actual.getPeso() != null && Math.round(nuevo.getPeso() * 1000) == Math.round(actual.getPeso() * 1000));
+    }
+
+    private static boolean mismoCodigo(CodigoBarras nuevo, CodigoBarras actual) {
+        return !Boolean.TRUE.equals(actual.getEliminado())
+                && nuevo.getTipo() == actual.getTipo()
+                && Objects.equals(nuevo.getObservaciones(), actual.getObservaciones())
+                && (nuevo.getFechaAsignacion() == null || nuevo.getFechaAsignacion().equals(actual.getFechaAsignacion()));
+    }
+
     // ============================================================
     //  ACTUALIZAR Producto + Código (transacción) - CÓDIGO EXISTENTE
     // ============================================================
+    /**
+     * Actualiza ambos en una transacción, sólo si ninguno cambió desde que se leyó (versión).
+     * @throws ConflictoVersionException Si otro usuario los modificó antes; no se escribe nada.
+     */
     public void actualizarProductoConCodigo(Producto producto, CodigoBarras codigo) throws SQLException {
         if (producto.getId() == null) {
             throw new SQLException("El ID del producto no puede ser nulo.");
@@ -89,25 +585,86 @@ public class ProductoService {
         validarProducto(producto);
         validarCodigoBasico(codigo);
 
+        long inicio = System.nanoTime();
         Connection conn = null;
+        Long versionProducto = producto.getVersion();
+        Long versionCodigo = codigo.getVersion();
+        String valor = codigo.getValor();
+        filtro.agregar(valor);
 
         try {
-            conn = DatabaseConnection.getConnection();
-            conn.setAutoCommit(false);
-
-            productoDao.actualizar(producto, conn);
-            codigoDao.actualizar(codigo, conn);
-
-            conn.commit();
+            if (conShards) {
+                shards().actualizarConCodigo(producto, codigo);
+            } else {
+                conn = DatabaseConnection.getConnection();
+                conn.setAutoCommit(false);
+
+                productoDao.actualizar(producto, conn);
+                codigoDao.actualizar(codigo, conn);
+                outbox.registrarProducto(producto.getId(), OperacionCambio.MODIFICACION, conn);
+                outbox.registrarCodigo(codigo.getId(), OperacionCambio.MODIFICACION, conn);
+
+                conn.commit();
+            }
+            COMMITS.increment();
+            // Invalidar sólo tras el commit: en rollback lo cacheado sigue siendo correcto
+            cache.invalidarProducto(producto.getId());
+            cache.invalidarCodigo(codigo.getId(), codigo.getValor());
+            indiceTexto.indexar(producto);
             System.out.println("✔ Transacción OK: Producto y Código actualizados.");
 
         } catch (Exception e) {
+            // El rollback también deshace el avance de versión de los objetos
+            producto.setVersion(versionProducto);
+            codigo.setVersion(versionCodigo);
             rollback(conn, e);
         } finally {
             cerrarConexion(conn);
+            filtro.liberar(valor);
+            LAT_ACTUALIZAR.registrarDesde(inicio);
         }
     }
 
+    /**
+     * Lee el producto con su código, aplica {@code cambios} y lo guarda; si otro escritor lo
+     * modificó en el medio, vuelve a leer y reaplica según la política de reintentos
+     * (concurrencia.* en db.properties). No bloquea filas entre la lectura y la escritura.
+     * @param cambios Se invoca una vez por intento con datos frescos; no debe tener otros efectos.
+     * @return El producto guardado, con su código y las versiones nuevas.
+     * @throws ConflictoVersionException Si se agotaron los intentos.
+     */
+    public Producto modificarProductoConCodigo(long productoId, BiConsumer<Producto, CodigoBarras> cambios)
+            throws SQLException {
+        if (cambios == null) throw new SQLException("Los cambios no pueden ser nulos.");
+        return reintentos.ejecutar(() -> {
+            // Del primario: una réplica atrasada daría la versión vieja y otro conflicto en cada intento
+            Producto p;
+            if (conShards) {
+                p = shards().leerConCodigo(productoId); // los shards no tienen réplicas
+            } else {
+                try (Connection conn = DatabaseConnection.getConnection()) {
+                    p = productoDao.leerConCodigo(productoId, conn);
+                } catch (IOException e) {
+                    throw new SQLException("Error al obtener conexión", e);
+                }
+            }
+            // leerConCodigo no filtra las bajas: un producto dado de baja no se modifica
+            if (p == null || Boolean.TRUE.equals(p.getEliminado())) {
+                throw new SQLException("Producto ID " + productoId + " no encontrado.");
+            }
+            CodigoBarras cb = p.getCodigoBarras();
+            if (cb == null) throw new SQLException("El producto ID " + productoId + " no tiene código de barras activo.");
+            cambios.accept(p, cb);
+            actualizarProductoConCodigo(p, cb);
+            return p;
+        });
+    }
+
+    public void setReintentos(ReintentoOptimista reintentos) {
+        if (reintentos == null) throw new IllegalArgumentException("La política de reintentos no puede ser nula.");
+        this.reintentos = reintentos;
+    }
+
     // ============================================================
     //  BAJA lógica de Producto + Código (transacción) - CÓDIGO EXISTENTE
     // ============================================================
@@ -115,29 +672,119 @@ public class ProductoService {
         if (productoId == null) throw new SQLException("ID de producto requerido.");
         if (codigoId == null) throw new SQLException("ID de código requerido.");
 
+        long inicio = System.nanoTime();
+        Connection conn = null;
+        String valor; // para invalidar la cache por valor, sin recorrerla
+
+        try {
+            if (conShards) {
+                valor = shards().eliminarConCodigo(productoId, codigoId);
+            } else {
+                conn = DatabaseConnection.getConnection();
+                conn.setAutoCommit(false);
+
+                CodigoBarras actual = codigoDao.leer(codigoId, conn);
+                valor = actual != null ? actual.getValor() : null;
+                codigoDao.eliminar(codigoId, conn);
+                productoDao.eliminar(productoId, conn);
+                outbox.registrarCodigo(codigoId, OperacionCambio.BAJA, conn);
+                outbox.registrarProducto(productoId, OperacionCambio.BAJA, conn);
+
+                conn.commit();
+            }
+            COMMITS.increment();
+            cache.invalidarProducto(productoId);
+            cache.invalidarCodigo(codigoId, valor);
+            indiceTexto.quitar(productoId);
+            System.out.println("✔ Transacción OK: Producto y Código eliminados.");
+
+        } catch (Exception e) {
+            rollback(conn, e);
+        } finally {
+            cerrarConexion(conn);
+            LAT_ELIMINAR.registrarDesde(inicio);
+        }
+    }
+
+    // ============================================================
+    //  AJUSTE MASIVO de precios (un UPDATE, una transacción)
+    // ============================================================
+
+    /**
+     * Aplica un porcentaje a los precios de los productos activos del filtro.
+     * @param filtro Categoría, marca y/o rango de precio (vacío = todo el catálogo activo).
+     * @param porcentaje Porcentaje a aplicar, p. ej. 8.5 sube un 8,5 % y -10 baja un 10 %.
+     * @return Filas afectadas y estadísticas de precio antes/después.
+     * @throws SQLException Si algún precio quedaría negativo o fuera de rango, o falla la transacción.
+     */
+    public ResultadoAjustePrecios ajustarPreciosPorcentaje(FiltroProductos filtro, double porcentaje) throws SQLException {
+        return ajustarPrecios(filtro, factor(porcentaje), BigDecimal.ZERO, false);
+    }
+
+    /**
+     * Suma (o resta, si es negativo) un monto fijo a los precios de los productos activos del filtro.
+     */
+    public ResultadoAjustePrecios ajustarPreciosMonto(FiltroProductos filtro, double monto) throws SQLException {
+        return ajustarPrecios(filtro, BigDecimal.ONE, BigDecimal.valueOf(monto), false);
+    }
+
+    /**
+     * Calcula el efecto de aplicar porcentaje y monto (precio * (1 + porcentaje/100) + monto)
+     * sin modificar nada.
+     */
+    public ResultadoAjustePrecios simularAjustePrecios(FiltroProductos filtro, double porcentaje, double monto)
+            throws SQLException {
+        return ajustarPrecios(filtro, factor(porcentaje), BigDecimal.valueOf(monto), true);
+    }
+
+    private ResultadoAjustePrecios ajustarPrecios(FiltroProductos filtro, BigDecimal factor, BigDecimal monto,
+                                                  boolean simular) throws SQLException {
+        if (filtro == null) throw new SQLException("El filtro no puede ser nulo (usar new FiltroProductos() para todo el catálogo).");
+        if (factor.signum() < 0) throw new SQLException("El porcentaje no puede bajar el precio más de un 100 %.");
+        soloBaseUnica("El ajuste de precios");
+
+        if (simular) {
+            try (Connection conn = DatabaseConnection.getConnection()) {
+                return productoDao.simularAjustePrecios(filtro, factor, monto, conn, false);
+            } catch (IOException e) {
+                throw new SQLException("Error al obtener conexión", e);
+            }
+        }
+
+        long inicio = System.nanoTime();
         Connection conn = null;
 
         try {
             conn = DatabaseConnection.getConnection();
             conn.setAutoCommit(false);
 
-            codigoDao.eliminar(codigoId, conn);
-            productoDao.eliminar(productoId, conn);
+            ResultadoAjustePrecios resultado = productoDao.ajustarPrecios(filtro, factor, monto, outbox, conn);
 
             conn.commit();
-            System.out.println("✔ Transacción OK: Producto y Código eliminados.");
+            COMMITS.increment();
+            // El filtro se evalúa sobre lo cacheado (precio anterior), igual que lo hizo el UPDATE
+            cache.getProductos().invalidarSi(filtro::coincide);
+            System.out.println("✔ Transacción OK: " + resultado.getAfectados() + " precios ajustados.");
+            return resultado;
 
         } catch (Exception e) {
             rollback(conn, e);
+            return null; // rollback siempre lanza
         } finally {
             cerrarConexion(conn);
+            LAT_AJUSTAR_PRECIOS.registrarDesde(inicio);
         }
     }
 
+    private static BigDecimal factor(double porcentaje) {
+        return BigDecimal.ONE.add(BigDecimal.valueOf(porcentaje).movePointLeft(2));
+    }
+
     // ============================================================
     //  VALIDACIONES - CÓDIGO EXISTENTE
     // ============================================================
-    private void validarProducto(Producto p) throws SQLException {
+    // Package-private: las reutiliza ImportadorCatalogo
+    void validarProducto(Producto p) throws SQLException {
         if (p == null) throw new SQLException("El producto no puede ser nulo.");
 
         if (p.getNombre() == null || p.getNombre().trim().isEmpty())
@@ -156,7 +803,7 @@ public class ProductoService {
             throw new SQLException("El peso no puede ser negativo.");
     }
 
-    private void validarCodigoBasico(CodigoBarras c) throws SQLException {
+    void validarCodigoBasico(CodigoBarras c) throws SQLException {
         if (c == null) throw new SQLException("El código de barras no puede ser nulo.");
 
         if (c.getValor() == null || c.getValor().trim().isEmpty())
@@ -169,15 +816,46 @@ public class ProductoService {
     // ============================================================
     //  AUXILIARES - CÓDIGO EXISTENTE
     // ============================================================
+    private Producto leerDeBase(long id) throws SQLException {
+        return conShards ? shards().leer(id) : productoDao.leer(id);
+    }
+
+    private static ProductoDaoParticionado shards() throws SQLException {
+        return ProductoDaoParticionado.getInstancia();
+    }
+
+    private void soloBaseUnica(String operacion) throws SQLException {
+        if (conShards) {
+            throw new SQLException(operacion + " no está disponible con shards (particion.shards).");
+        }
+    }
+
     private void rollback(Connection conn, Exception e) throws SQLException {
-        if (conn != null) {
+        rollback(conn, e, true);
+    }
+
+    private void rollback(Connection conn, Exception e, boolean avisar) throws SQLException {
+        if (conShards) {
+            // Sin conexión propia: ProductoDaoParticionado ya deshizo el shard y liberó el directorio
+            ROLLBACKS.increment();
+            if (avisar) {
+                System.err.println("⚠ Rollback realizado por error: " + e.getMessage());
+            }
+        } else if (conn != null) {
+            ROLLBACKS.increment();
             try {
                 conn.rollback();
-                System.err.println("⚠ Rollback realizado por error: " + e.getMessage());
+                if (avisar) {
+                    System.err.println("⚠ Rollback realizado por error: " + e.getMessage());
+                }
             } catch (SQLException ex) {
                 System.err.println("⚠ Error en rollback: " + ex.getMessage());
             }
         }
+        // Sin envolver: el llamador (o ReintentoOptimista) lo distingue por tipo
+        if (e instanceof ConflictoVersionException conflicto) {
+            throw conflicto;
+        }
         throw new SQLException("Error en la transacción", e);
     }
 
@@ -0,0 +1,87 @@
+package service;
+
+import dao.FiltroProductos;
+import dao.ResultadoAjustePrecios;
+import entities.CodigoBarras;
+import entities.Producto;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Versión asíncrona de ProductoService: cada operación corre en un hilo virtual y devuelve
+ * un CompletableFuture. La concurrencia real contra MySQL la limita el tamaño del pool.
+ */
+public class ProductoServiceAsync {
+
+    private final ProductoService service;
+    private final EjecutorAsincrono ejecutor = EjecutorAsincrono.getInstancia();
+
+    public ProductoServiceAsync() {
+        this(new ProductoService());
+    }
+
+    public ProductoServiceAsync(ProductoService service) {
+        this.service = service;
+    }
+
+    // ================== LECTURAS ==================
+
+    public CompletableFuture<Producto> leer(long id) {
+        return ejecutor.ejecutar(() -> service.leer(id));
+    }
+
+    public CompletableFuture<Producto> leerConCodigo(long id) {
+        return ejecutor.ejecutar(() -> service.leerConCodigo(id));
+    }
+
+    public CompletableFuture<Producto> buscarPorCodigo(String valor) {
+        return ejecutor.ejecutar(() -> service.buscarPorCodigo(valor));
+    }
+
+    public CompletableFuture<List<Producto>> getPaginaConCodigo(long despuesDeId, int limite) {
+        return ejecutor.ejecutar(() -> service.getPaginaConCodigo(despuesDeId, limite));
+    }
+
+    // ================== ESCRITURAS (transaccionales) ==================
+
+    public CompletableFuture<Producto> crearProductoConCodigo(Producto producto, CodigoBarras codigo) {
+        return ejecutor.ejecutar(() -> {
+            service.crearProductoConCodigo(producto, codigo);
+            return producto;
+        });
+    }
+
+    public CompletableFuture<List<Producto>> crearProductosConCodigos(List<Producto> productos) {
+        return ejecutor.ejecutar(() -> {
+            service.crearProductosConCodigos(productos);
+            return productos;
+        });
+    }
+
+    public CompletableFuture<Void> actualizarProductoConCodigo(Producto producto, CodigoBarras codigo) {
+        return ejecutor.ejecutarSinResultado(() -> service.actualizarProductoConCodigo(producto, codigo));
+    }
+
+    public CompletableFuture<Producto> modificarProductoConCodigo(long productoId,
+                                                                 BiConsumer<Producto, CodigoBarras> cambios) {
+        return ejecutor.ejecutar(() -> service.modificarProductoConCodigo(productoId, cambios));
+    }
+
+    public CompletableFuture<ResultadoSincronizacion> sincronizar(List<Producto> productos) {
+        return ejecutor.ejecutar(() -> service.sincronizar(productos));
+    }
+
+    public CompletableFuture<Void> eliminarProductoConCodigo(Long productoId, Long codigoId) {
+        return ejecutor.ejecutarSinResultado(() -> service.eliminarProductoConCodigo(productoId, codigoId));
+    }
+
+    public CompletableFuture<ResultadoAjustePrecios> ajustarPreciosPorcentaje(FiltroProductos filtro, double porcentaje) {
+        return ejecutor.ejecutar(() -> service.ajustarPreciosPorcentaje(filtro, porcentaje));
+    }
+
+    public CompletableFuture<ResultadoAjustePrecios> ajustarPreciosMonto(FiltroProductos filtro, double monto) {
+        return ejecutor.ejecutar(() -> service.ajustarPreciosMonto(filtro, monto));
+    }
+}
@@ -0,0 +1,126 @@
+package service;
+
+import config.DatabaseConnection;
+import dao.ConflictoVersionException;
+import metricas.RegistroMetricas;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reintenta una operación mientras falle por {@link ConflictoVersionException}, con espera
+ * exponencial y aleatoria entre intentos (así dos escritores que chocan no vuelven a chocar
+ * en el mismo instante). Otros errores se propagan de inmediato.
+ *
+ * Cada intento debe volver a leer las filas y reaplicar el cambio: reintentar con el mismo
+ * objeto desactualizado fallaría siempre igual.
+ *
+ * <pre>
+ * reintentos.ejecutar(() -> {
+ *     Producto p = dao.leer(id);
+ *     p.setPrecio(p.getPrecio() * 1.1);
+ *     dao.actualizar(p);
+ *     return p;
+ * });
+ * </pre>
+ */
+public final class ReintentoOptimista {
+
+    public static final int INTENTOS_POR_DEFECTO = 5;
+    public static final long ESPERA_BASE_MS_POR_DEFECTO = 10;
+    public static final long ESPERA_MAXIMA_MS_POR_DEFECTO = 500;
+
+    private static final LongAdder CONFLICTOS = RegistroMetricas.contador("service.concurrencia.conflictos");
+    private static final LongAdder AGOTADOS = RegistroMetricas.contador("service.concurrencia.reintentosAgotados");
+
+    @FunctionalInterface
+    public interface Intento<T> {
+        T ejecutar() throws SQLException;
+    }
+
+    private final int intentos;
+    private final long esperaBaseMs;
+    private final long esperaMaximaMs;
+
+    /**
+     * @param intentos Intentos totales (1 = sin reintento).
+     * @param esperaBaseMs Tope de la espera antes del primer reintento; se duplica en cada uno.
+     * @param esperaMaximaMs Tope absoluto de la espera entre intentos.
+     */
+    public ReintentoOptimista(int intentos, long esperaBaseMs, long esperaMaximaMs) {
+        if (intentos <= 0) {
+            throw new IllegalArgumentException("La cantidad de intentos debe ser positiva.");
+        }
+        if (esperaBaseMs < 0 || esperaMaximaMs < esperaBaseMs) {
+            throw new IllegalArgumentException("Esperas inválidas: base=" + esperaBaseMs + " máxima=" + esperaMaximaMs);
+        }
+        this.intentos = intentos;
+        this.esperaBaseMs = esperaBaseMs;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    /**
+     * Lee concurrencia.reintentos, concurrencia.esperaBaseMs y concurrencia.esperaMaximaMs
+     * de db.properties (valores por defecto si falta el archivo o la clave).
+     */
+    public static ReintentoOptimista desdeConfiguracion() {
+        Properties p = new Properties();
+        try {
+            p = DatabaseConnection.getPropiedades();
+        } catch (IOException e) {
+            System.err.println("⚠ No se pudo leer la configuración de reintentos, se usan valores por defecto: "
+                    + e.getMessage());
+        }
+        return new ReintentoOptimista(
+                Integer.parseInt(p.getProperty("concurrencia.reintentos", String.valueOf(INTENTOS_POR_DEFECTO))),
+                Long.parseLong(p.getProperty("concurrencia.esperaBaseMs", String.valueOf(ESPERA_BASE_MS_POR_DEFECTO))),
+                Long.parseLong(p.getProperty("concurrencia.esperaMaximaMs", String.valueOf(ESPERA_MAXIMA_MS_POR_DEFECTO))));
+    }
+
+    /**
+     * Ejecuta {@code intento} hasta que termine sin conflicto de versión.
+     * @throws ConflictoVersionException El último conflicto, si se agotaron los intentos.
+     * @throws SQLException Cualquier otro error del intento (sin reintentar).
+     */
+    public <T> T ejecutar(Intento<T> intento) throws SQLException {
+        for (int n = 1; ; n++) {
+            try {
+                return intento.ejecutar();
+            } catch (ConflictoVersionException e) {
+                CONFLICTOS.increment();
+                if (n == intentos) {
+                    AGOTADOS.increment();
+                    throw e;
+                }
+                esperar(n);
+            }
+        }
+    }
+
+    // Espera aleatoria en [0, min(máxima, base * 2^(n-1))]
+    private void esperar(int n) throws SQLException {
+        long tope = Math.min(esperaMaximaMs, esperaBaseMs << Math.min(n - 1, 20));
+        if (tope <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(tope + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Reintento interrumpido.", e);
+        }
+    }
+
+    public int getIntentos() {
+        return intentos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReintentoOptimista[intentos=%d, esperaBase=%d ms, esperaMáxima=%d ms]",
+                intentos, esperaBaseMs, esperaMaximaMs);
+    }
+}
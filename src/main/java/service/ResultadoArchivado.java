@@ -0,0 +1,40 @@
+package service;
+
+/**
+ * Contadores de una pasada de archivado de bajas. Se actualiza a medida que avanza
+ * y se entrega al callback de progreso.
+ */
+public class ResultadoArchivado {
+    private final long inicioNanos = System.nanoTime();
+    private long codigos;
+    private long productos;
+    private long tramos;
+    private long finNanos;
+
+    void sumarCodigos(long n) { codigos += n; }
+    void sumarProductos(long n) { productos += n; }
+    void sumarTramo() { tramos++; }
+    void finalizar() { finNanos = System.nanoTime(); }
+
+    // Getters
+    public long getCodigos() { return codigos; }
+    public long getProductos() { return productos; }
+    public long getTramos() { return tramos; }
+
+    public double getSegundos() {
+        long fin = finNanos != 0 ? finNanos : System.nanoTime();
+        return (fin - inicioNanos) / 1_000_000_000.0;
+    }
+
+    /** Filas movidas (códigos + productos) por segundo, pausas incluidas. */
+    public double getFilasPorSegundo() {
+        double seg = getSegundos();
+        return seg == 0 ? 0 : (codigos + productos) / seg;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Archivado{códigos=%d, productos=%d, tramos=%d, %.1f s, %.0f filas/s}",
+                codigos, productos, tramos, getSegundos(), getFilasPorSegundo());
+    }
+}
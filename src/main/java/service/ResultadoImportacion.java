@@ -0,0 +1,51 @@
+package service;
+
+/**
+ * Contadores de una importación de catálogo. Se actualiza a medida que avanza
+ * y se entrega al callback de progreso.
+ */
+public class ResultadoImportacion {
+    private final long inicioNanos = System.nanoTime();
+    private long filasLeidas;
+    private long importadas;
+    private long actualizadas;
+    private long sinCambios;
+    private long rechazadas;
+    private long tramos;
+    private long finNanos;
+
+    void sumarLeidas(long n) { filasLeidas += n; }
+    void sumarImportadas(long n) { importadas += n; }
+    void sumarActualizadas(long n) { actualizadas += n; }
+    void sumarSinCambios(long n) { sinCambios += n; }
+    void sumarRechazadas(long n) { rechazadas += n; }
+    void sumarTramo() { tramos++; }
+    void finalizar() { finNanos = System.nanoTime(); }
+
+    // Getters
+    public long getFilasLeidas() { return filasLeidas; }
+    public long getImportadas() { return importadas; }
+    /** Sólo al sincronizar: códigos existentes modificados por el archivo. */
+    public long getActualizadas() { return actualizadas; }
+    /** Sólo al sincronizar: códigos existentes que ya estaban iguales (o repetidos en el archivo). */
+    public long getSinCambios() { return sinCambios; }
+    public long getRechazadas() { return rechazadas; }
+    public long getTramos() { return tramos; }
+
+    public double getSegundos() {
+        long fin = finNanos != 0 ? finNanos : System.nanoTime();
+        return (fin - inicioNanos) / 1_000_000_000.0;
+    }
+
+    /** Filas procesadas (importadas + actualizadas + sin cambios + rechazadas) por segundo. */
+    public double getFilasPorSegundo() {
+        double seg = getSegundos();
+        return seg == 0 ? 0 : (importadas + actualizadas + sinCambios + rechazadas) / seg;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Importación{leídas=%d, importadas=%d, actualizadas=%d, sinCambios=%d, rechazadas=%d, tramos=%d, %.1f s, %.0f filas/s}",
+                filasLeidas, importadas, actualizadas, sinCambios, rechazadas, tramos, getSegundos(), getFilasPorSegundo());
+    }
+}
@@ -0,0 +1,47 @@
+package service;
+
+/**
+ * Contadores de una sincronización de catálogo (ProductoService.sincronizar). Se actualiza
+ * a medida que avanza y se entrega al callback de progreso.
+ */
+public class ResultadoSincronizacion {
+    private final long inicioNanos = System.nanoTime();
+    private long insertados;
+    private long actualizados;
+    private long sinCambios;
+    private long repetidos;
+    private long tramos;
+    private long finNanos;
+
+    void sumarInsertados(long n) { insertados += n; }
+    void sumarActualizados(long n) { actualizados += n; }
+    void sumarSinCambios(long n) { sinCambios += n; }
+    void sumarRepetidos(long n) { repetidos += n; }
+    void sumarTramo() { tramos++; }
+    void finalizar() { finNanos = System.nanoTime(); }
+
+    // Getters
+    public long getInsertados() { return insertados; }
+    public long getActualizados() { return actualizados; }
+    public long getSinCambios() { return sinCambios; }
+    /** Filas del feed descartadas porque un valor de código posterior las reemplaza. */
+    public long getRepetidos() { return repetidos; }
+    public long getTramos() { return tramos; }
+
+    public double getSegundos() {
+        long fin = finNanos != 0 ? finNanos : System.nanoTime();
+        return (fin - inicioNanos) / 1_000_000_000.0;
+    }
+
+    /** Códigos procesados (insertados + actualizados + sin cambios) por segundo. */
+    public double getFilasPorSegundo() {
+        double seg = getSegundos();
+        return seg == 0 ? 0 : (insertados + actualizados + sinCambios) / seg;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Sincronización{insertados=%d, actualizados=%d, sinCambios=%d, repetidos=%d, tramos=%d, %.1f s, %.0f filas/s}",
+                insertados, actualizados, sinCambios, repetidos, tramos, getSegundos(), getFilasPorSegundo());
+    }
+}
@@ -0,0 +1,38 @@
+package traza;
+
+import java.time.Instant;
+
+/**
+ * Entrada del registro de consultas lentas.
+ */
+public final class ConsultaLenta {
+    private final Instant instante;
+    private final String hilo;
+    private final String sql;
+    private final String parametros;
+    private final long duracionMicros;
+    private final long filas;
+
+    ConsultaLenta(Instant instante, String hilo, String sql, String parametros, long duracionMicros, long filas) {
+        this.instante = instante;
+        this.hilo = hilo;
+        this.sql = sql;
+        this.parametros = parametros;
+        this.duracionMicros = duracionMicros;
+        this.filas = filas;
+    }
+
+    // Getters
+    public Instant getInstante() { return instante; }
+    public String getHilo() { return hilo; }
+    public String getSql() { return sql; }
+    public String getParametros() { return parametros; }
+    public long getDuracionMicros() { return duracionMicros; }
+    public long getFilas() { return filas; }
+
+    @Override
+    public String toString() {
+        return String.format("%s [%s] %.1f ms, %d filas: %s %s", instante, hilo, duracionMicros / 1000.0,
+                filas, sql, parametros);
+    }
+}
@@ -0,0 +1,33 @@
+package traza;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Flight Recorder por sentencia ejecutada. Con una grabación activa
+ * (-XX:StartFlightRecording o jcmd JFR.start) las llamadas de los DAOs quedan alineadas
+ * con GC, bloqueos y actividad de hilos en JDK Mission Control.
+ */
+@Name("tpi.Sql")
+@Label("Sentencia SQL")
+@Category({"TPI", "JDBC"})
+@Description("Ejecución de una sentencia JDBC (incluye la lectura del ResultSet)")
+@StackTrace(true)
+class EventoSql extends Event {
+
+    @Label("Operación")
+    String operacion;
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Parámetros")
+    String parametros;
+
+    @Label("Filas")
+    long filas;
+}
@@ -0,0 +1,200 @@
+package traza;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+
+/**
+ * Proxy de un PreparedStatement trazado. Guarda los parámetros a medida que se asignan y
+ * mide cada execute*. En executeQuery la medición termina al cerrar el ResultSet, así la
+ * duración y las filas incluyen la lectura (con cursor del servidor es donde está el costo).
+ *
+ * Un PreparedStatement se usa desde un solo hilo, igual que la conexión que lo creó.
+ */
+class SentenciaTrazada implements InvocationHandler {
+
+    private final PreparedStatement ps;
+    private final String sql;
+    private Object[] parametros = new Object[8];
+    private int cantidadParametros;
+    private int lote;
+
+    // Consulta en curso (executeQuery hasta que se cierra su ResultSet)
+    private EventoSql consulta;
+    private long inicioConsulta;
+    private long filasConsulta;
+
+    SentenciaTrazada(PreparedStatement ps, String sql) {
+        this.ps = ps;
+        this.sql = sql;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String nombre = method.getName();
+        switch (nombre) {
+            case "executeQuery":
+                if (args == null) {
+                    terminarConsulta();
+                    consulta = iniciar("executeQuery");
+                    inicioConsulta = System.nanoTime();
+                    filasConsulta = 0;
+                    ResultSet rs = (ResultSet) delegar(method, args);
+                    return Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                            new Class<?>[]{ResultSet.class}, new Resultado(rs));
+                }
+                break;
+            case "executeUpdate":
+            case "executeLargeUpdate":
+            case "execute":
+                if (args == null) {
+                    return medir(nombre, method, args);
+                }
+                break;
+            case "executeBatch":
+            case "executeLargeBatch":
+                return medir(nombre, method, args);
+            case "addBatch":
+                lote++;
+                break;
+            case "clearParameters":
+                Arrays.fill(parametros, null);
+                cantidadParametros = 0;
+                break;
+            case "close":
+                terminarConsulta();
+                break;
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                // setString(1, x), setLong(2, y), setNull(3, tipo)...
+                if (nombre.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    guardarParametro((Integer) args[0], nombre.equals("setNull") ? null : args[1]);
+                }
+        }
+        return delegar(method, args);
+    }
+
+    private Object medir(String operacion, Method method, Object[] args) throws Throwable {
+        EventoSql evento = iniciar(operacion);
+        long inicio = System.nanoTime();
+        Object resultado = delegar(method, args);
+        long duracion = System.nanoTime() - inicio;
+        evento.end();
+        evento.filas = contarFilas(resultado);
+        if (lote > 0) {
+            evento.parametros = "[lote de " + lote + "]";
+            lote = 0;
+        }
+        TrazadorSql.registrar(evento, duracion);
+        return resultado;
+    }
+
+    private EventoSql iniciar(String operacion) {
+        EventoSql evento = new EventoSql();
+        evento.begin();
+        evento.operacion = operacion;
+        evento.sql = sql;
+        evento.parametros = describirParametros();
+        return evento;
+    }
+
+    private void terminarConsulta() {
+        if (consulta != null) {
+            long duracion = System.nanoTime() - inicioConsulta;
+            consulta.end();
+            consulta.filas = filasConsulta;
+            TrazadorSql.registrar(consulta, duracion);
+            consulta = null;
+        }
+    }
+
+    private Object delegar(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(ps, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ============================================================
+    //  PARÁMETROS
+    // ============================================================
+
+    private void guardarParametro(int indice, Object valor) {
+        if (indice >= parametros.length) {
+            parametros = Arrays.copyOf(parametros, Math.max(indice + 1, parametros.length * 2));
+        }
+        parametros[indice] = valor;
+        cantidadParametros = Math.max(cantidadParametros, indice);
+    }
+
+    private String describirParametros() {
+        StringBuilder sb = new StringBuilder("[");
+        boolean redactar = TrazadorSql.isRedactarParametros();
+        for (int i = 1; i <= cantidadParametros; i++) {
+            Object v = parametros[i];
+            if (i > 1) {
+                sb.append(", ");
+            }
+            if (v instanceof CharSequence) {
+                sb.append(redactar ? "'***'(" + ((CharSequence) v).length() + ")" : "'" + v + "'");
+            } else {
+                sb.append(v);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    private static long contarFilas(Object resultado) {
+        if (resultado instanceof Number) {
+            return ((Number) resultado).longValue();
+        }
+        long total = 0;
+        if (resultado instanceof int[]) {
+            for (int n : (int[]) resultado) total += Math.max(n, 0);
+        } else if (resultado instanceof long[]) {
+            for (long n : (long[]) resultado) total += Math.max(n, 0);
+        }
+        return total;
+    }
+
+    /** Cuenta filas y cierra la medición de la consulta cuando se cierra el ResultSet. */
+    private final class Resultado implements InvocationHandler {
+        private final ResultSet rs;
+
+        Resultado(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            Object resultado;
+            try {
+                resultado = method.invoke(rs, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (method.getName().equals("next") && Boolean.TRUE.equals(resultado)) {
+                filasConsulta++;
+            } else if (method.getName().equals("close")) {
+                terminarConsulta();
+            }
+            return resultado;
+        }
+    }
+}
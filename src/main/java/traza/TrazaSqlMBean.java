@@ -0,0 +1,17 @@
+package traza;
+
+/**
+ * Control de la traza SQL por JMX ({@code tpi:type=TrazaSql}).
+ */
+public interface TrazaSqlMBean {
+    boolean isActiva();
+    void setActiva(boolean activa);
+    long getUmbralLentoMs();
+    void setUmbralLentoMs(long umbralLentoMs);
+    boolean isRedactarParametros();
+    void setRedactarParametros(boolean redactar);
+    boolean isRegistrarTodas();
+    void setRegistrarTodas(boolean registrarTodas);
+    String[] getConsultasLentas();
+    void limpiarConsultasLentas();
+}
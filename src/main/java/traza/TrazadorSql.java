@@ -0,0 +1,167 @@
+package traza;
+
+import metricas.Histograma;
+import metricas.RegistroMetricas;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import jdk.jfr.EventType;
+
+/**
+ * Traza de sentencias JDBC. El pool le pasa cada PreparedStatement que presta y, si la traza
+ * está activa (o hay una grabación de JFR escuchando {@code tpi.Sql}), lo envuelve para medir
+ * SQL, parámetros, duración y filas. Apagada, el costo es un par de lecturas volátiles por
+ * prepareStatement: no se crea ningún proxy.
+ *
+ * Configuración (db.properties o -D, también modificable en caliente por JMX en
+ * {@code tpi:type=TrazaSql}):
+ * <pre>
+ * db.traza.activa=false
+ * db.traza.umbralLentoMs=200        consultas a partir de este tiempo van al registro de lentas
+ * db.traza.redactarParametros=true  oculta el contenido de los parámetros de texto
+ * db.traza.registrarTodas=false     imprime cada sentencia en System.err (diagnóstico)
+ * db.traza.maxLentas=100            entradas que guarda el registro de lentas
+ * </pre>
+ */
+public final class TrazadorSql {
+
+    private static final EventType TIPO_EVENTO = EventType.getEventType(EventoSql.class);
+    private static final Histograma LAT_SQL = RegistroMetricas.latencia("sql.sentencia");
+    private static final LongAdder LENTAS = RegistroMetricas.contador("sql.lentas");
+
+    private static volatile boolean activa;
+    private static volatile long umbralLentoNanos = 200_000_000L;
+    private static volatile boolean redactarParametros = true;
+    private static volatile boolean registrarTodas;
+    private static volatile int maxLentas = 100;
+
+    private static final Deque<ConsultaLenta> lentas = new ArrayDeque<>();
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(new StandardMBean(new Control(), TrazaSqlMBean.class),
+                            new ObjectName("tpi:type=TrazaSql"));
+        } catch (Exception e) {
+            System.err.println("⚠ No se pudo publicar el control de traza SQL por JMX: " + e.getMessage());
+        }
+    }
+
+    private TrazadorSql() {
+    }
+
+    /** Lee las claves db.traza.* (las ausentes conservan su valor actual). */
+    public static void configurar(Properties p) {
+        activa = Boolean.parseBoolean(p.getProperty("db.traza.activa", String.valueOf(activa)));
+        setUmbralLentoMs(Long.parseLong(p.getProperty("db.traza.umbralLentoMs",
+                String.valueOf(umbralLentoNanos / 1_000_000))));
+        redactarParametros = Boolean.parseBoolean(p.getProperty("db.traza.redactarParametros",
+                String.valueOf(redactarParametros)));
+        registrarTodas = Boolean.parseBoolean(p.getProperty("db.traza.registrarTodas", String.valueOf(registrarTodas)));
+        maxLentas = Integer.parseInt(p.getProperty("db.traza.maxLentas", String.valueOf(maxLentas)));
+    }
+
+    /**
+     * Devuelve {@code ps} tal cual si no hay nada que trazar, o un proxy que lo mide.
+     */
+    public static PreparedStatement envolver(PreparedStatement ps, String sql) {
+        if (!activa && !TIPO_EVENTO.isEnabled()) {
+            return ps;
+        }
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new SentenciaTrazada(ps, sql));
+    }
+
+    // ============================================================
+    //  REGISTRO (lo invoca SentenciaTrazada al terminar cada ejecución)
+    // ============================================================
+
+    static void registrar(EventoSql evento, long duracionNanos) {
+        if (evento.shouldCommit()) {
+            evento.commit();
+        }
+        if (!activa) {
+            return;
+        }
+        LAT_SQL.registrar(duracionNanos);
+        if (registrarTodas) {
+            System.err.printf("SQL %.2f ms, %d filas: %s %s%n", duracionNanos / 1_000_000.0,
+                    evento.filas, evento.sql, evento.parametros);
+        }
+        if (duracionNanos >= umbralLentoNanos) {
+            LENTAS.increment();
+            ConsultaLenta c = new ConsultaLenta(Instant.now(), Thread.currentThread().getName(),
+                    evento.sql, evento.parametros, duracionNanos / 1000, evento.filas);
+            System.err.println("🐢 Consulta lenta: " + c);
+            synchronized (lentas) {
+                while (lentas.size() >= maxLentas && !lentas.isEmpty()) {
+                    lentas.pollFirst();
+                }
+                lentas.addLast(c);
+            }
+        }
+    }
+
+    static boolean isRedactarParametros() {
+        return redactarParametros;
+    }
+
+    // ============================================================
+    //  CONTROL
+    // ============================================================
+
+    public static boolean isActiva() {
+        return activa;
+    }
+
+    public static void setActiva(boolean valor) {
+        activa = valor;
+    }
+
+    public static void setUmbralLentoMs(long ms) {
+        if (ms < 0) {
+            throw new IllegalArgumentException("El umbral no puede ser negativo.");
+        }
+        umbralLentoNanos = ms * 1_000_000L;
+    }
+
+    /** Consultas lentas registradas, de la más vieja a la más nueva. */
+    public static List<ConsultaLenta> getConsultasLentas() {
+        synchronized (lentas) {
+            return new ArrayList<>(lentas);
+        }
+    }
+
+    public static void limpiarConsultasLentas() {
+        synchronized (lentas) {
+            lentas.clear();
+        }
+    }
+
+    private static final class Control implements TrazaSqlMBean {
+        @Override public boolean isActiva() { return activa; }
+        @Override public void setActiva(boolean valor) { activa = valor; }
+        @Override public long getUmbralLentoMs() { return umbralLentoNanos / 1_000_000; }
+        @Override public void setUmbralLentoMs(long ms) { TrazadorSql.setUmbralLentoMs(ms); }
+        @Override public boolean isRedactarParametros() { return redactarParametros; }
+        @Override public void setRedactarParametros(boolean valor) { redactarParametros = valor; }
+        @Override public boolean isRegistrarTodas() { return registrarTodas; }
+        @Override public void setRegistrarTodas(boolean valor) { registrarTodas = valor; }
+        @Override public void limpiarConsultasLentas() { TrazadorSql.limpiarConsultasLentas(); }
+
+        @Override
+        public String[] getConsultasLentas() {
+            return TrazadorSql.getConsultasLentas().stream().map(ConsultaLenta::toString).toArray(String[]::new);
+        }
+    }
+}